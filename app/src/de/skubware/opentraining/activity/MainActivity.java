@@ -46,6 +46,7 @@ import de.skubware.opentraining.basic.Workout;
 import de.skubware.opentraining.db.Cache;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.WorkoutSummary;
 
 /**
  * @class MainActivity
@@ -126,11 +127,11 @@ public class MainActivity extends ActionBarActivity {
 	private void showSelectWorkoutDialog() {
 		IDataProvider dataProvider = new DataProvider(this);
 
-		// get all Workouts
-		final List<Workout> workoutList = dataProvider.getWorkouts();
+		// the summaries are enough for counting the Workouts
+		final List<WorkoutSummary> summaryList = dataProvider.getWorkoutSummaries();
 
-		Log.d(TAG, "Number of Workouts: " + workoutList.size());
-		switch (workoutList.size()) {
+		Log.d(TAG, "Number of Workouts: " + summaryList.size());
+		switch (summaryList.size()) {
 			// show error message, if there is no Workout
 			case 0:
 				Toast.makeText(MainActivity.this, getString(R.string.no_workout), Toast.LENGTH_LONG).show();
@@ -20,6 +20,7 @@
 
 package de.skubware.opentraining.activity;
 
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.DialogInterface;
@@ -31,8 +32,10 @@ import android.util.Log;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.R;
@@ -41,8 +44,9 @@ import de.skubware.opentraining.basic.FSet;
 import de.skubware.opentraining.basic.FitnessExercise;
 import de.skubware.opentraining.basic.TrainingEntry;
 import de.skubware.opentraining.basic.Workout;
-import de.skubware.opentraining.db.DataProvider;
-import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.AsyncDataProvider;
+import de.skubware.opentraining.db.IAsyncDataProvider;
+import de.skubware.opentraining.db.WorkoutSummary;
 
 /**
  * Dialog Fragment for choosing a {@link Workout} before starting training.
@@ -52,11 +56,14 @@ public class SelectWorkoutDialogFragment extends DialogFragment {
 	/** Tag for logging */
 	public static final String TAG = "SelectWorkoutFra";
 	
-	/** Currently selected Workout */
-	private Workout mWorkout;
+	/** Summary of the currently selected Workout */
+	private WorkoutSummary mSummary;
 	
 	private AlertDialog mCreatedDialog;
 
+	/** Loads the {@link WorkoutSummary}s in the background, null when done */
+	private Future<List<WorkoutSummary>> mLoadFuture;
+
 	/**
 	 * Create a new instance of SelectWorkoutFragment.
 	 */
@@ -73,58 +80,55 @@ public class SelectWorkoutDialogFragment extends DialogFragment {
 	@Override
 	public Dialog onCreateDialog(Bundle savedInstanceState) {
 
-		// get Workouts
-		IDataProvider dataProvider = new DataProvider(getActivity());
-		final List<Workout> workoutList = dataProvider.getWorkouts();
+		// the summaries are added when they have been loaded
+		final List<WorkoutSummary> summaryList = new ArrayList<WorkoutSummary>();
 
 		AlertDialog.Builder builder_workoutchooser = new AlertDialog.Builder(getActivity());
 		builder_workoutchooser.setTitle(getString(R.string.choose_workout));
 
-		final ArrayAdapter<Workout> adapter = new ArrayAdapter<Workout>(getActivity(), android.R.layout.select_dialog_singlechoice,
-				workoutList);
+		final ArrayAdapter<WorkoutSummary> adapter = new ArrayAdapter<WorkoutSummary>(getActivity(), android.R.layout.select_dialog_singlechoice,
+				summaryList);
 
 
 		mCreatedDialog =  builder_workoutchooser.setSingleChoiceItems(adapter, 0, new OnClickListener(){
 
 			@Override
 			public void onClick(DialogInterface dialog, int which) {
-				mWorkout = adapter.getItem(which);
-
-				enableButton();
-				// disable button for loading old training if there is at least one exercise that has no history
-				// this can happen when:
-				// - there has never been any training before
-				// - an exercise has been added (workout has been edited)
-				for(FitnessExercise fEx:mWorkout.getFitnessExercises()){
-					if(fEx.getTrainingEntryList().isEmpty()) {
-						disableButton();
-						break;
-					}	
-				}
-
-				
+				mSummary = adapter.getItem(which);
+				updateButtons();
 			}
 			
 		}).setPositiveButton(getString(R.string.start_new_training), new OnClickListener() {
 			@Override
 			public void onClick(DialogInterface dialog, int which) {
-				try {
-					startTraining(true);
-				} catch (ErrorException e) {
-					Log.v(TAG, e.getMessage());
-				}
+				startTraining(true);
 			}
 		}).setNegativeButton(getString(R.string.load_old_training), new OnClickListener() {
 			@Override
 			public void onClick(DialogInterface dialog, int which) {
-				try {
-					startTraining(false);
-				} catch (ErrorException e) {
-					Log.v(TAG, e.getMessage());
-				}
+				startTraining(false);
 			}
 		}).create();
 		
+		// get the summaries, the Workout is only loaded when the training starts
+		IAsyncDataProvider dataProvider = new AsyncDataProvider(getActivity());
+		mLoadFuture = dataProvider.getWorkoutSummaries(new IAsyncDataProvider.Callback<List<WorkoutSummary>>() {
+			@Override
+			public void onSuccess(List<WorkoutSummary> result) {
+				mLoadFuture = null;
+				summaryList.addAll(result);
+				adapter.notifyDataSetChanged();
+
+				mSummary = summaryList.isEmpty() ? null : summaryList.get(0);
+				updateButtons();
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				mLoadFuture = null;
+				Log.e(TAG, "Could not load workouts.", e);
+			}
+		});
 
 		return mCreatedDialog;
 
@@ -134,42 +138,96 @@ public class SelectWorkoutDialogFragment extends DialogFragment {
 	public void onStart(){
 		super.onStart();
 		
-		// disable button if necessary
-		IDataProvider dataProvider = new DataProvider(getActivity());
-		final List<Workout> workoutList = dataProvider.getWorkouts();
-		
-		mWorkout = workoutList.get(0);
-		if (mWorkout.getFitnessExercises().get(0).getTrainingEntryList().isEmpty()) {
+		// disable buttons if necessary
+		updateButtons();
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		if (mLoadFuture != null) {
+			mLoadFuture.cancel(false);
+		}
+	}
+
+	/**
+	 * Disables the buttons until the {@link WorkoutSummary}s have been loaded
+	 * and disables the button for loading an old training if there is at
+	 * least one exercise that has no history. This can happen when:
+	 * <ul>
+	 * <li>there has never been any training before</li>
+	 * <li>an exercise has been added (workout has been edited)</li>
+	 * </ul>
+	 */
+	private void updateButtons() {
+		Button startButton = mCreatedDialog.getButton(AlertDialog.BUTTON_POSITIVE);
+		if (startButton == null) {
+			// dialog has not been shown yet, onStart() will call this again
+			return;
+		}
+		startButton.setEnabled(mSummary != null);
+
+		if (mSummary == null || !mSummary.isEveryExerciseTrained()) {
 			disableButton();
+		} else {
+			enableButton();
 		}
-		
 	}
 
-	private void startTraining(boolean startNewTraining) throws ErrorException {
+	/**
+	 * Loads the selected {@link Workout} and starts the training.
+	 */
+	private void startTraining(final boolean startNewTraining) {
 		this.dismiss();
-		
+
+		// the fragment is detached when the Workout has been loaded
+		final Activity activity = getActivity();
+		final String name = mSummary.getName();
+		new AsyncDataProvider(activity).getWorkout(mSummary.getId(), new IAsyncDataProvider.Callback<Workout>() {
+			@Override
+			public void onSuccess(Workout result) {
+				if (result == null) {
+					Log.e(TAG, "Selected workout " + name + " does not exist any more.");
+					return;
+				}
+
+				try {
+					startTraining(activity, result, startNewTraining);
+				} catch (ErrorException e) {
+					Log.v(TAG, e.getMessage());
+				}
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				Log.e(TAG, "Could not load workout " + name, e);
+			}
+		});
+	}
+
+	private static void startTraining(Activity activity, Workout workout, boolean startNewTraining) throws ErrorException {
 		// add TrainingEntry(==start new training) if user choose this
 		// or it is necessary because there are no old training entries
-		if (isNewTraining(startNewTraining)) {
-			mWorkout.addTrainingEntry(Calendar.getInstance().getTime());
+		if (isNewTraining(workout, startNewTraining)) {
+			workout.addTrainingEntry(Calendar.getInstance().getTime());
 			
 			// add the FSets the user probably wants to do
 			// but set them to notDone
-			for(FitnessExercise fEx:mWorkout.getFitnessExercises()){
-				TrainingEntry latestEntry = fEx.getTrainingEntryList().get(fEx.getTrainingEntryList().size() -1);
+			for(FitnessExercise fEx:workout.getFitnessExercises()){
+				TrainingEntry latestEntry = fEx.getLastTrainingEntry();
 				addEntry(fEx, latestEntry);
 			}
 		}
 
 		// add arguments to intent
-		Intent intent = new Intent(getActivity(), FExListActivity.class);
-		intent.putExtra(FExListActivity.ARG_WORKOUT, mWorkout);
+		Intent intent = new Intent(activity, FExListActivity.class);
+		intent.putExtra(FExListActivity.ARG_WORKOUT, workout);
 		// start activity
-		getActivity().startActivity(intent);
+		activity.startActivity(intent);
 		
 	}
 
-	private void addEntry(FitnessExercise fEx, TrainingEntry latestEntry) throws ErrorException {
+	private static void addEntry(FitnessExercise fEx, TrainingEntry latestEntry) throws ErrorException {
 		if(fEx.getFSetList() != null && !fEx.getFSetList().isEmpty()){
             for(FSet set: fEx.getFSetList()){
                 FSet newSet = (FSet) set.clone();
@@ -177,8 +235,10 @@ public class SelectWorkoutDialogFragment extends DialogFragment {
                 latestEntry.setHasBeenDone(newSet, false);
             }
         }else{
-            if(fEx.getTrainingEntryList().size() != 1){
-                TrainingEntry prevEntry = fEx.getTrainingEntryList().get(fEx.getTrainingEntryList().size() -2);
+            // the recent entries are always loaded, so the previous entry is in memory
+            List<TrainingEntry> entryList = fEx.getTrainingEntryList();
+            if(entryList.size() > 1){
+                TrainingEntry prevEntry = entryList.get(entryList.size() -2);
                 for(FSet set:prevEntry.getFSetList()){
                     FSet newSet = (FSet) set.clone();
                     latestEntry.add(newSet);
@@ -188,8 +248,8 @@ public class SelectWorkoutDialogFragment extends DialogFragment {
         }
 	}
 
-	private boolean isNewTraining(boolean startNewTraining) {
-		return startNewTraining || mWorkout.getFitnessExercises().get(0).getTrainingEntryList().isEmpty();
+	private static boolean isNewTraining(Workout workout, boolean startNewTraining) {
+		return startNewTraining || !workout.hasTrainingEntries();
 	}
 
 
@@ -37,16 +37,12 @@ import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.Toast;
 
-import java.io.File;
-import java.io.FilenameFilter;
-import java.util.HashSet;
-import java.util.Set;
-
 import de.skubware.opentraining.R;
 import de.skubware.opentraining.basic.FitnessExercise;
 import de.skubware.opentraining.basic.Workout;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.WorkoutSummary;
 
 /**
  * Dialog Fragment that shows dialog when a {@link Workout} should be saved.
@@ -138,8 +134,8 @@ public class DialogWorkoutOverviewFragment extends DialogFragment {
                             return;
                         }
 
-                        // check if file already exists
-                        if (fileAlreadyExists(workoutName)) {
+                        // check if another Workout with the same name already exists
+                        if (findOtherWorkoutId(new DataProvider(getActivity()), workoutName) != null) {
                             showOverrideDialog();
                             return;
                         }
@@ -182,8 +178,15 @@ public class DialogWorkoutOverviewFragment extends DialogFragment {
 		
 		mWorkout.setName(workoutName);
 
-		// save Workout before exiting
+		// the overridden Workout has another ID, so it has to be deleted
 		IDataProvider dataProvider = new DataProvider(activity);
+		String overriddenId = findOtherWorkoutId(dataProvider, workoutName);
+		Workout overridden = overriddenId == null ? null : dataProvider.getWorkout(overriddenId);
+		if (overridden != null) {
+			dataProvider.deleteWorkout(overridden);
+		}
+
+		// save Workout before exiting
 		dataProvider.saveWorkout(mWorkout);
 
 		finishActivities(activity);
@@ -246,31 +249,23 @@ public class DialogWorkoutOverviewFragment extends DialogFragment {
 
 	
 	/**
-	 * Checks if a {@link Workout} file with the same name already exists.
+	 * Looks for another {@link Workout} (not the edited one) with the same
+	 * name.
 	 * 
+	 * @param dataProvider
+	 *            The DataProvider that lists the Workouts
 	 * @param name
 	 *            The name to check
 	 * 
-	 * @return true if there is already such a file
+	 * @return The ID of the other Workout or null, if there is none
 	 */
-	private boolean fileAlreadyExists(String name) {
-		// list files in workout directory that end with ".xml"
-		String files[] = getActivity().getFilesDir().list(new FilenameFilter() {
-			@Override
-			public boolean accept(File dir, String filename) {
-				if (filename.endsWith(".xml")) {
-					return true;
-				} else {
-					return false;
-				}
+	private String findOtherWorkoutId(IDataProvider dataProvider, String name) {
+		for (WorkoutSummary summary : dataProvider.getWorkoutSummaries()) {
+			if (summary.getName().equals(name) && !summary.getId().equals(mWorkout.getId())) {
+				return summary.getId();
 			}
-		});
-		Set<String> workout_names = new HashSet<String>();
-		for (String s : files) {
-			workout_names.add(s.split(".xml")[0]);
 		}
-
-		return workout_names.contains(name);
+		return null;
 	}
 
 
@@ -34,11 +34,14 @@ import android.widget.ListView;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.Muscle;
 import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.db.AsyncDataProvider;
 import de.skubware.opentraining.db.DataProvider;
+import de.skubware.opentraining.db.IAsyncDataProvider;
 import de.skubware.opentraining.db.IDataProvider;
 
 /**
@@ -55,7 +58,13 @@ public class ExerciseTypeListFragment extends ListFragment implements OnQueryTex
 	public static final String TAG = "ExerciseTypeListFrag";
 
 	/** Currently display exercises */
-	private List<ExerciseType> mExerciseList;
+	private List<ExerciseType> mExerciseList = new ArrayList<ExerciseType>();
+
+	/** Loads the exercises in the background, null when done */
+	private Future<List<ExerciseType>> mLoadFuture;
+
+	/** True when the exercises have been loaded and can be filtered */
+	private boolean mExercisesLoaded = false;
 
 	/** Last query. */
 	private String mSearchQuery = "";
@@ -149,12 +158,29 @@ public class ExerciseTypeListFragment extends ListFragment implements OnQueryTex
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 
-		IDataProvider dataProvider = new DataProvider(getActivity());
-		mExerciseList = dataProvider.getExercises();
-
 		setListAdapter(new ExerciseTypeListAdapter(getActivity(), android.R.layout.simple_list_item_single_choice, android.R.id.text1,
 				mExerciseList));
 
+		// loading the exercises may take some time on the first start
+		IAsyncDataProvider dataProvider = new AsyncDataProvider(getActivity());
+		mLoadFuture = dataProvider.getExercises(new IAsyncDataProvider.Callback<List<ExerciseType>>() {
+			@Override
+			public void onSuccess(List<ExerciseType> result) {
+				mLoadFuture = null;
+				mExercisesLoaded = true;
+				filterExercises();
+				if (getView() != null) {
+					restoreScrollState();
+				}
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				mLoadFuture = null;
+				Log.e(TAG, "Could not load exercises.", e);
+			}
+		});
+
 		
 		//SelectMuscleDialog muscleDialog = new SelectMuscleDialog(getActivity());
 		//muscleDialog.show();
@@ -189,7 +215,20 @@ public class ExerciseTypeListFragment extends ListFragment implements OnQueryTex
 		sharedPrefs.unregisterOnSharedPreferenceChangeListener(mOnSharedPreferenceChangeListener);
 	}
 	
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		if (mLoadFuture != null) {
+			mLoadFuture.cancel(false);
+		}
+	}
+	
 	private void filterExercises(){
+		if (!mExercisesLoaded) {
+			// will be called again when the exercises have been loaded
+			return;
+		}
+		
 		// the order of the calls is important
 		filterExercisesForMusclesAndEquipment();
 		filterExercisesForSearchQuery();
@@ -217,7 +256,7 @@ public class ExerciseTypeListFragment extends ListFragment implements OnQueryTex
 			}
 		}
 
-		mExerciseList = dataProvider.getExercises();
+		mExerciseList = new ArrayList<ExerciseType>(dataProvider.getExercises());
 		for (ExerciseType ex : dataProvider.getExercises()) {
 			boolean accepted = false;
 			for (Muscle m : acceptedMuscles) {
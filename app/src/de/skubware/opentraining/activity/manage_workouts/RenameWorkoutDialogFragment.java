@@ -34,15 +34,11 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.File;
-import java.io.FilenameFilter;
-import java.util.HashSet;
-import java.util.Set;
-
 import de.skubware.opentraining.R;
 import de.skubware.opentraining.basic.Workout;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.WorkoutSummary;
 
 /**
  * Dialog Fragment that handles renaming a Workout.
@@ -105,21 +101,19 @@ public class RenameWorkoutDialogFragment extends DialogFragment {
 							return;
 						}
 
-						if (fileAlreadyExists(enterendName)) {
+						IDataProvider dataProvider = new DataProvider(getActivity());
+						if (workoutNameExists(dataProvider, enterendName)) {
 							Toast.makeText(getActivity(), getString(R.string.workout_already_exists), Toast.LENGTH_LONG).show();
 							return;
 						}
 
-						// delete old Workout
-						IDataProvider dataProvider = new DataProvider(getActivity());
-						dataProvider.deleteWorkout(mWorkout);
-
+						// the Workout keeps its ID, so saving it again is enough
+						String oldName = mWorkout.getName();
 						mWorkout.setName(enterendName);
-
-						// save new Workout
 						boolean success = dataProvider.saveWorkout(mWorkout);
 						if (!success) {
-							Log.wtf(TAG, "Error during saving workout. Old workout was lost. This should never happen.");
+							Log.e(TAG, "Error during saving workout, will keep the old name.");
+							mWorkout.setName(oldName);
 							Toast.makeText(getActivity(), getString(R.string.error_during_saving), Toast.LENGTH_LONG).show();
 							return;
 						}
@@ -150,30 +144,22 @@ public class RenameWorkoutDialogFragment extends DialogFragment {
 	}
 
 	/**
-	 * Checks if a Workout file with the same name already exists.
+	 * Checks if there is already a Workout with the same name.
 	 * 
+	 * @param dataProvider
+	 *            The DataProvider that lists the Workouts
 	 * @param name
 	 *            The name to check
 	 * 
-	 * @return true if there is already such a file
+	 * @return true if there is already such a Workout
 	 */
-	private boolean fileAlreadyExists(String name) {
-		// list files in workout directory that end with ".xml"
-		String files[] = getActivity().getFilesDir().list(new FilenameFilter() {
-			@Override
-			public boolean accept(File dir, String filename) {
-				if (filename.endsWith(".xml"))
-					return true;
-				else
-					return false;
+	static boolean workoutNameExists(IDataProvider dataProvider, String name) {
+		for (WorkoutSummary summary : dataProvider.getWorkoutSummaries()) {
+			if (summary.getName().equals(name)) {
+				return true;
 			}
-		});
-		Set<String> workout_names = new HashSet<String>();
-		for (String s : files) {
-			workout_names.add(s.split(".xml")[0]);
 		}
-
-		return workout_names.contains(name);
+		return false;
 	}
 
 }
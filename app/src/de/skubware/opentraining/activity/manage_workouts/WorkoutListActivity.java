@@ -34,13 +34,17 @@ import android.widget.Toast;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import de.skubware.opentraining.R;
+import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.Workout;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
-import de.skubware.opentraining.db.parser.WorkoutXMLParser;
+import de.skubware.opentraining.db.WorkoutSummary;
+import de.skubware.opentraining.db.parser.ParserFactory;
+import de.skubware.opentraining.db.parser.WorkoutXMLPullParser;
 
 /**
  * An activity representing a list of Workouts. This activity has different
@@ -189,8 +193,17 @@ public class WorkoutListActivity extends ActionBarActivity implements WorkoutLis
             	// try to parse the Workout
                 String filePath = data.getData().getPath();
                 File workoutFile = new File(filePath);
-                WorkoutXMLParser parser = new WorkoutXMLParser();
-                Workout w = parser.read(workoutFile, this);
+                WorkoutXMLPullParser parser = ParserFactory.INSTANCE.obtainWorkoutParser(this);
+                Workout w;
+                List<ExerciseType> missingExercises;
+                try {
+                    w = parser.read(workoutFile, this);
+                    missingExercises = parser.takeMissingExercises();
+                } finally {
+                    ParserFactory.INSTANCE.recycle(parser);
+                }
+                // create the exercises of the workout that do not exist here
+                new DataProvider(this).saveCustomExercises(missingExercises);
 
 				analizeWorkout(workoutFile, w);
 			}else{
@@ -207,8 +220,8 @@ public class WorkoutListActivity extends ActionBarActivity implements WorkoutLis
         }else{
             IDataProvider dataProvider = new DataProvider(this);
             Set<String> exisitingWorkoutNames = new HashSet<String>();
-            for(Workout workout:dataProvider.getWorkouts()){
-                exisitingWorkoutNames.add(workout.getName());
+            for(WorkoutSummary summary:dataProvider.getWorkoutSummaries()){
+                exisitingWorkoutNames.add(summary.getName());
             }
 
             while(exisitingWorkoutNames.contains(w.getName())){
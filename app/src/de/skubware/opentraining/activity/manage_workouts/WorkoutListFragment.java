@@ -32,12 +32,16 @@ import android.widget.ArrayAdapter;
 import android.widget.ListView;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.R;
 import de.skubware.opentraining.basic.Workout;
-import de.skubware.opentraining.db.DataProvider;
-import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.AsyncDataProvider;
+import de.skubware.opentraining.db.IAsyncDataProvider;
+import de.skubware.opentraining.db.WorkoutSummary;
 
 /**
  * A list fragment representing a list of Workouts. This fragment also supports
@@ -70,8 +74,20 @@ public class WorkoutListFragment extends ListFragment {
 	 */
 	private int mActivatedPosition = ListView.INVALID_POSITION;
 
-	/** Currently displayed {@link Workout}s */
-	private List<Workout> mWorkoutList;
+	/** Summaries of the currently displayed {@link Workout}s */
+	private List<WorkoutSummary> mWorkoutList = new ArrayList<WorkoutSummary>();
+
+	/** Maps the ID of each displayed {@link Workout} to its position */
+	private Map<String, Integer> mPositionMap = new HashMap<String, Integer>();
+
+	/** Loads the {@link WorkoutSummary}s in the background, null when done */
+	private Future<List<WorkoutSummary>> mLoadFuture;
+
+	/** Loads the selected {@link Workout} in the background, null when done */
+	private Future<Workout> mSelectFuture;
+
+	/** True until the Workouts have been loaded for the first time */
+	private boolean mFirstLoad = true;
 
 	/**
 	 * A callback interface that all activities containing this fragment must
@@ -107,81 +123,102 @@ public class WorkoutListFragment extends ListFragment {
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 
-		
-		IDataProvider dataProvider = new DataProvider(getActivity());
-		mWorkoutList = new ArrayList<Workout>(dataProvider.getWorkouts());
-
-		setListAdapter(new ArrayAdapter<Workout>(getActivity(), android.R.layout.simple_list_item_single_choice, android.R.id.text1,
+		setListAdapter(new ArrayAdapter<WorkoutSummary>(getActivity(), android.R.layout.simple_list_item_single_choice, android.R.id.text1,
 				mWorkoutList));
-
-		// notify user if there are no workouts
-		if (mWorkoutList.isEmpty()) {
-			AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
-			builder.setMessage(getString(R.string.no_workout));
-			builder.setPositiveButton(getString(android.R.string.ok), new OnClickListener() {
-				@Override
-				public void onClick(DialogInterface dialog, int which) {
-					dialog.dismiss();
-					getActivity().finish();
-				}
-			});
-			builder.create().show();
-		}
 	}
 	
 	@Override
 	public void onResume(){
 		super.onResume();
-		
-		IDataProvider dataProvider = new DataProvider(getActivity());
-		mWorkoutList = new ArrayList<Workout>(dataProvider.getWorkouts());
-
-		setListAdapter(new ArrayAdapter<Workout>(getActivity(), android.R.layout.simple_list_item_single_choice, android.R.id.text1,
-				mWorkoutList));
+		loadWorkoutSummaries();
 	}
-	
-	/** @see WorkoutListActivity#onWorkoutChanged(Workout) */
-	@SuppressWarnings("unchecked")
-	public void onWorkoutChanged(Workout changedWorkout) {
-		Workout oldWorkout = null;
-
-		// try to find an old Workout with the same name(will fail, if the name
-		// was changed)
-		for (Workout w : mWorkoutList) {
-			if (w.getName().equals(changedWorkout.getName())) {
-				oldWorkout = w;
-				break;
-			}
+
+	/**
+	 * Loads the {@link WorkoutSummary}s in the background and shows them. The
+	 * {@link Workout}s themselves are only loaded when they are selected.
+	 */
+	private void loadWorkoutSummaries() {
+		if (mLoadFuture != null) {
+			mLoadFuture.cancel(false);
 		}
 
-		if (oldWorkout == null) {
-			// if only the name was changed, the exercises still have to be the
-			// same
-			for (Workout w : mWorkoutList) {
-				if (w.getFitnessExercises().equals(changedWorkout.getFitnessExercises())) {
-					oldWorkout = w;
-					break;
+		IAsyncDataProvider dataProvider = new AsyncDataProvider(getActivity());
+		mLoadFuture = dataProvider.getWorkoutSummaries(new IAsyncDataProvider.Callback<List<WorkoutSummary>>() {
+			@Override
+			public void onSuccess(List<WorkoutSummary> result) {
+				mLoadFuture = null;
+				mWorkoutList = new ArrayList<WorkoutSummary>(result);
+				mPositionMap = new HashMap<String, Integer>();
+				for (int i = 0; i < mWorkoutList.size(); i++) {
+					mPositionMap.put(mWorkoutList.get(i).getId(), i);
 				}
-			}
 
-		}
-
-		if (oldWorkout == null) {
-			// no changed workout, but new one
-			mWorkoutList.add(changedWorkout);
-			return;
-		}
+				setListAdapter(new ArrayAdapter<WorkoutSummary>(getActivity(), android.R.layout.simple_list_item_single_choice, android.R.id.text1,
+						mWorkoutList));
 
-		Log.d(TAG, "Workout has changed. Old Workout: " + oldWorkout.toDebugString() + "\n New Workout: " + changedWorkout.toDebugString());
+				// notify user if there are no workouts
+				if (mFirstLoad && mWorkoutList.isEmpty()) {
+					showNoWorkoutDialog();
+				}
+				mFirstLoad = false;
+			}
 
-		// replace Workout with changed one
-		int oldIdx = mWorkoutList.indexOf(oldWorkout);
-		mWorkoutList.remove(oldWorkout);
-		mWorkoutList.add(oldIdx, changedWorkout);
+			@Override
+			public void onFailure(Exception e) {
+				mLoadFuture = null;
+				Log.e(TAG, "Could not load workouts.", e);
+			}
+		});
+	}
 
-		// finally update GUI
-		((ArrayAdapter<Workout>) this.getListAdapter()).notifyDataSetChanged();
+	@Override
+	public void onPause() {
+		super.onPause();
+		if (mLoadFuture != null) {
+			mLoadFuture.cancel(false);
+			mLoadFuture = null;
+		}
+		if (mSelectFuture != null) {
+			mSelectFuture.cancel(false);
+			mSelectFuture = null;
+		}
+	}
 
+	/**
+	 * Tells the user that there are no {@link Workout}s and closes the
+	 * activity.
+	 */
+	private void showNoWorkoutDialog() {
+		AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+		builder.setMessage(getString(R.string.no_workout));
+		builder.setPositiveButton(getString(android.R.string.ok), new OnClickListener() {
+			@Override
+			public void onClick(DialogInterface dialog, int which) {
+				dialog.dismiss();
+				getActivity().finish();
+			}
+		});
+		builder.create().show();
+	}
+	
+	/**
+	 * Replaces the summary of the changed {@link Workout} (found by its ID) or
+	 * adds it, if it is a new Workout.
+	 * 
+	 * @see WorkoutListActivity#onWorkoutChanged(Workout)
+	 */
+	@SuppressWarnings("unchecked")
+	public void onWorkoutChanged(Workout changedWorkout) {
+		Log.d(TAG, "Workout has changed: " + changedWorkout.getName());
+		WorkoutSummary summary = new WorkoutSummary(changedWorkout);
+		Integer position = mPositionMap.get(changedWorkout.getId());
+		if (position != null) {
+			mWorkoutList.set(position, summary);
+		} else {
+			mPositionMap.put(changedWorkout.getId(), mWorkoutList.size());
+			mWorkoutList.add(summary);
+		}
+		((ArrayAdapter<WorkoutSummary>) getListAdapter()).notifyDataSetChanged();
 	}
 
 	@Override
@@ -218,9 +255,34 @@ public class WorkoutListFragment extends ListFragment {
 	public void onListItemClick(ListView listView, View view, int position, long selected_id) {
 		super.onListItemClick(listView, view, position, selected_id);
 
-		// Notify the active callbacks interface (the activity, if the
-		// fragment is attached to one) that an item has been selected.
-		mCallbacks.onItemSelected(((Workout) listView.getAdapter().getItem(position)));
+		if (mSelectFuture != null) {
+			mSelectFuture.cancel(false);
+		}
+
+		// the list only contains the summaries, so the Workout has to be loaded first
+		final WorkoutSummary summary = (WorkoutSummary) listView.getAdapter().getItem(position);
+		IAsyncDataProvider dataProvider = new AsyncDataProvider(getActivity());
+		mSelectFuture = dataProvider.getWorkout(summary.getId(), new IAsyncDataProvider.Callback<Workout>() {
+			@Override
+			public void onSuccess(Workout result) {
+				mSelectFuture = null;
+				if (result == null) {
+					Log.e(TAG, "Selected workout " + summary.getName() + " does not exist any more.");
+					loadWorkoutSummaries();
+					return;
+				}
+
+				// Notify the active callbacks interface (the activity, if the
+				// fragment is attached to one) that an item has been selected.
+				mCallbacks.onItemSelected(result);
+			}
+
+			@Override
+			public void onFailure(Exception e) {
+				mSelectFuture = null;
+				Log.e(TAG, "Could not load workout " + summary.getName(), e);
+			}
+		});
 	}
 
 	@Override
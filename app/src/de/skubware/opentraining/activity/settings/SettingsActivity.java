@@ -600,6 +600,9 @@ public class SettingsActivity extends PreferenceActivity  implements OpenTrainin
 		}
 
 
+		// the next sync has to download all exercises again
+		SyncCursor.reset(this);
+
 		Cache.INSTANCE.updateExerciseCache(this);
 
 		Toast.makeText(this, getString(R.string.synced_files_deleted_msg), Toast.LENGTH_LONG).show();
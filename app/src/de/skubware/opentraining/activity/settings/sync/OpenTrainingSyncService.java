@@ -25,14 +25,29 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.ResultReceiver;
 import android.util.Log;
+import android.util.SparseArray;
 
 import org.json.JSONException;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.License.LicenseType;
+import de.skubware.opentraining.basic.Muscle;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
 
@@ -65,8 +80,10 @@ public class OpenTrainingSyncService extends IntentService {
 	/** Key for intent extra (host) */
 	public static final String EXTRA_HOST = "host";
 	
-	/** The path for getting the exercises as JSON */
-	public static final String EXERCISE_REQUEST_PATH = "/api/v1/exercise/?status__in=2,4,5&limit=0";
+	/** Number of exercises that are requested per page */
+	public static final int EXERCISE_PAGE_SIZE = 100;
+	/** The path for getting the first page of exercises as JSON */
+	public static final String EXERCISE_REQUEST_PATH = "/api/v1/exercise/?status__in=2,4,5&limit=" + EXERCISE_PAGE_SIZE;
 	/** The path for getting the languages as JSON */
 	public static final String LANGUAGE_REQUEST_PATH = "/api/v1/language/";
 	/** The path for getting the muscles as JSON */
@@ -75,10 +92,16 @@ public class OpenTrainingSyncService extends IntentService {
 	public static final String EQUIPMENT_REQUEST_PATH = "/api/v1/equipment/";
 	/** The path for getting the licenses as JSON */
 	public static final String LICENSE_REQUEST_PATH = "/api/v1/license/";	
+
+	/** Number of JSON-files that are downloaded concurrently, one per request path */
+	private static final int DOWNLOAD_THREAD_COUNT = 5;
 	
 	
 	/** The used {@link RestClient}. */
 	private RestClient mClient;
+
+	/** The state of the last sync, for sending conditional requests */
+	private SyncCursor mCursor;
 	
 	/** Class that receives the results of this service */
     private ResultReceiver mReceiver;
@@ -113,6 +136,7 @@ public class OpenTrainingSyncService extends IntentService {
             	
             	// set up REST-Client
             	mClient = new RestClient(host, port, "https", version);
+            	mCursor = new SyncCursor(getApplicationContext(), host);
             	
             	// download and parse the exercises
         		ArrayList<ExerciseType> allExercises = downloadAndParseExercises();
@@ -135,6 +159,27 @@ public class OpenTrainingSyncService extends IntentService {
 	/**
 	 * Downloads the JSON-files from wger and parses them.
 	 * 
+	 * The files are requested concurrently. Languages, muscles and licenses
+	 * are parsed as soon as they have arrived, the exercises are parsed as
+	 * soon as they and these three files are there.
+	 * 
+	 * The exercises are downloaded page by page and each page is parsed while
+	 * it is being downloaded. The images of the new exercises of a page are
+	 * downloaded before the next page is requested, so the memory that is
+	 * needed does not depend on the number of exercises on the server.
+	 * 
+	 * Exercises that have been synced before are compared by their wger ID
+	 * and content hash (see {@link SyncReconciler}). Changed exercises are
+	 * saved and exercises that have been removed from the server are deleted
+	 * after the last page, only the new exercises are returned.
+	 * 
+	 * All requests are conditional (see {@link SyncCursor}). Each page of
+	 * exercises is checked: if it has not changed since the last sync, the
+	 * IDs of its exercises and the path of the next page are taken from the
+	 * cursor. Pages with new exercises are not remembered, the user may not
+	 * save them. Reference files that have not changed are read from the
+	 * cache.
+	 * 
 	 * @return the {@link WgerJSONParser} 
 	 * 
 	 * @throws IOException
@@ -142,52 +187,244 @@ public class OpenTrainingSyncService extends IntentService {
 	 */
 	private ArrayList<ExerciseType> downloadAndParseExercises() throws IOException, JSONException, ErrorException {
 		Log.d(TAG, "getExercisesAsJSON()");
-		IDataProvider dataProvider = new DataProvider(this.getApplicationContext());
+		final IDataProvider dataProvider = new DataProvider(this.getApplicationContext());
 
-		// get exercises from server
-		mReceiver.send(STATUS_RUNNING_DOWNLOAD_EXERCISES, Bundle.EMPTY);
-		String exercisesAsJSON = mClient.get(EXERCISE_REQUEST_PATH);
-		Log.v(TAG, "exercisesAsJSON: " + exercisesAsJSON);
-		
-		// get languages from server
-		mReceiver.send(STATUS_RUNNING_DOWNLOAD_LANGUAGE_FILES, Bundle.EMPTY);
-		String languagesAsJSON = mClient.get(LANGUAGE_REQUEST_PATH);
-		Log.v(TAG, "languagesAsJSON: " + languagesAsJSON);
-
-		// get muscles from server
-		mReceiver.send(STATUS_RUNNING_DOWNLOAD_MUSCLE_FILES, Bundle.EMPTY);
-		String musclesAsJSON = mClient.get(MUSCLE_REQUEST_PATH);
-		Log.v(TAG, "musclesAsJSON: " + musclesAsJSON);
-
-		// get licenses from server
-		mReceiver.send(STATUS_RUNNING_DOWNLOAD_LICENSE_FILES, Bundle.EMPTY);
-		String licenseAsJSON = mClient.get(LICENSE_REQUEST_PATH);
-		Log.v(TAG, "licenseAsJSON: " + licenseAsJSON);
-		
-		
-		// get equipment from server
-		mReceiver.send(STATUS_RUNNING_DOWNLOAD_EQUIPMENT_FILES, Bundle.EMPTY);
-		String equipmentAsJSON = mClient.get(EQUIPMENT_REQUEST_PATH);
-		Log.v(TAG, "equipmentAsJSON: " + equipmentAsJSON);
+		ExecutorService executor = Executors.newFixedThreadPool(DOWNLOAD_THREAD_COUNT);
+		try {
+			// get first page of exercises from server
+			Future<RestClient.ConditionalResult> exerciseFuture = executor.submit(new Callable<RestClient.ConditionalResult>() {
+				@Override
+				public RestClient.ConditionalResult call() throws IOException {
+					return openPage(EXERCISE_REQUEST_PATH, true);
+				}
+			});
 
+			// get languages from server
+			Future<SparseArray<Locale>> languageFuture = executor.submit(new Callable<SparseArray<Locale>>() {
+				@Override
+				public SparseArray<Locale> call() throws IOException, JSONException {
+					String languagesAsJSON = downloadReference(LANGUAGE_REQUEST_PATH, STATUS_RUNNING_DOWNLOAD_LANGUAGE_FILES);
+					return WgerJSONParser.parseLanguages(new StringReader(languagesAsJSON));
+				}
+			});
 
-		// parse exercises, languages and muscles
-		mReceiver.send(STATUS_RUNNING_CHECKING_EXERCISES, Bundle.EMPTY);
-		WgerJSONParser wgerParser = new WgerJSONParser(exercisesAsJSON, languagesAsJSON, musclesAsJSON, equipmentAsJSON, licenseAsJSON, dataProvider);
-		
-		ArrayList<ExerciseType.Builder> exerciseBuilderList = wgerParser.getNewExercisesBuilder();
+			// get muscles from server
+			Future<SparseArray<Muscle>> muscleFuture = executor.submit(new Callable<SparseArray<Muscle>>() {
+				@Override
+				public SparseArray<Muscle> call() throws IOException, JSONException {
+					String musclesAsJSON = downloadReference(MUSCLE_REQUEST_PATH, STATUS_RUNNING_DOWNLOAD_MUSCLE_FILES);
+					return WgerJSONParser.parseMuscles(new StringReader(musclesAsJSON), dataProvider);
+				}
+			});
 
-		// get images from server
-		mReceiver.send(STATUS_RUNNING_DOWNLOADING_IMAGES, Bundle.EMPTY);
-		WgerImageDownloader imageDownloader = new WgerImageDownloader(licenseAsJSON, getApplicationContext(), mClient);
-		ArrayList<ExerciseType> newExerciseList = imageDownloader.downloadImages(exerciseBuilderList);
+			// get licenses from server
+			Future<SparseArray<LicenseType>> licenseFuture = executor.submit(new Callable<SparseArray<LicenseType>>() {
+				@Override
+				public SparseArray<LicenseType> call() throws IOException, JSONException {
+					String licenseAsJSON = downloadReference(LICENSE_REQUEST_PATH, STATUS_RUNNING_DOWNLOAD_LICENSE_FILES);
+					return WgerJSONParser.parseLicenses(new StringReader(licenseAsJSON), dataProvider);
+				}
+			});
 
-		
-    	return newExerciseList;
+			// get equipment from server (not parsed until REST-API supports this)
+			Future<?> equipmentFuture = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					RestClient.ConditionalResult result = download(EQUIPMENT_REQUEST_PATH, STATUS_RUNNING_DOWNLOAD_EQUIPMENT_FILES, true);
+					if (result.isModified()) {
+						mCursor.update(EQUIPMENT_REQUEST_PATH, result, false);
+					}
+					return null;
+				}
+			});
+
+			// parse exercises, the equipment may still be downloading
+			RestClient.ConditionalResult firstPage = getResult(exerciseFuture);
+			SparseArray<LicenseType> licenseSparseArray = null;
+			WgerJSONParser wgerParser = null;
+			SyncReconciler reconciler = new SyncReconciler(new File(getApplicationContext().getFilesDir(), SyncedExerciseIndex.FILE_NAME), dataProvider);
+			try {
+				SparseArray<Locale> localeSparseArray = getResult(languageFuture);
+				SparseArray<Muscle> muscleSparseArray = getResult(muscleFuture);
+				licenseSparseArray = getResult(licenseFuture);
+				wgerParser = new WgerJSONParser(localeSparseArray, muscleSparseArray, licenseSparseArray, reconciler, dataProvider);
+			} finally {
+				if (wgerParser == null) {
+					// release the connection of the first page
+					firstPage.close();
+				}
+			}
+			WgerImageDownloader imageDownloader = new WgerImageDownloader(licenseSparseArray, reconciler, getApplicationContext(), mClient);
+
+			// the new and changed exercises of each page are passed on to the image download
+			ArrayList<ExerciseType> newExerciseList = new ArrayList<ExerciseType>();
+			List<ExerciseType> changedExerciseList = new ArrayList<ExerciseType>();
+			Map<String, RestClient.ConditionalResult> knownPageResultMap = new HashMap<String, RestClient.ConditionalResult>();
+			Map<String, SyncCursor.Page> knownPageMap = new HashMap<String, SyncCursor.Page>();
+			int totalCount = -1;
+			String path = EXERCISE_REQUEST_PATH;
+			RestClient.ConditionalResult page = firstPage;
+			while (path != null) {
+				if (page == null) {
+					page = openPage(path, true);
+				}
+				if (!page.isModified()) {
+					SyncCursor.Page unchangedPage = mCursor.getPage(path);
+					if (unchangedPage != null) {
+						reconciler.skipUnchanged(unchangedPage.getIds());
+						totalCount = unchangedPage.getTotalCount();
+						path = unchangedPage.getNextPage();
+						page = null;
+						continue;
+					}
+					// the page has been remembered without its summary
+					page = openPage(path, false);
+				}
+
+				mReceiver.send(STATUS_RUNNING_CHECKING_EXERCISES, Bundle.EMPTY);
+				List<ExerciseType.Builder> exerciseBuilderList;
+				try {
+					exerciseBuilderList = wgerParser.parsePage(page.getReader());
+				} finally {
+					page.close();
+				}
+
+				// get images from server
+				boolean known = true;
+				if (!exerciseBuilderList.isEmpty()) {
+					mReceiver.send(STATUS_RUNNING_DOWNLOADING_IMAGES, Bundle.EMPTY);
+					List<ExerciseType> downloadedList = imageDownloader.downloadImages(exerciseBuilderList);
+					known = downloadedList.size() == exerciseBuilderList.size();
+					for (ExerciseType ex : downloadedList) {
+						if (reconciler.isChanged(ex.getUnlocalizedName())) {
+							changedExerciseList.add(ex);
+						} else {
+							newExerciseList.add(ex);
+							known = false;
+						}
+					}
+				}
+
+				// the page can only be skipped next time, if all of its
+				// exercises are known; the new ones may not be saved by the user
+				totalCount = wgerParser.getTotalCount();
+				if (known) {
+					knownPageResultMap.put(path, page);
+					knownPageMap.put(path, new SyncCursor.Page(wgerParser.getNextPage(), totalCount, wgerParser.getPageIds()));
+				}
+				path = wgerParser.getNextPage();
+				page = null;
+			}
+			getResult(equipmentFuture);
+
+			// all exercises of the server are known now
+			if (reconciler.apply(changedExerciseList, totalCount)) {
+				for (Map.Entry<String, SyncCursor.Page> entry : knownPageMap.entrySet()) {
+					mCursor.updatePage(entry.getKey(), knownPageResultMap.get(entry.getKey()), entry.getValue());
+				}
+			}
+			mCursor.commit();
+
+			return newExerciseList;
+		} finally {
+			// stops the remaining downloads if something failed
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reports the status and downloads the JSON-file. May be called from
+	 * any thread.
+	 * 
+	 * @param path
+	 *            The path of the file
+	 * @param status
+	 *            The status to report to the {@link ResultReceiver}
+	 * @param conditional
+	 *            If true, the file is only downloaded if it has changed since
+	 *            the last sync
+	 * 
+	 * @return The response
+	 */
+	private RestClient.ConditionalResult download(String path, int status, boolean conditional) throws IOException {
+		mReceiver.send(status, Bundle.EMPTY);
+		RestClient.ConditionalResult result;
+		if (conditional) {
+			result = mClient.getIfModified(path, mCursor.getETag(path), mCursor.getLastModified(path));
+		} else {
+			result = mClient.getIfModified(path, null, null);
+		}
+
+		if (result.isModified()) {
+			Log.v(TAG, "Downloaded " + path + " (" + result.getBody().length() + " characters)");
+		} else {
+			Log.v(TAG, path + " has not been modified");
+		}
+		return result;
 	}
 
+	/**
+	 * Requests a page of exercises. The body is not read, this has to be done
+	 * with the reader of the result.
+	 * 
+	 * @param path
+	 *            The path of the page
+	 * @param conditional
+	 *            If true, the page is only downloaded if it has changed since
+	 *            the last sync
+	 * 
+	 * @return The response, has to be closed
+	 */
+	private RestClient.ConditionalResult openPage(String path, boolean conditional) throws IOException {
+		mReceiver.send(STATUS_RUNNING_DOWNLOAD_EXERCISES, Bundle.EMPTY);
+		RestClient.ConditionalResult result;
+		if (conditional) {
+			result = mClient.openIfModified(path, mCursor.getETag(path), mCursor.getLastModified(path));
+		} else {
+			result = mClient.openIfModified(path, null, null);
+		}
+		Log.v(TAG, path + (result.isModified() ? " is being downloaded" : " has not been modified"));
+		return result;
+	}
 
-	
+	/**
+	 * Downloads a reference file (e.g. the languages). If it has not changed
+	 * since the last sync, the cached file is returned.
+	 * 
+	 * @return The content of the file
+	 */
+	private String downloadReference(String path, int status) throws IOException {
+		String cachedBody = mCursor.readCachedBody(path);
+		RestClient.ConditionalResult result = download(path, status, cachedBody != null);
+		if (!result.isModified()) {
+			return cachedBody;
+		}
+		mCursor.update(path, result, true);
+		return result.getBody();
+	}
 
+	/**
+	 * Waits for the result of the download and rethrows its exception.
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException, JSONException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Downloading exercises has been interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof JSONException) {
+				throw (JSONException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
 
 }
\ No newline at end of file
@@ -27,6 +27,9 @@ import org.apache.http.client.CookieStore;
 import org.apache.http.client.RedirectHandler;
 import org.apache.http.client.methods.*;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
@@ -37,6 +40,7 @@ import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.json.*;
@@ -52,19 +56,36 @@ import static org.apache.http.HttpStatus.*;
  * designed as a general REST-Client. It has not been designed for a particular
  * web service.
  * 
+ * The connections are pooled and kept alive, so several requests to the same
+ * host reuse them. The client may be used by several threads at the same
+ * time; at most {@link #MAX_CONNECTIONS_PER_HOST} requests per host are
+ * executed concurrently, the others wait for a free connection.
+ * 
  */
-class RestClient {
+public class RestClient {
 	/** Tag for logging */
 	public static final String TAG = "RestClient";
 
 
+	/** Maximum number of concurrent connections to one host */
+	static final int MAX_CONNECTIONS_PER_HOST = 4;
+
+	/** Maximum number of concurrent connections to all hosts */
+	private static final int MAX_CONNECTIONS = 8;
+
+	/** Size of the buffer for downloading files */
+	private static final int DOWNLOAD_BUFFER_SIZE = 16 * 1024;
+
 	private static final String CONTENT_TYPE = "Content-Type";
+	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+	private static final String IF_NONE_MATCH = "If-None-Match";
+	private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
 	private static final String path_not_null = "path cannot be null";
 
 	private final String mBaseUri;
 	private final String mHostName;
 	private DefaultHttpClient mClient;
-	private final HttpContext mHttpContext = new BasicHttpContext();
 
 	private static final String MIMETYPE_JSON = "application/json";
 	private static String USER_AGENT;
@@ -122,7 +143,13 @@ class RestClient {
 		SSLSocketFactory socketFactory = SSLSocketFactory.getSocketFactory();
 		socketFactory.setHostnameVerifier((X509HostnameVerifier) hostnameVerifier);
 		registry.register(new Scheme("https", socketFactory, 443));
-		ClientConnectionManager mgr = new ThreadSafeClientConnManager(client.getParams(), registry);
+		// the images may be hosted elsewhere
+		registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+
+		HttpParams params = client.getParams();
+		ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+		ClientConnectionManager mgr = new ThreadSafeClientConnManager(params, registry);
 		mClient = new DefaultHttpClient(mgr, client.getParams());
 
 		
@@ -145,18 +172,20 @@ class RestClient {
 	 *            the request to send
 	 * @return the HTTP response
 	 * @throws IOException
-	 *             if HTTP status is NOT 'OK', 'CREATED' or 'ACCEPTED'
+	 *             if HTTP status is NOT 'OK', 'CREATED', 'ACCEPTED' or 'NOT
+	 *             MODIFIED' (which is only sent for conditional requests)
 	 */
 	protected HttpResponse execute(final HttpUriRequest request)
 			throws IOException {
 		request.setHeader(CONTENT_TYPE, MIMETYPE_JSON);
 
-		HttpResponse resp = mClient.execute(request, mHttpContext);
+		HttpResponse resp = mClient.execute(request, newHttpContext());
 		StatusLine status = resp.getStatusLine();
 		switch (status.getStatusCode()) {
 		case SC_OK:
 		case SC_CREATED:
 		case SC_ACCEPTED:
+		case SC_NOT_MODIFIED:
 			return resp;
 		case SC_UNPROCESSABLE_ENTITY:
 			String json = readResponseBody(resp);
@@ -176,7 +205,7 @@ class RestClient {
 		HttpPost request = new HttpPost(createUri(path));
 		request.setHeader(CONTENT_TYPE, MIMETYPE_JSON);
 		request.setEntity(new StringEntity(data));
-		return mClient.execute(request, mHttpContext);
+		return mClient.execute(request, newHttpContext());
 	}
 
 	/**
@@ -185,7 +214,15 @@ class RestClient {
 	protected HttpResponse raw_get(final String path) throws IOException {
 		HttpGet request = new HttpGet(createUri(path));
 		request.setHeader(CONTENT_TYPE, MIMETYPE_JSON);
-		return mClient.execute(request, mHttpContext);
+		return mClient.execute(request, newHttpContext());
+	}
+
+	/**
+	 * Creates the context of one request. Each request needs its own context,
+	 * as the client may be used by several threads.
+	 */
+	private static HttpContext newHttpContext() {
+		return new BasicHttpContext();
 	}
 
 	/**
@@ -204,6 +241,213 @@ class RestClient {
 		return readResponseBody(resp);
 	}
 
+	/**
+	 * The result of {@link RestClient#getIfModified(String, String, String)}
+	 * or {@link RestClient#openIfModified(String, String, String)}. A
+	 * streamed result has to be closed, so the connection can be reused.
+	 */
+	public static class ConditionalResult implements Closeable {
+		private final boolean mModified;
+		private final String mBody;
+		private final Reader mReader;
+		private final String mETag;
+		private final String mLastModified;
+
+		ConditionalResult(boolean modified, String body, Reader reader, String eTag, String lastModified) {
+			mModified = modified;
+			mBody = body;
+			mReader = reader;
+			mETag = eTag;
+			mLastModified = lastModified;
+		}
+
+		/**
+		 * @return false, if the server answered 'NOT MODIFIED'
+		 */
+		public boolean isModified() {
+			return mModified;
+		}
+
+		/**
+		 * @return the response body or null, if the resource has not been
+		 *         modified or the body is streamed
+		 */
+		public String getBody() {
+			return mBody;
+		}
+
+		/**
+		 * @return the reader for the streamed response body or null, if the
+		 *         resource has not been modified or the body is not streamed
+		 */
+		public Reader getReader() {
+			return mReader;
+		}
+
+		/**
+		 * @return the ETag of the resource, may be null
+		 */
+		public String getETag() {
+			return mETag;
+		}
+
+		/**
+		 * @return the Last-Modified date of the resource, may be null
+		 */
+		public String getLastModified() {
+			return mLastModified;
+		}
+
+		/**
+		 * Closes the reader of a streamed body. The rest of the body is
+		 * skipped.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (mReader != null) {
+				mReader.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends a conditional HTTP-GET-request to the path <code>path</code>. If
+	 * the resource still has the given ETag or has not been modified since
+	 * the given date, the server only answers 'NOT MODIFIED' and the body is
+	 * not transferred.
+	 * 
+	 * @param path
+	 *            the path of the resource
+	 * @param eTag
+	 *            the ETag of the last response, may be null
+	 * @param lastModified
+	 *            the Last-Modified date of the last response, may be null
+	 * @return the result, that contains the body only if the resource has been
+	 *         modified
+	 * @throws IOException
+	 */
+	public ConditionalResult getIfModified(String path, String eTag, String lastModified) throws IOException {
+		ConditionalResult result = openIfModified(path, eTag, lastModified);
+		if (!result.isModified()) {
+			return result;
+		}
+		try {
+			return new ConditionalResult(true, readBody(result.getReader()), null, result.getETag(), result.getLastModified());
+		} finally {
+			result.close();
+		}
+	}
+
+	/**
+	 * Like {@link #getIfModified(String, String, String)}, but the body is not
+	 * read into memory. It has to be read from
+	 * {@link ConditionalResult#getReader()} and the result has to be closed.
+	 * 
+	 * @param path
+	 *            the path of the resource
+	 * @param eTag
+	 *            the ETag of the last response, may be null
+	 * @param lastModified
+	 *            the Last-Modified date of the last response, may be null
+	 * @return the result, that contains the reader only if the resource has
+	 *         been modified
+	 * @throws IOException
+	 */
+	public ConditionalResult openIfModified(String path, String eTag, String lastModified) throws IOException {
+		if (path == null) {
+			throw new IllegalArgumentException(path_not_null);
+		}
+		HttpGet request = new HttpGet(createUri(path));
+		if (eTag != null) {
+			request.setHeader(IF_NONE_MATCH, eTag);
+		}
+		if (lastModified != null) {
+			request.setHeader(IF_MODIFIED_SINCE, lastModified);
+		}
+
+		HttpResponse resp = execute(request);
+		if (resp.getStatusLine().getStatusCode() == SC_NOT_MODIFIED) {
+			// there is no body, but the validators may have been updated
+			String newETag = getHeader(resp, ETAG);
+			String newLastModified = getHeader(resp, LAST_MODIFIED);
+			return new ConditionalResult(false, null, null, newETag != null ? newETag : eTag,
+					newLastModified != null ? newLastModified : lastModified);
+		}
+
+		HttpEntity entity = resp.getEntity();
+		Reader reader;
+		if (entity != null) {
+			reader = new InputStreamReader(entity.getContent(), "UTF-8");
+		} else {
+			reader = new StringReader("");
+		}
+		return new ConditionalResult(true, null, reader, getHeader(resp, ETAG), getHeader(resp, LAST_MODIFIED));
+	}
+
+	/**
+	 * @return the value of the first header with the given name, or null
+	 */
+	private static String getHeader(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+
+	/**
+	 * Downloads the file at the given URL. The file is written to a temporary
+	 * file first, which is renamed when the download is complete. So there
+	 * will never be a partially downloaded file.
+	 * 
+	 * @param url
+	 *            the complete URL of the file, may point to another host
+	 * @param target
+	 *            the file to write
+	 * @throws IOException
+	 *             if the download failed
+	 */
+	public void download(String url, File target) throws IOException {
+		if (url == null) {
+			throw new IllegalArgumentException("url cannot be null");
+		}
+		HttpGet request = new HttpGet(url);
+		File tmpFile = new File(target.getPath() + ".part");
+		boolean success = false;
+		try {
+			HttpResponse resp = execute(request);
+			HttpEntity entity = resp.getEntity();
+			if (entity == null) {
+				throw new IOException("No content: " + url);
+			}
+
+			InputStream in = entity.getContent();
+			OutputStream out = null;
+			try {
+				out = new FileOutputStream(tmpFile);
+				byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+				int count;
+				while ((count = in.read(buffer)) != -1) {
+					out.write(buffer, 0, count);
+				}
+			} finally {
+				if (out != null) {
+					out.close();
+				}
+				// reading to the end releases the connection for reuse
+				in.close();
+			}
+
+			if (!tmpFile.renameTo(target)) {
+				throw new IOException("Could not rename " + tmpFile + " to " + target);
+			}
+			success = true;
+		} finally {
+			if (!success) {
+				// do not reuse a connection that has not been read completely
+				request.abort();
+				tmpFile.delete();
+			}
+		}
+	}
+
 	/**
 	 * Sends a HTTP-PUT-Request to the path <code>path</code> with
 	 * <code>data</code> as body
@@ -287,27 +531,28 @@ class RestClient {
 	 */
 	protected static String readResponseBody(HttpResponse response)
 			throws IOException {
+		HttpEntity entity = response.getEntity();
+		if (entity == null) {
+			return "";
+		}
+		return readBody(new InputStreamReader(entity.getContent(), "UTF-8"));
+	}
+
+	/**
+	 * Reads the complete body, including all line breaks. The reader is
+	 * closed.
+	 */
+	private static String readBody(Reader reader) throws IOException {
 		StringBuilder builder = new StringBuilder();
-		InputStream in = null;
-		BufferedReader buffer = null;
 		try {
-			in = response.getEntity().getContent();
-			buffer = new BufferedReader(new InputStreamReader(in, "UTF-8"));
-			while (true) {
-				String s = buffer.readLine();
-				if (s == null || s.length() == 0) {
-					break;
-				}
-				builder.append(s);
+			char[] buffer = new char[DOWNLOAD_BUFFER_SIZE];
+			int count;
+			while ((count = reader.read(buffer)) != -1) {
+				builder.append(buffer, 0, count);
 			}
 			return builder.toString();
 		} finally {
-			if (buffer != null) {
-				buffer.close();
-			}
-			if (in != null) {
-				in.close();
-			}
+			reader.close();
 		}
 	}
 
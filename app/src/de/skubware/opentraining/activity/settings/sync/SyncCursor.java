@@ -0,0 +1,370 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.activity.settings.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the state of the last sync with wger: the ETag and Last-Modified
+ * date of each request path, the time of the last sync, the bodies of the
+ * (small) reference files like languages or muscles and a {@link Page}
+ * summary of each page of exercises. With these the next sync can send
+ * conditional requests and skip the files that have not changed.
+ *
+ * The changes of a sync are collected with
+ * {@link #update(String, RestClient.ConditionalResult, boolean)} and only
+ * persisted by {@link #commit()}, so a sync that fails halfway does not
+ * change the cursor. If the host changes, the old state is ignored.
+ *
+ * The methods may be called by several threads.
+ *
+ */
+public class SyncCursor {
+	/** Tag for logging */
+	private static final String TAG = "SyncCursor";
+
+	/** Name of the preferences file */
+	private static final String PREFERENCES_NAME = "wger_sync_cursor";
+	/** Folder (in the files dir) for the cached response bodies */
+	private static final String CACHE_FOLDER = "sync_cache";
+
+	private static final String KEY_HOST = "host";
+	private static final String KEY_LAST_SYNC = "last_sync";
+	private static final String SUFFIX_ETAG = ".etag";
+	private static final String SUFFIX_LAST_MODIFIED = ".last_modified";
+	private static final String SUFFIX_PAGE = ".page";
+
+	/**
+	 * What the next sync needs to know of a page of exercises that has not
+	 * changed: the IDs of its exercises and the path of the next page.
+	 */
+	public static class Page {
+		private final String mNextPage;
+		private final int mTotalCount;
+		private final List<Integer> mIdList;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param nextPage
+		 *            The path of the next page, null for the last page
+		 * @param totalCount
+		 *            The number of exercises on the server, -1 if unknown
+		 * @param idList
+		 *            The wger IDs of the exercises of the page
+		 */
+		public Page(String nextPage, int totalCount, List<Integer> idList) {
+			mNextPage = nextPage;
+			mTotalCount = totalCount;
+			mIdList = idList;
+		}
+
+		/** @return The path of the next page, null for the last page */
+		public String getNextPage() {
+			return mNextPage;
+		}
+
+		/** @return The number of exercises on the server, -1 if unknown */
+		public int getTotalCount() {
+			return mTotalCount;
+		}
+
+		/** @return The wger IDs of the exercises of the page */
+		public List<Integer> getIds() {
+			return mIdList;
+		}
+
+		/** Format: total count, next page (empty for none) and the IDs, one per line */
+		private String encode() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(mTotalCount).append('\n');
+			builder.append(mNextPage != null ? mNextPage : "").append('\n');
+			for (Integer id : mIdList) {
+				builder.append(id).append('\n');
+			}
+			return builder.toString();
+		}
+
+		/** @return The page or null, if the value is invalid */
+		private static Page decode(String value) {
+			String[] lines = value.split("\n", -1);
+			if (lines.length < 3) {
+				return null;
+			}
+			try {
+				List<Integer> idList = new ArrayList<Integer>();
+				for (int i = 2; i < lines.length - 1; i++) {
+					idList.add(Integer.parseInt(lines[i]));
+				}
+				return new Page(lines[1].length() > 0 ? lines[1] : null, Integer.parseInt(lines[0]), idList);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	/** The changes of one path that have not been committed yet */
+	private static class PendingUpdate {
+		final String mETag;
+		final String mLastModified;
+		/** The body to cache, may be null */
+		final String mBody;
+		/** The summary of a page of exercises, may be null */
+		final Page mPage;
+
+		PendingUpdate(String eTag, String lastModified, String body, Page page) {
+			mETag = eTag;
+			mLastModified = lastModified;
+			mBody = body;
+			mPage = page;
+		}
+	}
+
+	private final SharedPreferences mPreferences;
+	private final File mCacheFolder;
+	private final String mHost;
+	/** True, if the state of the last sync belongs to another host */
+	private final boolean mHostChanged;
+
+	/** Maps the request paths to their uncommitted changes, guarded by this */
+	private final Map<String, PendingUpdate> mPendingMap = new HashMap<String, PendingUpdate>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context
+	 *            The context
+	 * @param host
+	 *            The host that is synced with
+	 */
+	public SyncCursor(Context context, String host) {
+		mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+		mCacheFolder = new File(context.getFilesDir(), CACHE_FOLDER);
+		mHost = host;
+		mHostChanged = !host.equals(mPreferences.getString(KEY_HOST, null));
+	}
+
+	/**
+	 * @return the ETag of the last response of the path, or null
+	 */
+	public String getETag(String path) {
+		return mHostChanged ? null : mPreferences.getString(path + SUFFIX_ETAG, null);
+	}
+
+	/**
+	 * @return the Last-Modified date of the last response of the path, or
+	 *         null
+	 */
+	public String getLastModified(String path) {
+		return mHostChanged ? null : mPreferences.getString(path + SUFFIX_LAST_MODIFIED, null);
+	}
+
+	/**
+	 * @return the time (in ms) of the last successful sync, or 0 if there was
+	 *         none
+	 */
+	public long getLastSync() {
+		return mHostChanged ? 0 : mPreferences.getLong(KEY_LAST_SYNC, 0);
+	}
+
+	/**
+	 * @return the summary of the page of exercises, as it was when its ETag
+	 *         and Last-Modified date were stored; null if it is not known
+	 */
+	public Page getPage(String path) {
+		String value = mHostChanged ? null : mPreferences.getString(path + SUFFIX_PAGE, null);
+		return value != null ? Page.decode(value) : null;
+	}
+
+	/**
+	 * Reads the cached body of the last response of the path.
+	 *
+	 * @return the body or null, if it has not been cached (or could not be
+	 *         read)
+	 */
+	public String readCachedBody(String path) {
+		File file = getCacheFile(path);
+		if (mHostChanged || !file.exists()) {
+			return null;
+		}
+
+		StringBuilder builder = new StringBuilder();
+		try {
+			Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				char[] buffer = new char[8 * 1024];
+				int count;
+				while ((count = reader.read(buffer)) != -1) {
+					builder.append(buffer, 0, count);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Could not read cached response of " + path, e);
+			return null;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Remembers the validators (and the body) of a response. The changes are
+	 * persisted by {@link #commit()}.
+	 *
+	 * @param path
+	 *            The request path
+	 * @param result
+	 *            The response
+	 * @param cacheBody
+	 *            If true, the body is cached, too
+	 */
+	public synchronized void update(String path, RestClient.ConditionalResult result, boolean cacheBody) {
+		mPendingMap.put(path, new PendingUpdate(result.getETag(), result.getLastModified(), cacheBody ? result.getBody() : null, null));
+	}
+
+	/**
+	 * Remembers the validators of a page of exercises together with its
+	 * summary, which stands in for the page if it has not changed next time.
+	 * The changes are persisted by {@link #commit()}.
+	 *
+	 * @param path
+	 *            The request path
+	 * @param result
+	 *            The response
+	 * @param page
+	 *            The summary of the page
+	 */
+	public synchronized void updatePage(String path, RestClient.ConditionalResult result, Page page) {
+		mPendingMap.put(path, new PendingUpdate(result.getETag(), result.getLastModified(), null, page));
+	}
+
+	/**
+	 * Persists the changes of this sync and the current time as time of the
+	 * last sync.
+	 */
+	public synchronized void commit() {
+		SharedPreferences.Editor editor = mPreferences.edit();
+		if (mHostChanged) {
+			editor.clear();
+			deleteCachedBodies(mCacheFolder);
+		}
+		mCacheFolder.mkdirs();
+
+		for (Map.Entry<String, PendingUpdate> entry : mPendingMap.entrySet()) {
+			String path = entry.getKey();
+			PendingUpdate update = entry.getValue();
+			if (update.mBody != null && !writeCachedBody(path, update.mBody)) {
+				// without the body the validators are useless
+				editor.remove(path + SUFFIX_ETAG);
+				editor.remove(path + SUFFIX_LAST_MODIFIED);
+				editor.remove(path + SUFFIX_PAGE);
+				continue;
+			}
+			putOrRemove(editor, path + SUFFIX_ETAG, update.mETag);
+			putOrRemove(editor, path + SUFFIX_LAST_MODIFIED, update.mLastModified);
+			putOrRemove(editor, path + SUFFIX_PAGE, update.mPage != null ? update.mPage.encode() : null);
+		}
+		mPendingMap.clear();
+
+		editor.putString(KEY_HOST, mHost);
+		editor.putLong(KEY_LAST_SYNC, System.currentTimeMillis());
+		editor.commit();
+	}
+
+	/**
+	 * Forgets the state of the last sync, e.g. because the synced exercises
+	 * have been deleted. The next sync will download everything again and
+	 * rebuild the {@link SyncedExerciseIndex}.
+	 *
+	 * @param context
+	 *            The context
+	 */
+	public static void reset(Context context) {
+		context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+		deleteCachedBodies(new File(context.getFilesDir(), CACHE_FOLDER));
+		new File(context.getFilesDir(), SyncedExerciseIndex.FILE_NAME).delete();
+	}
+
+	private File getCacheFile(String path) {
+		return new File(mCacheFolder, path.replaceAll("[^A-Za-z0-9]", "_") + ".json");
+	}
+
+	/**
+	 * Writes the body to a temporary file first, so there will never be a
+	 * partially written file.
+	 *
+	 * @return true, if writing was successful
+	 */
+	private boolean writeCachedBody(String path, String body) {
+		File file = getCacheFile(path);
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+			try {
+				writer.write(body);
+			} finally {
+				writer.close();
+			}
+			if (tmpFile.renameTo(file)) {
+				return true;
+			}
+			Log.e(TAG, "Could not rename " + tmpFile + " to " + file);
+		} catch (IOException e) {
+			Log.e(TAG, "Could not cache response of " + path, e);
+		}
+		tmpFile.delete();
+		file.delete();
+		return false;
+	}
+
+	private static void putOrRemove(SharedPreferences.Editor editor, String key, String value) {
+		if (value != null) {
+			editor.putString(key, value);
+		} else {
+			editor.remove(key);
+		}
+	}
+
+	private static void deleteCachedBodies(File cacheFolder) {
+		File[] files = cacheFolder.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+	}
+
+}
@@ -45,11 +45,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.R;
 import de.skubware.opentraining.basic.ExerciseType;
-import de.skubware.opentraining.db.DataProvider;
-import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.AsyncDataProvider;
+import de.skubware.opentraining.db.IAsyncDataProvider;
 
 /**
  * A dialog that is shown after the exercises have been downloaded. The user can
@@ -73,6 +74,9 @@ public class SyncFinishedDialog extends AlertDialog.Builder {
 	private boolean withDescriptionOnly = false;
 	/** Exercises with one of this Locale will be saved. */
 	private Set<Locale> localesToSave = new HashSet<Locale>();
+
+	/** Saves the exercises in the background, null if not saving */
+	private Future<List<ExerciseType>> mSaveFuture;
 	
 	public SyncFinishedDialog(final Context context,
 			ArrayList<ExerciseType> newExerciseList) {
@@ -216,6 +220,11 @@ public class SyncFinishedDialog extends AlertDialog.Builder {
 		mProgressDialog.setOnCancelListener(new OnCancelListener() {
 			@Override
 			public void onCancel(DialogInterface dialog) {
+				// exercises that have already been written are kept
+				if (mSaveFuture != null) {
+					mSaveFuture.cancel(false);
+					mSaveFuture = null;
+				}
 				Toast.makeText(mContext,
 						mContext.getString(R.string.sync_canceled),
 						Toast.LENGTH_LONG).show();
@@ -225,9 +234,25 @@ public class SyncFinishedDialog extends AlertDialog.Builder {
 		mProgressDialog.show();
 		
 		// finally save the exercises
-		IDataProvider dataProvider = new DataProvider(mContext);
-		dataProvider.saveSyncedExercises(mExerciseToSaveList);
-		// close dialog when finished
-		mProgressDialog.dismiss();
+		IAsyncDataProvider dataProvider = new AsyncDataProvider(mContext);
+		mSaveFuture = dataProvider.saveSyncedExercises(mExerciseToSaveList,
+				new IAsyncDataProvider.Callback<List<ExerciseType>>() {
+					@Override
+					public void onSuccess(List<ExerciseType> unsavedExercises) {
+						mSaveFuture = null;
+						if (!unsavedExercises.isEmpty()) {
+							Log.w(TAG, unsavedExercises.size() + " exercises could not be saved.");
+						}
+						// close dialog when finished
+						mProgressDialog.dismiss();
+					}
+
+					@Override
+					public void onFailure(Exception e) {
+						mSaveFuture = null;
+						Log.e(TAG, "Saving exercises failed.", e);
+						mProgressDialog.dismiss();
+					}
+				});
 	}
 }
@@ -0,0 +1,329 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.activity.settings.sync;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.IDataProvider;
+
+/**
+ * Compares the exercises on the server with the synced exercises, by their
+ * wger ID and content hash (see {@link SyncedExerciseIndex}).
+ *
+ * Each exercise of the server is passed to
+ * {@link #reconcile(int, String, String)} once, while the exercises are
+ * parsed, or to {@link #skipUnchanged(List)} if its page has not changed.
+ * Afterwards {@link #apply(List, int)} saves the changed exercises and
+ * deletes the ones that have been removed from the server. New exercises are
+ * not saved, the user chooses which of them should be saved; they are added
+ * to the index by the next sync.
+ *
+ * The methods may be called by several threads.
+ *
+ */
+class SyncReconciler {
+	/** Tag for logging */
+	private static final String TAG = "SyncReconciler";
+
+	/** The result of the comparison of an exercise of the server. */
+	enum State {
+		/** The exercise does not exist yet */
+		ADDED,
+		/** The exercise has been synced before, but has changed since then */
+		CHANGED,
+		/** The exercise has not changed since the last sync */
+		UNCHANGED,
+		/** There is a default or custom exercise with the same name */
+		FOREIGN
+	}
+
+	/** An added or changed exercise, that has not been saved yet. */
+	private static class Pending {
+		final int mId;
+		final String mHash;
+		/** The entry of the last sync, null for added exercises */
+		final SyncedExerciseIndex.Entry mOldEntry;
+		/** Maps the names of the images to the hashes of their descriptions */
+		final Map<String, String> mImageHashMap = new HashMap<String, String>();
+
+		Pending(int id, String hash, SyncedExerciseIndex.Entry oldEntry) {
+			mId = id;
+			mHash = hash;
+			mOldEntry = oldEntry;
+		}
+	}
+
+	private final SyncedExerciseIndex mIndex;
+	private final IDataProvider mDataProvider;
+
+	/** The IDs of all exercises of the server, guarded by this */
+	private final Set<Integer> mSeenIdSet = new HashSet<Integer>();
+	/** The added and changed exercises by name, guarded by this */
+	private final Map<String, Pending> mPendingMap = new HashMap<String, Pending>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param indexFile
+	 *            The file of the {@link SyncedExerciseIndex}
+	 * @param dataProvider
+	 *            The data provider for looking up and saving the exercises
+	 */
+	SyncReconciler(File indexFile, IDataProvider dataProvider) {
+		mIndex = new SyncedExerciseIndex(indexFile);
+		mDataProvider = dataProvider;
+	}
+
+	/**
+	 * Compares an exercise of the server with the synced exercises.
+	 *
+	 * @param id
+	 *            The wger ID of the exercise
+	 * @param name
+	 *            The name of the exercise
+	 * @param hash
+	 *            The hash of the content of the exercise, see
+	 *            {@link #hash(String...)}
+	 *
+	 * @return The state of the exercise; only added and changed exercises
+	 *         have to be processed
+	 */
+	synchronized State reconcile(int id, String name, String hash) {
+		if (!mSeenIdSet.add(id)) {
+			// the pages have shifted while they were downloaded
+			Log.d(TAG, "Exercise " + id + " has already been checked.");
+			return State.UNCHANGED;
+		}
+
+		SyncedExerciseIndex.Entry entry = mIndex.get(id);
+		if (entry == null) {
+			ExerciseType ex = mDataProvider.getExerciseByName(name);
+			if (ex == null) {
+				mPendingMap.put(name, new Pending(id, hash, null));
+				return State.ADDED;
+			}
+			if (ex.getExerciseSource() != ExerciseSource.SYNCED) {
+				return State.FOREIGN;
+			}
+
+			// synced before the index existed or chosen by the user after the
+			// last sync, the saved exercise is assumed to be up to date
+			mIndex.put(new SyncedExerciseIndex.Entry(id, name, hash, new HashMap<String, String>()));
+			return State.UNCHANGED;
+		}
+
+		if (entry.mHash.equals(hash)) {
+			return State.UNCHANGED;
+		}
+		if (!entry.mName.equals(name) && mDataProvider.getExerciseByName(name) != null) {
+			Log.w(TAG, "Exercise " + entry.mName + " has been renamed to " + name + ", but this name is already used.");
+			return State.FOREIGN;
+		}
+
+		mPendingMap.put(name, new Pending(id, hash, entry));
+		return State.CHANGED;
+	}
+
+	/**
+	 * Marks the exercises of a page that has not changed since the last sync
+	 * as seen. They are not compared again, as none of them has changed.
+	 *
+	 * @param idList
+	 *            The wger IDs of the exercises of the page
+	 */
+	synchronized void skipUnchanged(List<Integer> idList) {
+		mSeenIdSet.addAll(idList);
+	}
+
+	/**
+	 * @return true, if the exercise has been synced before and has changed
+	 *         since then
+	 */
+	synchronized boolean isChanged(String name) {
+		Pending pending = mPendingMap.get(name);
+		return pending != null && pending.mOldEntry != null;
+	}
+
+	/**
+	 * Checks whether an image of a changed exercise has changed since the last
+	 * sync. Unchanged images do not have to be downloaded again, if they still
+	 * exist.
+	 *
+	 * @param name
+	 *            The name of the exercise
+	 * @param imageName
+	 *            The name of the image
+	 * @param imageHash
+	 *            The hash of the description of the image
+	 *
+	 * @return true, if the image has not changed
+	 */
+	synchronized boolean isImageUnchanged(String name, String imageName, String imageHash) {
+		Pending pending = mPendingMap.get(name);
+		return pending != null && pending.mOldEntry != null
+				&& imageHash.equals(pending.mOldEntry.mImageHashMap.get(imageName));
+	}
+
+	/**
+	 * Remembers the hash of the description of an image of an added or
+	 * changed exercise.
+	 */
+	synchronized void putImageHash(String name, String imageName, String imageHash) {
+		Pending pending = mPendingMap.get(name);
+		if (pending != null) {
+			pending.mImageHashMap.put(imageName, imageHash);
+		}
+	}
+
+	/**
+	 * Saves the changed exercises, deletes the exercises that have been
+	 * removed from the server and writes the index. Exercises that are used by
+	 * a {@link Workout} are not deleted.
+	 *
+	 * Must only be called after all exercises of the server have been passed
+	 * to {@link #reconcile(int, String, String)}. Nothing is deleted if the
+	 * number of exercises that have been seen differs from the number on the
+	 * server: if the pages have shifted while they were downloaded, some
+	 * exercises may have been skipped.
+	 *
+	 * @param changedList
+	 *            The changed exercises, including their images
+	 * @param totalCount
+	 *            The number of exercises on the server, -1 if it is unknown
+	 *
+	 * @return true, if all changed exercises have been saved
+	 */
+	synchronized boolean apply(List<ExerciseType> changedList, int totalCount) {
+		Set<String> usedNameSet = null;
+		List<String> obsoleteNameList = new ArrayList<String>();
+
+		// save the changed exercises
+		Set<ExerciseType> unsavedSet = new HashSet<ExerciseType>(mDataProvider.saveSyncedExercises(changedList));
+		for (ExerciseType ex : changedList) {
+			Pending pending = mPendingMap.get(ex.getUnlocalizedName());
+			if (unsavedSet.contains(ex) || pending == null || pending.mOldEntry == null) {
+				continue;
+			}
+			mIndex.put(new SyncedExerciseIndex.Entry(pending.mId, ex.getUnlocalizedName(), pending.mHash, pending.mImageHashMap));
+			if (!pending.mOldEntry.mName.equals(ex.getUnlocalizedName())) {
+				// renamed
+				obsoleteNameList.add(pending.mOldEntry.mName);
+			}
+		}
+
+		// find the removed exercises
+		List<SyncedExerciseIndex.Entry> entryList = new ArrayList<SyncedExerciseIndex.Entry>(mIndex.getAll());
+		if (mSeenIdSet.size() != totalCount) {
+			Log.w(TAG, "Saw " + mSeenIdSet.size() + " of " + totalCount
+					+ " exercises of the server, removed exercises are not deleted this time.");
+			entryList.clear();
+		}
+		for (SyncedExerciseIndex.Entry entry : entryList) {
+			if (mSeenIdSet.contains(entry.mId)) {
+				continue;
+			}
+			if (usedNameSet == null) {
+				usedNameSet = getNamesUsedByWorkouts();
+			}
+			if (usedNameSet.contains(entry.mName)) {
+				// the entry is kept, so the exercise is checked again next time
+				Log.d(TAG, "Exercise " + entry.mName + " has been removed from the server, but is used by a workout.");
+				continue;
+			}
+			mIndex.remove(entry.mId);
+			obsoleteNameList.add(entry.mName);
+		}
+
+		if (!obsoleteNameList.isEmpty()) {
+			if (usedNameSet == null) {
+				usedNameSet = getNamesUsedByWorkouts();
+			}
+			obsoleteNameList.removeAll(usedNameSet);
+			List<String> undeletedList = mDataProvider.deleteSyncedExercises(obsoleteNameList);
+			if (!undeletedList.isEmpty()) {
+				Log.w(TAG, undeletedList.size() + " exercises could not be deleted.");
+			}
+		}
+
+		Log.d(TAG, "Saved " + (changedList.size() - unsavedSet.size()) + " changed exercises, deleted "
+				+ obsoleteNameList.size() + " exercises.");
+		mIndex.write();
+		return unsavedSet.isEmpty();
+	}
+
+	/**
+	 * @return The names of all exercises that are used by a workout
+	 */
+	private Set<String> getNamesUsedByWorkouts() {
+		Set<String> nameSet = new HashSet<String>();
+		for (Workout w : mDataProvider.getWorkouts()) {
+			for (FitnessExercise fEx : w.getFitnessExercises()) {
+				nameSet.add(fEx.getExType().getUnlocalizedName());
+			}
+		}
+		return nameSet;
+	}
+
+	/**
+	 * Calculates the hash of the given values, e.g. of the content of an
+	 * exercise. Null values are allowed.
+	 *
+	 * @return The SHA-1 hash as hex String
+	 */
+	static String hash(String... values) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (String value : values) {
+				// the separator makes ("ab", "c") and ("a", "bc") different
+				digest.update(value == null ? new byte[] { 1 } : value.getBytes("UTF-8"));
+				digest.update((byte) 0);
+			}
+
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest()) {
+				builder.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-1
+			throw new AssertionError(e);
+		} catch (UnsupportedEncodingException e) {
+			// every Java platform has to support UTF-8
+			throw new AssertionError(e);
+		}
+	}
+
+}
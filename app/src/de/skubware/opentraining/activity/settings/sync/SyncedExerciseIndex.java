@@ -0,0 +1,171 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.activity.settings.sync;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.IndexFile;
+
+/**
+ * A small file that remembers which wger exercise has been saved as which
+ * exercise in {@link IDataProvider#SYNCED_EXERCISE_FOLDER}, together with the
+ * content hash of the exercise and of each of its images at that time.
+ *
+ * Format (all numbers big-endian), see {@link IndexFile} for the header:
+ *
+ * <pre>
+ * int count,
+ * (int wger ID, UTF name, UTF hash, int image count, (UTF image name, UTF image hash)*)*
+ * </pre>
+ *
+ * This class is not thread safe, the {@link SyncReconciler} synchronizes the
+ * access.
+ *
+ */
+class SyncedExerciseIndex {
+	/** The name of the file in the files folder */
+	static final String FILE_NAME = "synced_exercises.index";
+
+	private static final int MAGIC = 0x4F545345; // 'OTSE'
+	private static final int FORMAT_VERSION = 1;
+
+	/** The state of one synced exercise. */
+	static class Entry {
+		final int mId;
+		final String mName;
+		final String mHash;
+		/** Maps the names of the images to the hashes of their descriptions */
+		final Map<String, String> mImageHashMap;
+
+		Entry(int id, String name, String hash, Map<String, String> imageHashMap) {
+			mId = id;
+			mName = name;
+			mHash = hash;
+			mImageHashMap = imageHashMap;
+		}
+	}
+
+	private final IndexFile mFile;
+
+	/** The entries by wger ID */
+	private final Map<Integer, Entry> mEntryMap;
+
+	/**
+	 * Reads the index.
+	 *
+	 * @param file
+	 *            The file of the index, does not have to exist
+	 */
+	SyncedExerciseIndex(File file) {
+		mFile = new IndexFile(file, MAGIC, FORMAT_VERSION);
+		mEntryMap = read();
+	}
+
+	/**
+	 * @return The entry of the wger exercise with the given ID, or null
+	 */
+	Entry get(int id) {
+		return mEntryMap.get(id);
+	}
+
+	/**
+	 * @return All entries
+	 */
+	Collection<Entry> getAll() {
+		return mEntryMap.values();
+	}
+
+	/**
+	 * Puts the entry, replacing the entry with the same ID. The change is
+	 * persisted by {@link #write()}.
+	 */
+	void put(Entry entry) {
+		mEntryMap.put(entry.mId, entry);
+	}
+
+	/**
+	 * Removes the entry with the given ID. The change is persisted by
+	 * {@link #write()}.
+	 */
+	void remove(int id) {
+		mEntryMap.remove(id);
+	}
+
+	/**
+	 * Reads the file.
+	 *
+	 * @return The entries by ID, empty if the file does not exist or could not
+	 *         be read
+	 */
+	private Map<Integer, Entry> read() {
+		Map<Integer, Entry> entryMap = mFile.read(new IndexFile.ContentReader<Map<Integer, Entry>>() {
+			@Override
+			public Map<Integer, Entry> read(DataInputStream in) throws IOException {
+				Map<Integer, Entry> entryMap = new LinkedHashMap<Integer, Entry>();
+				for (int i = in.readInt(); i > 0; i--) {
+					int id = in.readInt();
+					String name = in.readUTF();
+					String hash = in.readUTF();
+					Map<String, String> imageHashMap = new HashMap<String, String>();
+					for (int k = in.readInt(); k > 0; k--) {
+						String imageName = in.readUTF();
+						imageHashMap.put(imageName, in.readUTF());
+					}
+					entryMap.put(id, new Entry(id, name, hash, imageHashMap));
+				}
+				return entryMap;
+			}
+		});
+		return entryMap != null ? entryMap : new LinkedHashMap<Integer, Entry>();
+	}
+
+	/**
+	 * Writes the file. If writing fails, the file is deleted and the index is
+	 * rebuilt by the next sync.
+	 */
+	void write() {
+		mFile.write(new IndexFile.ContentWriter() {
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(mEntryMap.size());
+				for (Entry entry : mEntryMap.values()) {
+					out.writeInt(entry.mId);
+					out.writeUTF(entry.mName);
+					out.writeUTF(entry.mHash);
+					out.writeInt(entry.mImageHashMap.size());
+					for (Map.Entry<String, String> image : entry.mImageHashMap.entrySet()) {
+						out.writeUTF(image.getKey());
+						out.writeUTF(image.getValue());
+					}
+				}
+			}
+		});
+	}
+
+}
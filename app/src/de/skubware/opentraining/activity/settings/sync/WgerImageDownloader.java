@@ -26,18 +26,19 @@ import android.util.SparseArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.License;
@@ -48,143 +49,264 @@ import de.skubware.opentraining.db.IDataProvider;
 /**
  * A class to encapsulate downloading missing images from wger.
  * 
+ * The images are handled by a pool of worker threads: first the description
+ * (URL and license) of every image is requested, then the images of the new
+ * exercises are downloaded. All requests share the connections of the
+ * {@link RestClient}, which also limits the number of concurrent requests per
+ * host.
+ * 
  */
 public class WgerImageDownloader {
 	/** Tag for logging */
 	private static final String TAG = "WgerImageDownloader";
 
+	/** Number of images that are handled concurrently */
+	private static final int THREAD_COUNT = 6;
+
 	private String mLicenseJSONString;
 	private Context mContext;
 	private RestClient mClient;
 
+	/** The licenses by their wger ID, parsed once */
+	private SparseArray<LicenseType> mLicenseArray;
+
+	/** Decides which images of changed exercises have to be downloaded again, may be null */
+	private SyncReconciler mReconciler;
+
+	/** Names of the images that are (being) downloaded */
+	private final Map<String, Boolean> mClaimedImageNames = new ConcurrentHashMap<String, Boolean>();
+
 	public WgerImageDownloader(String licenseJSONString, Context context, RestClient client) {
 		mLicenseJSONString = licenseJSONString;
 		mContext = context;
 		mClient = client;
 	}
 
+	/**
+	 * Constructor for licenses that have already been parsed, see
+	 * {@link WgerJSONParser#parseLicenses(java.io.Reader, IDataProvider)}.
+	 */
+	public WgerImageDownloader(SparseArray<LicenseType> licenseArray, Context context, RestClient client) {
+		mLicenseArray = licenseArray;
+		mContext = context;
+		mClient = client;
+	}
+
+	/**
+	 * Constructor for downloading the images of new and changed exercises,
+	 * see {@link SyncReconciler}.
+	 */
+	WgerImageDownloader(SparseArray<LicenseType> licenseArray, SyncReconciler reconciler, Context context, RestClient client) {
+		this(licenseArray, context, client);
+		mReconciler = reconciler;
+	}
+
+	/** The description of an image: where to download it and its license. */
+	private static class ImageInfo {
+		final String mDownloadPath;
+		final License mLicense;
+		/** The hash of the description */
+		final String mHash;
+
+		ImageInfo(String downloadPath, License license, String hash) {
+			mDownloadPath = downloadPath;
+			mLicense = license;
+			mHash = hash;
+		}
+	}
+
 	/**
 	 * Download the missing images from wger. If an image already exists Open
 	 * Training assumes that the exercise is duplicate and will remove it from
 	 * the download list.
+	 * 
+	 * Exercises that have changed since the last sync keep their images,
+	 * unless the description of an image (and so probably the image) has
+	 * changed.
 	 */
 	public ArrayList<ExerciseType> downloadImages(List<ExerciseType.Builder> exerciseBuilderList) throws IOException, JSONException {
-		ArrayList<ExerciseType> newExerciseList = new ArrayList<ExerciseType>();
-		boolean imageWithName = false;
-		List<File> newImagePathList = new ArrayList<File>();
-		Map<File, License> newImageLicenseMap = new HashMap<File, License>();
-		String imageName;
+		if (mLicenseArray == null) {
+			mLicenseArray = WgerJSONParser.parseLicenses(mLicenseJSONString);
+		}
 		DataHelper dataHelper = new DataHelper(mContext);
-		JSONObject imageJSONObject = new JSONObject();
-
-		for (ExerciseType.Builder exBuilder : exerciseBuilderList) {
-			ExerciseType ex = exBuilder.build();
-			for (File img : ex.getImagePaths()) {
-				String imageAsJSON = mClient.get(img.getPath() + "/");
-				
-				// get image name
-				//JSONObject imageJSONObject = new JSONObject(imageAsJSON);
-				imageJSONObject = imageJSONObject.getJSONObject(imageAsJSON);
-				String imageDownloadPath = imageJSONObject.getString("image");
-				
-				
-				// parse JSON and get license
-				SparseArray<LicenseType> licenseSparseArray = WgerJSONParser.parseLicenses(mLicenseJSONString);
-
-				int licenseNumber = WgerJSONParser.getLastNumberOfJson(imageJSONObject.getString("license"));
-				LicenseType licenseType = licenseSparseArray.get(licenseNumber);
-				String author = imageJSONObject.getString("license_author");
-				Log.v(TAG, "license=" + licenseType.toString() + " license_author=" + author);
-				
-				License license = new License(licenseType, author);
-				//String licensePath = imageJSONObject.getString("license");
-
-				
-				// skip exercise (and image download) if there's already one with the same name
-				imageName = (new File(imageDownloadPath)).getName();
-				if(dataHelper.drawableExist(imageName)){
-					Log.d(TAG, "There's already an image with the same name as: " + imageDownloadPath + ". The exercise: " + ex.getLocalizedName() + " is propably duplicate, it will not be added.");
-					imageWithName = true;
-				}else {
-					// only download image if its name is unique
-					imageName = downloadImageToSyncedImagesFolder(imageDownloadPath); // imageName may change!
-
-					// add image name + license to list/map
-					File imageFile = new File(imageName);
-					newImagePathList.add(imageFile);
-					newImageLicenseMap.put(imageFile, license);
+
+		// create output folder
+		final File outputFolder = new File(mContext.getFilesDir(), IDataProvider.SYNCED_IMAGES_FOLDER);
+		outputFolder.mkdir();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			// request the descriptions of all images ...
+			List<ExerciseType> exerciseList = new ArrayList<ExerciseType>();
+			List<List<Future<ImageInfo>>> infoFutureList = new ArrayList<List<Future<ImageInfo>>>();
+			for (ExerciseType.Builder exBuilder : exerciseBuilderList) {
+				ExerciseType ex = exBuilder.build();
+				List<Future<ImageInfo>> futureList = new ArrayList<Future<ImageInfo>>();
+				for (final File img : ex.getImagePaths()) {
+					futureList.add(executor.submit(new Callable<ImageInfo>() {
+						@Override
+						public ImageInfo call() throws IOException, JSONException {
+							return requestImageInfo(img.getPath() + "/");
+						}
+					}));
+				}
+				exerciseList.add(ex);
+				infoFutureList.add(futureList);
+			}
+
+			// ... download the images of each exercise as soon as its descriptions are known ...
+			List<List<ImageInfo>> infoList = new ArrayList<List<ImageInfo>>();
+			List<List<Future<String>>> downloadFutureList = new ArrayList<List<Future<String>>>();
+			for (int i = 0; i < exerciseList.size(); i++) {
+				List<ImageInfo> exInfoList = new ArrayList<ImageInfo>();
+				for (Future<ImageInfo> future : infoFutureList.get(i)) {
+					exInfoList.add(getResult(future));
+				}
+
+				// skip exercise (and image download) if there's already an image with the same name
+				final String exName = exerciseList.get(i).getUnlocalizedName();
+				final boolean changed = mReconciler != null && mReconciler.isChanged(exName);
+				boolean imageWithName = false;
+				for (ImageInfo info : changed ? new ArrayList<ImageInfo>() : exInfoList) {
+					String imageName = new File(info.mDownloadPath).getName();
+					if (dataHelper.drawableExist(imageName)) {
+						Log.d(TAG, "There's already an image with the same name as: " + info.mDownloadPath + ". The exercise: "
+								+ exerciseList.get(i).getLocalizedName() + " is propably duplicate, it will not be added.");
+						imageWithName = true;
+						break;
+					}
+				}
+				if (imageWithName) {
+					infoList.add(null);
+					downloadFutureList.add(null);
+					continue;
 				}
 
-				imageName = "";
+				List<Future<String>> futureList = new ArrayList<Future<String>>();
+				for (final ImageInfo info : exInfoList) {
+					futureList.add(executor.submit(new Callable<String>() {
+						@Override
+						public String call() {
+							String imageName = new File(info.mDownloadPath).getName();
+							boolean replace = changed && !mReconciler.isImageUnchanged(exName, imageName, info.mHash);
+							imageName = downloadImageToSyncedImagesFolder(info.mDownloadPath, outputFolder, replace);
+							if (imageName != null && mReconciler != null) {
+								mReconciler.putImageHash(exName, imageName, info.mHash);
+							}
+							return imageName;
+						}
+					}));
+				}
+				infoList.add(exInfoList);
+				downloadFutureList.add(futureList);
 			}
 
-			if(!imageWithName) {
+			// ... and put the new exercises together
+			ArrayList<ExerciseType> newExerciseList = new ArrayList<ExerciseType>();
+			for (int i = 0; i < exerciseBuilderList.size(); i++) {
+				if (downloadFutureList.get(i) == null) {
+					continue;
+				}
+
+				List<File> newImagePathList = new ArrayList<File>();
+				Map<File, License> newImageLicenseMap = new HashMap<File, License>();
+				for (int k = 0; k < downloadFutureList.get(i).size(); k++) {
+					String imageName = getResult(downloadFutureList.get(i).get(k));
+					if (imageName == null) {
+						continue;
+					}
+					File imageFile = new File(imageName);
+					newImagePathList.add(imageFile);
+					newImageLicenseMap.put(imageFile, infoList.get(i).get(k).mLicense);
+				}
+
 				// set collected values for builder, add new object to exercise list
+				ExerciseType.Builder exBuilder = exerciseBuilderList.get(i);
 				exBuilder.imagePath(newImagePathList);
 				exBuilder.setImageLicenseMap(newImageLicenseMap);
-
 				newExerciseList.add(exBuilder.build());
 			}
 
-			newImagePathList.clear();
-			newImageLicenseMap.clear();
+			return newExerciseList;
+		} finally {
+			// stops the remaining requests, if anything failed
+			executor.shutdownNow();
 		}
-
-		return newExerciseList;
 	}
 
 	/**
+	 * Requests the description of an image.
 	 * 
-	 * @param urlToDownload
-	 *            the url
-	 * @return the name of the downloaded image. This name can be different from
-	 *         the original name if there's already a file with the same name.
+	 * @param path
+	 *            the path of the image resource
+	 * 
+	 * @return The URL and license of the image
 	 */
-	private String downloadImageToSyncedImagesFolder(String urlToDownload) {
+	private ImageInfo requestImageInfo(String path) throws IOException, JSONException {
+		JSONObject imageJSONObject = new JSONObject(mClient.get(path));
+		String imageDownloadPath = imageJSONObject.getString("image");
+
+		String license = imageJSONObject.getString("license");
+		int licenseNumber = WgerJSONParser.getLastNumberOfJson(license);
+		LicenseType licenseType = mLicenseArray.get(licenseNumber, LicenseType.UNKNOWN);
+		String author = imageJSONObject.getString("license_author");
+		Log.v(TAG, "license=" + licenseType.toString() + " license_author=" + author);
+
+		String hash = SyncReconciler.hash(imageDownloadPath, license, author);
+		return new ImageInfo(imageDownloadPath, new License(licenseType, author), hash);
+	}
+
+	/**
+	 * Returns the result of the task and rethrows its exception.
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException, JSONException {
 		try {
-			URL url = new URL(urlToDownload);
-			URLConnection connection = url.openConnection();
-			connection.connect();
-			// this will be useful so that you can show a typical 0-100%
-			// progress bar
-			int fileLength = connection.getContentLength();
-
-			// download the file
-			InputStream input = new BufferedInputStream(url.openStream());
-
-			// create output folder
-			String outputFolder = mContext.getFilesDir().toString() + "/" + IDataProvider.SYNCED_IMAGES_FOLDER;
-			(new File(outputFolder)).mkdir();
-			String imageName = new File(urlToDownload).getName();
-			String outputPath = outputFolder + "/" + imageName;
-
-			// skip files that already exist
-			if ((new File(outputPath)).exists()) {
-				Log.e(TAG, "already such a file: " + outputPath);
-				Log.e(TAG, "Will SKIP this file.");
-				return imageName;
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Downloading images has been interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof JSONException) {
+				throw (JSONException) cause;
 			}
-			OutputStream output = new FileOutputStream(outputPath);
-
-			byte data[] = new byte[1024];
-			long total = 0;
-			int count;
-			while ((count = input.read(data)) != -1) {
-				total += count;
-				// publishing the progress....
-				//Bundle resultData = new Bundle();
-				//resultData.putInt("progress", (int) (total * 100 / fileLength));
-				// receiver.send(UPDATE_PROGRESS, resultData);
-				output.write(data, 0, count);
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
 			}
+			throw new IOException(cause);
+		}
+	}
 
-			output.flush();
-			output.close();
-			input.close();
+	/**
+	 * 
+	 * @param urlToDownload
+	 *            the url
+	 * @param outputFolder
+	 *            the folder for the synced images
+	 * @param replace
+	 *            if true, an existing image is downloaded again
+	 * @return the name of the downloaded image or null, if downloading failed
+	 */
+	private String downloadImageToSyncedImagesFolder(String urlToDownload, File outputFolder, boolean replace) {
+		String imageName = new File(urlToDownload).getName();
+		File outputFile = new File(outputFolder, imageName);
 
+		// skip files that already exist or are just being downloaded
+		if (mClaimedImageNames.put(imageName, Boolean.TRUE) != null || (!replace && outputFile.exists())) {
+			Log.e(TAG, "already such a file: " + outputFile);
+			Log.e(TAG, "Will SKIP this file.");
+			return imageName;
+		}
+
+		try {
+			mClient.download(urlToDownload, outputFile);
 			return imageName;
 		} catch (IOException e) {
-			Log.v("WgerImageDownloader", e.getMessage().toString());
+			Log.v(TAG, "Could not download " + urlToDownload + ": " + e.getMessage());
+			mClaimedImageNames.remove(imageName);
 		}
 
 		return null;
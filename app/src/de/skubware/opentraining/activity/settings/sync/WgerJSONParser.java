@@ -23,11 +23,18 @@ package de.skubware.opentraining.activity.settings.sync;
 import android.util.Log;
 import android.util.SparseArray;
 
-import org.json.JSONArray;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -56,6 +63,23 @@ public class WgerJSONParser {
 
 	//TODO Find better solution, remove static methods and fields
 	private static IDataProvider mDataProvider;
+
+	/* The languages, muscles and licenses the exercises refer to, by their wger ID */
+	private SparseArray<Locale> mLocaleSparseArray;
+	private SparseArray<Muscle> mMuscleSparseArray;
+	private SparseArray<LicenseType> mLicenseSparseArray;
+
+	/** The path of the page after the last parsed one, or null if it was the last page */
+	private String mNextPage;
+
+	/** The number of exercises on the server, as sent with the last parsed page, or -1 */
+	private int mTotalCount = -1;
+
+	/** The wger IDs of the exercises of the last parsed page */
+	private List<Integer> mPageIdList = new ArrayList<Integer>();
+
+	/** Decides which exercises are new or have changed, null for checking only the names */
+	private SyncReconciler mReconciler;
 	
 	/** Tag for logging */
 	private static final String TAG = "WgerJSONParser";
@@ -73,110 +97,337 @@ public class WgerJSONParser {
 	 * @throws JSONException
 	 */
 	public WgerJSONParser(String exerciseJSONString, String languageJSONString, String muscleJSONString, String equipmentJSONString, String licenseJSONString, IDataProvider dataProvider) throws JSONException, ErrorException {
+		this(new StringReader(exerciseJSONString), new StringReader(languageJSONString), new StringReader(muscleJSONString), new StringReader(equipmentJSONString), new StringReader(licenseJSONString), dataProvider);
+	}
+
+	/**
+	 * Constructor. Reads the JSON-data directly from the given readers, so the
+	 * (large) exercise list does not have to be kept in memory as a String.
+	 * All readers are closed.
+	 * 
+	 * @param exerciseReader
+	 *            The exercises as JSON
+	 * @param languageReader
+	 *            The languages as JSON
+	 * @param muscleReader
+	 *            The muscles as JSON
+	 * @param equipmentReader
+	 *            The equipment as JSON
+	 * @param licenseReader
+	 *            The licenses as JSON
+	 * @param dataProvider
+	 * @throws JSONException
+	 *             if the JSON-data is malformed
+	 */
+	public WgerJSONParser(Reader exerciseReader, Reader languageReader, Reader muscleReader, Reader equipmentReader, Reader licenseReader, IDataProvider dataProvider) throws JSONException, ErrorException {
 		mDataProvider = dataProvider;
 		
 		// parse languages
-		SparseArray<Locale> localeSparseArray = parseLanguages(languageJSONString);
+		mLocaleSparseArray = parseLanguages(languageReader);
 		// parse muscles
-		SparseArray<Muscle> muscleSparseArray = parseMuscles(muscleJSONString);
+		mMuscleSparseArray = parseMuscles(muscleReader, dataProvider);
 		// parse licenses
-		SparseArray<LicenseType> licenseSparseArray = parseLicenses(licenseJSONString);
+		mLicenseSparseArray = parseLicenses(licenseReader, dataProvider);
 
 		// parse equipment (not required until REST-API supports this)
-		// SparseArray<SportsEquipment> equipmentSparseArray = parseEquipment(equipmentJSONString);
+		// SparseArray<SportsEquipment> equipmentSparseArray = parse(equipmentReader, SportsEquipment.class, dataProvider);
+		closeQuietly(equipmentReader);
 		
-		
-		
-		JSONObject mainObject = new JSONObject(exerciseJSONString);
-		Log.d(TAG, mainObject.toString());
-		JSONArray exerciseArray = mainObject.getJSONArray("objects");
-		Map<Locale, String> translationMap = new HashMap<Locale, String>();
-		SortedSet<Muscle> muscleSet = new TreeSet<Muscle>();
-		List<File> imageList= new ArrayList<File>();
-
-		// parse each exercise of the JSON Array
-		for (int i = 0; i < exerciseArray.length(); i++) {
-			
-			JSONObject jsonExercise = exerciseArray.getJSONObject(i);
-			// get name and check if exercise already exists
-			String name = jsonExercise.getString("name");
-			if(dataProvider.exerciseExists(name)) {
-				continue;
+		addNewExercises(parsePage(exerciseReader));
+	}
+
+	/**
+	 * Constructor for languages, muscles and licenses that have already been
+	 * parsed (e.g. while the exercises were still being downloaded). The
+	 * reader is closed.
+	 * 
+	 * @param exerciseReader
+	 *            The exercises as JSON
+	 * @param localeSparseArray
+	 *            The languages, see {@link #parseLanguages(Reader)}
+	 * @param muscleSparseArray
+	 *            The muscles, see {@link #parseMuscles(Reader, IDataProvider)}
+	 * @param licenseSparseArray
+	 *            The licenses, see {@link #parseLicenses(Reader, IDataProvider)}
+	 * @param dataProvider
+	 * @throws JSONException
+	 *             if the JSON-data is malformed
+	 */
+	public WgerJSONParser(Reader exerciseReader, SparseArray<Locale> localeSparseArray, SparseArray<Muscle> muscleSparseArray, SparseArray<LicenseType> licenseSparseArray, IDataProvider dataProvider) throws JSONException, ErrorException {
+		this(localeSparseArray, muscleSparseArray, licenseSparseArray, dataProvider);
+		addNewExercises(parsePage(exerciseReader));
+	}
+
+	/**
+	 * Constructor for parsing the exercises page by page with
+	 * {@link #parsePage(Reader)}. The new exercises are not collected, so
+	 * {@link #getNewExercises()} and {@link #getNewExercisesBuilder()} return
+	 * empty lists.
+	 * 
+	 * @param localeSparseArray
+	 *            The languages, see {@link #parseLanguages(Reader)}
+	 * @param muscleSparseArray
+	 *            The muscles, see {@link #parseMuscles(Reader, IDataProvider)}
+	 * @param licenseSparseArray
+	 *            The licenses, see {@link #parseLicenses(Reader, IDataProvider)}
+	 * @param dataProvider
+	 */
+	public WgerJSONParser(SparseArray<Locale> localeSparseArray, SparseArray<Muscle> muscleSparseArray, SparseArray<LicenseType> licenseSparseArray, IDataProvider dataProvider) {
+		mDataProvider = dataProvider;
+		mLocaleSparseArray = localeSparseArray;
+		mMuscleSparseArray = muscleSparseArray;
+		mLicenseSparseArray = licenseSparseArray;
+	}
+
+	/**
+	 * Constructor for parsing the exercises page by page. Each exercise is
+	 * passed to the {@link SyncReconciler}, {@link #parsePage(Reader)} returns
+	 * the exercises that are new or have changed since the last sync.
+	 */
+	WgerJSONParser(SparseArray<Locale> localeSparseArray, SparseArray<Muscle> muscleSparseArray, SparseArray<LicenseType> licenseSparseArray, SyncReconciler reconciler, IDataProvider dataProvider) {
+		this(localeSparseArray, muscleSparseArray, licenseSparseArray, dataProvider);
+		mReconciler = reconciler;
+	}
+
+	/**
+	 * Parses one page of exercises. The exercises are read one after another
+	 * from the stream, so only the new exercises of the page are kept in
+	 * memory. The reader is closed.
+	 * 
+	 * The path of the next page, the total number of exercises and the IDs of
+	 * the exercises of the page are available with {@link #getNextPage()},
+	 * {@link #getTotalCount()} and {@link #getPageIds()} afterwards.
+	 * 
+	 * @param pageReader
+	 *            The page as JSON
+	 * @return The builders of the exercises of the page that do not exist yet
+	 * @throws JSONException
+	 *             if the JSON-data is malformed
+	 */
+	public List<ExerciseType.Builder> parsePage(Reader pageReader) throws JSONException, ErrorException {
+		List<ExerciseType.Builder> builderList = new ArrayList<ExerciseType.Builder>();
+		String nextPage = null;
+		boolean foundObjects = false;
+		int objectCount = 0;
+		mTotalCount = -1;
+		mPageIdList = new ArrayList<Integer>();
+
+		JsonReader reader = new JsonReader(pageReader);
+		try {
+			// the meta-object may be sent before or after the exercises
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String key = reader.nextName();
+				if (key.equals("objects")) {
+					foundObjects = true;
+					// parse each exercise of the JSON Array
+					reader.beginArray();
+					while (reader.hasNext()) {
+						ExerciseType.Builder builder = parseExercise(reader, mLocaleSparseArray, mMuscleSparseArray, mLicenseSparseArray);
+						if (builder != null) {
+							builderList.add(builder);
+						}
+						objectCount++;
+					}
+					reader.endArray();
+				} else if (key.equals("meta") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+					nextPage = parseMeta(reader);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (IOException e) {
+			throw toJSONException(e);
+		} catch (IllegalStateException e) {
+			throw toJSONException(e);
+		} catch (NumberFormatException e) {
+			throw toJSONException(e);
+		} finally {
+			closeQuietly(reader);
+		}
+		if (!foundObjects) {
+			throw new JSONException("No value for objects");
+		}
+
+		// an empty page is always the last one
+		mNextPage = objectCount > 0 ? nextPage : null;
+		return builderList;
+	}
+
+	/**
+	 * @return The path (relative to the host) of the page after the last parsed
+	 *         one, or null if it was the last page
+	 */
+	public String getNextPage() {
+		return mNextPage;
+	}
+
+	/**
+	 * @return The number of exercises on the server, as sent with the last
+	 *         parsed page, or -1 if the page did not contain it
+	 */
+	public int getTotalCount() {
+		return mTotalCount;
+	}
+
+	/**
+	 * @return The wger IDs of all exercises of the last parsed page, including
+	 *         the ones that already exist. Only known if the exercises are
+	 *         compared by their ID.
+	 */
+	public List<Integer> getPageIds() {
+		return mPageIdList;
+	}
+
+	private void addNewExercises(List<ExerciseType.Builder> builderList) {
+		for (ExerciseType.Builder builder : builderList) {
+			mNewExerciseList.add(builder.build());
+			mNewExerciseBuilderList.add(builder);
+		}
+	}
+
+	/**
+	 * Reads the meta-object of a page.
+	 * 
+	 * Example for meta JSON:
+	 * 
+	 * {"limit": 100, "next": "/api/v1/exercise/?limit=100&offset=100", "offset":
+	 * 0, "previous": null, "total_count": 250}
+	 * 
+	 * The total number of exercises is stored, see {@link #getTotalCount()}.
+	 * 
+	 * @return The path of the next page or null, if there is none
+	 */
+	private String parseMeta(JsonReader reader) throws IOException, JSONException {
+		String next = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			if (key.equals("next") && reader.peek() == JsonToken.STRING) {
+				next = reader.nextString();
+			} else if (key.equals("total_count") && reader.peek() == JsonToken.NUMBER) {
+				mTotalCount = reader.nextInt();
+			} else {
+				reader.skipValue();
 			}
-			
-			ExerciseType.Builder builder = new ExerciseType.Builder(name, ExerciseSource.SYNCED);
-			
-			// category (unused)
-			// String category = jsonExercise.getString("category");
-			
-			// comments (unused)
-			// JSONArray commentArray = jsonExercise.getJSONArray("comments");
-			// for (int k = 0; k < commentArray.length(); k++) {
-			//	String comment = commentArray.getString(k);
-			//}
-			
-			// description
-			String description = jsonExercise.getString("description");
-			builder.description(description);
-			
-			// id (unused)
-			//String id = jsonExercise.getString("id");
-			
-			// language
-			// the json-language String might look like this:
-			// '/api/v1/language/1/'
-			// only the number at the end is required
-			String language = jsonExercise.getString("language");
-			int languageNumber = getLastNumberOfJson(language);
-			
-
-			translationMap.put(localeSparseArray.get(languageNumber), name);
-			builder.translateMap(translationMap);
-			
-			// resource_uri (unused)
-			//String resource_uri = jsonExercise.getString("resource_uri");
-			
-
-			// muscles
-
-			JSONArray muscleArray = jsonExercise.getJSONArray("muscles");
-			for (int l = 0; l < muscleArray.length(); l++) {
-				String muscleString = muscleArray.getString(l);
-				Muscle muscle = muscleSparseArray.get(getLastNumberOfJson(muscleString));
-				muscleSet.add(muscle);
+		}
+		reader.endObject();
+
+		// some servers send the complete URL
+		if (next != null && next.contains("://")) {
+			try {
+				URI uri = new URI(next);
+				next = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+			} catch (URISyntaxException e) {
+				throw toJSONException(e);
 			}
-			builder.activatedMuscles(muscleSet);
-			
-			// licenses
-			// the json-language String might look like this:
-			// '/api/v1/license/1/'
-			// only the number at the end is required
-			
-			if(jsonExercise.has("license")){
-				int licenseNumber = getLastNumberOfJson(jsonExercise.getString("license"));
-				LicenseType licenseType = licenseSparseArray.get(licenseNumber);
-				String license_author = jsonExercise.getString("license_author");
-				Log.v(TAG, "license=" + licenseType + " license_author=" + license_author);
+		}
+		return next;
+	}
+
+	/**
+	 * Reads a single exercise from the JSON-Stream.
+	 * 
+	 * @return The builder of the exercise or null, if the exercise already
+	 *         exists (and has not changed)
+	 */
+	private ExerciseType.Builder parseExercise(JsonReader reader, SparseArray<Locale> localeSparseArray, SparseArray<Muscle> muscleSparseArray, SparseArray<LicenseType> licenseSparseArray) throws IOException, JSONException, ErrorException {
+		Integer id = null;
+		String name = null;
+		String description = null;
+		String language = null;
+		String license = null;
+		String license_author = null;
+		List<String> muscleList = new ArrayList<String>();
+		List<String> imageStringList = new ArrayList<String>();
+
+		// the order of the fields is not fixed, so all of them have to be read first
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
 			}
 
-			builder.activatedMuscles(muscleSet);
-			// images
+			if (key.equals("id")) {
+				id = reader.nextInt();
+			} else if (key.equals("name")) {
+				name = reader.nextString();
+			} else if (key.equals("description")) {
+				description = reader.nextString();
+			} else if (key.equals("language")) {
+				language = reader.nextString();
+			} else if (key.equals("muscles")) {
+				readStringArray(reader, muscleList);
+			} else if (key.equals("license")) {
+				license = reader.nextString();
+			} else if (key.equals("license_author")) {
+				license_author = reader.nextString();
+			} else if (key.equals("images")) {
+				readStringArray(reader, imageStringList);
+			} else {
+				// category, comments, resource_uri, ... (unused)
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
 
-			JSONArray imageArray = jsonExercise.getJSONArray("images");
-			for (int l = 0; l < imageArray.length(); l++) {
-				String imageString = imageArray.getString(l);
-				imageList.add(new File(imageString));
+		// check if exercise already exists
+		checkRequired(name, "name");
+		if (mReconciler != null) {
+			checkRequired(id, "id");
+			mPageIdList.add(id);
+			String hash = SyncReconciler.hash(name, description, language, join(muscleList), license, license_author, join(imageStringList));
+			SyncReconciler.State state = mReconciler.reconcile(id, name, hash);
+			if (state != SyncReconciler.State.ADDED && state != SyncReconciler.State.CHANGED) {
+				return null;
 			}
-			builder.imagePath(imageList);
-			
-			
-			mNewExerciseList.add(builder.build());
-			mNewExerciseBuilderList.add(builder);
-			translationMap.clear();
-			muscleSet.clear();
-			imageList.clear();
+		} else if (mDataProvider.exerciseExists(name)) {
+			return null;
+		}
+
+		ExerciseType.Builder builder = new ExerciseType.Builder(name, ExerciseSource.SYNCED);
+
+		// description
+		checkRequired(description, "description");
+		builder.description(description);
+
+		// language
+		// the json-language String might look like this:
+		// '/api/v1/language/1/'
+		// only the number at the end is required
+		checkRequired(language, "language");
+		Map<Locale, String> translationMap = new HashMap<Locale, String>();
+		translationMap.put(localeSparseArray.get(getLastNumberOfJson(language)), name);
+		builder.translateMap(translationMap);
+
+		// muscles
+		SortedSet<Muscle> muscleSet = new TreeSet<Muscle>();
+		for (String muscleString : muscleList) {
+			Muscle muscle = muscleSparseArray.get(getLastNumberOfJson(muscleString));
+			muscleSet.add(muscle);
 		}
+		builder.activatedMuscles(muscleSet);
 
+		// licenses
+		// the json-language String might look like this:
+		// '/api/v1/license/1/'
+		// only the number at the end is required
+		if (license != null) {
+			LicenseType licenseType = licenseSparseArray.get(getLastNumberOfJson(license));
+			Log.v(TAG, "license=" + licenseType + " license_author=" + license_author);
+		}
+
+		// images
+		List<File> imageList = new ArrayList<File>();
+		for (String imageString : imageStringList) {
+			imageList.add(new File(imageString));
+		}
+		builder.imagePath(imageList);
+
+		return builder;
 	}
 	
 	/**
@@ -194,15 +445,15 @@ public class WgerJSONParser {
 	}
 	
 	/**
-	 * Parses the JSON-language(locale)-String and returns an SparseArray that maps the
+	 * Parses the JSON-language(locale)-data and returns an SparseArray that maps the
 	 * language numbers to {@link Locale} objects
 	 */
-	private SparseArray<Locale> parseLanguages(String languagesJSONString) throws JSONException{
-		return parse(languagesJSONString, Locale.class);
+	public static SparseArray<Locale> parseLanguages(Reader languagesJSONReader) throws JSONException{
+		return parse(languagesJSONReader, Locale.class, null);
 	}
 	
 	/**
-	 * Parses the JSON-muscle-String and returns an SparseArray that maps the
+	 * Parses the JSON-muscle-data and returns an SparseArray that maps the
 	 * muscle numbers to {@link Muscle} objects
 	 * 
 	 * Example for muscle JSON:
@@ -211,69 +462,174 @@ public class WgerJSONParser {
 	 * "total_count": 15}, "objects": [{"id": 2, "is_front": true, "name":
 	 * "Anterior deltoid", "resource_uri": "/api/v1/muscle/2/"}]}
 	 * 
+	 * The muscles are looked up by name with the given {@link IDataProvider}.
 	 */
-	private SparseArray<Muscle> parseMuscles(String musclesJSONString) throws JSONException{
-		return parse(musclesJSONString, Muscle.class);
+	public static SparseArray<Muscle> parseMuscles(Reader musclesJSONReader, IDataProvider dataProvider) throws JSONException{
+		return parse(musclesJSONReader, Muscle.class, dataProvider);
 	}
 	
 	public static SparseArray<LicenseType> parseLicenses(String licenseJSONString) throws JSONException{
-		return parse(licenseJSONString, LicenseType.class);
+		return parse(new StringReader(licenseJSONString), LicenseType.class, mDataProvider);
+	}
+
+	/**
+	 * Parses the JSON-license-data and returns an SparseArray that maps the
+	 * license numbers to {@link LicenseType}s, which are looked up with the
+	 * given {@link IDataProvider}.
+	 */
+	public static SparseArray<LicenseType> parseLicenses(Reader licenseJSONReader, IDataProvider dataProvider) throws JSONException{
+		return parse(licenseJSONReader, LicenseType.class, dataProvider);
 	}
 	
 	/**
 	 * A generic parsing method for parsing JSON to SportsEquipment, Muscle or Locale.
+	 * The reader is closed. The dataProvider is not required for Locales.
 	 */
-	private static <T> SparseArray<T> parse(String jsonString, Class<T> c) throws JSONException{
-		JSONObject mainObject = new JSONObject(jsonString);
-		Log.d(TAG, "jsonString: " + mainObject.toString());
-		JSONArray mainArray = mainObject.getJSONArray("objects");
+	private static <T> SparseArray<T> parse(Reader jsonReader, Class<T> c, IDataProvider dataProvider) throws JSONException{
+		if(!c.equals(Muscle.class) && !c.equals(SportsEquipment.class) && !c.equals(Locale.class) && !c.equals(LicenseType.class)){
+			throw new IllegalStateException("parse(Reader, Class<T>, IDataProvider) cannot be applied for class: " + c.toString());
+		}
 
 		SparseArray<T> sparseArray = new SparseArray<T>();
 		
-		
+		JsonReader reader = new JsonReader(jsonReader);
+		try {
+			// parse each object of the JSON Array
+			beginObjects(reader);
+			while (reader.hasNext()) {
+				Integer id = null;
+				String name = null;
+				String short_name = null;
 
-		// parse each exercise of the JSON Array
-		for (int i = 0; i < mainArray.length(); i++) {
-			JSONObject singleObject = mainArray.getJSONObject(i);
-			
-			Integer id = singleObject.getInt("id");
-			Object parsedObject;
-			if(c.equals(Muscle.class)){
-				// handle Muscles
-				String name = singleObject.getString("name");
-				parsedObject = mDataProvider.getMuscleByName(name);
-
-				checkParsedObject(parsedObject, "Could not find Muscle: " + name);
-
-			}else if(c.equals(SportsEquipment.class)){
-				// handle SportsEquipment
-				String name = singleObject.getString("name");
-				parsedObject = mDataProvider.getEquipmentByName(name);
-
-				checkParsedObject(parsedObject, "Could not find SportsEquipment: " + name);
-
-			}else if(c.equals(Locale.class)){
-				// handle Locales
-				String short_name = singleObject.getString("short_name");
-				parsedObject = new Locale(short_name);	
-				
-				checkShortName(short_name);
-				
-			}else if(c.equals(LicenseType.class)){
-				// handle licenses
-				String short_name = singleObject.getString("short_name");
-				parsedObject = mDataProvider.getLicenseTypeByName(short_name);
-				checkShortName(short_name);
-			}else{
-				throw new IllegalStateException("parse(String, Class<T>) cannot be applied for class: " + c.toString());
-			}
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String key = reader.nextName();
+					if (reader.peek() == JsonToken.NULL) {
+						reader.nextNull();
+					} else if (key.equals("id")) {
+						id = reader.nextInt();
+					} else if (key.equals("name")) {
+						name = reader.nextString();
+					} else if (key.equals("short_name")) {
+						short_name = reader.nextString();
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+				checkRequired(id, "id");
+
+				Object parsedObject;
+				if(c.equals(Muscle.class)){
+					// handle Muscles
+					checkRequired(name, "name");
+					parsedObject = dataProvider.getMuscleByName(name);
+
+					checkParsedObject(parsedObject, "Could not find Muscle: " + name);
 
-			sparseArray.put(id, (T) parsedObject);
+				}else if(c.equals(SportsEquipment.class)){
+					// handle SportsEquipment
+					checkRequired(name, "name");
+					parsedObject = dataProvider.getEquipmentByName(name);
+
+					checkParsedObject(parsedObject, "Could not find SportsEquipment: " + name);
+
+				}else if(c.equals(Locale.class)){
+					// handle Locales
+					checkRequired(short_name, "short_name");
+					parsedObject = new Locale(short_name);	
+					
+					checkShortName(short_name);
+					
+				}else if(c.equals(LicenseType.class)){
+					// handle licenses
+					checkRequired(short_name, "short_name");
+					parsedObject = dataProvider.getLicenseTypeByName(short_name);
+					checkShortName(short_name);
+				}else{
+					// already checked above
+					throw new AssertionError();
+				}
+
+				sparseArray.put(id, (T) parsedObject);
+			}
+			endObjects(reader);
+		} catch (IOException e) {
+			throw toJSONException(e);
+		} catch (NumberFormatException e) {
+			throw toJSONException(e);
+		} catch (IllegalStateException e) {
+			throw toJSONException(e);
+		} finally {
+			closeQuietly(reader);
 		}
 		
 		return sparseArray;
 	}
 
+	/**
+	 * Moves the reader into the "objects"-array of a wger response, the
+	 * "meta"-object is skipped.
+	 */
+	private static void beginObjects(JsonReader reader) throws IOException, JSONException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("objects")) {
+				reader.beginArray();
+				return;
+			}
+			reader.skipValue();
+		}
+		throw new JSONException("No value for objects");
+	}
+
+	/**
+	 * Leaves the "objects"-array and skips the rest of the wger response.
+	 */
+	private static void endObjects(JsonReader reader) throws IOException {
+		reader.endArray();
+		while (reader.hasNext()) {
+			reader.nextName();
+			reader.skipValue();
+		}
+		reader.endObject();
+	}
+
+	private static String join(List<String> list) {
+		StringBuilder builder = new StringBuilder();
+		for (String s : list) {
+			builder.append(s).append('\n');
+		}
+		return builder.toString();
+	}
+
+	private static void readStringArray(JsonReader reader, List<String> list) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			list.add(reader.nextString());
+		}
+		reader.endArray();
+	}
+
+	private static void checkRequired(Object value, String key) throws JSONException {
+		if (value == null) {
+			throw new JSONException("No value for " + key);
+		}
+	}
+
+	private static JSONException toJSONException(Exception e) {
+		Log.e(TAG, "Could not parse JSON.", e);
+		return new JSONException(e.getMessage());
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			Log.e(TAG, "Could not close reader.", e);
+		}
+	}
+
 	private static void checkShortName(String short_name) {
 		if(isShortNameEmpty(short_name)) {
 			Log.e(TAG, "Error, no short_name=" + short_name);
@@ -195,7 +195,7 @@ public class DialogFragmentAddEntry extends DialogFragment {
 						if (setParameters.isEmpty()) {
 							if (mFSet != null) {
 								// delete existing FSet
-								boolean success = mTrainingEntry.getFSetList().remove(mFSet);
+								boolean success = mTrainingEntry.remove(mFSet);
 								checkSuccess(success);
 							} else {
 								// do nothing
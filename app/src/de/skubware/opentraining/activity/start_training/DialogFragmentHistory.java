@@ -25,6 +25,7 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.DialogFragment;
 import android.util.Log;
@@ -36,6 +37,7 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -60,9 +62,18 @@ public class DialogFragmentHistory extends DialogFragment {
 	/** ID for argument ({@link FitnessExercise}) */
 	public static String ARG_ID_EXERCISE = "fex";
 
+	/** Number of {@link TrainingEntry}s that are loaded at once */
+	private static final int PAGE_SIZE = 50;
+
 	/** Currently displayed {@link FitnessExercise}. */
 	private FitnessExercise mFex;
 
+	/** The chart that shows the history */
+	private LineChart mLineChart;
+
+	/** Reads the history, which may be slow for long histories */
+	private LoadHistoryTask mLoadHistoryTask;
+
 	/**
 	 * Create a new instance of DialogFragmentHistory.
 	 * 
@@ -98,11 +109,10 @@ public class DialogFragmentHistory extends DialogFragment {
 
 
 
-	@SuppressLint("SimpleDateFormat")
 	@Override
 	public Dialog onCreateDialog(Bundle savedInstanceState) {
 
-        if( mFex.getTrainingEntryList().isEmpty() ){
+        if( mFex.getTrainingEntryCount() == 0 ){
             return new AlertDialog.Builder(getActivity()).setMessage(getString(R.string.no_other_training_entries)).setPositiveButton(getString(android.R.string.ok), new OnClickListener(){
                         @Override
                         public void onClick(DialogInterface dialog, int which) {dialog.dismiss();
@@ -118,58 +128,11 @@ public class DialogFragmentHistory extends DialogFragment {
         LayoutInflater inflater = LayoutInflater.from(getActivity());
 		final View v = inflater.inflate(R.layout.dialog_training_history_layout, null);
 
+        mLineChart = (LineChart) v.findViewById(R.id.chart);
 
-        LineChart mLineChart = (LineChart) v.findViewById(R.id.chart);
-
-
-        ArrayList<LineDataSet> dataSets = new ArrayList<LineDataSet>();
-
-        ArrayList<Entry> durationList = new ArrayList<Entry>();
-        ArrayList<Entry> weightList = new ArrayList<Entry>();
-        ArrayList<Entry> repList = new ArrayList<Entry>();
-
-        ArrayList<String> xVals = new ArrayList<String>();
-
-        int setParameterNumber = 0;
-        DateFormat dateformat = new SimpleDateFormat( "dd.MM" );
-        try {
-            for(TrainingEntry entry:mFex.getTrainingEntryList()){
-                int setNumber = 0;
-
-                    for(FSet fset:entry.getFSetList()){
-                        // skip sets that haven't been done
-                        if(!entry.hasBeenDone(fset))
-                            continue;
-
-                        // x value: date
-                        xVals.add(dateformat.format(entry.getDate()) + " ("  + setNumber + ")");
-
-                        // y values: weight, rep, duration
-                        iterateOnParameters(durationList, weightList, repList, setParameterNumber, fset);
-                        setParameterNumber++;
-                        setNumber++;
-                    }
-            }
-        } catch (ErrorException e) {
-            Log.v("DialogFragmentHistory", e.getMessage().toString());
-        }
-
-        LineDataSet dataSetWeight = new LineDataSet(weightList, getString(R.string.weight));
-        dataSetWeight.setColors(new int[] { android.R.color.holo_blue_light }, getActivity());
-        LineDataSet dataSetRep = new LineDataSet(repList, getString(R.string.repetitions));
-        dataSetRep.setColors(new int[] { android.R.color.holo_red_light }, getActivity());
-        LineDataSet dataSetDur = new LineDataSet(durationList, getString(R.string.duration));
-        dataSetDur.setColors(new int[] { android.R.color.holo_green_light }, getActivity());
-
-        dataSets.add(dataSetWeight);
-        dataSets.add(dataSetRep);
-        dataSets.add(dataSetDur);
-
-
-        LineData data = new LineData(xVals, dataSets);
-        mLineChart.setData(data);
-        mLineChart.setDescription(getString(R.string.history));
-
+        // older entries may have to be read from the workout file
+        mLoadHistoryTask = new LoadHistoryTask();
+        mLoadHistoryTask.execute();
 
 		return new AlertDialog.Builder(getActivity())
 				.setView(v)
@@ -177,6 +140,92 @@ public class DialogFragmentHistory extends DialogFragment {
 				.create();
 	}
 
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		if (mLoadHistoryTask != null) {
+			mLoadHistoryTask.cancel(false);
+		}
+	}
+
+	/** The values of the chart */
+	private static class History {
+		final ArrayList<Entry> mDurationList = new ArrayList<Entry>();
+		final ArrayList<Entry> mWeightList = new ArrayList<Entry>();
+		final ArrayList<Entry> mRepList = new ArrayList<Entry>();
+		final ArrayList<String> mXVals = new ArrayList<String>();
+	}
+
+	/**
+	 * Reads the history in the background and shows it in the chart
+	 * afterwards.
+	 */
+	private class LoadHistoryTask extends AsyncTask<Void, Void, History> {
+
+		@SuppressLint("SimpleDateFormat")
+		@Override
+		protected History doInBackground(Void... params) {
+			History history = new History();
+
+			int setParameterNumber = 0;
+			DateFormat dateformat = new SimpleDateFormat("dd.MM");
+			try {
+				// older entries may not have been loaded, so the history is read page by page
+				int count = mFex.getTrainingEntryCount();
+				for (int page = 0; page < count; page += PAGE_SIZE) {
+					for (TrainingEntry entry : mFex.getTrainingEntries(page, Math.min(count, page + PAGE_SIZE))) {
+						int setNumber = 0;
+
+						for (FSet fset : entry.getFSetList()) {
+							// skip sets that haven't been done
+							if (!entry.hasBeenDone(fset))
+								continue;
+
+							// x value: date
+							history.mXVals.add(dateformat.format(entry.getDate()) + " (" + setNumber + ")");
+
+							// y values: weight, rep, duration
+							iterateOnParameters(history.mDurationList, history.mWeightList, history.mRepList,
+									setParameterNumber, fset);
+							setParameterNumber++;
+							setNumber++;
+						}
+					}
+				}
+			} catch (ErrorException e) {
+				Log.v("DialogFragmentHistory", e.getMessage().toString());
+			} catch (IOException e) {
+				Log.e(TAG, "Could not load the older training entries.", e);
+			}
+			return history;
+		}
+
+		@Override
+		protected void onPostExecute(History history) {
+			if (!isAdded()) {
+				return;
+			}
+
+			ArrayList<LineDataSet> dataSets = new ArrayList<LineDataSet>();
+
+			LineDataSet dataSetWeight = new LineDataSet(history.mWeightList, getString(R.string.weight));
+			dataSetWeight.setColors(new int[] { android.R.color.holo_blue_light }, getActivity());
+			LineDataSet dataSetRep = new LineDataSet(history.mRepList, getString(R.string.repetitions));
+			dataSetRep.setColors(new int[] { android.R.color.holo_red_light }, getActivity());
+			LineDataSet dataSetDur = new LineDataSet(history.mDurationList, getString(R.string.duration));
+			dataSetDur.setColors(new int[] { android.R.color.holo_green_light }, getActivity());
+
+			dataSets.add(dataSetWeight);
+			dataSets.add(dataSetRep);
+			dataSets.add(dataSetDur);
+
+			LineData data = new LineData(history.mXVals, dataSets);
+			mLineChart.setData(data);
+			mLineChart.setDescription(getString(R.string.history));
+			mLineChart.invalidate();
+		}
+	}
+
     private void iterateOnParameters(ArrayList<Entry> durationList, ArrayList<Entry> weightList, ArrayList<Entry> repList, int setParameterNumber, FSet fset) {
         for(SetParameter parameter:fset.getSetParameters()){
             Entry e = new Entry(parameter.getValue(), setParameterNumber);
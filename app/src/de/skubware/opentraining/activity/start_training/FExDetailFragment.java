@@ -43,6 +43,7 @@ import de.skubware.opentraining.activity.create_workout.ExerciseDetailOnGestureL
 import de.skubware.opentraining.basic.*;
 import de.skubware.opentraining.db.DataHelper;
 import de.skubware.opentraining.db.DataProvider;
+import de.skubware.opentraining.db.WorkoutSaveQueue;
 
 /**
  * A fragment representing a single Exercise detail screen. This fragment is
@@ -167,6 +168,13 @@ public class FExDetailFragment extends Fragment implements DialogFragmentAddEntr
 		updateTrainingEntries();
 	}
 
+	@Override
+	public void onPause() {
+		super.onPause();
+		// saves are delayed, make sure nothing is lost when the user leaves
+		WorkoutSaveQueue.INSTANCE.flush();
+	}
+
 	@Override
 	public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
 		inflater.inflate(R.menu.fex_detail_menu, menu);
@@ -287,7 +295,7 @@ public class FExDetailFragment extends Fragment implements DialogFragmentAddEntr
 		mWorkout.updateFitnessExercise(fitnessExercise);
 
 		DataProvider dataProvider = new DataProvider(getActivity());
-		dataProvider.saveWorkoutAsync(mWorkout);
+		dataProvider.saveWorkoutAsync(mWorkout, fitnessExercise);
 
 		FExListFragment fragment = (FExListFragment) getFragmentManager().findFragmentById(R.id.exercise_list);
 		if (fragment != null) {
@@ -191,7 +191,7 @@ RecoveryTimerManager.INSTANCE.startSetRecoveryTimer(mActivity);
 	}
 
 	public void remove(int position) throws ErrorException {
-		mTrainingEntry.getFSetList().remove(position);
+		mTrainingEntry.remove(mTrainingEntry.getFSetList().get(position));
 		trainingEntryEdited();
 
 		if(mFEx.isTrainingEntryFinished(mTrainingEntry)){
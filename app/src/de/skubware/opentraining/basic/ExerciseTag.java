@@ -49,4 +49,13 @@ public class ExerciseTag extends Translatable {
 		descriptionMap.put(locale, description);
 	}
 
+	/**
+	 * Returns the descriptions of this tag for each locale.
+	 *
+	 * @return An unmodifiable map from each locale to its description
+	 */
+	public Map<Locale, String> getDescriptionMap() {
+		return java.util.Collections.unmodifiableMap(descriptionMap);
+	}
+
 }
\ No newline at end of file
@@ -306,6 +306,9 @@ public final class ExerciseType implements Comparable<ExerciseType>, IExercise,
 
 	@Override
 	public File getIconPath() {
+		if (this.iconPath == null) {
+			return null;
+		}
 		return new File(this.iconPath.toString());
 	}
 
@@ -384,10 +387,18 @@ public final class ExerciseType implements Comparable<ExerciseType>, IExercise,
 		return this.name.equalsIgnoreCase(e.name);
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * Consistent with {@link #equals(Object)}, so the case of the name is
+	 * ignored. The characters are normalized like
+	 * {@link String#equalsIgnoreCase(String)} does.
+	 */
 	@Override
 	public int hashCode() {
-		return this.name.hashCode();
+		int h = 0;
+		for (int i = 0; i < this.name.length(); i++) {
+			h = 31 * h + Character.toLowerCase(Character.toUpperCase(this.name.charAt(i)));
+		}
+		return h;
 	}
 
 	/** {@inheritDoc} */
@@ -21,6 +21,7 @@
 package de.skubware.opentraining.basic;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
@@ -48,6 +49,13 @@ public class FitnessExercise implements IExercise, Serializable {
 	/** Default serialVersionUID */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Number of recent TrainingEntries that are held in memory after loading a
+	 * workout. Older entries are loaded on demand, see
+	 * {@link #getTrainingEntries(int, int)}.
+	 */
+	public static final int RECENT_TRAINING_ENTRIES = 20;
+
 	private ExerciseType mExerciseType;
 	private ArrayList<FSet> mFSetList = new ArrayList<FSet>();
 
@@ -60,6 +68,15 @@ public class FitnessExercise implements IExercise, Serializable {
 	 */
 	private ArrayList<TrainingEntry> mTrainingEntryList = new ArrayList<TrainingEntry>();
 
+	/**
+	 * Number of older TrainingEntries that precede {@link #mTrainingEntryList}
+	 * but have not been loaded.
+	 */
+	private int mUnloadedTrainingEntryCount = 0;
+
+	/** Loads the older TrainingEntries, null if all entries are loaded */
+	private TrainingEntrySource mTrainingEntrySource;
+
 	/**
 	 * Constructor of this class
 	 *
@@ -91,7 +108,10 @@ public class FitnessExercise implements IExercise, Serializable {
 	}
 
 	/**
-	 * Getter for the list with TrainingEntries.
+	 * Getter for the list with the TrainingEntries that are held in memory.
+	 * These are the most recent entries, older ones may not have been loaded
+	 * (see {@link #getUnloadedTrainingEntryCount()}). If there are any
+	 * entries, at least the last one is contained.
 	 *
 	 * @return A list with TrainingEntries
 	 */
@@ -99,6 +119,130 @@ public class FitnessExercise implements IExercise, Serializable {
 		return mTrainingEntryList;
 	}
 
+	/**
+	 * @return The number of all TrainingEntries, including the ones that have
+	 *         not been loaded
+	 */
+	public int getTrainingEntryCount() {
+		return mUnloadedTrainingEntryCount + mTrainingEntryList.size();
+	}
+
+	/**
+	 * @return The number of older TrainingEntries that have not been loaded.
+	 *         The first entry of {@link #getTrainingEntryList()} has this
+	 *         index in the complete history.
+	 */
+	public int getUnloadedTrainingEntryCount() {
+		return mUnloadedTrainingEntryCount;
+	}
+
+	/**
+	 * Sets the older TrainingEntries that precede the entries in memory but
+	 * have not been loaded. Should only be used for parsing.
+	 *
+	 * @param count
+	 *            The number of unloaded entries
+	 * @param source
+	 *            The source for loading them, may only be null if count is 0
+	 */
+	public void setUnloadedTrainingEntries(int count, TrainingEntrySource source) {
+		if (count < 0 || (count > 0 && source == null)) {
+			throw new IllegalArgumentException("Invalid unloaded TrainingEntries: " + count + ", " + source);
+		}
+
+		mUnloadedTrainingEntryCount = count;
+		mTrainingEntrySource = count > 0 ? source : null;
+	}
+
+	/**
+	 * @return The source of the unloaded TrainingEntries, null if there are
+	 *         none
+	 */
+	public TrainingEntrySource getTrainingEntrySource() {
+		return mTrainingEntrySource;
+	}
+
+	/**
+	 * Loads the unloaded TrainingEntries into memory, so that this exercise
+	 * does not depend on its {@link TrainingEntrySource} any more (e.g.
+	 * because the file the entries are loaded from will be deleted).
+	 *
+	 * @throws IOException
+	 *             if the entries could not be loaded
+	 */
+	public void loadTrainingEntries() throws IOException {
+		if (mUnloadedTrainingEntryCount == 0) {
+			return;
+		}
+
+		mTrainingEntryList.addAll(0, getTrainingEntries(0, mUnloadedTrainingEntryCount));
+		setUnloadedTrainingEntries(0, null);
+	}
+
+	/**
+	 * Returns a page of the complete history. Entries that have not been
+	 * loaded are loaded from the {@link TrainingEntrySource}, but are not kept
+	 * in memory: they must not be changed, as the changes would not be saved.
+	 *
+	 * @param from
+	 *            The index of the first entry (inclusive)
+	 * @param to
+	 *            The index of the last entry (exclusive)
+	 *
+	 * @return The entries in the order of the history
+	 *
+	 * @throws IOException
+	 *             if the unloaded entries could not be loaded
+	 */
+	public List<TrainingEntry> getTrainingEntries(int from, int to) throws IOException {
+		if (from < 0 || to > getTrainingEntryCount() || from > to) {
+			throw new IndexOutOfBoundsException("Invalid range: " + from + " - " + to + ", size: "
+					+ getTrainingEntryCount());
+		}
+
+		List<TrainingEntry> entryList = new ArrayList<TrainingEntry>(to - from);
+		if (from < mUnloadedTrainingEntryCount) {
+			int unloadedTo = Math.min(to, mUnloadedTrainingEntryCount);
+			List<TrainingEntry> loaded = mTrainingEntrySource.load(from, unloadedTo);
+			if (loaded.size() != unloadedTo - from) {
+				throw new IOException("Expected " + (unloadedTo - from) + " TrainingEntries, but loaded "
+						+ loaded.size());
+			}
+			entryList.addAll(loaded);
+		}
+		if (to > mUnloadedTrainingEntryCount) {
+			entryList.addAll(mTrainingEntryList.subList(Math.max(0, from - mUnloadedTrainingEntryCount), to
+					- mUnloadedTrainingEntryCount));
+		}
+		return entryList;
+	}
+
+	/**
+	 * Creates a copy whose sets and TrainingEntries can be changed
+	 * independently of this exercise. The {@link ExerciseType} and the
+	 * {@link FSet}s are shared, the unloaded TrainingEntries are loaded from
+	 * the same {@link TrainingEntrySource}.
+	 * 
+	 * @return The copy
+	 */
+	public FitnessExercise copy() {
+		FitnessExercise copy;
+		try {
+			copy = new FitnessExercise(mExerciseType);
+		} catch (ErrorException e) {
+			// cannot happen, this exercise has an ExerciseType
+			throw new IllegalStateException(e);
+		}
+		copy.mFSetList.addAll(mFSetList);
+		copy.mCustomName = mCustomName;
+		for (TrainingEntry entry : mTrainingEntryList) {
+			copy.mTrainingEntryList.add(entry.copy());
+		}
+		copy.mUnloadedTrainingEntryCount = mUnloadedTrainingEntryCount;
+		copy.mTrainingEntrySource = mTrainingEntrySource;
+		return copy;
+	}
+
 	@SuppressWarnings("deprecation")
 	TrainingEntry addTrainingEntry(Date date) {
 		TrainingEntry entry = new TrainingEntry(date);
@@ -152,7 +296,8 @@ public class FitnessExercise implements IExercise, Serializable {
 
 	/**
 	 * Returns a String that represents this object. Should only be used for
-	 * debugging.
+	 * debugging. Contains only the TrainingEntries in memory, the unloaded
+	 * ones are just counted.
 	 *
 	 * @return A String that represents this object.
 	 */
@@ -164,6 +309,10 @@ public class FitnessExercise implements IExercise, Serializable {
 		for (FSet set : mFSetList) {
 			builder.append("\n FSet: " + set.toString());
 		}
+		// the unloaded entries are not read, this is called for logging
+		if (mUnloadedTrainingEntryCount > 0) {
+			builder.append("\n Unloaded TrainingEntries: " + mUnloadedTrainingEntryCount);
+		}
 		for (TrainingEntry entry : mTrainingEntryList) {
 			builder.append("\n TrainingEntry: " + entry.toDebugString());
 		}
@@ -50,7 +50,11 @@ public class TrainingEntry implements Comparable<TrainingEntry>, Serializable {
 	/** List with all {@link FSet}s. May be empty, but never null. */
 	private List<FSet> mFSetList = new ArrayList<FSet>();
 
-	/** Saves whether a FSet has been done or not. Default value is true. */
+	/**
+	 * Saves whether a FSet has been done or not. Default value is true. The
+	 * FSets are compared by identity, so this map is also the index for
+	 * finding out if a FSet belongs to this entry.
+	 */
 	private IdentityHashMap<FSet,Boolean> mSetBeenDoneMap = new IdentityHashMap<FSet,Boolean>();
 	
 	
@@ -96,7 +100,8 @@ public class TrainingEntry implements Comparable<TrainingEntry>, Serializable {
 	}
 
 	/**
-	 * Removes the given FSet if possible.
+	 * Removes the given FSet if possible. If there are several equal FSets,
+	 * the given instance is removed.
 	 * 
 	 * @param set
 	 *            The FSet to remove.
@@ -104,7 +109,14 @@ public class TrainingEntry implements Comparable<TrainingEntry>, Serializable {
 	 * @return True if operation was successful
 	 */
 	public boolean remove(FSet set) {
-		mSetBeenDoneMap.remove(set);
+		if (mSetBeenDoneMap.remove(set) != null) {
+			for (int i = 0; i < mFSetList.size(); i++) {
+				if (mFSetList.get(i) == set) {
+					mFSetList.remove(i);
+					return true;
+				}
+			}
+		}
 
 		return mFSetList.remove(set);
 	}
@@ -137,6 +149,19 @@ public class TrainingEntry implements Comparable<TrainingEntry>, Serializable {
 		this.mDate = date;
 	}
 
+	/**
+	 * Creates a copy that can be changed independently of this entry. The
+	 * {@link FSet}s are shared, as they cannot be changed.
+	 * 
+	 * @return The copy
+	 */
+	TrainingEntry copy() {
+		TrainingEntry copy = new TrainingEntry(mDate == null ? null : new Date(mDate.getTime()));
+		copy.mFSetList.addAll(mFSetList);
+		copy.mSetBeenDoneMap.putAll(mSetBeenDoneMap);
+		return copy;
+	}
+
 	/** Returns the comparison of the dates of the two TrainingEntries. */
 	@Override
 	public int compareTo(TrainingEntry another) {
@@ -176,11 +201,12 @@ public class TrainingEntry implements Comparable<TrainingEntry>, Serializable {
 	 * @throws ErrorException if the set is not part of this TrainingEntry
 	 */
 	public boolean hasBeenDone(FSet set) throws ErrorException{
-		if(!mFSetList.contains(set)) {
+		Boolean done = mSetBeenDoneMap.get(set);
+		if(done == null) {
 			throw new ErrorException("No such key: " + set.toString());
 		}
 				
-		return mSetBeenDoneMap.get(set);
+		return done;
 	}
 	
 	/**
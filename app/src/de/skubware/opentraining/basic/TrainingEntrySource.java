@@ -0,0 +1,55 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.basic;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Loads the older {@link TrainingEntry}s of a {@link FitnessExercise}, which
+ * are not held in memory.
+ * 
+ * The source is serialized together with the {@link FitnessExercise}, so it
+ * must not refer to objects that cannot be serialized (like a Context).
+ * 
+ * @see FitnessExercise#getTrainingEntries(int, int)
+ */
+public interface TrainingEntrySource extends Serializable {
+
+	/**
+	 * Loads the training entries in the given range. The entries are newly
+	 * created objects, changing them does not change the stored history.
+	 * 
+	 * @param from
+	 *            The index of the first entry (inclusive)
+	 * @param to
+	 *            The index of the last entry (exclusive)
+	 * 
+	 * @return The entries, in the order of the history
+	 * 
+	 * @throws IOException
+	 *             if the entries could not be loaded
+	 */
+	public List<TrainingEntry> load(int from, int to) throws IOException;
+
+}
@@ -117,6 +117,36 @@ public abstract class Translatable implements Comparable<Translatable>, Serializ
 		return false;
 	}
 
+	/**
+	 * Creates and returns a set containing all names of this object for all
+	 * locales. This includes the lower case variants that are stored by
+	 * {@link #addNames(Locale, String...)}.
+	 *
+	 * @return A set containing all names of this object.
+	 */
+	public Set<String> getAlternativeNames() {
+		Set<String> names = new HashSet<String>();
+		for (Set<String> nameSet : nameMap.values()) {
+			names.addAll(nameSet);
+		}
+
+		return names;
+	}
+
+	/**
+	 * Returns the names of this object for each locale.
+	 *
+	 * @return An unmodifiable map from each locale to its names
+	 */
+	public Map<Locale, Set<String>> getNameMap() {
+		Map<Locale, Set<String>> map = new HashMap<Locale, Set<String>>();
+		for (Locale locale : nameMap.keySet()) {
+			map.put(locale, java.util.Collections.unmodifiableSet(nameMap.get(locale)));
+		}
+
+		return java.util.Collections.unmodifiableMap(map);
+	}
+
 	/**
 	 * Returns the (localized) name.
 	 * 
@@ -22,14 +22,19 @@ package de.skubware.opentraining.basic;
 
 import android.util.Log;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import de.skubware.opentraining.Exceptions.ErrorException;
 
@@ -40,6 +45,9 @@ import de.skubware.opentraining.Exceptions.ErrorException;
  * It is possible to iterate through the {@code FitnessExercises} and to add new
  * ones.
  * 
+ * Each workout has an ID that never changes, not even if the workout is
+ * renamed. The ID identifies the workout in the storage (e.g. the file name).
+ * 
  * @author Christian Skubich
  * 
  */
@@ -55,10 +63,21 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 */
 	public static int DEFAULT_EMPTYROWS = 8;
 
+	private final String id;
 	private String name;
 	private int emptyRows = DEFAULT_EMPTYROWS;
 	private ArrayList<FitnessExercise> fitnessExercises = new ArrayList<FitnessExercise>();
 
+	/**
+	 * The position of each ExerciseType in {@link #fitnessExercises}, so the
+	 * FitnessExercise of an ExerciseType can be found without searching the
+	 * list. Built on demand, null if it has to be rebuilt.
+	 */
+	private transient Map<ExerciseType, Integer> exerciseIndex;
+
+	/** Size of {@link #fitnessExercises} when the index was built or updated */
+	private transient int indexedSize;
+
 	/**
 	 * Constructor of this class.
 	 * 
@@ -72,11 +91,31 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 * 
 	 */
 	public Workout(String name, Collection<FitnessExercise> fExes) throws ErrorException {
-		if (name == null || name.replaceAll(" ", "").equals("") || fExes == null || fExes.isEmpty() || fExes.contains(null)) {
+		this(createId(), name, fExes);
+	}
+
+	/**
+	 * Constructor for a workout that already has an ID, e.g. because it has
+	 * been stored before. Have a look at @see #Workout(String,
+	 * Collection<FitnessExercise>) for more information.
+	 * 
+	 * @param id
+	 *            The ID of the workout, see {@link #getId()}
+	 * @param name
+	 *            The name of the workout
+	 * @param fExes
+	 *            The FitnessExercises of the workout
+	 * 
+	 * @throws ErrorException
+	 *             if any argument is null or empty
+	 */
+	public Workout(String id, String name, Collection<FitnessExercise> fExes) throws ErrorException {
+		if (id == null || id.length() == 0 || name == null || name.replaceAll(" ", "").equals("") || fExes == null || fExes.isEmpty() || fExes.contains(null)) {
 			throw new ErrorException();
 		}
 
 		// Assign given values
+		this.id = id;
 		this.name = name;
 		this.fitnessExercises = new ArrayList<FitnessExercise>();
 		this.fitnessExercises.addAll(fExes);
@@ -112,7 +151,8 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 * @see java.util.List#contains(Object)
 	 */
 	public boolean contains(FitnessExercise fEx) {
-		return this.fitnessExercises.contains(fEx);
+		int index = indexOf(fEx.getExType());
+		return index >= 0 && this.fitnessExercises.get(index).equals(fEx);
 	}
 
 	/** Adds a new TrainingEntriy to each FitnessExercise in this Workout. */
@@ -128,13 +168,46 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 * @return A set of dates, for which training entries do exist.
 	 */
 
+	/**
+	 * Loads the TrainingEntries of all FitnessExercises into memory.
+	 * 
+	 * @throws IOException
+	 *             if the entries could not be loaded
+	 * 
+	 * @see FitnessExercise#loadTrainingEntries()
+	 */
+	public void loadTrainingEntries() throws IOException {
+		for (FitnessExercise fEx : fitnessExercises) {
+			fEx.loadTrainingEntries();
+		}
+	}
+
 	/**
 	 * Checks if there are TrainingEntries for the FitnessExercises.
 	 * 
 	 * @return True if the FitnessExercises have at least one TrainingEntry
 	 */
 	public boolean hasTrainingEntries() {
-		return this.fitnessExercises.get(0).getTrainingEntryList().size() > 0;
+		return this.fitnessExercises.get(0).getTrainingEntryCount() > 0;
+	}
+
+	/**
+	 * Creates a new, unique ID for a workout.
+	 * 
+	 * @return The new ID
+	 */
+	public static String createId() {
+		return UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Getter for the ID. The ID is unique and does not change during the
+	 * lifetime of the workout.
+	 * 
+	 * @return The ID of the workout
+	 */
+	public String getId() {
+		return this.id;
 	}
 
 	/**
@@ -177,13 +250,13 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 */
 	public void addFitnessExercise(FitnessExercise fEx) {
 		ExerciseType exType = fEx.getExType();
-		for (FitnessExercise ex : this.getFitnessExercises()) {
-			if (ex.getExType().equals(exType)) {
-				throw new IllegalArgumentException("There is already an Exercise with the ExerciseType: " + exType.toString());
-			}
+		if (indexOf(exType) >= 0) {
+			throw new IllegalArgumentException("There is already an Exercise with the ExerciseType: " + exType.toString());
 		}
 
 		this.fitnessExercises.add(fEx);
+		this.exerciseIndex.put(exType, this.fitnessExercises.size() - 1);
+		this.indexedSize = this.fitnessExercises.size();
 	}
 
 	/**
@@ -193,7 +266,12 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 *            The FitnessExercise to remove
 	 */
 	public void removeFitnessExercise(FitnessExercise fEx) {
-		this.fitnessExercises.remove(fEx);
+		int index = indexOf(fEx.getExType());
+		if (index >= 0 && this.fitnessExercises.get(index).equals(fEx)) {
+			this.fitnessExercises.remove(index);
+			// the following exercises have moved
+			this.exerciseIndex = null;
+		}
 	}
 
 	/**
@@ -207,29 +285,27 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	 */
 	public void updateFitnessExercise(FitnessExercise changedFEx) {
 		Log.d(TAG, "updateFitnessExercise(), changedFEx: " + changedFEx.toDebugString());
-		FitnessExercise oldFex = null;
-		for (FitnessExercise fEx : this.fitnessExercises) {
-			// this comparison relies on the fact that each Workout can only
-			// contain each ExerciseType once
-			if (fEx.getExType().equals(changedFEx.getExType())) {
-				oldFex = changedFEx;
-				int oldIndex = fitnessExercises.indexOf(fEx);
-				fitnessExercises.remove(oldIndex);
-				fitnessExercises.add(oldIndex, changedFEx);
-				break;
-			}
-		}
-
-		if (oldFex == null) {
+		// this relies on the fact that each Workout can only contain each
+		// ExerciseType once
+		int oldIndex = indexOf(changedFEx.getExType());
+		if (oldIndex < 0) {
 			throw new IllegalArgumentException("FitnessExercise: " + changedFEx.toString() + " is not contained in this Workout: "
 					+ this.toString());
 		}
 
+		fitnessExercises.set(oldIndex, changedFEx);
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * Compares the content of the workouts: two workouts are equal if they
+	 * have the same name and the same FitnessExercises (in any order). The ID
+	 * is not compared, use {@link #getId()} for the identity of a workout.
+	 */
 	@Override
 	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
 		if (!(o instanceof Workout)) {
 			return false;
 		}
@@ -245,16 +321,8 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 			return false;
 		}
 
-		// FitnessExercise check
-		if (w.getFitnessExercises().containsAll(this.fitnessExercises)) {
-			return false;
-		}
-		if (this.fitnessExercises.containsAll(w.getFitnessExercises())) {
-			return true;
-		} else {
-			return false;
-		}
-
+		// FitnessExercise check, hash sets instead of comparing every pair
+		return new HashSet<FitnessExercise>(this.fitnessExercises).equals(new HashSet<FitnessExercise>(w.getFitnessExercises()));
 	}
 
 	/** {@inheritDoc} */
@@ -288,15 +356,52 @@ public class Workout implements Iterable<FitnessExercise>, Serializable {
 	}
 
 	public void switchExercises(FitnessExercise first, FitnessExercise second) {
-		if (!this.fitnessExercises.contains(first) || !this.fitnessExercises.contains(second)) {
+		int idxFirst = indexOf(first.getExType());
+		int idxSecond = indexOf(second.getExType());
+		if (idxFirst < 0 || idxSecond < 0 || !this.fitnessExercises.get(idxFirst).equals(first)
+				|| !this.fitnessExercises.get(idxSecond).equals(second)) {
 			throw new AssertionError("FitnessExercise does not exist in workout");
 		}
 
-		int idxFirst = this.fitnessExercises.indexOf(first);
-		int idxSecond = this.fitnessExercises.indexOf(second);
-
 		Collections.swap(fitnessExercises, idxFirst, idxSecond);
+		this.exerciseIndex.put(first.getExType(), idxSecond);
+		this.exerciseIndex.put(second.getExType(), idxFirst);
+	}
+
+	/**
+	 * Finds the position of the FitnessExercise with the given ExerciseType.
+	 * Afterwards {@link #exerciseIndex} is valid.
+	 * 
+	 * @param exType
+	 *            The ExerciseType to look for
+	 * 
+	 * @return The position in {@link #fitnessExercises} or -1, if there is no
+	 *         such FitnessExercise
+	 */
+	private int indexOf(ExerciseType exType) {
+		// the list is public, so it may have been changed without this class
+		if (this.exerciseIndex == null || this.indexedSize != this.fitnessExercises.size()) {
+			rebuildExerciseIndex();
+		}
+
+		Integer index = this.exerciseIndex.get(exType);
+		if (index != null && !this.fitnessExercises.get(index).getExType().equals(exType)) {
+			rebuildExerciseIndex();
+			index = this.exerciseIndex.get(exType);
+		}
+		return index == null ? -1 : index;
+	}
 
+	private void rebuildExerciseIndex() {
+		this.exerciseIndex = new HashMap<ExerciseType, Integer>();
+		for (int i = 0; i < this.fitnessExercises.size(); i++) {
+			ExerciseType exType = this.fitnessExercises.get(i).getExType();
+			// the first one wins, like a linear search would do
+			if (!this.exerciseIndex.containsKey(exType)) {
+				this.exerciseIndex.put(exType, i);
+			}
+		}
+		this.indexedSize = this.fitnessExercises.size();
 	}
 
 	/**
@@ -0,0 +1,257 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Implementation of {@link IAsyncDataProvider} that executes the calls of a
+ * {@link DataProvider} on a background executor, which is shared by all
+ * instances.
+ *
+ */
+public class AsyncDataProvider implements IAsyncDataProvider {
+	/** Tag for logging */
+	private static final String TAG = "AsyncDataProvider";
+
+	/** Number of background threads */
+	private static final int THREAD_COUNT = 2;
+
+	/** The executor that is shared by all instances */
+	private static final ExecutorService sExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+	/** Handler for delivering results on the UI thread */
+	private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+	private final IDataProvider mDataProvider;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context
+	 *            The context, only the application context is retained.
+	 */
+	public AsyncDataProvider(Context context) {
+		mDataProvider = new DataProvider(context.getApplicationContext());
+	}
+
+	@Override
+	public Future<List<ExerciseType>> getExercises(Callback<List<ExerciseType>> callback) {
+		return submit(new Callable<List<ExerciseType>>() {
+			@Override
+			public List<ExerciseType> call() {
+				return mDataProvider.getExercises();
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<List<Muscle>> getMuscles(Callback<List<Muscle>> callback) {
+		return submit(new Callable<List<Muscle>>() {
+			@Override
+			public List<Muscle> call() {
+				return mDataProvider.getMuscles();
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<List<SportsEquipment>> getEquipment(Callback<List<SportsEquipment>> callback) {
+		return submit(new Callable<List<SportsEquipment>>() {
+			@Override
+			public List<SportsEquipment> call() {
+				return mDataProvider.getEquipment();
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<List<ExerciseTag>> getExerciseTags(Callback<List<ExerciseTag>> callback) {
+		return submit(new Callable<List<ExerciseTag>>() {
+			@Override
+			public List<ExerciseTag> call() {
+				return mDataProvider.getExerciseTags();
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<List<Workout>> getWorkouts(Callback<List<Workout>> callback) {
+		return submit(new Callable<List<Workout>>() {
+			@Override
+			public List<Workout> call() {
+				return mDataProvider.getWorkouts();
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<List<WorkoutSummary>> getWorkoutSummaries(Callback<List<WorkoutSummary>> callback) {
+		return submit(new Callable<List<WorkoutSummary>>() {
+			@Override
+			public List<WorkoutSummary> call() {
+				return mDataProvider.getWorkoutSummaries();
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<Workout> getWorkout(final String id, Callback<Workout> callback) {
+		return submit(new Callable<Workout>() {
+			@Override
+			public Workout call() {
+				return mDataProvider.getWorkout(id);
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<Boolean> saveWorkout(final Workout w, Callback<Boolean> callback) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return mDataProvider.saveWorkout(w);
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<Boolean> deleteWorkout(final Workout w, Callback<Boolean> callback) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return mDataProvider.deleteWorkout(w);
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<Boolean> saveCustomExercise(final ExerciseType ex, Callback<Boolean> callback) {
+		return submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return mDataProvider.saveCustomExercise(ex);
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<List<ExerciseType>> saveSyncedExercises(final List<ExerciseType> exerciseList,
+			Callback<List<ExerciseType>> callback) {
+		return submit(new Callable<List<ExerciseType>>() {
+			@Override
+			public List<ExerciseType> call() {
+				return mDataProvider.saveSyncedExercises(exerciseList);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Executes the task on the shared executor.
+	 *
+	 * @param task
+	 *            The task to execute
+	 * @param callback
+	 *            The callback for the result, may be null
+	 *
+	 * @return The future of the task
+	 */
+	private static <T> Future<T> submit(Callable<T> task, Callback<T> callback) {
+		CallbackTask<T> future = new CallbackTask<T>(task, callback);
+		sExecutor.execute(future);
+		return future;
+	}
+
+	/**
+	 * A {@link FutureTask} that posts its result to the UI thread, unless it
+	 * has been cancelled.
+	 */
+	private static class CallbackTask<T> extends FutureTask<T> {
+		private final Callback<T> mCallback;
+
+		/**
+		 * Set when the task is cancelled. Cancelling a task that is already done
+		 * does not change isCancelled(), but the result must not be delivered
+		 * either. Read and written on the UI thread.
+		 */
+		private volatile boolean mCancelled = false;
+
+		CallbackTask(Callable<T> callable, Callback<T> callback) {
+			super(callable);
+			mCallback = callback;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			mCancelled = true;
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		protected void done() {
+			if (mCallback == null || isCancelled()) {
+				return;
+			}
+
+			sMainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					if (mCancelled) {
+						return;
+					}
+
+					T result;
+					try {
+						result = get();
+					} catch (InterruptedException e) {
+						// cannot happen, the task is done
+						Thread.currentThread().interrupt();
+						return;
+					} catch (ExecutionException e) {
+						Log.e(TAG, "Asynchronous call failed.", e.getCause());
+						Throwable cause = e.getCause();
+						mCallback.onFailure(cause instanceof Exception ? (Exception) cause : e);
+						return;
+					}
+					mCallback.onSuccess(result);
+				}
+			});
+		}
+	}
+
+}
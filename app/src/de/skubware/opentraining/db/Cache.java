@@ -21,9 +21,15 @@
 package de.skubware.opentraining.db;
 
 import android.content.Context;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import de.skubware.opentraining.basic.ExerciseTag;
 import de.skubware.opentraining.basic.ExerciseType;
@@ -39,6 +45,9 @@ import de.skubware.opentraining.basic.Workout;
  * be necessary to run updateCache() once when the app starts. Besides this the
  * activities should never use this class.
  * 
+ * The cached data is held by an immutable {@link CatalogSnapshot}. Readers do
+ * not need any locks and always see a consistent state, writers publish a new
+ * version of the snapshot.
  * 
  */
 public enum Cache {
@@ -47,52 +56,178 @@ public enum Cache {
 	/** Tag for logging. */
 	private final static String TAG = "Cache";
 
-	private List<ExerciseType> mExerciseList = null;
-	private List<Muscle> mMuscleList = null;
-	private List<SportsEquipment> mSportsEquipmentList = null;
-	private List<ExerciseTag> mExerciseTagList = null;
-	private List<Workout> mWorkoutList = null;
+	/** The current snapshot, replaced (never modified) by the writers. */
+	private final AtomicReference<CatalogSnapshot> mSnapshot = new AtomicReference<CatalogSnapshot>(CatalogSnapshot.EMPTY);
 
+	/** Preference key of the {@link WorkoutStore} that is used ("xml" or "sqlite"). */
+	public static final String PREF_KEY_WORKOUT_STORAGE_ENGINE = "workout_storage_engine";
+
+	/** The store of the workouts, chosen once; guarded by this. */
+	private WorkoutStore mWorkoutStore;
+
+	/** The summaries of the workouts, created once; guarded by this. */
+	private WorkoutSummaryIndex mWorkoutSummaryIndex;
+
+	/** The listeners that are notified when the workouts change. */
+	private final List<WorkoutListener> mWorkoutListeners = new CopyOnWriteArrayList<WorkoutListener>();
 
 	/**
-	 * Refreshes the cached data.
-	 * 
+	 * Interface for objects that want to be notified when the cached
+	 * {@link Workout}s change.
+	 */
+	public interface WorkoutListener {
+		/**
+		 * Called after the changed workouts have been published. This method is
+		 * called on the thread that refreshed the cache, which usually is not
+		 * the UI thread.
+		 * 
+		 * @param delta
+		 *            The workouts that have been added, changed or removed
+		 */
+		public void onWorkoutsChanged(WorkoutDelta delta);
+	}
+
+
+	/**
+	 * Refreshes the cached data. If there is an up to date
+	 * {@link CatalogSnapshotFile}, the catalog is read from it instead of
+	 * parsing it. Otherwise the file is written after parsing.
+	 *
 	 * @param mContext
 	 */
 	public void updateCache(Context mContext) {
+		long start = SystemClock.elapsedRealtime();
+		CatalogSnapshotFile snapshotFile = new CatalogSnapshotFile(mContext);
+		CatalogSnapshot catalog = snapshotFile.read();
+		if (catalog != null) {
+			publishReferenceData(catalog.getMuscles(), catalog.getEquipment(), catalog.getExerciseTags());
+			publishExercises(catalog.getExercises());
+			// workouts have to be loaded last
+			reloadWorkoutCache(mContext);
+			Log.d(TAG, "Loaded cache from catalog snapshot in " + (SystemClock.elapsedRealtime() - start) + " ms");
+			return;
+		}
+
+		loadCatalog(mContext);
+		snapshotFile.write(getSnapshot());
+	}
+
+	/**
+	 * Parses the catalog and the workouts, in parallel if possible.
+	 *
+	 * @param mContext
+	 */
+	private void loadCatalog(Context mContext) {
+		try {
+			new CatalogLoader(mContext).load(this);
+		} catch (InterruptedException e) {
+			Log.e(TAG, "Parallel loading was interrupted, will load sequentially.", e);
+			Thread.currentThread().interrupt();
+			updateCacheSequentially(mContext);
+		} catch (ExecutionException e) {
+			Log.e(TAG, "Parallel loading failed, will load sequentially.", e);
+			updateCacheSequentially(mContext);
+		}
+	}
+
+	/**
+	 * Refreshes the cached data on the calling thread. This is the fallback if
+	 * the {@link CatalogLoader} fails.
+	 * 
+	 * @param mContext
+	 */
+	private void updateCacheSequentially(Context mContext) {
+		long start = SystemClock.elapsedRealtime();
 		DataProvider dataProvider = new DataProvider(mContext);
-		mMuscleList = dataProvider.loadMuscles();
-		mSportsEquipmentList = dataProvider.loadEquipment();
-		mExerciseTagList = dataProvider.loadExerciseTags();
+		publishReferenceData(dataProvider.loadMuscles(), dataProvider.loadEquipment(), dataProvider.loadExerciseTags());
 		// important: ExerciseTypes have to be loaded after muscles, equipment and tags
-		mExerciseList = dataProvider.loadExercises();
+		publishExercises(dataProvider.loadExercises());
 		// workouts have to be loaded last
-		mWorkoutList = dataProvider.loadWorkouts();
+		reloadWorkoutCache(mContext);
+		Log.d(TAG, "Loaded cache sequentially in " + (SystemClock.elapsedRealtime() - start) + " ms");
+	}
+
+	/**
+	 * Returns the current {@link CatalogSnapshot}. All data of the returned
+	 * snapshot belongs to the same version.
+	 * 
+	 * @return The current snapshot, never null
+	 */
+	public CatalogSnapshot getSnapshot() {
+		return mSnapshot.get();
 	}
 
 	/**
 	 * Returns the cached {@link ExerciseType}s.
 	 * 
-	 * @return The cached {@link ExerciseType}s or null.
+	 * @return The cached {@link ExerciseType}s (unmodifiable) or null.
 	 */
-	public synchronized List<ExerciseType> getExercises() {
-		return mExerciseList;
+	public List<ExerciseType> getExercises() {
+		return mSnapshot.get().getExercises();
 	}
 
 	public List<Muscle> getMuscles() {
-		return mMuscleList;
+		return mSnapshot.get().getMuscles();
 	}
 
 	public List<SportsEquipment> getEquipment() {
-		return mSportsEquipmentList;
+		return mSnapshot.get().getEquipment();
 	}
 
 	public List<ExerciseTag> getExerciseTags() {
-		return mExerciseTagList;
+		return mSnapshot.get().getExerciseTags();
 	}
 	
-	public synchronized List<Workout> getWorkouts() {
-		return mWorkoutList;
+	public List<Workout> getWorkouts() {
+		return mSnapshot.get().getWorkouts();
+	}
+
+	/**
+	 * Returns the cached {@link ExerciseType} with the given name.
+	 * 
+	 * @param name
+	 *            One of the (translated) names of the exercise
+	 * 
+	 * @return The exercise or null, if there is no such exercise
+	 */
+	public ExerciseType getExerciseByName(String name) {
+		return mSnapshot.get().getExerciseByName(name);
+	}
+
+	/**
+	 * Returns the cached {@link Muscle} with the given name.
+	 * 
+	 * @param name
+	 *            One of the (alternative) names of the muscle
+	 * 
+	 * @return The muscle or null, if there is no such muscle
+	 */
+	public Muscle getMuscleByName(String name) {
+		return mSnapshot.get().getMuscleByName(name);
+	}
+
+	/**
+	 * Returns the cached {@link SportsEquipment} with the given name.
+	 * 
+	 * @param name
+	 *            One of the (alternative) names of the equipment
+	 * 
+	 * @return The equipment or null, if there is no such equipment
+	 */
+	public SportsEquipment getEquipmentByName(String name) {
+		return mSnapshot.get().getEquipmentByName(name);
+	}
+
+	/**
+	 * Returns the cached {@link ExerciseTag} with the given name.
+	 * 
+	 * @param name
+	 *            One of the (alternative) names of the tag
+	 * 
+	 * @return The tag or null, if there is no such tag
+	 */
+	public ExerciseTag getExerciseTagByName(String name) {
+		return mSnapshot.get().getExerciseTagByName(name);
 	}
 
 	/**
@@ -100,12 +235,107 @@ public enum Cache {
 	 * not true for the Workouts. So the cache has to be updated everytime that
 	 * a Workout changes. This should be done in a new Thread.
 	 * 
+	 * The workouts are only loaded when they are requested for the first time
+	 * (see {@link #loadWorkoutCache(Context)}), listing them only needs the
+	 * {@link WorkoutSummaryIndex}. Until then this method does nothing.
+	 * 
 	 * @param mContext
 	 */
 	public synchronized void updateWorkoutCache(Context mContext){
+		if (getWorkouts() == null) {
+			return;
+		}
+		loadWorkoutCache(mContext);
+	}
+
+	/**
+	 * Loads the workouts into the cache. Only the files that have changed
+	 * since the last update are parsed again. If any workout has changed, the
+	 * {@link WorkoutListener}s are notified.
+	 * 
+	 * @param mContext
+	 */
+	synchronized void loadWorkoutCache(Context mContext){
 		Log.d(TAG, "updating Workout cache");
 		DataProvider dataProvider = new DataProvider(mContext);
-		mWorkoutList = dataProvider.loadWorkouts();
+		WorkoutStore store = getWorkoutStore(mContext);
+		WorkoutDelta delta = store.refresh(dataProvider);
+		publishWorkouts(store.getWorkouts());
+		// all workouts are known now, so the index can be repaired if necessary
+		getWorkoutSummaryIndex(mContext).putAll(store.getWorkouts());
+
+		if (!delta.isEmpty()) {
+			Log.d(TAG, "Workouts changed: " + delta);
+			for (WorkoutListener listener : mWorkoutListeners) {
+				listener.onWorkoutsChanged(delta);
+			}
+		}
+	}
+
+	/**
+	 * Parses all workout files again. Has to be used instead of
+	 * {@link #updateWorkoutCache(Context)} when the exercises have been
+	 * reloaded, as the workouts refer to them.
+	 * 
+	 * @param mContext
+	 */
+	synchronized void reloadWorkoutCache(Context mContext) {
+		getWorkoutStore(mContext).invalidate();
+		updateWorkoutCache(mContext);
+	}
+
+	/**
+	 * Returns the {@link WorkoutStore}. The store is chosen by the preference
+	 * {@link #PREF_KEY_WORKOUT_STORAGE_ENGINE} when it is used the first time,
+	 * so changing the preference takes effect after restarting the app.
+	 * 
+	 * @param mContext
+	 */
+	synchronized WorkoutStore getWorkoutStore(Context mContext) {
+		if (mWorkoutStore == null) {
+			String engine = PreferenceManager.getDefaultSharedPreferences(mContext).getString(
+					PREF_KEY_WORKOUT_STORAGE_ENGINE, "xml");
+			if (engine.equals("sqlite")) {
+				mWorkoutStore = new SQLiteWorkoutStore(mContext);
+			} else {
+				mWorkoutStore = new FileWorkoutStore(mContext);
+			}
+			Log.i(TAG, "Using workout storage engine: " + engine);
+		}
+		return mWorkoutStore;
+	}
+
+	/**
+	 * Returns the {@link WorkoutSummaryIndex}.
+	 * 
+	 * @param mContext
+	 */
+	synchronized WorkoutSummaryIndex getWorkoutSummaryIndex(Context mContext) {
+		if (mWorkoutSummaryIndex == null) {
+			mWorkoutSummaryIndex = new WorkoutSummaryIndex(new File(mContext.getCacheDir(), WorkoutSummaryIndex.FILE_NAME));
+		}
+		return mWorkoutSummaryIndex;
+	}
+
+	/**
+	 * Registers a listener that is notified when the cached workouts change.
+	 * 
+	 * @param listener
+	 *            The listener to add
+	 */
+	public void addWorkoutListener(WorkoutListener listener) {
+		mWorkoutListeners.add(listener);
+	}
+
+	/**
+	 * Unregisters a listener, has to be called when the listener is not needed
+	 * any more (e.g. in onPause()/onDestroy()) to avoid leaking it.
+	 * 
+	 * @param listener
+	 *            The listener to remove
+	 */
+	public void removeWorkoutListener(WorkoutListener listener) {
+		mWorkoutListeners.remove(listener);
 	}
 	
 	/**
@@ -117,7 +347,25 @@ public enum Cache {
 	public synchronized void updateExerciseCache(Context mContext){
 		Log.d(TAG, "updating Exercise cache");
 		DataProvider dataProvider = new DataProvider(mContext);
-		mExerciseList = dataProvider.loadExercises();
+		publishExercises(dataProvider.loadExercises());
+	}
+
+	/*
+	 * The publish methods are synchronized so that concurrent writers cannot
+	 * lose each other's updates. Readers never lock.
+	 */
+
+	synchronized void publishReferenceData(List<Muscle> muscleList, List<SportsEquipment> sportsEquipmentList,
+			List<ExerciseTag> exerciseTagList) {
+		mSnapshot.set(mSnapshot.get().withReferenceData(muscleList, sportsEquipmentList, exerciseTagList));
+	}
+
+	synchronized void publishExercises(List<ExerciseType> exerciseList) {
+		mSnapshot.set(mSnapshot.get().withExercises(exerciseList));
+	}
+
+	synchronized void publishWorkouts(List<Workout> workoutList) {
+		mSnapshot.set(mSnapshot.get().withWorkouts(workoutList));
 	}
 	
 }
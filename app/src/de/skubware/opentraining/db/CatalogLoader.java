@@ -0,0 +1,180 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+
+/**
+ * Loads all data of the {@link Cache} in parallel.
+ *
+ * The loading steps depend on each other: the {@link ExerciseType}s need the
+ * muscles, equipment and tags, the workouts need the exercises. Within these
+ * steps the work is independent: the three JSON files are parsed at the same
+ * time and the exercise .xml files are split among a bounded number of
+ * workers, each with its own parser. The results are merged in a fixed order,
+ * so the loaded data does not depend on the scheduling of the threads.
+ *
+ */
+class CatalogLoader {
+	/** Tag for logging */
+	private static final String TAG = "CatalogLoader";
+
+	/** Upper bound for the number of worker threads */
+	private static final int MAX_WORKERS = 4;
+
+	private final Context mContext;
+	private final DataProvider mDataProvider;
+	private final int mWorkerCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context
+	 *            The applications context.
+	 */
+	CatalogLoader(Context context) {
+		mContext = context;
+		mDataProvider = new DataProvider(context);
+		mWorkerCount = Math.max(2, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Loads the data and publishes it to the {@link Cache}. Each step is
+	 * published as soon as it is finished, as the following steps look up the
+	 * data of the previous ones.
+	 *
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted
+	 * @throws ExecutionException
+	 *             if loading failed
+	 */
+	void load(Cache cache) throws InterruptedException, ExecutionException {
+		long start = SystemClock.elapsedRealtime();
+		ExecutorService executor = Executors.newFixedThreadPool(mWorkerCount);
+
+		try {
+			// muscles, equipment, tags and the list of exercise files are independent
+			Future<List<Muscle>> muscleFuture = executor.submit(new Callable<List<Muscle>>() {
+				@Override
+				public List<Muscle> call() {
+					return mDataProvider.loadMuscles();
+				}
+			});
+			Future<List<SportsEquipment>> equipmentFuture = executor.submit(new Callable<List<SportsEquipment>>() {
+				@Override
+				public List<SportsEquipment> call() {
+					return mDataProvider.loadEquipment();
+				}
+			});
+			Future<List<ExerciseTag>> tagFuture = executor.submit(new Callable<List<ExerciseTag>>() {
+				@Override
+				public List<ExerciseTag> call() {
+					return mDataProvider.loadExerciseTags();
+				}
+			});
+			Future<List<String>> fileFuture = executor.submit(new Callable<List<String>>() {
+				@Override
+				public List<String> call() {
+					return mDataProvider.listDefaultExerciseFiles();
+				}
+			});
+
+			cache.publishReferenceData(muscleFuture.get(), equipmentFuture.get(), tagFuture.get());
+			long referenceDataLoaded = SystemClock.elapsedRealtime();
+
+			// important: ExerciseTypes have to be loaded after muscles, equipment and tags
+			cache.publishExercises(loadExercises(executor, fileFuture.get()));
+			long exercisesLoaded = SystemClock.elapsedRealtime();
+
+			// workouts have to be loaded last
+			cache.reloadWorkoutCache(mContext);
+			long workoutsLoaded = SystemClock.elapsedRealtime();
+
+			Log.d(TAG, "Loaded cache with " + mWorkerCount + " workers in " + (workoutsLoaded - start) + " ms (reference data: "
+					+ (referenceDataLoaded - start) + " ms, exercises: " + (exercisesLoaded - referenceDataLoaded)
+					+ " ms, workouts: " + (workoutsLoaded - exercisesLoaded) + " ms)");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads the default, custom and synced exercises. The default exercise
+	 * files are split into one contiguous share per worker.
+	 */
+	private List<ExerciseType> loadExercises(ExecutorService executor, List<String> files) throws InterruptedException,
+			ExecutionException {
+		List<Future<List<ExerciseType>>> defaultFutures = new ArrayList<Future<List<ExerciseType>>>();
+		int shareSize = Math.max(1, (files.size() + mWorkerCount - 1) / mWorkerCount);
+		for (int i = 0; i < files.size(); i += shareSize) {
+			final List<String> share = files.subList(i, Math.min(i + shareSize, files.size()));
+			defaultFutures.add(executor.submit(new Callable<List<ExerciseType>>() {
+				@Override
+				public List<ExerciseType> call() {
+					return mDataProvider.loadDefaultExercises(share);
+				}
+			}));
+		}
+
+		Future<List<ExerciseType>> customFuture = executor.submit(new Callable<List<ExerciseType>>() {
+			@Override
+			public List<ExerciseType> call() {
+				return mDataProvider.loadCustomExercises();
+			}
+		});
+		Future<List<ExerciseType>> syncedFuture = executor.submit(new Callable<List<ExerciseType>>() {
+			@Override
+			public List<ExerciseType> call() {
+				return mDataProvider.loadSyncedExercises();
+			}
+		});
+
+		// merge in submission order, exactly like DataProvider.loadExercises()
+		List<ExerciseType> list = new ArrayList<ExerciseType>();
+		for (Future<List<ExerciseType>> future : defaultFutures) {
+			list.addAll(future.get());
+		}
+		Collections.sort(list);
+
+		list.addAll(customFuture.get());
+		list.addAll(syncedFuture.get());
+		Collections.sort(list);
+
+		return list;
+	}
+
+}
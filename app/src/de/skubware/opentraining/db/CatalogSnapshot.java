@@ -0,0 +1,257 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.basic.Translatable;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * An immutable, versioned view of the data held by the {@link Cache}.
+ *
+ * A snapshot is never changed after it has been created. Changing the cached
+ * data means creating a new snapshot (with a higher version) and publishing it.
+ * Therefore readers can use the lists of a snapshot without copying or
+ * locking them. The lists are unmodifiable; a part that has not been loaded yet
+ * is null.
+ *
+ */
+public final class CatalogSnapshot {
+
+	/** The snapshot that is used before anything has been loaded. */
+	static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, null, null, null, null, null);
+
+	private final long mVersion;
+
+	private final List<ExerciseType> mExerciseList;
+	private final List<Muscle> mMuscleList;
+	private final List<SportsEquipment> mSportsEquipmentList;
+	private final List<ExerciseTag> mExerciseTagList;
+	private final List<Workout> mWorkoutList;
+
+	/*
+	 * Indexes that map each (alternative) name to the object. They are built
+	 * together with the lists.
+	 */
+	private final Map<String, ExerciseType> mExerciseNameMap;
+	private final Map<String, Muscle> mMuscleNameMap;
+	private final Map<String, SportsEquipment> mSportsEquipmentNameMap;
+	private final Map<String, ExerciseTag> mExerciseTagNameMap;
+
+	/** Maps the ID of each {@link Workout} to the workout */
+	private final Map<String, Workout> mWorkoutIdMap;
+
+	private CatalogSnapshot(long version, List<ExerciseType> exerciseList, List<Muscle> muscleList,
+			List<SportsEquipment> sportsEquipmentList, List<ExerciseTag> exerciseTagList, List<Workout> workoutList) {
+		mVersion = version;
+
+		mExerciseList = exerciseList;
+		mMuscleList = muscleList;
+		mSportsEquipmentList = sportsEquipmentList;
+		mExerciseTagList = exerciseTagList;
+		mWorkoutList = workoutList;
+
+		mExerciseNameMap = buildExerciseNameMap(exerciseList);
+		mMuscleNameMap = buildNameMap(muscleList);
+		mSportsEquipmentNameMap = buildNameMap(sportsEquipmentList);
+		mExerciseTagNameMap = buildNameMap(exerciseTagList);
+		mWorkoutIdMap = buildWorkoutIdMap(workoutList);
+	}
+
+	/**
+	 * Creates a new snapshot that contains the given reference data. All other
+	 * data is taken from this snapshot.
+	 *
+	 * @return The new snapshot, its version is the successor of this version
+	 */
+	CatalogSnapshot withReferenceData(List<Muscle> muscleList, List<SportsEquipment> sportsEquipmentList,
+			List<ExerciseTag> exerciseTagList) {
+		return new CatalogSnapshot(mVersion + 1, mExerciseList, freeze(muscleList), freeze(sportsEquipmentList),
+				freeze(exerciseTagList), mWorkoutList);
+	}
+
+	/**
+	 * Creates a new snapshot that contains the given {@link ExerciseType}s.
+	 *
+	 * @return The new snapshot, its version is the successor of this version
+	 */
+	CatalogSnapshot withExercises(List<ExerciseType> exerciseList) {
+		return new CatalogSnapshot(mVersion + 1, freeze(exerciseList), mMuscleList, mSportsEquipmentList,
+				mExerciseTagList, mWorkoutList);
+	}
+
+	/**
+	 * Creates a new snapshot that contains the given {@link Workout}s.
+	 *
+	 * @return The new snapshot, its version is the successor of this version
+	 */
+	CatalogSnapshot withWorkouts(List<Workout> workoutList) {
+		return new CatalogSnapshot(mVersion + 1, mExerciseList, mMuscleList, mSportsEquipmentList,
+				mExerciseTagList, freeze(workoutList));
+	}
+
+	/**
+	 * The version of this snapshot. Each published snapshot has a higher
+	 * version than its predecessor.
+	 *
+	 * @return The version of this snapshot
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+
+	public List<ExerciseType> getExercises() {
+		return mExerciseList;
+	}
+
+	public List<Muscle> getMuscles() {
+		return mMuscleList;
+	}
+
+	public List<SportsEquipment> getEquipment() {
+		return mSportsEquipmentList;
+	}
+
+	public List<ExerciseTag> getExerciseTags() {
+		return mExerciseTagList;
+	}
+
+	public List<Workout> getWorkouts() {
+		return mWorkoutList;
+	}
+
+	/**
+	 * @return The {@link ExerciseType} with the given name or null
+	 */
+	public ExerciseType getExerciseByName(String name) {
+		return mExerciseNameMap == null ? null : mExerciseNameMap.get(name);
+	}
+
+	/**
+	 * @return The {@link Muscle} with the given name or null
+	 */
+	public Muscle getMuscleByName(String name) {
+		return mMuscleNameMap == null ? null : mMuscleNameMap.get(name);
+	}
+
+	/**
+	 * @return The {@link SportsEquipment} with the given name or null
+	 */
+	public SportsEquipment getEquipmentByName(String name) {
+		return mSportsEquipmentNameMap == null ? null : mSportsEquipmentNameMap.get(name);
+	}
+
+	/**
+	 * @return The {@link ExerciseTag} with the given name or null
+	 */
+	public ExerciseTag getExerciseTagByName(String name) {
+		return mExerciseTagNameMap == null ? null : mExerciseTagNameMap.get(name);
+	}
+
+	/**
+	 * @return The {@link Workout} with the given ID (see
+	 *         {@link Workout#getId()}) or null
+	 */
+	public Workout getWorkoutById(String id) {
+		return mWorkoutIdMap == null ? null : mWorkoutIdMap.get(id);
+	}
+
+	/**
+	 * Copies the list once and makes it unmodifiable.
+	 *
+	 * @return An unmodifiable copy of the list or null, if list is null
+	 */
+	private static <T> List<T> freeze(List<T> list) {
+		if (list == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(new ArrayList<T>(list));
+	}
+
+	/**
+	 * Creates a map that maps each name of the {@link ExerciseType}s (all
+	 * languages) to the exercise itself.
+	 */
+	private static Map<String, ExerciseType> buildExerciseNameMap(List<ExerciseType> list) {
+		if (list == null) {
+			return null;
+		}
+
+		Map<String, ExerciseType> nameMap = new HashMap<String, ExerciseType>();
+		for (ExerciseType ex : list) {
+			for (String name : ex.getAlternativeNames()) {
+				// the first exercise with a name wins, like a linear search would do
+				if (!nameMap.containsKey(name)) {
+					nameMap.put(name, ex);
+				}
+			}
+		}
+
+		return nameMap;
+	}
+
+	/**
+	 * Creates a map that maps each name of the given {@link Translatable}s
+	 * (all locales, including the lower case variants) to the object itself.
+	 */
+	private static <T extends Translatable> Map<String, T> buildNameMap(List<T> list) {
+		if (list == null) {
+			return null;
+		}
+
+		Map<String, T> nameMap = new HashMap<String, T>();
+		for (T t : list) {
+			for (String name : t.getAlternativeNames()) {
+				if (!nameMap.containsKey(name)) {
+					nameMap.put(name, t);
+				}
+			}
+		}
+
+		return nameMap;
+	}
+
+	/**
+	 * Creates a map that maps the ID of each {@link Workout} to the workout.
+	 */
+	private static Map<String, Workout> buildWorkoutIdMap(List<Workout> list) {
+		if (list == null) {
+			return null;
+		}
+
+		Map<String, Workout> idMap = new HashMap<String, Workout>();
+		for (Workout w : list) {
+			idMap.put(w.getId(), w);
+		}
+
+		return idMap;
+	}
+
+}
@@ -0,0 +1,638 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.content.Context;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ActivationLevel;
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
+import de.skubware.opentraining.basic.License;
+import de.skubware.opentraining.basic.License.LicenseType;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.basic.Translatable;
+
+/**
+ * A precompiled, binary copy of the catalog ({@link Muscle}s,
+ * {@link SportsEquipment}, {@link ExerciseTag}s and {@link ExerciseType}s).
+ *
+ * Parsing the .json and .xml files on every start is expensive, although this
+ * data only changes with an update of the app or when custom or synced
+ * exercises change. The binary file is written after the catalog has been
+ * parsed and is used on the next start, if its key still matches. The key
+ * consists of the version code of the app, the language of the user and the
+ * state of {@link IDataProvider#CUSTOM_EXERCISE_FOLDER} and
+ * {@link IDataProvider#SYNCED_EXERCISE_FOLDER}.
+ *
+ * Format (all numbers big-endian, strings are references into the string
+ * table, -1 is null):
+ *
+ * <pre>
+ * int magic, int format version, UTF key
+ * int string count, (int byte length, UTF-8 bytes)*
+ * muscles, equipment: int count, name record*
+ * tags:               int count, (name record, int count, (locale, description)*)*
+ * exercises:          int count, exercise record*
+ * </pre>
+ *
+ * Muscles, equipment and tags are referenced by exercises with their index.
+ *
+ */
+class CatalogSnapshotFile {
+	/** Tag for logging */
+	private static final String TAG = "CatalogSnapshotFile";
+
+	/** The name of the file in the cache folder */
+	static final String FILE_NAME = "catalog.bin";
+
+	private static final int MAGIC = 0x4F54434C; // 'OTCL'
+	private static final int FORMAT_VERSION = 1;
+
+	private final File mFile;
+	/** Key of the current state, null if it could not be determined */
+	private final String mKey;
+
+	/**
+	 * Constructor. Determines the key of the current state of the catalog.
+	 *
+	 * @param context
+	 *            The applications context.
+	 */
+	CatalogSnapshotFile(Context context) {
+		mFile = new File(context.getCacheDir(), FILE_NAME);
+		mKey = createKey(context);
+	}
+
+	/**
+	 * Reads the catalog.
+	 *
+	 * @return A snapshot containing the reference data and the exercises, or
+	 *         null if there is no valid file for the current key
+	 */
+	CatalogSnapshot read() {
+		if (mKey == null || !mFile.exists()) {
+			return null;
+		}
+
+		long start = SystemClock.elapsedRealtime();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile), 16 * 1024));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				Log.w(TAG, "Unknown format of catalog snapshot, will parse catalog.");
+				return null;
+			}
+			if (!mKey.equals(in.readUTF())) {
+				Log.d(TAG, "Catalog snapshot is outdated, will parse catalog.");
+				return null;
+			}
+
+			String[] strings = new String[in.readInt()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				strings[i] = new String(bytes, "UTF-8");
+			}
+			Reader reader = new Reader(in, strings);
+
+			List<Muscle> muscleList = new ArrayList<Muscle>();
+			for (int i = in.readInt(); i > 0; i--) {
+				NameRecord record = reader.readNameRecord();
+				muscleList.add(record.restore(new Muscle(record.mPrimaryLocale, record.primaryList())));
+			}
+
+			List<SportsEquipment> equipmentList = new ArrayList<SportsEquipment>();
+			for (int i = in.readInt(); i > 0; i--) {
+				NameRecord record = reader.readNameRecord();
+				equipmentList.add(record.restore(new SportsEquipment(record.mPrimaryLocale, record.primaryList())));
+			}
+
+			List<ExerciseTag> tagList = new ArrayList<ExerciseTag>();
+			for (int i = in.readInt(); i > 0; i--) {
+				tagList.add(reader.readExerciseTag());
+			}
+
+			List<ExerciseType> exerciseList = new ArrayList<ExerciseType>();
+			for (int i = in.readInt(); i > 0; i--) {
+				exerciseList.add(reader.readExercise(muscleList, equipmentList, tagList));
+			}
+
+			Log.d(TAG, "Read catalog snapshot with " + exerciseList.size() + " exercises in "
+					+ (SystemClock.elapsedRealtime() - start) + " ms");
+			return CatalogSnapshot.EMPTY.withReferenceData(muscleList, equipmentList, tagList).withExercises(exerciseList);
+		} catch (IOException e) {
+			Log.e(TAG, "Could not read catalog snapshot, will parse catalog.", e);
+		} catch (RuntimeException e) {
+			// a corrupt file must never prevent the app from starting
+			Log.e(TAG, "Catalog snapshot is corrupt, will parse catalog.", e);
+		} finally {
+			closeQuietly(in);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Writes the catalog of the snapshot. The file is written to a temporary
+	 * file first and then renamed, so a crash cannot leave a half written file.
+	 *
+	 * @param snapshot
+	 *            The snapshot to write, must contain the reference data and
+	 *            the exercises
+	 *
+	 * @return true if successful
+	 */
+	boolean write(CatalogSnapshot snapshot) {
+		if (mKey == null || snapshot.getExercises() == null || snapshot.getMuscles() == null
+				|| snapshot.getEquipment() == null || snapshot.getExerciseTags() == null) {
+			return false;
+		}
+
+		long start = SystemClock.elapsedRealtime();
+		File tmpFile = new File(mFile.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			// the records are written first, as they fill the string table
+			Writer writer = new Writer(snapshot);
+			ByteArrayOutputStream records = new ByteArrayOutputStream(64 * 1024);
+			writer.writeRecords(new DataOutputStream(records));
+
+			mFile.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 16 * 1024));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(mKey);
+			out.writeInt(writer.mStringList.size());
+			for (String s : writer.mStringList) {
+				byte[] bytes = s.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			records.writeTo(out);
+			out.close();
+			out = null;
+
+			if (!tmpFile.renameTo(mFile)) {
+				throw new IOException("Could not rename " + tmpFile + " to " + mFile);
+			}
+
+			Log.d(TAG, "Wrote catalog snapshot in " + (SystemClock.elapsedRealtime() - start) + " ms");
+			return true;
+		} catch (IOException e) {
+			Log.e(TAG, "Could not write catalog snapshot.", e);
+		} catch (IllegalStateException e) {
+			Log.w(TAG, "Catalog cannot be written as snapshot: " + e.getMessage());
+		} finally {
+			closeQuietly(out);
+			tmpFile.delete();
+		}
+
+		return false;
+	}
+
+	/**
+	 * Deletes the file, e.g. when the catalog has been changed.
+	 */
+	void delete() {
+		mFile.delete();
+	}
+
+	/**
+	 * Creates the key for the current state of the app.
+	 *
+	 * @return The key or null, if the version of the app cannot be determined
+	 */
+	private static String createKey(Context context) {
+		int versionCode;
+		try {
+			versionCode = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode;
+		} catch (NameNotFoundException e) {
+			Log.e(TAG, "Could not determine version code.", e);
+			return null;
+		}
+
+		File filesDir = context.getFilesDir();
+		return versionCode + "/" + Locale.getDefault().getLanguage() + "/"
+				+ folderState(new File(filesDir, IDataProvider.CUSTOM_EXERCISE_FOLDER)) + "/"
+				+ folderState(new File(filesDir, IDataProvider.SYNCED_EXERCISE_FOLDER));
+	}
+
+	/**
+	 * Describes the state of a folder by the number of files and the newest
+	 * modification time. The modification time of the folder alone is not
+	 * enough, as it does not change when a file is overwritten.
+	 */
+	private static String folderState(File folder) {
+		long newest = folder.lastModified();
+		int count = 0;
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				newest = Math.max(newest, f.lastModified());
+				count++;
+			}
+		}
+		return count + "@" + newest;
+	}
+
+	private static void closeQuietly(java.io.Closeable c) {
+		if (c == null) {
+			return;
+		}
+		try {
+			c.close();
+		} catch (IOException e) {
+			Log.w(TAG, "Could not close stream.", e);
+		}
+	}
+
+	/**
+	 * The names of a {@link Translatable} as they have been read.
+	 */
+	private static class NameRecord {
+		private String mPrimaryName;
+		private Locale mPrimaryLocale;
+		private Map<Locale, List<String>> mNameMap = new LinkedHashMap<Locale, List<String>>();
+
+		/**
+		 * @return The names of the primary locale, primary name first
+		 */
+		List<String> primaryList() {
+			return mNameMap.get(mPrimaryLocale);
+		}
+
+		/**
+		 * Adds the names of the other locales to the given object, which has
+		 * been created with {@link #primaryList()}. At last the primary name is
+		 * added again, so that it is the primary name of the object.
+		 */
+		<T extends Translatable> T restore(T t) {
+			for (Locale locale : mNameMap.keySet()) {
+				if (!locale.equals(mPrimaryLocale)) {
+					t.addNames(locale, mNameMap.get(locale));
+				}
+			}
+			t.addNames(mPrimaryLocale, mPrimaryName);
+			return t;
+		}
+	}
+
+	/**
+	 * Reads the records of the file.
+	 */
+	private static class Reader {
+		private final DataInputStream mIn;
+		private final String[] mStrings;
+
+		Reader(DataInputStream in, String[] strings) {
+			mIn = in;
+			mStrings = strings;
+		}
+
+		String readString() throws IOException {
+			int id = mIn.readInt();
+			return id < 0 ? null : mStrings[id];
+		}
+
+		Locale readLocale() throws IOException {
+			String[] parts = readString().split("_", 3);
+			switch (parts.length) {
+			case 1:
+				return new Locale(parts[0]);
+			case 2:
+				return new Locale(parts[0], parts[1]);
+			default:
+				return new Locale(parts[0], parts[1], parts[2]);
+			}
+		}
+
+		NameRecord readNameRecord() throws IOException {
+			NameRecord record = new NameRecord();
+			record.mPrimaryName = readString();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				Locale locale = readLocale();
+				List<String> names = new ArrayList<String>();
+				for (int k = mIn.readInt(); k > 0; k--) {
+					names.add(readString());
+				}
+				record.mNameMap.put(locale, names);
+
+				// the primary name has to be first
+				int primaryIndex = names.indexOf(record.mPrimaryName);
+				if (primaryIndex > 0) {
+					names.add(0, names.remove(primaryIndex));
+				}
+				// prefer the locale of the user, as Translatable does
+				if (primaryIndex >= 0 && (record.mPrimaryLocale == null
+						|| locale.getLanguage().equals(Locale.getDefault().getLanguage()))) {
+					record.mPrimaryLocale = locale;
+				}
+			}
+
+			if (record.mPrimaryLocale == null) {
+				throw new IOException("Primary name " + record.mPrimaryName + " is not part of the names.");
+			}
+			return record;
+		}
+
+		ExerciseTag readExerciseTag() throws IOException {
+			NameRecord record = readNameRecord();
+			Map<Locale, String> descriptionMap = new HashMap<Locale, String>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				Locale locale = readLocale();
+				descriptionMap.put(locale, readString());
+			}
+
+			ExerciseTag tag = new ExerciseTag(record.mPrimaryLocale, record.primaryList(),
+					descriptionMap.get(record.mPrimaryLocale));
+			for (Locale locale : record.mNameMap.keySet()) {
+				if (!locale.equals(record.mPrimaryLocale)) {
+					tag.addNames(locale, record.mNameMap.get(locale), descriptionMap.get(locale));
+				}
+			}
+			tag.addNames(record.mPrimaryLocale, record.mPrimaryName);
+			return tag;
+		}
+
+		ExerciseType readExercise(List<Muscle> muscleList, List<SportsEquipment> equipmentList, List<ExerciseTag> tagList)
+				throws IOException {
+			String name = readString();
+			ExerciseSource source = ExerciseSource.values()[mIn.readByte()];
+
+			Map<Locale, String> translationMap = new HashMap<Locale, String>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				Locale locale = readLocale();
+				translationMap.put(locale, readString());
+			}
+
+			String description = readString();
+
+			List<File> imagePaths = new ArrayList<File>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				imagePaths.add(new File(readString()));
+			}
+
+			Map<File, License> imageLicenseMap = new HashMap<File, License>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				File image = new File(readString());
+				LicenseType licenseType = LicenseType.values()[mIn.readByte()];
+				imageLicenseMap.put(image, new License(licenseType, readString()));
+			}
+
+			int imageWidth = mIn.readInt();
+			int imageHeight = mIn.readInt();
+
+			SortedSet<SportsEquipment> equipment = new TreeSet<SportsEquipment>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				equipment.add(equipmentList.get(mIn.readInt()));
+			}
+
+			SortedSet<Muscle> muscles = new TreeSet<Muscle>();
+			Map<Muscle, ActivationLevel> activationMap = new LinkedHashMap<Muscle, ActivationLevel>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				Muscle muscle = muscleList.get(mIn.readInt());
+				muscles.add(muscle);
+				activationMap.put(muscle, ActivationLevel.getByLevel(mIn.readInt()));
+			}
+
+			SortedSet<ExerciseTag> tags = new TreeSet<ExerciseTag>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				tags.add(tagList.get(mIn.readInt()));
+			}
+
+			List<URL> urls = new ArrayList<URL>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				String url = readString();
+				try {
+					urls.add(new URL(url));
+				} catch (MalformedURLException e) {
+					throw new IOException("Malformed URL: " + url);
+				}
+			}
+
+			List<String> hints = new ArrayList<String>();
+			for (int i = mIn.readInt(); i > 0; i--) {
+				hints.add(readString());
+			}
+
+			String iconPath = readString();
+
+			ExerciseType.Builder builder;
+			try {
+				builder = new ExerciseType.Builder(name, source);
+			} catch (ErrorException e) {
+				throw new IOException("Invalid exercise: " + e.getMessage());
+			}
+			return builder.translateMap(translationMap).description(description)
+					.imagePath(imagePaths).setImageLicenseMap(imageLicenseMap).setImageWidth(imageWidth)
+					.setImageHeigth(imageHeight).neededTools(equipment).activatedMuscles(muscles)
+					.activationMap(activationMap).exerciseTags(tags).modifyRelatedURL(urls).modifyHints(hints)
+					.modifyIconPath(iconPath == null ? null : new File(iconPath)).build();
+		}
+	}
+
+	/**
+	 * Writes the records of the file and collects the string table.
+	 */
+	private static class Writer {
+		private final CatalogSnapshot mSnapshot;
+
+		private final List<String> mStringList = new ArrayList<String>();
+		private final Map<String, Integer> mStringIds = new HashMap<String, Integer>();
+
+		private final Map<Muscle, Integer> mMuscleIds = new HashMap<Muscle, Integer>();
+		private final Map<SportsEquipment, Integer> mEquipmentIds = new HashMap<SportsEquipment, Integer>();
+		private final Map<ExerciseTag, Integer> mTagIds = new HashMap<ExerciseTag, Integer>();
+
+		Writer(CatalogSnapshot snapshot) {
+			mSnapshot = snapshot;
+		}
+
+		void writeRecords(DataOutputStream out) throws IOException {
+			List<Muscle> muscleList = mSnapshot.getMuscles();
+			out.writeInt(muscleList.size());
+			for (int i = 0; i < muscleList.size(); i++) {
+				mMuscleIds.put(muscleList.get(i), i);
+				writeNames(out, muscleList.get(i));
+			}
+
+			List<SportsEquipment> equipmentList = mSnapshot.getEquipment();
+			out.writeInt(equipmentList.size());
+			for (int i = 0; i < equipmentList.size(); i++) {
+				mEquipmentIds.put(equipmentList.get(i), i);
+				writeNames(out, equipmentList.get(i));
+			}
+
+			List<ExerciseTag> tagList = mSnapshot.getExerciseTags();
+			out.writeInt(tagList.size());
+			for (int i = 0; i < tagList.size(); i++) {
+				ExerciseTag tag = tagList.get(i);
+				mTagIds.put(tag, i);
+				writeNames(out, tag);
+
+				Map<Locale, String> descriptionMap = tag.getDescriptionMap();
+				out.writeInt(descriptionMap.size());
+				for (Map.Entry<Locale, String> entry : descriptionMap.entrySet()) {
+					writeString(out, entry.getKey().toString());
+					writeString(out, entry.getValue());
+				}
+			}
+
+			List<ExerciseType> exerciseList = mSnapshot.getExercises();
+			out.writeInt(exerciseList.size());
+			for (ExerciseType ex : exerciseList) {
+				writeExercise(out, ex);
+			}
+		}
+
+		private void writeString(DataOutputStream out, String s) throws IOException {
+			if (s == null) {
+				out.writeInt(-1);
+				return;
+			}
+
+			Integer id = mStringIds.get(s);
+			if (id == null) {
+				id = mStringList.size();
+				mStringList.add(s);
+				mStringIds.put(s, id);
+			}
+			out.writeInt(id);
+		}
+
+		private void writeNames(DataOutputStream out, Translatable t) throws IOException {
+			writeString(out, t.toString());
+
+			Map<Locale, Set<String>> nameMap = t.getNameMap();
+			out.writeInt(nameMap.size());
+			for (Map.Entry<Locale, Set<String>> entry : nameMap.entrySet()) {
+				writeString(out, entry.getKey().toString());
+				out.writeInt(entry.getValue().size());
+				for (String name : entry.getValue()) {
+					writeString(out, name);
+				}
+			}
+		}
+
+		private void writeExercise(DataOutputStream out, ExerciseType ex) throws IOException {
+			writeString(out, ex.getUnlocalizedName());
+			out.writeByte(ex.getExerciseSource().ordinal());
+
+			Map<Locale, String> translationMap = ex.getTranslationMap();
+			out.writeInt(translationMap.size());
+			for (Map.Entry<Locale, String> entry : translationMap.entrySet()) {
+				writeString(out, entry.getKey().toString());
+				writeString(out, entry.getValue());
+			}
+
+			writeString(out, ex.getDescription());
+
+			out.writeInt(ex.getImagePaths().size());
+			for (File image : ex.getImagePaths()) {
+				writeString(out, image.getPath());
+			}
+
+			Map<File, License> imageLicenseMap = ex.getImageLicenseMap();
+			out.writeInt(imageLicenseMap.size());
+			for (Map.Entry<File, License> entry : imageLicenseMap.entrySet()) {
+				writeString(out, entry.getKey().getPath());
+				out.writeByte(entry.getValue().getLicenseType().ordinal());
+				writeString(out, entry.getValue().getAuthor());
+			}
+
+			out.writeInt(ex.getImageWidth());
+			out.writeInt(ex.getImageHeight());
+
+			out.writeInt(ex.getRequiredEquipment().size());
+			for (SportsEquipment eq : ex.getRequiredEquipment()) {
+				out.writeInt(idOf(mEquipmentIds, eq));
+			}
+
+			// getActivationMap() must not be called for exercises without muscles
+			SortedSet<Muscle> muscles = ex.getActivatedMuscles();
+			out.writeInt(muscles.size());
+			if (!muscles.isEmpty()) {
+				for (Map.Entry<Muscle, ActivationLevel> entry : ex.getActivationMap().entrySet()) {
+					out.writeInt(idOf(mMuscleIds, entry.getKey()));
+					out.writeInt(entry.getValue().getLevel());
+				}
+			}
+
+			out.writeInt(ex.getTags().size());
+			for (ExerciseTag tag : ex.getTags()) {
+				out.writeInt(idOf(mTagIds, tag));
+			}
+
+			out.writeInt(ex.getURLs().size());
+			for (URL url : ex.getURLs()) {
+				writeString(out, url.toString());
+			}
+
+			out.writeInt(ex.getHints().size());
+			for (String hint : ex.getHints()) {
+				writeString(out, hint);
+			}
+
+			File iconPath = ex.getIconPath();
+			writeString(out, iconPath == null ? null : iconPath.getPath());
+		}
+
+		/**
+		 * @throws IllegalStateException
+		 *             if the object is not part of the reference data
+		 */
+		private static <T> int idOf(Map<T, Integer> idMap, T t) {
+			Integer id = idMap.get(t);
+			if (id == null) {
+				throw new IllegalStateException(t + " is not part of the reference data");
+			}
+			return id;
+		}
+	}
+
+}
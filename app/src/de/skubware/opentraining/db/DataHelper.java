@@ -230,13 +230,17 @@ public class DataHelper {
 	 *             if loading file fails
 	 */
 	public String loadFile(InputStream is) throws IOException {
-		// create a buffer that has the same size as the InputStream
-		byte[] buffer = new byte[is.available()];
-		is.read(buffer);
-		ByteArrayOutputStream oS = new ByteArrayOutputStream();
-		oS.write(buffer);
-		oS.close();
-		is.close();
+		// available() is only an estimate and read() may return less, so read until the end
+		ByteArrayOutputStream oS = new ByteArrayOutputStream(Math.max(32, is.available()));
+		try {
+			byte[] buffer = new byte[8 * 1024];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				oS.write(buffer, 0, read);
+			}
+		} finally {
+			is.close();
+		}
 
 		// return the output stream as a String
 		return oS.toString();
@@ -31,13 +31,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.skubware.opentraining.basic.ExerciseTag;
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
+import de.skubware.opentraining.basic.FitnessExercise;
 import de.skubware.opentraining.basic.License;
 import de.skubware.opentraining.basic.License.LicenseType;
 import de.skubware.opentraining.basic.Muscle;
@@ -46,9 +56,15 @@ import de.skubware.opentraining.basic.Workout;
 import de.skubware.opentraining.db.parser.ExerciseTagJSONParser;
 import de.skubware.opentraining.db.parser.ExerciseTypeXMLParser;
 import de.skubware.opentraining.db.parser.IParser;
+import de.skubware.opentraining.db.parser.IWorkoutParser;
+import de.skubware.opentraining.db.parser.MissingExercises;
 import de.skubware.opentraining.db.parser.MuscleJSONParser;
+import de.skubware.opentraining.db.parser.ParserFactory;
 import de.skubware.opentraining.db.parser.SportsEquipmentJSONParser;
-import de.skubware.opentraining.db.parser.WorkoutXMLParser;
+import de.skubware.opentraining.db.parser.WorkoutBinaryParser;
+import de.skubware.opentraining.db.parser.WorkoutBinarySaver;
+import de.skubware.opentraining.db.parser.WorkoutJournal;
+import de.skubware.opentraining.db.parser.WorkoutXMLPullParser;
 import de.skubware.opentraining.db.parser.XMLSaver;
 
 /**
@@ -63,6 +79,12 @@ public class DataProvider implements IDataProvider {
 	 */
 	public static final String format = ".xml";
 
+	/** Extension of the binary {@link Workout} files */
+	public static final String BINARY_FORMAT = ".workout";
+
+	/** Maximum number of threads for parsing the workouts */
+	private static final int MAX_WORKOUT_LOADERS = 4;
+
 	private Context mContext;
 
 	/**
@@ -82,7 +104,7 @@ public class DataProvider implements IDataProvider {
 			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		return new ArrayList<ExerciseType>(Cache.INSTANCE.getExercises());
+		return Cache.INSTANCE.getExercises();
 	}
 
 	/**
@@ -94,40 +116,81 @@ public class DataProvider implements IDataProvider {
 	List<ExerciseType> loadExercises() {
 		
 		Log.v(TAG, "Loading provided default exercises");
-		List<ExerciseType> list = new ArrayList<ExerciseType>();
+		List<ExerciseType> list = loadDefaultExercises(listDefaultExerciseFiles());
+		Collections.sort(list);
+
+		// handle custom exercises in #IDataProvider.CUSTOM_EXERCISE_FOLDER
+		list.addAll(loadCustomExercises());
+		
+		// handle synced exercises in #IDataProvider.SYNCED_EXERCISE_FOLDER
+		list.addAll(loadSyncedExercises());
+		
+
+		Collections.sort(list);
+		
+		return list;
+	}
+
+	/**
+	 * Lists the .xml files of the provided default exercises.
+	 * 
+	 * @return The names of the files in {@link IDataProvider#EXERCISE_FOLDER}
+	 */
+	List<String> listDefaultExerciseFiles() {
+		List<String> fileList = new ArrayList<String>();
 
 		try {
 			String[] files = mContext.getAssets().list(IDataProvider.EXERCISE_FOLDER);
-			ExerciseTypeXMLParser parser = new ExerciseTypeXMLParser(mContext, ExerciseSource.DEFAULT);
-
 			for (String f : files) {
 				if (f.endsWith(format)) {
-					ExerciseType ex = parser.read(mContext.getAssets().open(IDataProvider.EXERCISE_FOLDER + "/" + f));
-					list.add(ex);
+					fileList.add(f);
 				}
 			}
-
-			Collections.sort(list);
 		} catch (IOException ioEx) {
-			Log.e(TAG, "Error during parsing exercises.", ioEx);
+			Log.e(TAG, "Error during listing exercises.", ioEx);
 		}
 
-		// handle custom exercises in #IDataProvider.CUSTOM_EXERCISE_FOLDER
-		list.addAll(loadCustomExercises());
-		
-		// handle synced exercises in #IDataProvider.SYNCED_EXERCISE_FOLDER
-		list.addAll(loadSyncedExercises());
-		
+		return fileList;
+	}
+
+	/**
+	 * Parses the given provided default exercises. All files are parsed with
+	 * the same pooled parser, so each thread should call this method with its
+	 * own share of files.
+	 * 
+	 * @param files
+	 *            The names of the files in {@link IDataProvider#EXERCISE_FOLDER}
+	 * 
+	 * @return The parsed {@link ExerciseType}s, in the order of the files
+	 */
+	List<ExerciseType> loadDefaultExercises(List<String> files) {
+		List<ExerciseType> list = new ArrayList<ExerciseType>();
+		ExerciseTypeXMLParser parser = ParserFactory.INSTANCE.obtainExerciseParser(mContext, ExerciseSource.DEFAULT);
+
+		try {
+			for (String f : files) {
+				try {
+					ExerciseType ex = parser.read(mContext.getAssets().open(IDataProvider.EXERCISE_FOLDER + "/" + f));
+					if(ex != null){
+						list.add(ex);
+					}else{
+						Log.e(TAG, "Exercise parser returned null for: " + f);
+					}
+				} catch (IOException ioEx) {
+					Log.e(TAG, "Error during parsing exercise: " + f, ioEx);
+				}
+			}
+		} finally {
+			ParserFactory.INSTANCE.recycle(parser);
+		}
 
-		Collections.sort(list);
-		
 		return list;
 	}
 	
 	/**
 	 * Loads the custom exercises.
 	 */
-	private List<ExerciseType> loadCustomExercises() {
+	List<ExerciseType> loadCustomExercises() {
 		List<ExerciseType> list = new ArrayList<ExerciseType>();
 
 		Log.v(TAG, "Loading custom exercises");
@@ -140,17 +203,21 @@ public class DataProvider implements IDataProvider {
 		}
 		
 		String[] customFiles = customExerciseFolder.list();
-		ExerciseTypeXMLParser parser = new ExerciseTypeXMLParser(mContext, ExerciseSource.CUSTOM);
-
-		for (String f : customFiles) {
-			if (f.endsWith(format)) {
-				ExerciseType ex = parser.read(new File(customExerciseFolder + "/" + f));
-				if(ex != null){
-					list.add(ex);
-				}else{
-					Log.e(TAG, "Exercise parser returned null");
+		ExerciseTypeXMLParser parser = ParserFactory.INSTANCE.obtainExerciseParser(mContext, ExerciseSource.CUSTOM);
+
+		try {
+			for (String f : customFiles) {
+				if (f.endsWith(format)) {
+					ExerciseType ex = parser.read(new File(customExerciseFolder + "/" + f));
+					if(ex != null){
+						list.add(ex);
+					}else{
+						Log.e(TAG, "Exercise parser returned null");
+					}
 				}
 			}
+		} finally {
+			ParserFactory.INSTANCE.recycle(parser);
 		}
 		return list;
 	}
@@ -171,17 +238,21 @@ public class DataProvider implements IDataProvider {
 		}
 		
 		String[] syncedFiles = syncedExerciseFolder.list();
-		ExerciseTypeXMLParser parser = new ExerciseTypeXMLParser(mContext, ExerciseSource.SYNCED);
-
-		for (String f : syncedFiles) {
-			if (f.endsWith(format)) {
-				ExerciseType ex = parser.read(new File(syncedExerciseFolder + "/" + f));
-				if(ex != null){
-					list.add(ex);
-				}else{
-					Log.e(TAG, "Exercise parser returned null");
+		ExerciseTypeXMLParser parser = ParserFactory.INSTANCE.obtainExerciseParser(mContext, ExerciseSource.SYNCED);
+
+		try {
+			for (String f : syncedFiles) {
+				if (f.endsWith(format)) {
+					ExerciseType ex = parser.read(new File(syncedExerciseFolder + "/" + f));
+					if(ex != null){
+						list.add(ex);
+					}else{
+						Log.e(TAG, "Exercise parser returned null");
+					}
 				}
 			}
+		} finally {
+			ParserFactory.INSTANCE.recycle(parser);
 		}
 		return list;
 	}
@@ -211,24 +282,63 @@ public class DataProvider implements IDataProvider {
 		}
 
 		// update Cache, as an Exercise has changed
-		new Thread() {
-			@Override
-			public void run() {
-				Cache.INSTANCE.updateExerciseCache(mContext);
+		Cache.INSTANCE.updateExerciseCache(mContext);
+
+		return unsavedExercises;
+	}
+	
+	@Override
+	public List<String> deleteSyncedExercises(List<String> nameList) {
+		List<String> undeletedNames = new ArrayList<String>();
+
+		if (nameList == null || nameList.isEmpty()) {
+			return undeletedNames;
+		}
+		File exerciseFolder = new File(mContext.getFilesDir().toString() + "/"
+				+ IDataProvider.SYNCED_EXERCISE_FOLDER);
+		File imageFolder = new File(mContext.getFilesDir().toString() + "/"
+				+ IDataProvider.SYNCED_IMAGES_FOLDER);
+
+		// collect the images of the deleted exercises ...
+		Set<String> deletedNames = new HashSet<String>();
+		Set<String> imageNames = new HashSet<String>();
+		for (String name : nameList) {
+			Log.d(TAG, "Trying to delete exercise: " + name);
+			ExerciseType ex = getExerciseByName(name);
+			File file = new File(exerciseFolder, name + ".xml");
+			if (file.exists() && !file.delete()) {
+				Log.e(TAG, "The exercise " + name + " could not be deleted.");
+				undeletedNames.add(name);
+				continue;
 			}
-		}.run();
 
-		// ugly workaround for multi-threading problems:
-		// updateExerciseCache must at least be started
-		try {
-			Thread.sleep(50);
-		} catch (InterruptedException e) {
-			Log.e(TAG, "Thread was interrupted.");
+			deletedNames.add(name);
+			if (ex != null) {
+				for (File img : ex.getImagePaths()) {
+					imageNames.add(img.getName());
+				}
+			}
 		}
 
-		return unsavedExercises;
+		// ... and delete the ones that are not used by another exercise
+		for (ExerciseType ex : getExercises()) {
+			if (deletedNames.contains(ex.getUnlocalizedName())) {
+				continue;
+			}
+			for (File img : ex.getImagePaths()) {
+				imageNames.remove(img.getName());
+			}
+		}
+		for (String imageName : imageNames) {
+			new File(imageFolder, imageName).delete();
+		}
+
+		// update Cache, as an Exercise has changed
+		Cache.INSTANCE.updateExerciseCache(mContext);
+
+		return undeletedNames;
 	}
-	
+
 	@Override
 	public boolean saveCustomExercise(ExerciseType ex) {
 		Log.d(TAG, "Trying to save exercise: " + ex.toString());
@@ -239,25 +349,41 @@ public class DataProvider implements IDataProvider {
 
 		if (succ) {
 			// update Cache, as an Exercise has changed
-			new Thread() {
-				@Override
-				public void run() {
-					Cache.INSTANCE.updateExerciseCache(mContext);
-				}
-			}.run();
-
-			// ugly workaround for multi-threading problems:
-			// updateExerciseCache must at least be started
-			try {
-				Thread.sleep(50);
-			} catch (InterruptedException e) {
-				Log.e(TAG, "Thread was interrupted.");
-			}
+			Cache.INSTANCE.updateExerciseCache(mContext);
 		}
 		
 		return succ;
 	}
 	
+	@Override
+	public List<ExerciseType> saveCustomExercises(List<ExerciseType> exerciseList) {
+		List<ExerciseType> unsavedExercises = new ArrayList<ExerciseType>();
+
+		if(exerciseList == null || exerciseList.isEmpty()) {
+			return unsavedExercises;
+		}
+		File destination = new File(mContext.getFilesDir().toString() + "/"
+				+ IDataProvider.CUSTOM_EXERCISE_FOLDER);
+
+		for (ExerciseType exercise : exerciseList) {
+			Log.d(TAG, "Trying to save exercise: " + exercise.toString());
+
+			boolean succ = XMLSaver.writeExerciseType(exercise, destination);
+
+			if (!succ) {
+				Log.e(TAG, "The exercise " + exercise.toString() + " could not be saved.");
+				unsavedExercises.add(exercise);
+			}
+		}
+
+		// update Cache once, as Exercises have changed
+		if (unsavedExercises.size() < exerciseList.size()) {
+			Cache.INSTANCE.updateExerciseCache(mContext);
+		}
+
+		return unsavedExercises;
+	}
+	
 	@Override
 	public boolean deleteCustomExercise(ExerciseType ex){
 		Log.d(TAG, "Trying to delete exercise: " + ex.toString());
@@ -293,7 +419,6 @@ public class DataProvider implements IDataProvider {
 			Log.d(TAG, "The exercise XML of " + ex.toString() + " has been deleted.");
 		}
 		
-		Cache.INSTANCE.getExercises().remove(ex);
 		Cache.INSTANCE.updateExerciseCache(mContext);
 		
 		return xmlDeleteSucc & succ;
@@ -330,25 +455,24 @@ public class DataProvider implements IDataProvider {
 
 	@Override
 	public ExerciseType getExerciseByName(String name) {
-		for (ExerciseType ex : this.getExercises()) {
-			if(ex.getAlternativeNames().contains(name)) {
-				return ex;
-			}
+		if (Cache.INSTANCE.getExercises() == null) {
+			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		Log.w(TAG, "Could not find the requested exercise: " + name);
-		return null;
+		ExerciseType ex = Cache.INSTANCE.getExerciseByName(name);
+		if (ex == null) {
+			Log.w(TAG, "Could not find the requested exercise: " + name);
+		}
+		return ex;
 	}
 
 	@Override
 	public boolean exerciseExists(String name) {
-		for (ExerciseType ex : this.getExercises()) {
-			if(ex.getAlternativeNames().contains(name)) {
-				return true;
-			}
+		if (Cache.INSTANCE.getExercises() == null) {
+			Cache.INSTANCE.updateCache(mContext);
 		}
-		
-		return false;
+
+		return Cache.INSTANCE.getExerciseByName(name) != null;
 	}
 
 	@Override
@@ -357,7 +481,7 @@ public class DataProvider implements IDataProvider {
 			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		return new ArrayList<Muscle>(Cache.INSTANCE.getMuscles());
+		return Cache.INSTANCE.getMuscles();
 	}
 
 	/**
@@ -381,13 +505,11 @@ public class DataProvider implements IDataProvider {
 
 	@Override
 	public Muscle getMuscleByName(String name) {
-		for (Muscle m : getMuscles()) {
-			if (m.isAlternativeName(name)) {
-				return m;
-			}
+		if (Cache.INSTANCE.getMuscles() == null) {
+			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		return null;
+		return Cache.INSTANCE.getMuscleByName(name);
 	}
 
 	@Override
@@ -396,7 +518,7 @@ public class DataProvider implements IDataProvider {
 			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		return new ArrayList<SportsEquipment>(Cache.INSTANCE.getEquipment());
+		return Cache.INSTANCE.getEquipment();
 	}
 
 	/**
@@ -420,13 +542,11 @@ public class DataProvider implements IDataProvider {
 
 	@Override
 	public SportsEquipment getEquipmentByName(String name) {
-		for (SportsEquipment m : getEquipment()) {
-			if (m.isAlternativeName(name)) {
-				return m;
-			}
+		if (Cache.INSTANCE.getEquipment() == null) {
+			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		return null;
+		return Cache.INSTANCE.getEquipmentByName(name);
 	}
 	
 	@Override
@@ -435,7 +555,7 @@ public class DataProvider implements IDataProvider {
 			Cache.INSTANCE.updateCache(mContext);
 		}
 
-		return new ArrayList<ExerciseTag>(Cache.INSTANCE.getExerciseTags());
+		return Cache.INSTANCE.getExerciseTags();
 	}
 
 	/**
@@ -459,10 +579,13 @@ public class DataProvider implements IDataProvider {
 
 	@Override
 	public ExerciseTag getExerciseTagByName(String name) {
-		for (ExerciseTag m : getExerciseTags()) {
-			if (m.isAlternativeName(name)) {
-				return m;
-			}
+		if (Cache.INSTANCE.getExerciseTags() == null) {
+			Cache.INSTANCE.updateCache(mContext);
+		}
+
+		ExerciseTag tag = Cache.INSTANCE.getExerciseTagByName(name);
+		if (tag != null) {
+			return tag;
 		}
 		
 		Log.w(TAG, "Did not find ExerciseTag: " + name + ".\n Will create new ExerciseTag.");
@@ -491,54 +614,271 @@ public class DataProvider implements IDataProvider {
 	@Override
 	public List<Workout> getWorkouts() {
 		if (Cache.INSTANCE.getWorkouts() == null) {
+			// the workouts refer to the exercises
+			if (Cache.INSTANCE.getExercises() == null) {
+				Cache.INSTANCE.updateCache(mContext);
+			}
+			Cache.INSTANCE.loadWorkoutCache(mContext);
+		}
+
+		return Cache.INSTANCE.getWorkouts();
+	}
+
+	@Override
+	public List<WorkoutSummary> getWorkoutSummaries() {
+		List<Workout> workoutList = Cache.INSTANCE.getWorkouts();
+		if (workoutList == null) {
+			List<String> idList = Cache.INSTANCE.getWorkoutStore(mContext).listWorkoutIds(this);
+			// without any workouts the example workouts have to be copied, which loading does
+			List<WorkoutSummary> summaryList = idList.isEmpty() ? null : Cache.INSTANCE.getWorkoutSummaryIndex(mContext).get(
+					idList);
+			if (summaryList != null) {
+				return Collections.unmodifiableList(summaryList);
+			}
+
+			Log.d(TAG, "Workout index is incomplete, will load all workouts.");
+			workoutList = getWorkouts();
+		}
+
+		List<WorkoutSummary> summaryList = new ArrayList<WorkoutSummary>();
+		for (Workout w : workoutList) {
+			summaryList.add(new WorkoutSummary(w));
+		}
+		return Collections.unmodifiableList(summaryList);
+	}
+
+	@Override
+	public Workout getWorkout(String id) {
+		CatalogSnapshot snapshot = Cache.INSTANCE.getSnapshot();
+		if (snapshot.getWorkouts() != null) {
+			return snapshot.getWorkoutById(id);
+		}
+
+		// the workouts refer to the exercises
+		if (Cache.INSTANCE.getExercises() == null) {
 			Cache.INSTANCE.updateCache(mContext);
 		}
+		return Cache.INSTANCE.getWorkoutStore(mContext).load(id, this);
+	}
+
+	/**
+	 * Parses the {@link Workout} files concurrently. Each worker obtains its
+	 * own {@link IWorkoutParser}s and uses them for all of its files.
+	 * 
+	 * Exercises that are referenced by the workouts but do not exist are
+	 * created as custom exercises in one batch, after all files have been
+	 * parsed.
+	 * 
+	 * @param files
+	 *            The .xml or binary files to parse
+	 * 
+	 * @return The workouts in the order of the files, null for the files that
+	 *         could not be read
+	 */
+	List<Workout> loadWorkouts(List<File> files) {
+		final Workout[] workouts = new Workout[files.size()];
+		MissingExercises missingExercises = new MissingExercises();
+		int workerCount = Math.min(files.size(), Math.max(2, Math.min(MAX_WORKOUT_LOADERS, Runtime.getRuntime().availableProcessors())));
+		if (workerCount <= 1) {
+			missingExercises.addAll(loadWorkouts(files, workouts, 0, 1));
+			saveMissingExercises(missingExercises);
+			return Arrays.asList(workouts);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+		try {
+			// every worker takes every workerCount-th file
+			List<Future<List<ExerciseType>>> futures = new ArrayList<Future<List<ExerciseType>>>();
+			for (int k = 0; k < workerCount; k++) {
+				final List<File> share = new ArrayList<File>();
+				for (int i = k; i < files.size(); i += workerCount) {
+					share.add(files.get(i));
+				}
+				final int first = k;
+				final int step = workerCount;
+				futures.add(executor.submit(new Callable<List<ExerciseType>>() {
+					@Override
+					public List<ExerciseType> call() {
+						return loadWorkouts(share, workouts, first, step);
+					}
+				}));
+			}
+
+			for (Future<List<ExerciseType>> future : futures) {
+				missingExercises.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Log.e(TAG, "Loading workouts was interrupted.", e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Log.e(TAG, "Loading workouts failed.", e);
+		} finally {
+			executor.shutdownNow();
+		}
 
-		return new ArrayList<Workout>(Cache.INSTANCE.getWorkouts());
+		saveMissingExercises(missingExercises);
+		return Arrays.asList(workouts);
 	}
-	
 
-	public List<Workout> loadWorkouts() {
-		List<Workout> workoutList = new ArrayList<Workout>();
+	/**
+	 * Parses the share of one worker. The .xml files are read with a pooled
+	 * {@link WorkoutXMLPullParser}, the binary files with a
+	 * {@link WorkoutBinaryParser}.
+	 * 
+	 * @param share
+	 *            The files to parse
+	 * @param workouts
+	 *            The array for the results
+	 * @param first
+	 *            The index of the first file in the array
+	 * @param step
+	 *            The distance of two files of this share in the array
+	 * 
+	 * @return The placeholders of the exercises that have not been found
+	 */
+	private List<ExerciseType> loadWorkouts(List<File> share, Workout[] workouts, int first, int step) {
+		WorkoutXMLPullParser xmlParser = null;
+		WorkoutBinaryParser binaryParser = new WorkoutBinaryParser(this);
+		MissingExercises missingExercises = new MissingExercises();
+		try {
+			for (int i = 0; i < share.size(); i++) {
+				File file = share.get(i);
+				IWorkoutParser parser = binaryParser;
+				if (!file.getName().endsWith(BINARY_FORMAT)) {
+					if (xmlParser == null) {
+						xmlParser = ParserFactory.INSTANCE.obtainWorkoutParser(mContext);
+					}
+					parser = xmlParser;
+				}
+				workouts[first + i * step] = loadWorkout(file, parser);
+			}
+
+			missingExercises.addAll(binaryParser.takeMissingExercises());
+			if (xmlParser != null) {
+				missingExercises.addAll(xmlParser.takeMissingExercises());
+			}
+		} finally {
+			if (xmlParser != null) {
+				ParserFactory.INSTANCE.recycle(xmlParser);
+			}
+		}
+		return missingExercises.take();
+	}
+
+	/**
+	 * Saves the placeholders of the exercises that have not been found while
+	 * loading workouts. This is done once after all workouts have been loaded,
+	 * as saving reloads all exercises.
+	 */
+	private void saveMissingExercises(MissingExercises missingExercises) {
+		List<ExerciseType> placeholders = missingExercises.take();
+		if (placeholders.isEmpty()) {
+			return;
+		}
 
-		// list files in directory that end with format
-		String files[] = mContext.getFilesDir().list(new FilenameFilter() {
+		Log.w(TAG, "Creating " + placeholders.size() + " missing exercises as custom exercises.");
+		saveCustomExercises(placeholders);
+	}
+	
+	/**
+	 * Lists the {@link Workout} files. If there is a binary and an .xml file
+	 * for the same workout, only the binary file is listed. The binary files
+	 * are named after the ID of the workout, unless they have not been
+	 * converted yet (see {@link #convertLegacyWorkoutFiles()}).
+	 * 
+	 * @return The binary and .xml files in the files directory of the app,
+	 *         never null
+	 */
+	File[] listWorkoutFiles() {
+		// list files in directory that end with format or BINARY_FORMAT
+		File files[] = mContext.getFilesDir().listFiles(new FilenameFilter() {
 			@Override
 			public boolean accept(File dir, String filename) {
-				if (filename.endsWith(format) && !filename.equals(ShareActionProvider.DEFAULT_SHARE_HISTORY_FILE_NAME)) {
+				if (filename.endsWith(BINARY_FORMAT)) {
 					return true;
-				} else {
-					return false;
 				}
+				if (filename.endsWith(format) && !filename.equals(ShareActionProvider.DEFAULT_SHARE_HISTORY_FILE_NAME)) {
+					// skip .xml files that have already been converted
+					String name = filename.substring(0, filename.length() - format.length());
+					return !new File(dir, name + BINARY_FORMAT).exists();
+				}
+				return false;
 			}
 		});
-		
-		if(files.length == 0){		
-			Log.d(TAG, "No workouts found, will copy example Workouts");
-			copyExampleWorkouts();
-			return getWorkouts();
+
+		return files == null ? new File[0] : files;
+	}
+
+	/**
+	 * Converts the {@link Workout} files that are not named after the ID of
+	 * the workout to the current binary format: the .xml files (e.g. the
+	 * example workouts or the files of older versions of the app) and the
+	 * binary files of older versions, which were named after the workout. The
+	 * old file and its journal are deleted after the conversion, if the
+	 * conversion fails the old file is kept.
+	 * 
+	 * The .xml format is still used for sharing and exporting workouts, see
+	 * {@link XMLSaver}.
+	 */
+	void convertLegacyWorkoutFiles() {
+		List<File> legacyFiles = new ArrayList<File>();
+		for (File f : listWorkoutFiles()) {
+			if (f.getName().endsWith(format) || !isWorkoutId(baseName(f))) {
+				legacyFiles.add(f);
+			}
 		}
+		if (legacyFiles.isEmpty()) {
+			return;
+		}
+
+		List<Workout> workoutList = loadWorkouts(legacyFiles);
+		int converted = 0;
+		for (int i = 0; i < legacyFiles.size(); i++) {
+			File legacyFile = legacyFiles.get(i);
+			Workout w = workoutList.get(i);
+			if (w == null) {
+				Log.e(TAG, "Could not convert workout file " + legacyFile + ", will keep it.");
+				continue;
+			}
 
-		// parse each file
-		for (String file : files) {
-			Workout w = this.loadWorkout(mContext.getFilesDir().toString() + "/" + file);
-			
-			if(w != null){
-				workoutList.add(w);
-			}else{
-				Log.e(TAG, "Read Workout and parser returned null. This should not happen. Either the Workout XML-Parser or the XML-Saver is buggy.");
-			}	
+			String name = baseName(legacyFile);
+			if (WorkoutBinarySaver.writeWorkout(w, new File(mContext.getFilesDir(), w.getId() + BINARY_FORMAT))) {
+				// the journal has been replayed and is contained in the new file
+				new WorkoutJournal(mContext.getFilesDir(), name).delete();
+				legacyFile.delete();
+				// an .xml file that has already been converted before
+				new File(mContext.getFilesDir(), name + format).delete();
+				converted++;
+			}
 		}
+		Log.i(TAG, "Converted " + converted + " of " + legacyFiles.size() + " workout files to the current format.");
+	}
 
-		Log.v(TAG, "Read " + files.length + " Workouts. workoutList.size()= " + workoutList.size());
+	/**
+	 * @return The name of the file without extension
+	 */
+	static String baseName(File file) {
+		String name = file.getName();
+		return name.substring(0, name.lastIndexOf('.'));
+	}
 
-		return workoutList;
+	/**
+	 * Checks if the name of a workout file is an ID, see
+	 * {@link Workout#createId()}. Older versions of the app named the files
+	 * after the workout.
+	 */
+	static boolean isWorkoutId(String name) {
+		try {
+			return UUID.fromString(name).toString().equals(name);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
 	}
-	
+
 	/**
 	 * Copies the example Workouts to the file system.
 	 */
-	private void copyExampleWorkouts() {
+	void copyExampleWorkouts() {
 		try {
 			String[] exampleWorkouts = mContext.getAssets().list(
 					IDataProvider.EXAMPLE_WORKOUT_FOLDER);
@@ -578,106 +918,83 @@ public class DataProvider implements IDataProvider {
 	
 
 	/**
-	 * Tries to load and parse a {@link Workout} .xml file.
+	 * Tries to load and parse a {@link Workout} file.
 	 * 
 	 * @param path
-	 *            The path of the .xml file
+	 *            The path of the .xml or binary file
 	 * 
 	 * @return The {@link Workout} or null if the file could not be read
 	 */
-	private Workout loadWorkout(String path) {
-		String xmlData;
-		try {
-			DataHelper helper = new DataHelper(mContext);
-			xmlData = helper.loadFileFromFileSystem(path);
-
-			// write file again ...
-			FileOutputStream fos = mContext.openFileOutput("my_xml", Context.MODE_PRIVATE);
-			fos.write(xmlData.getBytes());
-			fos.close();
-
-			// ... to read it
-			WorkoutXMLParser parser = new WorkoutXMLParser();
-			Workout w = parser.read(mContext.getFileStreamPath("my_xml"), mContext);
+	Workout loadWorkout(String path) {
+		return loadWorkouts(Arrays.asList(new File(path))).get(0);
+	}
 
-			if (w == null) {
-				Log.e(TAG, "Read Workout and parser returned null. This should not happen");
-			}
-			return w;
-		} catch (IOException e) {
-			Log.i(TAG, "Could not read training plan \n" + e.getMessage());
-			return null;
+	/**
+	 * Parses a {@link Workout} file with the given parser.
+	 * 
+	 * @param file
+	 *            The .xml or binary file
+	 * @param parser
+	 *            The parser, must not be used by another thread meanwhile
+	 * 
+	 * @return The {@link Workout} or null if the file could not be read
+	 */
+	private Workout loadWorkout(File file, IWorkoutParser parser) {
+		Workout w = parser.read(file, mContext);
+		if (w == null) {
+			Log.e(TAG, "Read Workout and parser returned null. This should not happen");
 		}
-
+		return w;
 	}
 	
-
 	
 	@Override
 	public boolean saveWorkout(Workout w) {
-		boolean succ = XMLSaver.writeTrainingPlan(w, mContext.getFilesDir());
-		
-		// update Cache, as Workout has changed
-		new Thread() {
-			@Override
-			public void run() {
-				Cache.INSTANCE.updateWorkoutCache(mContext);
-			}
-		}.start();
-		
-
-		// ugly workaround for multi-threading problems:
-		// updateWorkoutCache must at least be started
-		try {
-			Thread.sleep(50);
-		} catch (InterruptedException e) {
-			Log.e(TAG, "Thread was interrupted.");
-		}
-
-
-		return succ;
+		return WorkoutSaveQueue.INSTANCE.saveNow(mContext, w);
 	}
 	
 	/**
-	 * Does the same as #saveWorkout(Workout), but the task is executed in a new
-	 * Thread.
+	 * Does the same as #saveWorkout(Workout), but the task is executed in the
+	 * background. Saves that follow each other quickly are combined.
 	 * 
 	 * @param w
 	 *            The {@link Workout} to save
+	 * 
+	 * @see WorkoutSaveQueue#save(Context, Workout)
 	 */
 	public void saveWorkoutAsync(final Workout w){
-		new Thread() {
-			@Override
-			public void run() {
-				boolean succ = saveWorkout(w);
-				
-				if(!succ)
-					Log.e(TAG, "Could not save Workout: " + w.toDebugString());
-			}
-		}.start();
+		WorkoutSaveQueue.INSTANCE.save(mContext, w);
 	}
 
-	@Override
-	public synchronized boolean deleteWorkout(Workout w) {
-		File directory = mContext.getFilesDir();
-		File workout_file = new File(directory.toString() + "/" + w.getName() + format);
-		
-		if(!workout_file.exists()){
-			Log.e(TAG, "The workout " + w.toDebugString() + " that should be deleted does not exist.");
-		}
+	/**
+	 * Does the same as #saveWorkoutAsync(Workout), but only the given exercise
+	 * may have changed since the last save of the workout, e.g. because a set
+	 * has been checked during a training.
+	 * 
+	 * @param w
+	 *            The {@link Workout} to save
+	 * @param changedFEx
+	 *            The {@link FitnessExercise} that has changed
+	 * 
+	 * @see WorkoutSaveQueue#save(Context, Workout, FitnessExercise)
+	 */
+	public void saveWorkoutAsync(Workout w, FitnessExercise changedFEx) {
+		WorkoutSaveQueue.INSTANCE.save(mContext, w, changedFEx);
+	}
 
-		boolean succ = workout_file.delete();
-		
-		// update Cache, as Workout has changed
-		new Thread() {
+	@Override
+	public boolean deleteWorkout(final Workout w) {
+		// deleting is queued as well, so that a pending save cannot restore the file
+		return WorkoutSaveQueue.INSTANCE.execute(mContext.getApplicationContext(), w, new Callable<Boolean>() {
 			@Override
-			public void run() {
-				Cache.INSTANCE.updateWorkoutCache(mContext);
+			public Boolean call() {
+				boolean succ = Cache.INSTANCE.getWorkoutStore(mContext).delete(w);
+				if (succ) {
+					Cache.INSTANCE.getWorkoutSummaryIndex(mContext).remove(w.getId());
+				}
+				return succ;
 			}
-		}.start();
-
-		return succ;
-		
+		});
 	}
 
 
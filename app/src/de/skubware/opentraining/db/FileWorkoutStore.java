@@ -0,0 +1,240 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.parser.WorkoutJournal;
+import de.skubware.opentraining.db.parser.WorkoutBinarySaver;
+
+/**
+ * The default {@link WorkoutStore}: one binary file per {@link Workout} in the
+ * files directory of the app, see {@link WorkoutBinarySaver}. The file is named
+ * after the ID of the workout, so renaming a workout does not move any files.
+ * The .xml files and the binary files of older versions are converted when
+ * they are loaded for the first time.
+ *
+ * Changes of the training entries are appended to the {@link WorkoutJournal}
+ * of the workout instead of writing the whole binary file again. Journals that
+ * have grown too large are compacted into the binary file in the background
+ * by the {@link WorkoutSaveQueue}.
+ *
+ */
+class FileWorkoutStore implements WorkoutStore {
+	/** Tag for logging */
+	private static final String TAG = "FileWorkoutStore";
+
+	private final Context mContext;
+
+	/** Guarded by this */
+	private final WorkoutFileIndex mWorkoutFileIndex = new WorkoutFileIndex();
+
+	/**
+	 * The last written state of each workout (by ID). Only accessed by the
+	 * writer thread of the {@link WorkoutSaveQueue}.
+	 */
+	private final Map<String, WorkoutJournal.State> mWrittenStateMap = new HashMap<String, WorkoutJournal.State>();
+
+	/** The IDs of the workouts whose journal will be compacted. Only accessed by the writer thread. */
+	private final Set<String> mCompactionSet = new HashSet<String>();
+
+	FileWorkoutStore(Context context) {
+		mContext = context.getApplicationContext();
+	}
+
+	@Override
+	public synchronized WorkoutDelta refresh(DataProvider dataProvider) {
+		return mWorkoutFileIndex.refresh(dataProvider);
+	}
+
+	@Override
+	public synchronized List<Workout> getWorkouts() {
+		return mWorkoutFileIndex.getWorkouts();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The files are named after the IDs. Files that have not been converted
+	 * yet are named after the workout instead, so their names are unknown IDs.
+	 */
+	@Override
+	public List<String> listWorkoutIds(DataProvider dataProvider) {
+		List<String> idList = new ArrayList<String>();
+		for (File file : dataProvider.listWorkoutFiles()) {
+			idList.add(DataProvider.baseName(file));
+		}
+		return idList;
+	}
+
+	@Override
+	public Workout load(String id, DataProvider dataProvider) {
+		File file = workoutFile(id);
+		if (!file.exists()) {
+			return null;
+		}
+		return dataProvider.loadWorkouts(Collections.singletonList(file)).get(0);
+	}
+
+	@Override
+	public synchronized void invalidate() {
+		mWorkoutFileIndex.invalidate();
+	}
+
+	@Override
+	public boolean write(Workout w) {
+		WorkoutJournal.State state;
+		try {
+			state = new WorkoutJournal.State(w);
+		} catch (ErrorException e) {
+			Log.e(TAG, "Workout is inconsistent, will write complete workout.", e);
+			state = null;
+		}
+
+		WorkoutJournal.State writtenState = mWrittenStateMap.get(w.getId());
+		List<String> events = (state == null || writtenState == null) ? null : state.diff(writtenState);
+		if (events != null) {
+			if (events.isEmpty() || appendToJournal(w.getId(), events)) {
+				mWrittenStateMap.put(w.getId(), state);
+				putWritten(w, true);
+				return true;
+			}
+		}
+
+		// the first write after starting the app always writes the complete workout
+		boolean succ = writeWorkout(w);
+		if (succ && state != null) {
+			mWrittenStateMap.put(w.getId(), state);
+		} else {
+			mWrittenStateMap.remove(w.getId());
+		}
+		if (succ) {
+			putWritten(w, true);
+		}
+		return succ;
+	}
+
+	/**
+	 * Passes the workout that has just been written to the
+	 * {@link WorkoutFileIndex}, so its file does not have to be parsed again.
+	 *
+	 * @param changed
+	 *            false, if the content of the workout has not changed
+	 */
+	private synchronized void putWritten(Workout w, boolean changed) {
+		mWorkoutFileIndex.put(workoutFile(w.getId()), w, changed);
+	}
+
+	/**
+	 * Appends the events to the journal and schedules the compaction if the
+	 * journal has become too large.
+	 *
+	 * @return true if successful, otherwise the complete workout has to be
+	 *         written
+	 */
+	private boolean appendToJournal(final String id, List<String> events) {
+		WorkoutJournal journal = new WorkoutJournal(mContext.getFilesDir(), id);
+		try {
+			journal.append(events, workoutFile(id));
+		} catch (IOException e) {
+			Log.e(TAG, "Could not append to journal, will write complete workout.", e);
+			return false;
+		}
+
+		if (journal.length() > WorkoutJournal.COMPACT_THRESHOLD && mCompactionSet.add(id)) {
+			WorkoutSaveQueue.INSTANCE.scheduleInBackground(new Runnable() {
+				@Override
+				public void run() {
+					compact(id);
+				}
+			});
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the workout, including the events of its journal, to the binary
+	 * file and deletes the journal. Runs on the writer thread.
+	 */
+	private void compact(String id) {
+		mCompactionSet.remove(id);
+
+		Workout w = new DataProvider(mContext).loadWorkout(workoutFile(id).getPath());
+		if (w == null) {
+			// the journal is kept, maybe the next try works
+			Log.e(TAG, "Could not read workout " + id + " for compacting its journal.");
+			return;
+		}
+
+		if (writeWorkout(w)) {
+			putWritten(w, false);
+			Log.d(TAG, "Compacted journal of workout " + w.getName());
+		}
+	}
+
+	/**
+	 * Writes the complete workout to its binary file and deletes its journal.
+	 *
+	 * @return true if successful
+	 */
+	private boolean writeWorkout(Workout w) {
+		if (!WorkoutBinarySaver.writeWorkout(w, workoutFile(w.getId()))) {
+			return false;
+		}
+		new WorkoutJournal(mContext.getFilesDir(), w.getId()).delete();
+		return true;
+	}
+
+	/**
+	 * @return The binary file of the workout with the given ID
+	 */
+	private File workoutFile(String id) {
+		return new File(mContext.getFilesDir(), id + DataProvider.BINARY_FORMAT);
+	}
+
+	@Override
+	public boolean delete(Workout w) {
+		File workoutFile = workoutFile(w.getId());
+		mWrittenStateMap.remove(w.getId());
+		new WorkoutJournal(mContext.getFilesDir(), w.getId()).delete();
+
+		if (!workoutFile.exists()) {
+			Log.e(TAG, "The workout " + w.toDebugString() + " that should be deleted does not exist.");
+			return false;
+		}
+		return workoutFile.delete();
+	}
+
+}
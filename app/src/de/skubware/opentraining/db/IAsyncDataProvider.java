@@ -0,0 +1,126 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Asynchronous counterpart of {@link IDataProvider}. Activities and fragments
+ * should use this interface for all calls that may have to read or write
+ * files, so that the UI thread never blocks.
+ *
+ * Each method returns immediately. The work is done in the background, the
+ * result is delivered to the {@link Callback} on the UI thread. The returned
+ * {@link Future} can be used to cancel the call (e.g. in onDestroy()); after
+ * cancelling, the callback is never called.
+ *
+ */
+public interface IAsyncDataProvider {
+
+	/**
+	 * Receives the result of an asynchronous call. Both methods are called on
+	 * the UI thread.
+	 *
+	 * @param <T>
+	 *            The type of the result
+	 */
+	public interface Callback<T> {
+		/**
+		 * Called when the call succeeded.
+		 *
+		 * @param result
+		 *            The result of the call
+		 */
+		public void onSuccess(T result);
+
+		/**
+		 * Called when the call failed.
+		 *
+		 * @param e
+		 *            The reason
+		 */
+		public void onFailure(Exception e);
+	}
+
+	/**
+	 * @see IDataProvider#getExercises()
+	 */
+	public Future<List<ExerciseType>> getExercises(Callback<List<ExerciseType>> callback);
+
+	/**
+	 * @see IDataProvider#getMuscles()
+	 */
+	public Future<List<Muscle>> getMuscles(Callback<List<Muscle>> callback);
+
+	/**
+	 * @see IDataProvider#getEquipment()
+	 */
+	public Future<List<SportsEquipment>> getEquipment(Callback<List<SportsEquipment>> callback);
+
+	/**
+	 * @see IDataProvider#getExerciseTags()
+	 */
+	public Future<List<ExerciseTag>> getExerciseTags(Callback<List<ExerciseTag>> callback);
+
+	/**
+	 * @see IDataProvider#getWorkouts()
+	 */
+	public Future<List<Workout>> getWorkouts(Callback<List<Workout>> callback);
+
+	/**
+	 * @see IDataProvider#getWorkoutSummaries()
+	 */
+	public Future<List<WorkoutSummary>> getWorkoutSummaries(Callback<List<WorkoutSummary>> callback);
+
+	/**
+	 * @see IDataProvider#getWorkout(String)
+	 */
+	public Future<Workout> getWorkout(String id, Callback<Workout> callback);
+
+	/**
+	 * @see IDataProvider#saveWorkout(Workout)
+	 */
+	public Future<Boolean> saveWorkout(Workout w, Callback<Boolean> callback);
+
+	/**
+	 * @see IDataProvider#deleteWorkout(Workout)
+	 */
+	public Future<Boolean> deleteWorkout(Workout w, Callback<Boolean> callback);
+
+	/**
+	 * @see IDataProvider#saveCustomExercise(ExerciseType)
+	 */
+	public Future<Boolean> saveCustomExercise(ExerciseType ex, Callback<Boolean> callback);
+
+	/**
+	 * @see IDataProvider#saveSyncedExercises(List)
+	 */
+	public Future<List<ExerciseType>> saveSyncedExercises(List<ExerciseType> exerciseList,
+			Callback<List<ExerciseType>> callback);
+
+}
@@ -69,7 +69,8 @@ public interface IDataProvider {
 	/**
 	 * Lists all {@link ExerciseType}s
 	 * 
-	 * @return All {@link ExerciseType}s
+	 * @return All {@link ExerciseType}s. The returned list is unmodifiable, callers
+	 *         that want to change it have to copy it first.
 	 */
 	public List<ExerciseType> getExercises();
 
@@ -83,6 +84,18 @@ public interface IDataProvider {
 	 */
 	public boolean saveCustomExercise(ExerciseType ex);
 
+	/**
+	 * Saves several (user-generated) exercises to
+	 * {@link CUSTOM_EXERCISE_FOLDER}. The exercise cache is only updated once
+	 * for all exercises.
+	 * 
+	 * @param exerciseList
+	 *            The {@link ExerciseType}s to save.
+	 * 
+	 * @return all exercises that could not be saved
+	 */
+	public List<ExerciseType> saveCustomExercises(List<ExerciseType> exerciseList);
+
 	/**
 	 * Deletes the (user-generated) exercise if available.
 	 * Will also delete related images if not referenced anywhere else.
@@ -119,6 +132,18 @@ public interface IDataProvider {
 	 * @return all exercises that could not be saved
 	 */
 	public List<ExerciseType> saveSyncedExercises(List<ExerciseType> exerciseList);	
+
+	/**
+	 * Deletes the (synced) exercises from {@link SYNCED_EXERCISE_FOLDER}, e.g.
+	 * because they have been removed from the server. Their images are
+	 * deleted too, unless another exercise uses them.
+	 * 
+	 * @param nameList
+	 *            The names of the exercises to delete
+	 * 
+	 * @return the names of all exercises that could not be deleted
+	 */
+	public List<String> deleteSyncedExercises(List<String> nameList);
 	
 	/**
 	 * Tries to find and return the exercise with the name.
@@ -143,7 +168,8 @@ public interface IDataProvider {
 	/**
 	 * Lists all {@link Muscle}s
 	 * 
-	 * @return All {@link Muscle}s
+	 * @return All {@link Muscle}s. The returned list is unmodifiable, callers
+	 *         that want to change it have to copy it first.
 	 */
 	public List<Muscle> getMuscles();
 
@@ -170,7 +196,8 @@ public interface IDataProvider {
 	/**
 	 * Lists all {@link SportsEquipment}s
 	 * 
-	 * @return All {@link SportsEquipment}s
+	 * @return All {@link SportsEquipment}s. The returned list is unmodifiable, callers
+	 *         that want to change it have to copy it first.
 	 */
 	public List<SportsEquipment> getEquipment();
 	
@@ -205,17 +232,41 @@ public interface IDataProvider {
 	/**
 	 * Lists all {@link ExerciseTag}s
 	 * 
-	 * @return All {@link ExerciseTag}s
+	 * @return All {@link ExerciseTag}s. The returned list is unmodifiable, callers
+	 *         that want to change it have to copy it first.
 	 */
 	public List<ExerciseTag> getExerciseTags();
 
 	/**
 	 * Lists all {@link Workout}s
 	 * 
-	 * @return All {@link Workout}s
+	 * @return All {@link Workout}s. The returned list is unmodifiable, callers
+	 *         that want to change it have to copy it first.
 	 */
 	public List<Workout> getWorkouts();
 
+	/**
+	 * Lists the {@link WorkoutSummary}s of all {@link Workout}s. This is much
+	 * cheaper than {@link #getWorkouts()}, as the workouts usually do not have
+	 * to be loaded.
+	 * 
+	 * @return The summaries of all {@link Workout}s. The returned list is
+	 *         unmodifiable.
+	 */
+	public List<WorkoutSummary> getWorkoutSummaries();
+
+	/**
+	 * Returns the {@link Workout} with the given ID. Only this workout is
+	 * loaded, if the workouts have not been loaded yet.
+	 * 
+	 * @param id
+	 *            The ID of the {@link Workout}, see
+	 *            {@link WorkoutSummary#getId()}
+	 * 
+	 * @return The {@link Workout} or null, if there is no such workout
+	 */
+	public Workout getWorkout(String id);
+
 	/**
 	 * Saves the {@link Workout}.
 	 * 
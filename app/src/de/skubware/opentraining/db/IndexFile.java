@@ -0,0 +1,157 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A small binary file that caches data which can be rebuilt, like the
+ * {@link WorkoutSummary}s. The file starts with a magic number and a format
+ * version; if they do not match, or the file cannot be read, the data has to
+ * be rebuilt.
+ *
+ * The file is replaced atomically: it is written to a temporary file, which
+ * is then renamed. If writing fails, the file is deleted, so that outdated
+ * data cannot be read.
+ *
+ */
+public final class IndexFile {
+	/** Tag for logging */
+	private static final String TAG = "IndexFile";
+
+	/**
+	 * Reads the content of the file, after the header.
+	 *
+	 * @param <T>
+	 *            The type of the content
+	 */
+	public interface ContentReader<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * Writes the content of the file, after the header.
+	 */
+	public interface ContentWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private final File mFile;
+	private final int mMagic;
+	private final int mFormatVersion;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            The file, does not have to exist
+	 * @param magic
+	 *            The magic number that identifies the kind of file
+	 * @param formatVersion
+	 *            The version of the content, has to be increased for every
+	 *            change of the format
+	 */
+	public IndexFile(File file, int magic, int formatVersion) {
+		mFile = file;
+		mMagic = magic;
+		mFormatVersion = formatVersion;
+	}
+
+	/**
+	 * Reads the file.
+	 *
+	 * @return The content or null, if the file does not exist, has another
+	 *         format or could not be read
+	 */
+	public <T> T read(ContentReader<T> reader) {
+		if (!mFile.exists()) {
+			return null;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+			if (in.readInt() != mMagic || in.readInt() != mFormatVersion) {
+				Log.w(TAG, "Unknown format of " + mFile.getName() + ", will rebuild it.");
+				return null;
+			}
+			return reader.read(in);
+		} catch (IOException e) {
+			Log.e(TAG, "Could not read " + mFile.getName() + ", will rebuild it.", e);
+			return null;
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Replaces the file.
+	 *
+	 * @return true, if writing was successful
+	 */
+	public boolean write(ContentWriter writer) {
+		File tmpFile = new File(mFile.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			mFile.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			out.writeInt(mMagic);
+			out.writeInt(mFormatVersion);
+			writer.write(out);
+			out.close();
+			out = null;
+
+			if (!tmpFile.renameTo(mFile)) {
+				throw new IOException("Could not rename " + tmpFile + " to " + mFile);
+			}
+			return true;
+		} catch (IOException e) {
+			Log.e(TAG, "Could not write " + mFile.getName() + ".", e);
+			mFile.delete();
+			return false;
+		} finally {
+			closeQuietly(out);
+			tmpFile.delete();
+		}
+	}
+
+	private static void closeQuietly(Closeable c) {
+		if (c == null) {
+			return;
+		}
+		try {
+			c.close();
+		} catch (IOException e) {
+			Log.w(TAG, "Could not close stream.", e);
+		}
+	}
+
+}
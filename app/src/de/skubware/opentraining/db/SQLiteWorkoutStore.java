@@ -0,0 +1,662 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db;
+
+import static de.skubware.opentraining.db.WorkoutDatabaseHelper.*;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.FSet;
+import de.skubware.opentraining.basic.FSet.SetParameter;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.parser.MissingExercises;
+
+/**
+ * {@link WorkoutStore} that keeps the {@link Workout}s in a SQLite database
+ * (see {@link WorkoutDatabaseHelper}).
+ *
+ * Writing a workout does not rewrite it: the stored rows are compared with
+ * the workout and only the rows that differ are changed. Checking a set
+ * during a training therefore is a single UPDATE. The rows of the last write
+ * are kept per workout, so only the first write of a workout reads its rows
+ * from the database. Refreshing does not read
+ * the database again, it takes the workouts that have been written since the
+ * last refresh.
+ *
+ */
+class SQLiteWorkoutStore implements WorkoutStore {
+	/** Tag for logging */
+	private static final String TAG = "SQLiteWorkoutStore";
+
+	/** Marks the value of a {@link SetParameter.FreeField}, which has no value */
+	private static final int FREE_FIELD_VALUE = -1;
+
+	private final Context mContext;
+	private final WorkoutDatabaseHelper mHelper;
+
+	/** The loaded workouts by ID, in the order of the database; guarded by this */
+	private Map<String, Workout> mWorkoutMap = new LinkedHashMap<String, Workout>();
+
+	/**
+	 * The workouts written since the last refresh by ID, null for deleted
+	 * workouts; guarded by this
+	 */
+	private final Map<String, Workout> mDirtyMap = new HashMap<String, Workout>();
+
+	/**
+	 * The rows of the workouts written by this store by ID, as they are in
+	 * the database; guarded by this
+	 */
+	private final Map<String, WorkoutRow> mWrittenRowMap = new HashMap<String, WorkoutRow>();
+
+	/** True if all workouts have to be loaded; guarded by this */
+	private boolean mReloadAll = true;
+
+	/** Number of rows changed by the current write, for logging */
+	private int mChangedRows;
+
+	SQLiteWorkoutStore(Context context) {
+		mContext = context.getApplicationContext();
+		mHelper = new WorkoutDatabaseHelper(mContext);
+	}
+
+	@Override
+	public synchronized WorkoutDelta refresh(DataProvider dataProvider) {
+		List<Workout> added = new ArrayList<Workout>();
+		List<Workout> changed = new ArrayList<Workout>();
+		List<Workout> removed = new ArrayList<Workout>();
+		MissingExercises missingExercises = new MissingExercises();
+
+		try {
+			if (mReloadAll) {
+				new XMLWorkoutMigrator(mContext).migrateIfNecessary(this, dataProvider);
+
+				Map<String, Workout> workoutMap = new LinkedHashMap<String, Workout>();
+				for (WorkoutRow row : readRows(mHelper.getReadableDatabase(), null)) {
+					Workout w = toWorkout(row, dataProvider, missingExercises);
+					if (w != null) {
+						workoutMap.put(w.getId(), w);
+						(mWorkoutMap.containsKey(w.getId()) ? changed : added).add(w);
+					}
+				}
+				for (String id : mWorkoutMap.keySet()) {
+					if (!workoutMap.containsKey(id)) {
+						removed.add(mWorkoutMap.get(id));
+					}
+				}
+				mWorkoutMap = workoutMap;
+				mReloadAll = false;
+			} else {
+				for (Map.Entry<String, Workout> dirty : mDirtyMap.entrySet()) {
+					String id = dirty.getKey();
+					Workout w = dirty.getValue();
+					Workout old = mWorkoutMap.remove(id);
+					if (w != null) {
+						mWorkoutMap.put(id, w);
+						(old == null ? added : changed).add(w);
+					} else if (old != null) {
+						removed.add(old);
+					}
+				}
+			}
+			mDirtyMap.clear();
+		} catch (SQLException e) {
+			Log.e(TAG, "Could not read workouts.", e);
+		}
+
+		// create the missing exercises once, saving reloads all exercises
+		dataProvider.saveCustomExercises(missingExercises.take());
+
+		return new WorkoutDelta(added, changed, removed);
+	}
+
+	@Override
+	public synchronized List<Workout> getWorkouts() {
+		return new ArrayList<Workout>(mWorkoutMap.values());
+	}
+
+	@Override
+	public synchronized List<String> listWorkoutIds(DataProvider dataProvider) {
+		List<String> idList = new ArrayList<String>();
+		try {
+			Cursor c = mHelper.getReadableDatabase().rawQuery(
+					"SELECT " + COLUMN_UUID + " FROM " + TABLE_WORKOUT + " ORDER BY " + COLUMN_ID, null);
+			try {
+				while (c.moveToNext()) {
+					idList.add(c.getString(0));
+				}
+			} finally {
+				c.close();
+			}
+		} catch (SQLException e) {
+			Log.e(TAG, "Could not list workouts.", e);
+		}
+		return idList;
+	}
+
+	@Override
+	public synchronized Workout load(String id, DataProvider dataProvider) {
+		MissingExercises missingExercises = new MissingExercises();
+		Workout w = null;
+		try {
+			List<WorkoutRow> rows = readRows(mHelper.getReadableDatabase(), id);
+			w = rows.isEmpty() ? null : toWorkout(rows.get(0), dataProvider, missingExercises);
+		} catch (SQLException e) {
+			Log.e(TAG, "Could not read workout " + id + ".", e);
+		}
+
+		dataProvider.saveCustomExercises(missingExercises.take());
+		return w;
+	}
+
+	@Override
+	public synchronized void invalidate() {
+		mReloadAll = true;
+		mWrittenRowMap.clear();
+	}
+
+	@Override
+	public synchronized boolean write(Workout w) {
+		SQLiteDatabase db;
+		try {
+			db = mHelper.getWritableDatabase();
+		} catch (SQLException e) {
+			Log.e(TAG, "Could not open database.", e);
+			return false;
+		}
+
+		mChangedRows = 0;
+		db.beginTransaction();
+		try {
+			// the rows are changed while writing, they are kept only if the
+			// transaction succeeds
+			WorkoutRow row = mWrittenRowMap.remove(w.getId());
+			if (row == null) {
+				List<WorkoutRow> stored = readRows(db, w.getId());
+				row = stored.isEmpty() ? null : stored.get(0);
+			}
+
+			if (row == null) {
+				row = new WorkoutRow();
+				row.mUuid = w.getId();
+				row.mName = w.getName();
+				row.mEmptyRows = w.getEmptyRows();
+				ContentValues values = new ContentValues();
+				values.put(COLUMN_UUID, row.mUuid);
+				values.put(COLUMN_NAME, row.mName);
+				values.put(COLUMN_EMPTY_ROWS, row.mEmptyRows);
+				row.mId = insert(db, TABLE_WORKOUT, values);
+			} else if (row.mEmptyRows != w.getEmptyRows() || !row.mName.equals(w.getName())) {
+				// renaming only changes this row
+				row.mName = w.getName();
+				row.mEmptyRows = w.getEmptyRows();
+				ContentValues values = new ContentValues();
+				values.put(COLUMN_NAME, row.mName);
+				values.put(COLUMN_EMPTY_ROWS, row.mEmptyRows);
+				update(db, TABLE_WORKOUT, values, row.mId);
+			}
+			syncFitnessExercises(db, row.mId, w.getFitnessExercises(), row.mFitnessExercises);
+			db.setTransactionSuccessful();
+			mWrittenRowMap.put(w.getId(), row);
+			mDirtyMap.put(w.getId(), w);
+
+			Log.v(TAG, "Saved workout " + w.getName() + ", changed " + mChangedRows + " rows.");
+			return true;
+		} catch (SQLException e) {
+			Log.e(TAG, "Could not save workout " + w.getName(), e);
+			return false;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	@Override
+	public synchronized boolean delete(Workout w) {
+		try {
+			int deleted = mHelper.getWritableDatabase().delete(TABLE_WORKOUT, COLUMN_UUID + "=?",
+					new String[] { w.getId() });
+			mWrittenRowMap.remove(w.getId());
+			mDirtyMap.put(w.getId(), null);
+
+			if (deleted == 0) {
+				Log.e(TAG, "The workout " + w.toDebugString() + " that should be deleted does not exist.");
+			}
+			return deleted > 0;
+		} catch (SQLException e) {
+			Log.e(TAG, "Could not delete workout " + w.getName(), e);
+			return false;
+		}
+	}
+
+	/*
+	 * Writing: each sync method compares the objects with the stored rows
+	 * position by position. Rows that are equal are kept, rows that differ are
+	 * replaced (deleting a row deletes its children). The stored rows are
+	 * changed in the same way, afterwards they match the database again.
+	 */
+
+	private void syncFitnessExercises(SQLiteDatabase db, long workoutId, List<FitnessExercise> fExList,
+			List<FitnessExerciseRow> stored) {
+		for (int i = 0; i < fExList.size(); i++) {
+			FitnessExercise fEx = fExList.get(i);
+			FitnessExerciseRow row = i < stored.size() ? stored.get(i) : null;
+
+			if (row != null && row.mExercise.equals(fEx.getExType().getUnlocalizedName())) {
+				if (!equal(row.mCustomName, fEx.toString())) {
+					row.mCustomName = fEx.toString();
+					ContentValues values = new ContentValues();
+					values.put(COLUMN_CUSTOM_NAME, row.mCustomName);
+					update(db, TABLE_FITNESS_EXERCISE, values, row.mId);
+				}
+				syncSets(db, row.mId, null, fEx.getFSetList(), null, row.mFSets);
+				syncTrainingEntries(db, row.mId, allTrainingEntries(fEx), row.mTrainingEntries);
+				continue;
+			}
+
+			if (row != null) {
+				delete(db, TABLE_FITNESS_EXERCISE, row.mId);
+			}
+			row = new FitnessExerciseRow();
+			row.mExercise = fEx.getExType().getUnlocalizedName();
+			row.mCustomName = fEx.toString();
+			ContentValues values = new ContentValues();
+			values.put(COLUMN_WORKOUT_ID, workoutId);
+			values.put(COLUMN_POSITION, i);
+			values.put(COLUMN_EXERCISE, row.mExercise);
+			values.put(COLUMN_CUSTOM_NAME, row.mCustomName);
+			row.mId = insert(db, TABLE_FITNESS_EXERCISE, values);
+			put(stored, i, row);
+
+			syncSets(db, row.mId, null, fEx.getFSetList(), null, row.mFSets);
+			syncTrainingEntries(db, row.mId, allTrainingEntries(fEx), row.mTrainingEntries);
+		}
+
+		while (stored.size() > fExList.size()) {
+			delete(db, TABLE_FITNESS_EXERCISE, stored.remove(stored.size() - 1).mId);
+		}
+	}
+
+	/**
+	 * Returns all training entries. The workouts of this store are loaded
+	 * completely, but a workout that has been loaded from a file (e.g. by the
+	 * {@link XMLWorkoutMigrator}) may not be.
+	 */
+	private static List<TrainingEntry> allTrainingEntries(FitnessExercise fEx) {
+		if (fEx.getUnloadedTrainingEntryCount() == 0) {
+			return fEx.getTrainingEntryList();
+		}
+		try {
+			return fEx.getTrainingEntries(0, fEx.getTrainingEntryCount());
+		} catch (IOException e) {
+			throw new SQLException("Could not load the training entries of " + fEx.getUnlocalizedName() + ": "
+					+ e.getMessage());
+		}
+	}
+
+	private void syncTrainingEntries(SQLiteDatabase db, long fExId, List<TrainingEntry> entryList,
+			List<TrainingEntryRow> stored) {
+		for (int i = 0; i < entryList.size(); i++) {
+			TrainingEntry entry = entryList.get(i);
+			TrainingEntryRow row = i < stored.size() ? stored.get(i) : null;
+			Long date = entry.getDate() == null ? null : entry.getDate().getTime();
+
+			if (row != null && equal(row.mDate, date)) {
+				syncSets(db, fExId, row.mId, entry.getFSetList(), entry, row.mFSets);
+				continue;
+			}
+
+			if (row != null) {
+				delete(db, TABLE_TRAINING_ENTRY, row.mId);
+			}
+			row = new TrainingEntryRow();
+			row.mDate = date;
+			ContentValues values = new ContentValues();
+			values.put(COLUMN_FITNESS_EXERCISE_ID, fExId);
+			values.put(COLUMN_POSITION, i);
+			values.put(COLUMN_DATE, date);
+			row.mId = insert(db, TABLE_TRAINING_ENTRY, values);
+			put(stored, i, row);
+
+			syncSets(db, fExId, row.mId, entry.getFSetList(), entry, row.mFSets);
+		}
+
+		while (stored.size() > entryList.size()) {
+			delete(db, TABLE_TRAINING_ENTRY, stored.remove(stored.size() - 1).mId);
+		}
+	}
+
+	/**
+	 * @param entryId
+	 *            The id of the training entry, null for the planned sets
+	 * @param entry
+	 *            The training entry, null for the planned sets
+	 */
+	private void syncSets(SQLiteDatabase db, long fExId, Long entryId, List<FSet> setList, TrainingEntry entry,
+			List<FSetRow> stored) {
+		for (int i = 0; i < setList.size(); i++) {
+			FSet set = setList.get(i);
+			FSetRow row = i < stored.size() ? stored.get(i) : null;
+			boolean hasBeenDone = hasBeenDone(entry, set);
+
+			if (row != null && row.mSetParameters.equals(set.getSetParameters())) {
+				if (row.mHasBeenDone != hasBeenDone) {
+					row.mHasBeenDone = hasBeenDone;
+					ContentValues values = new ContentValues();
+					values.put(COLUMN_HAS_BEEN_DONE, hasBeenDone ? 1 : 0);
+					update(db, TABLE_FSET, values, row.mId);
+				}
+				continue;
+			}
+
+			if (row != null) {
+				delete(db, TABLE_FSET, row.mId);
+			}
+			row = new FSetRow();
+			row.mHasBeenDone = hasBeenDone;
+			row.mSetParameters.addAll(set.getSetParameters());
+			ContentValues values = new ContentValues();
+			values.put(COLUMN_FITNESS_EXERCISE_ID, fExId);
+			if (entryId == null) {
+				values.putNull(COLUMN_TRAINING_ENTRY_ID);
+			} else {
+				values.put(COLUMN_TRAINING_ENTRY_ID, entryId);
+			}
+			values.put(COLUMN_POSITION, i);
+			values.put(COLUMN_HAS_BEEN_DONE, hasBeenDone ? 1 : 0);
+			row.mId = insert(db, TABLE_FSET, values);
+			put(stored, i, row);
+
+			List<SetParameter> parameters = row.mSetParameters;
+			for (int k = 0; k < parameters.size(); k++) {
+				SetParameter parameter = parameters.get(k);
+				ContentValues parameterValues = new ContentValues();
+				parameterValues.put(COLUMN_FSET_ID, row.mId);
+				parameterValues.put(COLUMN_POSITION, k);
+				parameterValues.put(COLUMN_NAME, parameter.getName());
+				if (parameter instanceof SetParameter.FreeField) {
+					parameterValues.put(COLUMN_VALUE, FREE_FIELD_VALUE);
+					parameterValues.put(COLUMN_CONTENT, parameter.toString());
+				} else {
+					parameterValues.put(COLUMN_VALUE, parameter.getValue());
+				}
+				insert(db, TABLE_SET_PARAMETER, parameterValues);
+			}
+		}
+
+		while (stored.size() > setList.size()) {
+			delete(db, TABLE_FSET, stored.remove(stored.size() - 1).mId);
+		}
+	}
+
+	/** Sets the row at the given position, which may be the end of the list */
+	private static <T> void put(List<T> rows, int position, T row) {
+		if (position < rows.size()) {
+			rows.set(position, row);
+		} else {
+			rows.add(row);
+		}
+	}
+
+	private static boolean hasBeenDone(TrainingEntry entry, FSet set) {
+		if (entry == null) {
+			return true;
+		}
+		try {
+			return entry.hasBeenDone(set);
+		} catch (ErrorException e) {
+			Log.e(TAG, "FSet is not part of TrainingEntry.", e);
+			return true;
+		}
+	}
+
+	private long insert(SQLiteDatabase db, String table, ContentValues values) {
+		mChangedRows++;
+		return db.insertOrThrow(table, null, values);
+	}
+
+	private void update(SQLiteDatabase db, String table, ContentValues values, long id) {
+		mChangedRows++;
+		db.update(table, values, COLUMN_ID + "=?", new String[] { Long.toString(id) });
+	}
+
+	private void delete(SQLiteDatabase db, String table, long id) {
+		mChangedRows++;
+		db.delete(table, COLUMN_ID + "=?", new String[] { Long.toString(id) });
+	}
+
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/*
+	 * Reading: one query per table, the rows are assembled in memory. The rows
+	 * are used both for creating the workouts and for comparing them when a
+	 * workout is written for the first time.
+	 */
+
+	private static class WorkoutRow {
+		long mId;
+		String mUuid;
+		String mName;
+		int mEmptyRows;
+		List<FitnessExerciseRow> mFitnessExercises = new ArrayList<FitnessExerciseRow>();
+	}
+
+	private static class FitnessExerciseRow {
+		long mId;
+		String mExercise;
+		String mCustomName;
+		List<FSetRow> mFSets = new ArrayList<FSetRow>();
+		List<TrainingEntryRow> mTrainingEntries = new ArrayList<TrainingEntryRow>();
+	}
+
+	private static class TrainingEntryRow {
+		long mId;
+		Long mDate;
+		List<FSetRow> mFSets = new ArrayList<FSetRow>();
+	}
+
+	private static class FSetRow {
+		long mId;
+		boolean mHasBeenDone;
+		List<SetParameter> mSetParameters = new ArrayList<SetParameter>();
+	}
+
+	/**
+	 * Reads the rows of all workouts or of the workout with the given ID.
+	 *
+	 * @param uuid
+	 *            The ID of the workout (see {@link Workout#getId()}), null for
+	 *            all workouts
+	 */
+	private static List<WorkoutRow> readRows(SQLiteDatabase db, String uuid) {
+		String workoutFilter = uuid == null ? "" : " WHERE w." + COLUMN_UUID + "=?";
+		String[] args = uuid == null ? null : new String[] { uuid };
+
+		Map<Long, WorkoutRow> workoutMap = new LinkedHashMap<Long, WorkoutRow>();
+		Cursor c = db.rawQuery("SELECT w." + COLUMN_ID + ", w." + COLUMN_UUID + ", w." + COLUMN_NAME + ", w." + COLUMN_EMPTY_ROWS
+				+ " FROM " + TABLE_WORKOUT + " w" + workoutFilter + " ORDER BY w." + COLUMN_ID, args);
+		try {
+			while (c.moveToNext()) {
+				WorkoutRow row = new WorkoutRow();
+				row.mId = c.getLong(0);
+				row.mUuid = c.getString(1);
+				row.mName = c.getString(2);
+				row.mEmptyRows = c.getInt(3);
+				workoutMap.put(row.mId, row);
+			}
+		} finally {
+			c.close();
+		}
+		if (workoutMap.isEmpty()) {
+			return new ArrayList<WorkoutRow>();
+		}
+
+		String fExJoin = " JOIN " + TABLE_FITNESS_EXERCISE + " fe ON fe." + COLUMN_WORKOUT_ID + "=w." + COLUMN_ID;
+
+		Map<Long, FitnessExerciseRow> fExMap = new HashMap<Long, FitnessExerciseRow>();
+		c = db.rawQuery("SELECT fe." + COLUMN_ID + ", fe." + COLUMN_WORKOUT_ID + ", fe." + COLUMN_EXERCISE + ", fe."
+				+ COLUMN_CUSTOM_NAME + " FROM " + TABLE_WORKOUT + " w" + fExJoin + workoutFilter
+				+ " ORDER BY fe." + COLUMN_WORKOUT_ID + ", fe." + COLUMN_POSITION, args);
+		try {
+			while (c.moveToNext()) {
+				FitnessExerciseRow row = new FitnessExerciseRow();
+				row.mId = c.getLong(0);
+				row.mExercise = c.getString(2);
+				row.mCustomName = c.isNull(3) ? null : c.getString(3);
+				fExMap.put(row.mId, row);
+				workoutMap.get(c.getLong(1)).mFitnessExercises.add(row);
+			}
+		} finally {
+			c.close();
+		}
+
+		Map<Long, TrainingEntryRow> entryMap = new HashMap<Long, TrainingEntryRow>();
+		c = db.rawQuery("SELECT te." + COLUMN_ID + ", te." + COLUMN_FITNESS_EXERCISE_ID + ", te." + COLUMN_DATE
+				+ " FROM " + TABLE_WORKOUT + " w" + fExJoin + " JOIN " + TABLE_TRAINING_ENTRY + " te ON te."
+				+ COLUMN_FITNESS_EXERCISE_ID + "=fe." + COLUMN_ID + workoutFilter
+				+ " ORDER BY te." + COLUMN_FITNESS_EXERCISE_ID + ", te." + COLUMN_POSITION, args);
+		try {
+			while (c.moveToNext()) {
+				TrainingEntryRow row = new TrainingEntryRow();
+				row.mId = c.getLong(0);
+				row.mDate = c.isNull(2) ? null : c.getLong(2);
+				entryMap.put(row.mId, row);
+				fExMap.get(c.getLong(1)).mTrainingEntries.add(row);
+			}
+		} finally {
+			c.close();
+		}
+
+		// one row per parameter, the parameters of a set follow each other
+		c = db.rawQuery("SELECT s." + COLUMN_ID + ", s." + COLUMN_FITNESS_EXERCISE_ID + ", s." + COLUMN_TRAINING_ENTRY_ID
+				+ ", s." + COLUMN_HAS_BEEN_DONE + ", p." + COLUMN_NAME + ", p." + COLUMN_VALUE + ", p." + COLUMN_CONTENT
+				+ " FROM " + TABLE_WORKOUT + " w" + fExJoin + " JOIN " + TABLE_FSET + " s ON s."
+				+ COLUMN_FITNESS_EXERCISE_ID + "=fe." + COLUMN_ID + " JOIN " + TABLE_SET_PARAMETER + " p ON p."
+				+ COLUMN_FSET_ID + "=s." + COLUMN_ID + workoutFilter
+				+ " ORDER BY s." + COLUMN_FITNESS_EXERCISE_ID + ", s." + COLUMN_TRAINING_ENTRY_ID + ", s." + COLUMN_POSITION
+				+ ", p." + COLUMN_POSITION, args);
+		try {
+			FSetRow row = null;
+			while (c.moveToNext()) {
+				long setId = c.getLong(0);
+				if (row == null || row.mId != setId) {
+					row = new FSetRow();
+					row.mId = setId;
+					row.mHasBeenDone = c.getInt(3) != 0;
+					if (c.isNull(2)) {
+						fExMap.get(c.getLong(1)).mFSets.add(row);
+					} else {
+						entryMap.get(c.getLong(2)).mFSets.add(row);
+					}
+				}
+				row.mSetParameters.add(createSetParameter(c.getString(4), c.getInt(5), c.getString(6)));
+			}
+		} finally {
+			c.close();
+		}
+
+		return new ArrayList<WorkoutRow>(workoutMap.values());
+	}
+
+	private static SetParameter createSetParameter(String name, int value, String content) {
+		if (name.equals("weight")) {
+			return new SetParameter.Weight(value);
+		} else if (name.equals("repetition")) {
+			return new SetParameter.Repetition(value);
+		} else if (name.equals("duration")) {
+			return new SetParameter.Duration(value);
+		} else if (name.equals("freefield")) {
+			return new SetParameter.FreeField(content);
+		}
+		throw new SQLException("Unknown SetParameter: " + name);
+	}
+
+	/**
+	 * Creates the {@link Workout} of the rows. Placeholders for missing
+	 * exercises are collected, but not saved.
+	 *
+	 * @return The workout or null, if it is invalid
+	 */
+	@SuppressWarnings("deprecation")
+	// because using constructor of TrainingEntry
+	private Workout toWorkout(WorkoutRow row, DataProvider dataProvider, MissingExercises missingExercises) {
+		try {
+			List<FitnessExercise> fExList = new ArrayList<FitnessExercise>();
+			for (FitnessExerciseRow fExRow : row.mFitnessExercises) {
+				// if exercise can't be found, a placeholder is created
+				// this may happen if a custom(or synced) exercise has been deleted
+				ExerciseType exType = missingExercises.resolve(dataProvider, fExRow.mExercise);
+
+				FitnessExercise fEx = new FitnessExercise(exType, toFSets(fExRow.mFSets));
+				if (fExRow.mCustomName != null) {
+					fEx.setCustomName(fExRow.mCustomName);
+				}
+
+				for (TrainingEntryRow entryRow : fExRow.mTrainingEntries) {
+					TrainingEntry entry = new TrainingEntry(entryRow.mDate == null ? null : new Date(entryRow.mDate));
+					for (FSetRow setRow : entryRow.mFSets) {
+						FSet set = new FSet(setRow.mSetParameters.toArray(new SetParameter[setRow.mSetParameters.size()]));
+						entry.add(set);
+						entry.setHasBeenDone(set, setRow.mHasBeenDone);
+					}
+					fEx.getTrainingEntryList().add(entry);
+				}
+				fExList.add(fEx);
+			}
+
+			Workout w = new Workout(row.mUuid, row.mName, fExList);
+			w.setEmptyRows(row.mEmptyRows);
+			return w;
+		} catch (ErrorException e) {
+			Log.e(TAG, "Stored workout " + row.mName + " is invalid.", e);
+			return null;
+		}
+	}
+
+	private static FSet[] toFSets(List<FSetRow> rows) throws ErrorException {
+		FSet[] sets = new FSet[rows.size()];
+		for (int i = 0; i < sets.length; i++) {
+			List<SetParameter> parameters = rows.get(i).mSetParameters;
+			sets[i] = new FSet(parameters.toArray(new SetParameter[parameters.size()]));
+		}
+		return sets;
+	}
+
+}
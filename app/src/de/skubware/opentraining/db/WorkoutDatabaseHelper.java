@@ -0,0 +1,181 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Creates and opens the SQLite database of the {@link SQLiteWorkoutStore}.
+ *
+ * The {@link de.skubware.opentraining.basic.Workout}s are stored normalized:
+ *
+ * <pre>
+ * workout 1-n fitness_exercise 1-n training_entry 1-n fset 1-n set_parameter
+ *                              1-n fset (planned sets, training_entry_id is null)
+ * </pre>
+ *
+ * The exercises themselves are not part of the database, they are referenced
+ * by their unlocalized name. Children are ordered by their position column and
+ * deleted together with their parent. Workouts are identified by their ID (see
+ * {@link de.skubware.opentraining.basic.Workout#getId()}), so renaming only
+ * updates the name column.
+ *
+ */
+class WorkoutDatabaseHelper extends SQLiteOpenHelper {
+
+	static final String DATABASE_NAME = "workouts.db";
+	static final int DATABASE_VERSION = 3;
+
+	static final String TABLE_WORKOUT = "workout";
+	static final String TABLE_FITNESS_EXERCISE = "fitness_exercise";
+	static final String TABLE_TRAINING_ENTRY = "training_entry";
+	static final String TABLE_FSET = "fset";
+	static final String TABLE_SET_PARAMETER = "set_parameter";
+
+	static final String COLUMN_ID = "_id";
+	static final String COLUMN_UUID = "uuid";
+	static final String COLUMN_NAME = "name";
+	static final String COLUMN_EMPTY_ROWS = "empty_rows";
+	static final String COLUMN_WORKOUT_ID = "workout_id";
+	static final String COLUMN_POSITION = "position";
+	static final String COLUMN_EXERCISE = "exercise";
+	static final String COLUMN_CUSTOM_NAME = "custom_name";
+	static final String COLUMN_FITNESS_EXERCISE_ID = "fitness_exercise_id";
+	static final String COLUMN_DATE = "date";
+	static final String COLUMN_TRAINING_ENTRY_ID = "training_entry_id";
+	static final String COLUMN_HAS_BEEN_DONE = "has_been_done";
+	static final String COLUMN_FSET_ID = "fset_id";
+	static final String COLUMN_VALUE = "value";
+	static final String COLUMN_CONTENT = "content";
+
+	WorkoutDatabaseHelper(Context context) {
+		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+	}
+
+	@Override
+	public void onCreate(SQLiteDatabase db) {
+		createWorkoutTable(db, TABLE_WORKOUT);
+		createWorkoutIdIndex(db);
+
+		db.execSQL("CREATE TABLE " + TABLE_FITNESS_EXERCISE + " ("
+				+ COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ COLUMN_WORKOUT_ID + " INTEGER NOT NULL REFERENCES " + TABLE_WORKOUT + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+				+ COLUMN_POSITION + " INTEGER NOT NULL, "
+				+ COLUMN_EXERCISE + " TEXT NOT NULL, "
+				+ COLUMN_CUSTOM_NAME + " TEXT)");
+
+		db.execSQL("CREATE TABLE " + TABLE_TRAINING_ENTRY + " ("
+				+ COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ COLUMN_FITNESS_EXERCISE_ID + " INTEGER NOT NULL REFERENCES " + TABLE_FITNESS_EXERCISE + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+				+ COLUMN_POSITION + " INTEGER NOT NULL, "
+				+ COLUMN_DATE + " INTEGER)");
+
+		db.execSQL("CREATE TABLE " + TABLE_FSET + " ("
+				+ COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ COLUMN_FITNESS_EXERCISE_ID + " INTEGER NOT NULL REFERENCES " + TABLE_FITNESS_EXERCISE + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+				+ COLUMN_TRAINING_ENTRY_ID + " INTEGER REFERENCES " + TABLE_TRAINING_ENTRY + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+				+ COLUMN_POSITION + " INTEGER NOT NULL, "
+				+ COLUMN_HAS_BEEN_DONE + " INTEGER NOT NULL DEFAULT 1)");
+
+		db.execSQL("CREATE TABLE " + TABLE_SET_PARAMETER + " ("
+				+ COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ COLUMN_FSET_ID + " INTEGER NOT NULL REFERENCES " + TABLE_FSET + "(" + COLUMN_ID + ") ON DELETE CASCADE, "
+				+ COLUMN_POSITION + " INTEGER NOT NULL, "
+				+ COLUMN_NAME + " TEXT NOT NULL, "
+				+ COLUMN_VALUE + " INTEGER NOT NULL, "
+				+ COLUMN_CONTENT + " TEXT)");
+
+		// indexes for the parent-child relations (these are also used for ordering)
+		db.execSQL("CREATE INDEX idx_fitness_exercise_workout ON " + TABLE_FITNESS_EXERCISE + "(" + COLUMN_WORKOUT_ID + ", " + COLUMN_POSITION + ")");
+		db.execSQL("CREATE INDEX idx_training_entry_fitness_exercise ON " + TABLE_TRAINING_ENTRY + "(" + COLUMN_FITNESS_EXERCISE_ID + ", " + COLUMN_POSITION + ")");
+		db.execSQL("CREATE INDEX idx_fset_fitness_exercise ON " + TABLE_FSET + "(" + COLUMN_FITNESS_EXERCISE_ID + ", " + COLUMN_TRAINING_ENTRY_ID + ", " + COLUMN_POSITION + ")");
+		db.execSQL("CREATE INDEX idx_fset_training_entry ON " + TABLE_FSET + "(" + COLUMN_TRAINING_ENTRY_ID + ", " + COLUMN_POSITION + ")");
+		db.execSQL("CREATE INDEX idx_set_parameter_fset ON " + TABLE_SET_PARAMETER + "(" + COLUMN_FSET_ID + ", " + COLUMN_POSITION + ")");
+
+		// indexes for queries by exercise and by date (e.g. statistics, history)
+		db.execSQL("CREATE INDEX idx_fitness_exercise_exercise ON " + TABLE_FITNESS_EXERCISE + "(" + COLUMN_EXERCISE + ")");
+		db.execSQL("CREATE INDEX idx_training_entry_date ON " + TABLE_TRAINING_ENTRY + "(" + COLUMN_DATE + ")");
+	}
+
+	@Override
+	public void onOpen(SQLiteDatabase db) {
+		super.onOpen(db);
+		if (!db.isReadOnly()) {
+			// needed for ON DELETE CASCADE, off by default
+			db.execSQL("PRAGMA foreign_keys=ON;");
+		}
+	}
+
+	@Override
+	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		if (oldVersion < 2) {
+			// version 1 identified the workouts by their name
+			db.execSQL("ALTER TABLE " + TABLE_WORKOUT + " ADD COLUMN " + COLUMN_UUID + " TEXT");
+			Cursor c = db.rawQuery("SELECT " + COLUMN_ID + " FROM " + TABLE_WORKOUT, null);
+			try {
+				while (c.moveToNext()) {
+					ContentValues values = new ContentValues();
+					values.put(COLUMN_UUID, Workout.createId());
+					db.update(TABLE_WORKOUT, values, COLUMN_ID + "=?", new String[] { Long.toString(c.getLong(0)) });
+				}
+			} finally {
+				c.close();
+			}
+			createWorkoutIdIndex(db);
+		}
+		if (oldVersion < 3) {
+			// version 2 still required unique names, SQLite cannot drop a
+			// constraint so the table is copied (the children keep their
+			// workout_id because the _id is copied, too)
+			String columns = COLUMN_ID + ", " + COLUMN_UUID + ", " + COLUMN_NAME + ", " + COLUMN_EMPTY_ROWS;
+			String newTable = TABLE_WORKOUT + "_new";
+			createWorkoutTable(db, newTable);
+			db.execSQL("INSERT INTO " + newTable + " (" + columns + ") SELECT " + columns + " FROM " + TABLE_WORKOUT);
+			db.execSQL("DROP TABLE " + TABLE_WORKOUT);
+			db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + TABLE_WORKOUT);
+			createWorkoutIdIndex(db);
+		}
+	}
+
+	/**
+	 * Creates the workout table. The names do not have to be unique, e.g. two
+	 * workouts may be renamed to the same name.
+	 */
+	private static void createWorkoutTable(SQLiteDatabase db, String table) {
+		db.execSQL("CREATE TABLE " + table + " ("
+				+ COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+				+ COLUMN_UUID + " TEXT NOT NULL, "
+				+ COLUMN_NAME + " TEXT NOT NULL, "
+				+ COLUMN_EMPTY_ROWS + " INTEGER NOT NULL DEFAULT 0)");
+	}
+
+	private static void createWorkoutIdIndex(SQLiteDatabase db) {
+		db.execSQL("CREATE UNIQUE INDEX idx_workout_uuid ON " + TABLE_WORKOUT + "(" + COLUMN_UUID + ")");
+	}
+
+}
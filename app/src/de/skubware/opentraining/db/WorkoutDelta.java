@@ -0,0 +1,81 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Describes how the cached {@link Workout}s have changed during one refresh of
+ * the {@link Cache}.
+ *
+ */
+public final class WorkoutDelta {
+
+	private final List<Workout> mAdded;
+	private final List<Workout> mChanged;
+	private final List<Workout> mRemoved;
+
+	WorkoutDelta(List<Workout> added, List<Workout> changed, List<Workout> removed) {
+		mAdded = Collections.unmodifiableList(new ArrayList<Workout>(added));
+		mChanged = Collections.unmodifiableList(new ArrayList<Workout>(changed));
+		mRemoved = Collections.unmodifiableList(new ArrayList<Workout>(removed));
+	}
+
+	/**
+	 * @return The {@link Workout}s whose files are new
+	 */
+	public List<Workout> getAdded() {
+		return mAdded;
+	}
+
+	/**
+	 * @return The {@link Workout}s whose files have changed, these are new
+	 *         objects that replace the old ones
+	 */
+	public List<Workout> getChanged() {
+		return mChanged;
+	}
+
+	/**
+	 * @return The (old) {@link Workout}s whose files have been deleted
+	 */
+	public List<Workout> getRemoved() {
+		return mRemoved;
+	}
+
+	/**
+	 * @return true, if no {@link Workout} has changed
+	 */
+	public boolean isEmpty() {
+		return mAdded.isEmpty() && mChanged.isEmpty() && mRemoved.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "WorkoutDelta [added=" + mAdded.size() + ", changed=" + mChanged.size() + ", removed="
+				+ mRemoved.size() + "]";
+	}
+
+}
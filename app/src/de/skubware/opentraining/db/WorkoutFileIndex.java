@@ -0,0 +1,289 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.parser.WorkoutJournal;
+
+/**
+ * Remembers the state of each {@link Workout} file, so that only the files
+ * that have changed since the last refresh have to be parsed again.
+ *
+ * A file is considered unchanged, if its modification time and size (and the
+ * ones of its {@link WorkoutJournal}) did not change. Otherwise the checksum
+ * is compared, so that a file that has been written again with the same
+ * content is not parsed again either.
+ *
+ * This class is not thread safe, the {@link FileWorkoutStore} synchronizes the
+ * access.
+ *
+ */
+class WorkoutFileIndex {
+	/** Tag for logging */
+	private static final String TAG = "WorkoutFileIndex";
+
+	/** The state of one file and the {@link Workout} that has been parsed from it. */
+	private static class Entry {
+		long mLastModified;
+		long mLength;
+		long mJournalLastModified;
+		long mJournalLength;
+		long mChecksum;
+		Workout mWorkout;
+		/** If true the file has to be parsed again, no matter if it changed */
+		boolean mStale;
+		/** The workout has been put, but has not been reported as added yet */
+		boolean mAdded;
+		/** The workout has been put, but has not been reported as changed yet */
+		boolean mChanged;
+	}
+
+	/** Marks a checksum that has not been calculated, a CRC32 is never negative */
+	private static final long UNKNOWN_CHECKSUM = -1;
+
+	/** Maps the file name to its entry */
+	private final Map<String, Entry> mEntryMap = new HashMap<String, Entry>();
+
+	/** The workouts of the last refresh, in the order of the files */
+	private List<Workout> mWorkoutList = new ArrayList<Workout>();
+
+	/**
+	 * Compares the files with the known state and parses the files that have
+	 * changed.
+	 *
+	 * @param dataProvider
+	 *            The {@link DataProvider} that lists and parses the files
+	 *
+	 * @return The changes since the last refresh
+	 */
+	WorkoutDelta refresh(DataProvider dataProvider) {
+		if (dataProvider.listWorkoutFiles().length == 0) {
+			Log.d(TAG, "No workouts found, will copy example Workouts");
+			dataProvider.copyExampleWorkouts();
+		}
+		// the .xml files (e.g. the example workouts) and the files of older
+		// versions are converted on the first load
+		dataProvider.convertLegacyWorkoutFiles();
+		File[] files = dataProvider.listWorkoutFiles();
+
+		List<Workout> added = new ArrayList<Workout>();
+		List<Workout> changed = new ArrayList<Workout>();
+		List<Workout> removed = new ArrayList<Workout>();
+		Set<String> existingFiles = new HashSet<String>();
+
+		// first find the files that have to be parsed ...
+		Entry[] newEntries = new Entry[files.length];
+		List<File> parseList = new ArrayList<File>();
+		for (int i = 0; i < files.length; i++) {
+			File file = files[i];
+			existingFiles.add(file.getName());
+			Entry entry = mEntryMap.get(file.getName());
+			File journal = journalOf(file);
+
+			Entry newEntry = new Entry();
+			newEntry.mLastModified = file.lastModified();
+			newEntry.mLength = file.length();
+			newEntry.mJournalLastModified = journal.lastModified();
+			newEntry.mJournalLength = journal.length();
+
+			if (entry != null && !entry.mStale && entry.mLastModified == newEntry.mLastModified
+					&& entry.mLength == newEntry.mLength && entry.mJournalLastModified == newEntry.mJournalLastModified
+					&& entry.mJournalLength == newEntry.mJournalLength) {
+				if (entry.mAdded) {
+					added.add(entry.mWorkout);
+				} else if (entry.mChanged) {
+					changed.add(entry.mWorkout);
+				}
+				entry.mAdded = false;
+				entry.mChanged = false;
+				continue;
+			}
+
+			try {
+				newEntry.mChecksum = checksum(file, journal);
+			} catch (IOException e) {
+				Log.e(TAG, "Could not read workout file " + file, e);
+				continue;
+			}
+
+			if (entry != null && !entry.mStale && entry.mChecksum == newEntry.mChecksum) {
+				// written again, but with the same content
+				entry.mLastModified = newEntry.mLastModified;
+				entry.mLength = newEntry.mLength;
+				entry.mJournalLastModified = newEntry.mJournalLastModified;
+				entry.mJournalLength = newEntry.mJournalLength;
+				continue;
+			}
+
+			newEntries[i] = newEntry;
+			parseList.add(file);
+		}
+
+		// ... then parse them concurrently ...
+		List<Workout> parsedList = parseList.isEmpty() ? new ArrayList<Workout>() : dataProvider.loadWorkouts(parseList);
+
+		// ... and put everything together in the order of the files
+		List<Workout> workoutList = new ArrayList<Workout>();
+		int parsed = 0;
+		for (int i = 0; i < files.length; i++) {
+			Entry entry = mEntryMap.get(files[i].getName());
+			Entry newEntry = newEntries[i];
+			if (newEntry == null) {
+				// unchanged, or the file could not be read
+				if (entry != null) {
+					workoutList.add(entry.mWorkout);
+				}
+				continue;
+			}
+
+			Workout w = parsedList.get(parsed++);
+			if (w == null) {
+				Log.e(TAG, "Read Workout and parser returned null. This should not happen. Either the Workout XML-Parser or the XML-Saver is buggy.");
+				// keep the last valid state, the file will be checked again next time
+				if (entry != null) {
+					workoutList.add(entry.mWorkout);
+				}
+				continue;
+			}
+
+			if (entry == null || entry.mAdded) {
+				added.add(w);
+			} else {
+				changed.add(w);
+			}
+			newEntry.mWorkout = w;
+			mEntryMap.put(files[i].getName(), newEntry);
+			workoutList.add(w);
+		}
+
+		// drop the workouts whose files have been deleted
+		for (Iterator<Map.Entry<String, Entry>> it = mEntryMap.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Entry> mapEntry = it.next();
+			if (!existingFiles.contains(mapEntry.getKey())) {
+				if (!mapEntry.getValue().mAdded) {
+					removed.add(mapEntry.getValue().mWorkout);
+				}
+				it.remove();
+			}
+		}
+
+		mWorkoutList = workoutList;
+		Log.v(TAG, "Checked " + files.length + " Workout files, parsed " + parsed + ".");
+
+		return new WorkoutDelta(added, changed, removed);
+	}
+
+	/**
+	 * Remembers a workout that has just been written to the file, so that the
+	 * next refresh does not have to parse the file again. The next refresh
+	 * reports the workout as added or changed.
+	 *
+	 * @param file
+	 *            The file the workout has been written to
+	 * @param w
+	 *            The written workout, must not be changed afterwards
+	 * @param changed
+	 *            false, if the content of the workout has not changed (e.g.
+	 *            because its journal has been compacted)
+	 */
+	void put(File file, Workout w, boolean changed) {
+		Entry old = mEntryMap.get(file.getName());
+		File journal = journalOf(file);
+
+		Entry entry = new Entry();
+		entry.mLastModified = file.lastModified();
+		entry.mLength = file.length();
+		entry.mJournalLastModified = journal.lastModified();
+		entry.mJournalLength = journal.length();
+		// the file is only read if it is changed by someone else
+		entry.mChecksum = UNKNOWN_CHECKSUM;
+		entry.mWorkout = w;
+		// the workout may refer to exercises that have been reloaded meanwhile
+		entry.mStale = old != null && old.mStale;
+		entry.mAdded = old == null || old.mAdded;
+		entry.mChanged = !entry.mAdded && (changed || old.mChanged);
+		mEntryMap.put(file.getName(), entry);
+	}
+
+	/**
+	 * @return The {@link Workout}s of the last refresh
+	 */
+	List<Workout> getWorkouts() {
+		return mWorkoutList;
+	}
+
+	/**
+	 * Forces the next refresh to parse all files again, e.g. because the
+	 * {@link de.skubware.opentraining.basic.ExerciseType}s the workouts refer to
+	 * have been reloaded.
+	 */
+	void invalidate() {
+		for (Entry entry : mEntryMap.values()) {
+			entry.mStale = true;
+		}
+	}
+
+	/**
+	 * @return The journal of the workout file, which may not exist
+	 */
+	private static File journalOf(File file) {
+		return new WorkoutJournal(file.getParentFile(), DataProvider.baseName(file)).getFile();
+	}
+
+	/**
+	 * Calculates the checksum of the content of the file and its journal.
+	 */
+	private static long checksum(File file, File journal) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8 * 1024];
+		for (File f : new File[] { file, journal }) {
+			if (!f.exists()) {
+				continue;
+			}
+			InputStream in = new FileInputStream(f);
+			try {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					crc.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return crc.getValue();
+	}
+
+}
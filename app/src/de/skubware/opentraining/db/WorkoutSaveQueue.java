@@ -0,0 +1,319 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Singleton queue that writes {@link Workout}s to the {@link WorkoutStore}.
+ *
+ * All writes (and deletes) are executed one after another by a single writer
+ * thread, so they cannot overtake each other. Saves that are requested with
+ * {@link #save(Context, Workout)} are delayed for a short time: if the same
+ * workout is saved again meanwhile, only the latest state is written. This
+ * avoids rewriting the whole workout for every single set during a training.
+ *
+ * Pending saves are lost if the process dies, so {@link #flush()} has to be
+ * called when the user leaves the screen (onPause()).
+ *
+ * The writer gets a copy of the workout, which also becomes the cached state
+ * of the workout (see {@link WorkoutStore#write(Workout)}), so the copy is
+ * never changed. During a training only one {@link FitnessExercise} changes
+ * at a time: {@link #save(Context, Workout, FitnessExercise)} only copies
+ * this exercise and takes the other ones from the previous copy.
+ *
+ */
+public enum WorkoutSaveQueue {
+	INSTANCE;
+
+	/** Tag for logging */
+	private static final String TAG = "WorkoutSaveQueue";
+
+	/** Time that a save is delayed to collect further changes */
+	static final long DEBOUNCE_MS = 500;
+
+	/** Maximum time that {@link #flush()} waits for the writer */
+	private static final long FLUSH_TIMEOUT_MS = 5000;
+
+	/** The single writer thread */
+	private final ScheduledExecutorService mWriter = Executors.newSingleThreadScheduledExecutor();
+
+	/** The latest unsaved state of each workout (by ID), guarded by this */
+	private final Map<String, Workout> mPendingMap = new HashMap<String, Workout>();
+
+	/**
+	 * The latest copy of each workout (by ID) that has been passed to the
+	 * writer by {@link #save(Context, Workout, FitnessExercise)}, guarded by
+	 * this
+	 */
+	private final Map<String, Workout> mCopyMap = new HashMap<String, Workout>();
+
+	/** The application context of the latest save, guarded by this */
+	private Context mContext;
+
+	/**
+	 * Saves the {@link Workout} after a short delay. A copy of the workout is
+	 * saved, so the caller may continue to change it.
+	 *
+	 * @param context
+	 *            The context
+	 * @param w
+	 *            The workout to save
+	 */
+	public void save(Context context, Workout w) {
+		save(context, w, null);
+	}
+
+	/**
+	 * Saves the {@link Workout} after a short delay, like
+	 * {@link #save(Context, Workout)}. Only the given exercise must have
+	 * changed since the last save of the workout, the other exercises are not
+	 * copied again.
+	 *
+	 * @param context
+	 *            The context
+	 * @param w
+	 *            The workout to save
+	 * @param changedFEx
+	 *            The exercise that has changed, null if anything may have
+	 *            changed
+	 */
+	public synchronized void save(Context context, Workout w, FitnessExercise changedFEx) {
+		Workout copy = copyOf(w, changedFEx == null ? null : mCopyMap.get(w.getId()), changedFEx);
+		if (copy == null) {
+			return;
+		}
+
+		mContext = context.getApplicationContext();
+		boolean alreadyScheduled = mPendingMap.containsKey(w.getId());
+		mPendingMap.put(w.getId(), copy);
+		mCopyMap.put(w.getId(), copy);
+		if (!alreadyScheduled) {
+			mWriter.schedule(new PendingWriteTask(w.getId()), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Saves the {@link Workout} immediately and waits until it has been
+	 * written. A pending save of the same workout is discarded, as it is older.
+	 *
+	 * @return true, if writing was successful
+	 */
+	public boolean saveNow(Context context, Workout w) {
+		final Context appContext = context.getApplicationContext();
+		final Workout copy = copyOf(w, null, null);
+		if (copy == null) {
+			return false;
+		}
+		return execute(appContext, copy, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return write(appContext, copy);
+			}
+		});
+	}
+
+	/**
+	 * Executes the task on the writer thread and waits for its result. A
+	 * pending save of the workout is discarded before, the next save copies
+	 * the complete workout. The workout cache is updated after the task.
+	 *
+	 * @param context
+	 *            The application context
+	 * @param w
+	 *            The workout the task writes or deletes
+	 * @param task
+	 *            The task, has to return true on success
+	 *
+	 * @return The result of the task, false if it failed
+	 */
+	boolean execute(final Context context, Workout w, final Callable<Boolean> task) {
+		Future<Boolean> future;
+		synchronized (this) {
+			mPendingMap.remove(w.getId());
+			mCopyMap.remove(w.getId());
+			future = mWriter.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					boolean succ = task.call();
+					Cache.INSTANCE.updateWorkoutCache(context);
+					return succ;
+				}
+			});
+		}
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Log.e(TAG, "Thread was interrupted.", e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Log.e(TAG, "Writing workout " + w.getName() + " failed.", e);
+		}
+		return false;
+	}
+
+	/**
+	 * Writes all pending saves immediately and waits (at most a few seconds)
+	 * until they have been written. Should be called in onPause().
+	 */
+	public void flush() {
+		Future<?> future = mWriter.submit(new Runnable() {
+			@Override
+			public void run() {
+				List<Workout> pendingList;
+				Context context;
+				synchronized (WorkoutSaveQueue.this) {
+					pendingList = new ArrayList<Workout>(mPendingMap.values());
+					mPendingMap.clear();
+					context = mContext;
+				}
+
+				for (Workout w : pendingList) {
+					write(context, w);
+				}
+				if (!pendingList.isEmpty()) {
+					Cache.INSTANCE.updateWorkoutCache(context);
+				}
+			}
+		});
+
+		try {
+			future.get(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Log.e(TAG, "Thread was interrupted.", e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			Log.e(TAG, "Flushing workouts failed.", e);
+		} catch (TimeoutException e) {
+			Log.w(TAG, "Flushing workouts did not finish in time, will continue in the background.");
+		}
+	}
+
+	/**
+	 * Executes a maintenance task (e.g. compacting a journal) on the writer
+	 * thread after a short delay, so it does not delay the pending saves.
+	 *
+	 * @param task
+	 *            The task to execute
+	 */
+	void scheduleInBackground(Runnable task) {
+		mWriter.schedule(task, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes the pending state of one workout, unless it has already been
+	 * written by {@link WorkoutSaveQueue#flush()} or replaced by
+	 * {@link WorkoutSaveQueue#saveNow(Context, Workout)}.
+	 */
+	private class PendingWriteTask implements Runnable {
+		private final String mId;
+
+		PendingWriteTask(String id) {
+			mId = id;
+		}
+
+		@Override
+		public void run() {
+			Workout w;
+			Context context;
+			synchronized (WorkoutSaveQueue.this) {
+				w = mPendingMap.remove(mId);
+				context = mContext;
+			}
+
+			if (w != null) {
+				write(context, w);
+				Cache.INSTANCE.updateWorkoutCache(context);
+			}
+		}
+	}
+
+	private static boolean write(Context context, Workout w) {
+		boolean succ = Cache.INSTANCE.getWorkoutStore(context).write(w);
+		if (succ) {
+			Cache.INSTANCE.getWorkoutSummaryIndex(context).put(w);
+		} else {
+			Log.e(TAG, "Could not save Workout: " + w.toDebugString());
+		}
+		return succ;
+	}
+
+	/**
+	 * Creates a copy of the workout, see {@link FitnessExercise#copy()}.
+	 *
+	 * @param w
+	 *            The workout to copy
+	 * @param previousCopy
+	 *            The previous copy of the workout, its exercises are taken
+	 *            instead of copying them again. May be null.
+	 * @param changedFEx
+	 *            The exercise that is copied in any case, may be null
+	 *
+	 * @return The copy or null, if the workout is invalid
+	 */
+	private static Workout copyOf(Workout w, Workout previousCopy, FitnessExercise changedFEx) {
+		Map<ExerciseType, FitnessExercise> previousMap = new HashMap<ExerciseType, FitnessExercise>();
+		if (previousCopy != null) {
+			for (FitnessExercise fEx : previousCopy.getFitnessExercises()) {
+				previousMap.put(fEx.getExType(), fEx);
+			}
+		}
+
+		List<FitnessExercise> fExList = new ArrayList<FitnessExercise>();
+		for (FitnessExercise fEx : w.getFitnessExercises()) {
+			FitnessExercise previousFEx = previousMap.get(fEx.getExType());
+			if (previousFEx == null || (changedFEx != null && fEx.getExType().equals(changedFEx.getExType()))) {
+				fExList.add(fEx.copy());
+			} else {
+				fExList.add(previousFEx);
+			}
+		}
+
+		try {
+			Workout copy = new Workout(w.getId(), w.getName(), fExList);
+			copy.setEmptyRows(w.getEmptyRows());
+			return copy;
+		} catch (ErrorException e) {
+			Log.e(TAG, "Could not copy Workout: " + w.toDebugString(), e);
+			return null;
+		}
+	}
+
+}
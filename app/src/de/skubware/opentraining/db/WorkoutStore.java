@@ -0,0 +1,100 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import java.util.List;
+
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Storage engine for {@link Workout}s. The {@link Cache} holds the store that
+ * has been chosen when the app started, see
+ * {@link Cache#PREF_KEY_WORKOUT_STORAGE_ENGINE}.
+ *
+ * Implementations have to be thread safe: writes are executed by the
+ * {@link WorkoutSaveQueue}, refreshes by the {@link Cache}.
+ *
+ */
+interface WorkoutStore {
+
+	/**
+	 * Loads the workouts that have changed since the last refresh.
+	 *
+	 * @param dataProvider
+	 *            The {@link DataProvider} for looking up the exercises
+	 *
+	 * @return The changes since the last refresh
+	 */
+	WorkoutDelta refresh(DataProvider dataProvider);
+
+	/**
+	 * @return The {@link Workout}s of the last refresh
+	 */
+	List<Workout> getWorkouts();
+
+	/**
+	 * Lists the IDs of the stored workouts without loading them.
+	 *
+	 * @param dataProvider
+	 *            The {@link DataProvider} for listing the files
+	 *
+	 * @return The IDs, in the order of {@link #getWorkouts()}
+	 */
+	List<String> listWorkoutIds(DataProvider dataProvider);
+
+	/**
+	 * Loads a single workout, independent of the last refresh.
+	 *
+	 * @param id
+	 *            The ID of the workout, see {@link Workout#getId()}
+	 * @param dataProvider
+	 *            The {@link DataProvider} for looking up the exercises
+	 *
+	 * @return The workout or null, if there is no such workout or it could
+	 *         not be read
+	 */
+	Workout load(String id, DataProvider dataProvider);
+
+	/**
+	 * Forces the next refresh to load all workouts again, e.g. because the
+	 * exercises the workouts refer to have been reloaded.
+	 */
+	void invalidate();
+
+	/**
+	 * Writes the workout. An existing workout with the same ID is replaced.
+	 *
+	 * The written workout becomes the loaded state of the workout: the next
+	 * refresh reports it as changed without loading it again. Therefore it
+	 * must not be changed afterwards.
+	 *
+	 * @return true if successful
+	 */
+	boolean write(Workout w);
+
+	/**
+	 * Deletes the workout with the ID of the given workout.
+	 *
+	 * @return true if successful
+	 */
+	boolean delete(Workout w);
+
+}
@@ -0,0 +1,160 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import java.util.Date;
+
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * The few properties of a {@link Workout} that are needed for listing it. The
+ * summaries are kept in the {@link WorkoutSummaryIndex}, so the workouts can
+ * be listed without parsing them; the complete workout is only loaded when
+ * it is opened (see {@link IDataProvider#getWorkout(String)}).
+ *
+ */
+public final class WorkoutSummary {
+
+	private final String mId;
+	private final String mName;
+	private final int mExerciseCount;
+	private final int mTrainedExerciseCount;
+	private final Date mLastTrainingDate;
+
+	/**
+	 * Creates the summary of the workout.
+	 *
+	 * @param w
+	 *            The workout
+	 */
+	public WorkoutSummary(Workout w) {
+		int trainedExerciseCount = 0;
+		Date lastTrainingDate = null;
+		for (FitnessExercise fEx : w.getFitnessExercises()) {
+			if (fEx.getTrainingEntryCount() == 0) {
+				continue;
+			}
+			trainedExerciseCount++;
+
+			// the last entry is always in memory
+			TrainingEntry lastEntry = fEx.getLastTrainingEntry();
+			Date date = lastEntry == null ? null : lastEntry.getDate();
+			if (date != null && (lastTrainingDate == null || date.after(lastTrainingDate))) {
+				lastTrainingDate = date;
+			}
+		}
+
+		mId = w.getId();
+		mName = w.getName();
+		mExerciseCount = w.getFitnessExercises().size();
+		mTrainedExerciseCount = trainedExerciseCount;
+		mLastTrainingDate = lastTrainingDate;
+	}
+
+	WorkoutSummary(String id, String name, int exerciseCount, int trainedExerciseCount, Date lastTrainingDate) {
+		mId = id;
+		mName = name;
+		mExerciseCount = exerciseCount;
+		mTrainedExerciseCount = trainedExerciseCount;
+		mLastTrainingDate = lastTrainingDate;
+	}
+
+	/**
+	 * @return The ID of the workout, see {@link Workout#getId()}
+	 */
+	public String getId() {
+		return mId;
+	}
+
+	/**
+	 * @return The name of the workout
+	 */
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * @return The number of exercises of the workout
+	 */
+	public int getExerciseCount() {
+		return mExerciseCount;
+	}
+
+	/**
+	 * @return The number of exercises that have at least one TrainingEntry
+	 */
+	public int getTrainedExerciseCount() {
+		return mTrainedExerciseCount;
+	}
+
+	/**
+	 * @return The date of the most recent TrainingEntry, null if there is none
+	 */
+	public Date getLastTrainingDate() {
+		return mLastTrainingDate;
+	}
+
+	/**
+	 * @return True if there is at least one TrainingEntry
+	 */
+	public boolean hasTrainingEntries() {
+		return mTrainedExerciseCount > 0;
+	}
+
+	/**
+	 * Checks if an old training can be continued. This is not possible if
+	 * there has never been any training or if an exercise has been added
+	 * after the last training.
+	 *
+	 * @return True if every exercise has at least one TrainingEntry
+	 */
+	public boolean isEveryExerciseTrained() {
+		return mExerciseCount > 0 && mTrainedExerciseCount == mExerciseCount;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof WorkoutSummary)) {
+			return false;
+		}
+		WorkoutSummary other = (WorkoutSummary) o;
+		return mId.equals(other.mId) && mName.equals(other.mName) && mExerciseCount == other.mExerciseCount
+				&& mTrainedExerciseCount == other.mTrainedExerciseCount
+				&& (mLastTrainingDate == null ? other.mLastTrainingDate == null : mLastTrainingDate.equals(other.mLastTrainingDate));
+	}
+
+	@Override
+	public int hashCode() {
+		return mId.hashCode() * 31 + mExerciseCount;
+	}
+
+	/** The name of the workout, as the summaries are shown in lists. */
+	@Override
+	public String toString() {
+		return mName;
+	}
+
+}
@@ -0,0 +1,215 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.db;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * A small file next to the {@link Workout}s that contains the
+ * {@link WorkoutSummary} of each workout, so the workouts can be listed
+ * without parsing them.
+ *
+ * The index is updated whenever a workout is written or deleted (see
+ * {@link WorkoutSaveQueue}) and whenever the {@link Cache} has loaded all
+ * workouts. If a stored workout is missing in the index (e.g. an example
+ * workout that has just been copied), {@link #get(List)} returns null and the
+ * caller has to load the workouts instead.
+ *
+ * Format (all numbers big-endian, -1 is a missing date), see
+ * {@link IndexFile} for the header:
+ *
+ * <pre>
+ * int count,
+ * (UTF ID, UTF name, int exercise count, int trained exercise count, long last training date)*
+ * </pre>
+ *
+ * This class is thread safe.
+ *
+ */
+class WorkoutSummaryIndex {
+	/** Tag for logging */
+	private static final String TAG = "WorkoutSummaryIndex";
+
+	/** The name of the file in the cache folder */
+	static final String FILE_NAME = "workouts.index";
+
+	private static final int MAGIC = 0x4F545753; // 'OTWS'
+	private static final int FORMAT_VERSION = 2;
+
+	private final IndexFile mFile;
+
+	/** The summaries by workout ID, null until the file has been read; guarded by this */
+	private Map<String, WorkoutSummary> mSummaryMap;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            The file of the index, does not have to exist
+	 */
+	WorkoutSummaryIndex(File file) {
+		mFile = new IndexFile(file, MAGIC, FORMAT_VERSION);
+	}
+
+	/**
+	 * Returns the summaries of the given workouts. Summaries of other
+	 * workouts, which do not exist any more, are removed from the index.
+	 *
+	 * @param idList
+	 *            The IDs of all stored workouts
+	 *
+	 * @return The summaries in the order of the IDs, or null if any of the
+	 *         workouts is not in the index
+	 */
+	synchronized List<WorkoutSummary> get(List<String> idList) {
+		Map<String, WorkoutSummary> summaryMap = summaryMap();
+
+		List<WorkoutSummary> summaryList = new ArrayList<WorkoutSummary>();
+		for (String id : idList) {
+			WorkoutSummary summary = summaryMap.get(id);
+			if (summary == null) {
+				Log.d(TAG, "Workout " + id + " is not in the index.");
+				return null;
+			}
+			summaryList.add(summary);
+		}
+
+		if (summaryMap.keySet().retainAll(new HashSet<String>(idList))) {
+			write();
+		}
+		return summaryList;
+	}
+
+	/**
+	 * Puts the summary of the workout, replacing the summary of the workout
+	 * with the same ID.
+	 *
+	 * @param w
+	 *            The workout that has been written
+	 */
+	synchronized void put(Workout w) {
+		WorkoutSummary summary = new WorkoutSummary(w);
+		if (!summary.equals(summaryMap().put(w.getId(), summary))) {
+			write();
+		}
+	}
+
+	/**
+	 * Removes the summary of the workout with the given ID.
+	 *
+	 * @param id
+	 *            The ID of the workout that has been deleted
+	 */
+	synchronized void remove(String id) {
+		if (summaryMap().remove(id) != null) {
+			write();
+		}
+	}
+
+	/**
+	 * Replaces the complete index.
+	 *
+	 * @param workoutList
+	 *            All workouts
+	 */
+	synchronized void putAll(List<Workout> workoutList) {
+		Map<String, WorkoutSummary> summaryMap = new LinkedHashMap<String, WorkoutSummary>();
+		for (Workout w : workoutList) {
+			summaryMap.put(w.getId(), new WorkoutSummary(w));
+		}
+
+		if (!summaryMap.equals(summaryMap())) {
+			mSummaryMap = summaryMap;
+			write();
+		}
+	}
+
+	/**
+	 * @return The summaries by workout ID, read from the file on the first call
+	 */
+	private Map<String, WorkoutSummary> summaryMap() {
+		if (mSummaryMap == null) {
+			mSummaryMap = read();
+		}
+		return mSummaryMap;
+	}
+
+	/**
+	 * Reads the file.
+	 *
+	 * @return The summaries by workout ID, empty if the file does not exist or could
+	 *         not be read
+	 */
+	private Map<String, WorkoutSummary> read() {
+		Map<String, WorkoutSummary> summaryMap = mFile.read(new IndexFile.ContentReader<Map<String, WorkoutSummary>>() {
+			@Override
+			public Map<String, WorkoutSummary> read(DataInputStream in) throws IOException {
+				Map<String, WorkoutSummary> summaryMap = new LinkedHashMap<String, WorkoutSummary>();
+				for (int i = in.readInt(); i > 0; i--) {
+					String id = in.readUTF();
+					String name = in.readUTF();
+					int exerciseCount = in.readInt();
+					int trainedExerciseCount = in.readInt();
+					long date = in.readLong();
+					summaryMap.put(id, new WorkoutSummary(id, name, exerciseCount, trainedExerciseCount, date == -1 ? null
+							: new Date(date)));
+				}
+				return summaryMap;
+			}
+		});
+		return summaryMap != null ? summaryMap : new LinkedHashMap<String, WorkoutSummary>();
+	}
+
+	/**
+	 * Writes the file. If writing fails, the file is deleted, so that an
+	 * outdated index cannot be used.
+	 */
+	private void write() {
+		mFile.write(new IndexFile.ContentWriter() {
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(mSummaryMap.size());
+				for (WorkoutSummary summary : mSummaryMap.values()) {
+					Date date = summary.getLastTrainingDate();
+					out.writeUTF(summary.getId());
+					out.writeUTF(summary.getName());
+					out.writeInt(summary.getExerciseCount());
+					out.writeInt(summary.getTrainedExerciseCount());
+					out.writeLong(date == null ? -1 : date.getTime());
+				}
+			}
+		});
+	}
+
+}
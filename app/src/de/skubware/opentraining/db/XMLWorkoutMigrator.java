@@ -0,0 +1,99 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Copies the {@link Workout} .xml files into the {@link SQLiteWorkoutStore}
+ * the first time the database is used.
+ *
+ * The .xml files are not deleted, so they remain as backup and are used again
+ * if the user switches back to the file storage. If any file cannot be
+ * imported, the migration is repeated the next time the database is used.
+ *
+ */
+class XMLWorkoutMigrator {
+	/** Tag for logging */
+	private static final String TAG = "XMLWorkoutMigrator";
+
+	/** Preference key that is set once the workouts have been migrated */
+	static final String PREF_KEY_MIGRATED = "workouts_migrated_to_sqlite";
+
+	private final Context mContext;
+
+	XMLWorkoutMigrator(Context context) {
+		mContext = context.getApplicationContext();
+	}
+
+	/**
+	 * Migrates the workouts, unless this has already been done.
+	 *
+	 * @param store
+	 *            The store to write the workouts to
+	 * @param dataProvider
+	 *            The {@link DataProvider} that lists and parses the files
+	 */
+	void migrateIfNecessary(WorkoutStore store, DataProvider dataProvider) {
+		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+		if (prefs.getBoolean(PREF_KEY_MIGRATED, false)) {
+			return;
+		}
+
+		File[] files = dataProvider.listWorkoutFiles();
+		if (files.length == 0) {
+			Log.d(TAG, "No workouts found, will copy example Workouts");
+			dataProvider.copyExampleWorkouts();
+			files = dataProvider.listWorkoutFiles();
+		}
+
+		// load all files at once, so missing exercises are only created once
+		List<Workout> workoutList = dataProvider.loadWorkouts(Arrays.asList(files));
+		int migrated = 0;
+		for (int i = 0; i < files.length; i++) {
+			Workout w = workoutList.get(i);
+			if (w != null && store.write(w)) {
+				migrated++;
+			} else {
+				Log.e(TAG, "Could not migrate workout file " + files[i]);
+			}
+		}
+
+		Log.i(TAG, "Migrated " + migrated + " of " + files.length + " workouts to the database.");
+		if (migrated < files.length) {
+			// try again next time, the workouts that have already been
+			// migrated are replaced as they have the same ID
+			return;
+		}
+		prefs.edit().putBoolean(PREF_KEY_MIGRATED, true).commit();
+	}
+
+}
@@ -22,6 +22,9 @@ package de.skubware.opentraining.db.parser;
 
 import android.util.Log;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -30,12 +33,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Superclass for JSON Parser that implements {@link IParser}.
  * 
+ * The JSON data is read with a {@link JsonReader}, the subclasses create
+ * their objects directly while reading the stream.
+ * 
  * @author Christian Skubich
  *
  * @param <T> The type that can be parsed with this class.
@@ -43,29 +53,29 @@ import java.io.Writer;
 public abstract class AbstractJSONParser<T> implements IParser<T> {
 	/** Tag for logging */
 	public static final String TAG = "AbstractJSONParser<>";
-	
-	protected String streamToString(InputStream is) throws IOException {
-		if (is != null) {
-			Writer writer = new StringWriter();
 
-			char[] buffer = new char[1024];
-			try {
-				Reader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
-				int n;
-				while ((n = reader.read(buffer)) != -1) {
-					writer.write(buffer, 0, n);
-				}
-			} finally {
-				is.close();
-			}
-			return writer.toString();
-		} else {
-			return "";
-		}
-	}
+	// JSON Node names of translations
+	private static final String TAG_NAME = "name";
+	private static final String TAG_ALTERNATIVE_NAMES = "alternative_names";
+	private static final String TAG_DESCRIPTION = "description";
+
+	/**
+	 * Reads the object from the JSON stream.
+	 * 
+	 * @param reader
+	 *            The reader, positioned at the start of the document
+	 * 
+	 * @return The parsed object, null if an Error occurs
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be read or is not valid JSON
+	 */
+	protected abstract T read(JsonReader reader) throws IOException;
 
 	@Override
-	public abstract T parse(String data);
+	public T parse(String data) {
+		return parse(new StringReader(data));
+	}
 
 	@Override
 	public final T parse(File file){
@@ -82,11 +92,89 @@ public abstract class AbstractJSONParser<T> implements IParser<T> {
 	@Override
 	public final T parse(InputStream is){
 		try {
-			return parse(streamToString(is));
+			return parse(new BufferedReader(new InputStreamReader(is, "UTF-8")));
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private T parse(Reader in) {
+		JsonReader reader = new JsonReader(in);
+		try {
+			return read(reader);
 		} catch (IOException e) {
 			Log.e(TAG, "Error during parsing JSON File.", e);
 			return null;
+		} catch (IllegalStateException e) {
+			// thrown by JsonReader if the structure is not the expected one
+			Log.e(TAG, "Error during parsing JSON File.", e);
+			return null;
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				Log.e(TAG, "Error closing JSON File.", e);
+			}
+		}
+	}
+
+	/**
+	 * The names and the description of one language.
+	 */
+	protected static class Translation {
+		/** The primary name */
+		String mName;
+		/** The alternative names, may be empty */
+		final List<String> mAlternativeNames = new ArrayList<String>();
+		/** The description, may be null */
+		String mDescription;
+	}
+
+	/**
+	 * Reads an object that maps language codes to translations, e.g.:
+	 * 
+	 * { "de": { "name" : "Bizeps" }, "en": { "name" : "Biceps",
+	 * "alternative_names":["Biceps muscle"] } }
+	 * 
+	 * @return The translations by language code
+	 */
+	protected static Map<String, Translation> readTranslations(JsonReader reader) throws IOException {
+		Map<String, Translation> translationMap = new HashMap<String, Translation>();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String locale = reader.nextName();
+			Translation translation = new Translation();
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String key = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+				} else if (key.equals(TAG_NAME)) {
+					translation.mName = reader.nextString();
+				} else if (key.equals(TAG_DESCRIPTION)) {
+					translation.mDescription = reader.nextString();
+				} else if (key.equals(TAG_ALTERNATIVE_NAMES)) {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						translation.mAlternativeNames.add(reader.nextString());
+					}
+					reader.endArray();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			if (translation.mName == null) {
+				throw new IOException("Translation '" + locale + "' without name.");
+			}
+			translationMap.put(locale, translation);
 		}
+		reader.endObject();
+
+		return translationMap;
 	}
 
 }
@@ -22,13 +22,13 @@ package de.skubware.opentraining.db.parser;
 
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import de.skubware.opentraining.basic.ExerciseTag;
 
@@ -39,81 +39,48 @@ public class ExerciseTagJSONParser extends AbstractJSONParser<List<ExerciseTag>>
 	/** Tag for logging */
 	public static final String TAG = "ExerciseTagJSONParser";
 
-	// JSON Node names
-	private static final String TAG_NAME = "name";
-	private static final String TAG_DESCRIPTION = "description";
-
 	private static final String[] TAG_LOCALES = {"de", "en", "it"};
 
 	/**
-	 * Parses the JSON-String to a list of {@link ExerciseTag}s.
+	 * Reads the JSON-Stream to a list of {@link ExerciseTag}s.
 	 *
 	 *
-	 * @param jsonString The String to parse.
+	 * @param reader The reader to read from.
 	 *
-	 * @return A list of {@link ExerciseTag}s, null if an error occurs.
+	 * @return A list of {@link ExerciseTag}s.
 	 *
 	 */
 	@Override
-	public List<ExerciseTag> parse(String jsonString) {
+	protected List<ExerciseTag> read(JsonReader reader) throws IOException {
 		List<ExerciseTag> exerciseTagList = new ArrayList<ExerciseTag>();
 
-
-
-		JSONArray jsonArray;
-		try {
-			jsonArray = new JSONArray(jsonString);
-			List<String> nameList = new ArrayList<String>();
-
-			for (int i = 0; i < jsonArray.length(); i++) {
-				JSONObject SportsEquipmentObject = jsonArray.getJSONObject(i);
-
-				ExerciseTag exerciseTag = null;
-
-				for(String locale:TAG_LOCALES){
-					if(SportsEquipmentObject.has(locale)){
-						JSONObject languageObject = SportsEquipmentObject.getJSONObject(locale);
-
-						// name
-						String name = languageObject.getString(TAG_NAME);
-
-						nameList.add(name);
-
-						String description = null;
-
-						// description	
-						if(languageObject.has(TAG_DESCRIPTION)){
-							//JSONObject descriptionJSONObject = languageObject.getJSONObject(TAG_DESCRIPTION);
-
-							// description
-							description = languageObject.getString(TAG_DESCRIPTION);
-
-						}
-
-
-						if(exerciseTag == null){
-							exerciseTag = new ExerciseTag(new Locale(locale), nameList, description);
-						}else{
-							exerciseTag.addNames(new Locale(locale), nameList, description);
-						}
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Map<String, Translation> translationMap = readTranslations(reader);
+
+			ExerciseTag exerciseTag = null;
+			for(String locale:TAG_LOCALES){
+				Translation translation = translationMap.get(locale);
+				if(translation != null){
+					List<String> nameList = new ArrayList<String>();
+					nameList.add(translation.mName);
+
+					if(exerciseTag == null){
+						exerciseTag = new ExerciseTag(new Locale(locale), nameList, translation.mDescription);
+					}else{
+						exerciseTag.addNames(new Locale(locale), nameList, translation.mDescription);
 					}
-					nameList.clear();
 				}
-
-				// Log.d(TAG, "Finished parsing ExerciseTag: \n" + exerciseTag.toDebugString());
-				exerciseTagList.add(exerciseTag);
-
 			}
 
-		} catch (JSONException e) {
-			Log.e(TAG, "Error during parsing JSON File.", e);
-			return null;
+			// Log.d(TAG, "Finished parsing ExerciseTag: \n" + exerciseTag.toDebugString());
+			exerciseTagList.add(exerciseTag);
 		}
+		reader.endArray();
 
 		if(exerciseTagList.isEmpty())
 			throw new AssertionError("JSON parsing failed: no ExerciseTag parsed.");
 		return exerciseTagList;
 	}
 
-
 }
@@ -53,8 +53,6 @@ import de.skubware.opentraining.basic.License;
 import de.skubware.opentraining.basic.License.LicenseType;
 import de.skubware.opentraining.basic.Muscle;
 import de.skubware.opentraining.basic.SportsEquipment;
-import de.skubware.opentraining.db.DataProvider;
-import de.skubware.opentraining.db.IDataProvider;
 
 /**
  * An implementation of a SaxParser for parsing .xml files to a ExerciseType
@@ -67,16 +65,15 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 
 	private SAXParser parser = null;
 	
-	private Context mContext;
-	
-	private IDataProvider mDataProvider;
+	/** The muscles, equipment, tags and licenses the names are resolved against */
+	private ReferenceData mReferenceData;
 	private static final String message = "Error parsing file: ";
 	private static final String sel_name = "selected_name";
 	private static final String url = "url";
 
 
 	private ExerciseType exType;
-	private ExerciseSource mExerciseSource;
+	private final ExerciseSource mExerciseSource;
 	// required argument
 	private String name;
 
@@ -93,10 +90,22 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 	private List<String> hints = new ArrayList<String>();
 	private File iconPath = null;
 
+	/**
+	 * Constructor. Parsers that are used repeatedly should be obtained from the
+	 * {@link ParserFactory} instead.
+	 * 
+	 * @param context
+	 *            The context
+	 * @param exerciseSource
+	 *            The source of the exercises that will be parsed
+	 */
 	public ExerciseTypeXMLParser(Context context, ExerciseSource exerciseSource) {
-		mContext = context;
+		this(ParserFactory.INSTANCE.getReferenceData(context), exerciseSource);
+	}
+
+	ExerciseTypeXMLParser(ReferenceData referenceData, ExerciseSource exerciseSource) {
+		mReferenceData = referenceData;
 		mExerciseSource = exerciseSource;
-		mDataProvider = new DataProvider(mContext);
 		
 		// create parser
 		try {
@@ -108,6 +117,21 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 
 	}
 
+	/**
+	 * Replaces the reference data, e.g. because it has been reloaded since the
+	 * parser has been created.
+	 */
+	void setReferenceData(ReferenceData referenceData) {
+		mReferenceData = referenceData;
+	}
+
+	/**
+	 * @return The source of the exercises that are parsed
+	 */
+	ExerciseSource getExerciseSource() {
+		return mExerciseSource;
+	}
+
 	/**
 	 * Parses xml file
 	 * 
@@ -116,6 +140,7 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 	 */
 	public ExerciseType read(File f) {
 		try {
+			reset();
 			parser.parse(f, this);
 
 			return this.exType;
@@ -137,6 +162,7 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 	 */
 	public ExerciseType read(InputStream f) {
 		try {
+			reset();
 			parser.parse(f, this);
 
 			return this.exType;
@@ -180,7 +206,7 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 			this.translationMap.put(new Locale(language), translatedname);
 		}
 		if (qname.equals("SportsEquipment")) {
-			SportsEquipment eq = mDataProvider.getEquipmentByName(attributes.getValue(sel_name));
+			SportsEquipment eq = mReferenceData.getEquipmentByName(attributes.getValue(sel_name));
 			checkSportsEquipment(attributes, eq);
 			this.requiredEquipment.add(eq);
 		}
@@ -196,7 +222,7 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 
 			String author = attributes.getValue("author");
 			String licenseTypeShortName = attributes.getValue("license");
-			LicenseType licenseType = mDataProvider.getLicenseTypeByName(licenseTypeShortName);
+			LicenseType licenseType = mReferenceData.getLicenseTypeByName(licenseTypeShortName);
 			License license = null;
 
 			license = checkLicense(author, licenseType);
@@ -212,7 +238,7 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 		if (qname.equals("RelatedURL")) {
 			addRelatedURL(attributes);
 		} else if(qname.equals("Tag")) {
-			ExerciseTag tag = mDataProvider.getExerciseTagByName(attributes.getValue(sel_name));
+			ExerciseTag tag = mReferenceData.getExerciseTagByName(attributes.getValue(sel_name));
 			checkTag(attributes, tag);
 			this.exerciseTag.add(tag);
 		}
@@ -231,7 +257,7 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 	void setMuscle(Attributes attributes) {
 		Muscle muscle = null;
 		try{
-            muscle = mDataProvider.getMuscleByName(attributes.getValue(sel_name));
+            muscle = mReferenceData.getMuscleByName(attributes.getValue(sel_name));
         }catch(IllegalArgumentException illEx){
             Log.e(TAG, "The Muscle: " + attributes.getValue(sel_name) + " couldn't be found. Ex: " + this.name);
         }
@@ -323,22 +349,38 @@ public class ExerciseTypeXMLParser extends DefaultHandler {
 				Log.v("ExerciseTypeXMLParser", e.getMessage().toString());
 			}
 
-			this.name = null;
-			
-			this.translationMap = new HashMap<Locale, String>();
-			this.description = null;
-			this.imagePaths = new ArrayList<File>();
-			this.imageLicenseMap = null;
-			this.requiredEquipment = new TreeSet<SportsEquipment>();
-			this.activatedMuscles = new TreeSet<Muscle>();
-			this.activationMap = new HashMap<Muscle, ActivationLevel>();
-			this.exerciseTag = new TreeSet<ExerciseTag>();
-			this.relatedURL = new ArrayList<URL>();
-			this.hints = new ArrayList<String>();
-			this.iconPath = null;
-
+			resetExercise();
 		}
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Resets the state of the last (maybe failed) read, so the parser can be
+	 * reused.
+	 */
+	private void reset() {
+		parser.reset();
+		this.exType = null;
+		resetExercise();
+	}
+
+	/**
+	 * Resets the collected values of the current exercise.
+	 */
+	private void resetExercise() {
+		this.name = null;
+		
+		this.translationMap = new HashMap<Locale, String>();
+		this.description = null;
+		this.imagePaths = new ArrayList<File>();
+		this.imageLicenseMap = new HashMap<File, License>();
+		this.requiredEquipment = new TreeSet<SportsEquipment>();
+		this.activatedMuscles = new TreeSet<Muscle>();
+		this.activationMap = new HashMap<Muscle, ActivationLevel>();
+		this.exerciseTag = new TreeSet<ExerciseTag>();
+		this.relatedURL = new ArrayList<URL>();
+		this.hints = new ArrayList<String>();
+		this.iconPath = null;
+	}
+
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.List;
+
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Interface for parsers that read a {@link Workout} from an .xml file (as
+ * written by {@link XMLSaver}).
+ * 
+ * Implementations may be reused for several files, but must not be used by
+ * several threads at the same time.
+ * 
+ */
+public interface IWorkoutParser {
+
+	/**
+	 * Parses the .xml file and replays the {@link WorkoutJournal} of the
+	 * workout.
+	 * 
+	 * @param f
+	 *            The .xml file
+	 * @param context
+	 *            The context
+	 * 
+	 * @return The {@link Workout} or null, if parsing failed
+	 */
+	public Workout read(File f, Context context);
+
+	/**
+	 * Returns the placeholders of the exercises that were referenced by the
+	 * workouts, but could not be found. They have not been saved yet; the
+	 * caller should save them (in one batch) with
+	 * {@link de.skubware.opentraining.db.IDataProvider#saveCustomExercises(List)}
+	 * after all workouts have been read.
+	 * 
+	 * @return The placeholders that have been created since the last call
+	 */
+	public List<ExerciseType> takeMissingExercises();
+
+}
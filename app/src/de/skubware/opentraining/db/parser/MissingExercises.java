@@ -0,0 +1,117 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
+import de.skubware.opentraining.db.IDataProvider;
+
+/**
+ * Resolves the exercises that are referenced by workouts and collects the ones
+ * that do not exist (anymore), e.g. because a custom or synced exercise has
+ * been deleted.
+ * 
+ * A custom placeholder exercise is created for each missing name, but it is
+ * not saved immediately: saving an exercise reloads all exercises, which must
+ * not happen once per missing exercise in the middle of loading the workouts.
+ * The placeholders are taken with {@link #take()} and saved in one batch with
+ * {@link IDataProvider#saveCustomExercises(List)} after all workouts have been
+ * loaded.
+ * 
+ * This class is not thread safe, each parser has its own instance.
+ * 
+ */
+public class MissingExercises {
+	/** Tag for logging */
+	private static final String TAG = "MissingExercises";
+
+	/** Maps the names of the missing exercises to their placeholders */
+	private final Map<String, ExerciseType> mPlaceholderMap = new LinkedHashMap<String, ExerciseType>();
+
+	/**
+	 * Returns the exercise with the given name. If there is no such exercise,
+	 * a placeholder is returned; all references to the same missing exercise
+	 * get the same placeholder.
+	 * 
+	 * @param dataProvider
+	 *            The data provider to look up the exercise
+	 * @param name
+	 *            The name of the exercise
+	 * 
+	 * @return The exercise or its placeholder
+	 * 
+	 * @throws ErrorException
+	 *             if the placeholder cannot be created
+	 */
+	public ExerciseType resolve(IDataProvider dataProvider, String name) throws ErrorException {
+		ExerciseType placeholder = mPlaceholderMap.get(name);
+		if (placeholder != null) {
+			return placeholder;
+		}
+
+		ExerciseType exType = dataProvider.getExerciseByName(name);
+		if (exType != null) {
+			return exType;
+		}
+
+		Log.e(TAG, "Could not find exercise, will create new custom exercise with the name " + name);
+		placeholder = new ExerciseType.Builder(name, ExerciseSource.CUSTOM).build();
+		mPlaceholderMap.put(name, placeholder);
+		return placeholder;
+	}
+
+	/**
+	 * Adds the placeholders of another collection, e.g. of another parser.
+	 * Placeholders with a name that is already known are ignored.
+	 * 
+	 * @param placeholders
+	 *            The placeholders to add
+	 */
+	public void addAll(List<ExerciseType> placeholders) {
+		for (ExerciseType placeholder : placeholders) {
+			if (!mPlaceholderMap.containsKey(placeholder.getUnlocalizedName())) {
+				mPlaceholderMap.put(placeholder.getUnlocalizedName(), placeholder);
+			}
+		}
+	}
+
+	/**
+	 * Returns the placeholders that have been created since the last call and
+	 * forgets them.
+	 * 
+	 * @return The placeholders, in the order of their creation
+	 */
+	public List<ExerciseType> take() {
+		List<ExerciseType> placeholders = new ArrayList<ExerciseType>(mPlaceholderMap.values());
+		mPlaceholderMap.clear();
+		return placeholders;
+	}
+
+}
@@ -22,13 +22,13 @@ package de.skubware.opentraining.db.parser;
 
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import de.skubware.opentraining.basic.Muscle;
 
@@ -39,14 +39,10 @@ public class MuscleJSONParser extends AbstractJSONParser<List<Muscle>> {
 	/** Tag for logging */
 	public static final String TAG = "MuscleJSONParser<>";
 
-	// JSON Node names
-	private static final String TAG_NAME = "name";
-	private static final String TAG_ALTERNATIVE_NAMES = "alternative_names";
-
 	private static final String[] TAG_LOCALES = {"de", "en", "it"};
 
 	/**
-	 * Parses the JSON-String to a list of {@link Muscle}s.
+	 * Reads the JSON-Stream to a list of {@link Muscle}s.
 	 *
 	 * Example for such a .json File:
 	 *
@@ -55,61 +51,36 @@ public class MuscleJSONParser extends AbstractJSONParser<List<Muscle>> {
 	 *     "en": { "name" : "Biceps", "alternative_names":["Biceps muscle"] }
 	 *   }, ...]
 	 *
-	 * @param jsonString The String to parse.
+	 * @param reader The reader to read from.
 	 *
-	 * @return A list of {@link Muscle}s, null if an Error occurs..
+	 * @return A list of {@link Muscle}s.
 	 *
 	 */
 	@Override
-	public List<Muscle> parse(String jsonString) {
+	protected List<Muscle> read(JsonReader reader) throws IOException {
 		List<Muscle> muscleList = new ArrayList<Muscle>();
-		JSONArray jsonArray;
-		try {
-			jsonArray = new JSONArray(jsonString);
-			List<String> nameList = new ArrayList<String>();
-
-			for (int i = 0; i < jsonArray.length(); i++) {
-				JSONObject muscleObject = jsonArray.getJSONObject(i);
-
-				Muscle m = null;
-
-				for(String locale:TAG_LOCALES){
-					if(muscleObject.has(locale)){
-						JSONObject languageObject = muscleObject.getJSONObject(locale);
-
-						// name
-						String name = languageObject.getString(TAG_NAME);
-
-						// first name is primary name, all other names are alternative names
-
-						nameList.add(name);
 
-						// alternative names	
-						if(languageObject.has(TAG_ALTERNATIVE_NAMES)){
-							JSONArray alternativeNameJSONArray = languageObject.getJSONArray(TAG_ALTERNATIVE_NAMES);
-							String[]  alternativeNameArray = this.jsonArrayToStringArray(alternativeNameJSONArray);
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Map<String, Translation> translationMap = readTranslations(reader);
 
-							for (int t = 0; t < alternativeNameArray.length; t++) {
-								String altName = alternativeNameArray[t];
-								nameList.add(altName);
-							}
-						}
+			Muscle m = null;
+			for(String locale:TAG_LOCALES){
+				Translation translation = translationMap.get(locale);
+				if(translation != null){
+					// first name is primary name, all other names are alternative names
+					List<String> nameList = new ArrayList<String>();
+					nameList.add(translation.mName);
+					nameList.addAll(translation.mAlternativeNames);
 
-
-						m = analizeM(nameList, m, locale);
-					}
-					nameList.clear();
+					m = analizeM(nameList, m, locale);
 				}
-
-				// Log.d(TAG, "Finished parsing Muscle: \n" + m.toDebugString());
-				muscleList.add(m);
-
 			}
 
-		} catch (JSONException e) {
-			Log.e(TAG, "Error during parsing JSON File.", e);
-			return null;
+			// Log.d(TAG, "Finished parsing Muscle: \n" + m.toDebugString());
+			muscleList.add(m);
 		}
+		reader.endArray();
 
 		if(muscleList.isEmpty())
 			throw new AssertionError("JSON parsing failed: no muscles parsed.");
@@ -125,10 +96,4 @@ public class MuscleJSONParser extends AbstractJSONParser<List<Muscle>> {
 		return m;
 	}
 
-
-	private String[] jsonArrayToStringArray(JSONArray jsonArray){
-		return jsonArray.toString().substring(1,jsonArray.toString().length()-1).replaceAll("\"","").split(",");
-	}
-
-
 }
@@ -0,0 +1,173 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.content.Context;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
+import de.skubware.opentraining.db.Cache;
+import de.skubware.opentraining.db.CatalogSnapshot;
+import de.skubware.opentraining.db.DataProvider;
+import de.skubware.opentraining.db.IDataProvider;
+
+/**
+ * Singleton pool for the xml parsers.
+ * 
+ * Creating a parser is expensive (a new SAX or pull parser, lookups of the
+ * reference data), so parsers are obtained from this pool and given back
+ * afterwards. A parser belongs to the thread that obtained it until it is
+ * recycled; it must not be shared with other threads meanwhile.
+ * 
+ * All parsers use the same {@link ReferenceData} and the same
+ * {@link IDataProvider}, which are created once.
+ * 
+ * Usage:
+ * 
+ * <pre>
+ * WorkoutXMLPullParser parser = ParserFactory.INSTANCE.obtainWorkoutParser(context);
+ * try {
+ * 	parser.read(file, context);
+ * } finally {
+ * 	ParserFactory.INSTANCE.recycle(parser);
+ * }
+ * </pre>
+ * 
+ */
+public enum ParserFactory {
+	INSTANCE;
+
+	/** Maximum number of idle parsers that are kept per type */
+	private static final int MAX_IDLE_PARSERS = 4;
+
+	/** The idle exercise parsers of each {@link ExerciseSource}, guarded by this */
+	private final Map<ExerciseSource, Deque<ExerciseTypeXMLParser>> mExerciseParserPool = new EnumMap<ExerciseSource, Deque<ExerciseTypeXMLParser>>(
+			ExerciseSource.class);
+
+	/** The idle workout parsers, guarded by this */
+	private final Deque<WorkoutXMLPullParser> mWorkoutParserPool = new ArrayDeque<WorkoutXMLPullParser>();
+
+	/** The reference data of the parsers, guarded by this */
+	private ReferenceData mReferenceData;
+
+	/** The data provider of the workout parsers, guarded by this */
+	private IDataProvider mDataProvider;
+
+	/**
+	 * Returns an idle parser for exercises of the given source, or creates a
+	 * new one. The parser has to be given back with
+	 * {@link #recycle(ExerciseTypeXMLParser)}.
+	 * 
+	 * @param context
+	 *            The context
+	 * @param exerciseSource
+	 *            The source of the exercises that will be parsed
+	 * 
+	 * @return A parser for the calling thread
+	 */
+	public ExerciseTypeXMLParser obtainExerciseParser(Context context, ExerciseSource exerciseSource) {
+		ReferenceData referenceData = getReferenceData(context);
+
+		ExerciseTypeXMLParser parser = null;
+		synchronized (this) {
+			Deque<ExerciseTypeXMLParser> pool = mExerciseParserPool.get(exerciseSource);
+			if (pool != null) {
+				parser = pool.poll();
+			}
+		}
+
+		if (parser == null) {
+			return new ExerciseTypeXMLParser(referenceData, exerciseSource);
+		}
+		parser.setReferenceData(referenceData);
+		return parser;
+	}
+
+	/**
+	 * Gives the parser back to the pool. It must not be used afterwards.
+	 */
+	public synchronized void recycle(ExerciseTypeXMLParser parser) {
+		Deque<ExerciseTypeXMLParser> pool = mExerciseParserPool.get(parser.getExerciseSource());
+		if (pool == null) {
+			pool = new ArrayDeque<ExerciseTypeXMLParser>();
+			mExerciseParserPool.put(parser.getExerciseSource(), pool);
+		}
+		if (pool.size() < MAX_IDLE_PARSERS) {
+			pool.push(parser);
+		}
+	}
+
+	/**
+	 * Returns an idle {@link IWorkoutParser}, or creates a new one. The parser
+	 * has to be given back with {@link #recycle(WorkoutXMLPullParser)}.
+	 * 
+	 * @param context
+	 *            The context
+	 * 
+	 * @return A parser for the calling thread
+	 */
+	public synchronized WorkoutXMLPullParser obtainWorkoutParser(Context context) {
+		WorkoutXMLPullParser parser = mWorkoutParserPool.poll();
+		if (parser != null) {
+			return parser;
+		}
+
+		if (mDataProvider == null) {
+			mDataProvider = new DataProvider(context.getApplicationContext());
+		}
+		return new WorkoutXMLPullParser(mDataProvider);
+	}
+
+	/**
+	 * Gives the parser back to the pool. It must not be used afterwards.
+	 */
+	public synchronized void recycle(WorkoutXMLPullParser parser) {
+		if (mWorkoutParserPool.size() < MAX_IDLE_PARSERS) {
+			mWorkoutParserPool.push(parser);
+		}
+	}
+
+	/**
+	 * Returns the reference data of the current {@link CatalogSnapshot}. It is
+	 * only resolved again if the muscles, equipment or tags have been reloaded.
+	 */
+	ReferenceData getReferenceData(Context context) {
+		CatalogSnapshot snapshot = Cache.INSTANCE.getSnapshot();
+		if (snapshot.getMuscles() == null) {
+			// not loaded yet, must not be done while holding the lock
+			Cache.INSTANCE.updateCache(context);
+			snapshot = Cache.INSTANCE.getSnapshot();
+		}
+
+		synchronized (this) {
+			if (mReferenceData == null || !mReferenceData.isResolvedFrom(snapshot)) {
+				mReferenceData = new ReferenceData(snapshot);
+			}
+			return mReferenceData;
+		}
+	}
+
+}
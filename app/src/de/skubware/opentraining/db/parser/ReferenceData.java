@@ -0,0 +1,108 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.License.LicenseType;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.db.CatalogSnapshot;
+
+/**
+ * The reference data (muscles, equipment, tags and licenses) that the names in
+ * an exercise file are resolved against.
+ * 
+ * It is resolved once from a {@link CatalogSnapshot} and shared by all parsers
+ * of the {@link ParserFactory}, so the parsers do not have to ask a
+ * {@link de.skubware.opentraining.db.DataProvider} (and the cache) for every
+ * single element.
+ * 
+ */
+final class ReferenceData {
+	/** Tag for logging */
+	private static final String TAG = "ReferenceData";
+
+	private final CatalogSnapshot mSnapshot;
+
+	ReferenceData(CatalogSnapshot snapshot) {
+		mSnapshot = snapshot;
+	}
+
+	/**
+	 * Checks whether this reference data is still up to date. Publishing new
+	 * exercises or workouts does not change the reference data of a snapshot.
+	 * 
+	 * @return true, if the snapshot contains the same reference data
+	 */
+	boolean isResolvedFrom(CatalogSnapshot snapshot) {
+		return snapshot.getMuscles() == mSnapshot.getMuscles() && snapshot.getEquipment() == mSnapshot.getEquipment()
+				&& snapshot.getExerciseTags() == mSnapshot.getExerciseTags();
+	}
+
+	/**
+	 * @return The {@link Muscle} with the given name or null
+	 */
+	Muscle getMuscleByName(String name) {
+		return mSnapshot.getMuscleByName(name);
+	}
+
+	/**
+	 * @return The {@link SportsEquipment} with the given name or null
+	 */
+	SportsEquipment getEquipmentByName(String name) {
+		return mSnapshot.getEquipmentByName(name);
+	}
+
+	/**
+	 * @return The {@link ExerciseTag} with the given name or a new, empty tag
+	 *         if there is no such tag
+	 */
+	ExerciseTag getExerciseTagByName(String name) {
+		ExerciseTag tag = mSnapshot.getExerciseTagByName(name);
+		if (tag != null) {
+			return tag;
+		}
+
+		Log.w(TAG, "Did not find ExerciseTag: " + name + ".\n Will create new ExerciseTag.");
+		return new ExerciseTag(Locale.getDefault(), new ArrayList<String>(), "");
+	}
+
+	/**
+	 * @return The {@link LicenseType} with the given short name or
+	 *         {@link LicenseType#UNKNOWN}
+	 */
+	LicenseType getLicenseTypeByName(String name) {
+		for (LicenseType license : LicenseType.values()) {
+			if (license.getShortName().equals(name)) {
+				return license;
+			}
+		}
+
+		return LicenseType.UNKNOWN;
+	}
+
+}
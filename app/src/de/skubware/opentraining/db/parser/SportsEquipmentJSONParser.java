@@ -22,13 +22,13 @@ package de.skubware.opentraining.db.parser;
 
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import de.skubware.opentraining.basic.SportsEquipment;
 
@@ -39,14 +39,10 @@ public class SportsEquipmentJSONParser extends AbstractJSONParser<List<SportsEqu
 	/** Tag for logging */
 	public static final String TAG = "SportsEquipmentJSONParser<>";
 
-	// JSON Node names
-	private static final String TAG_NAME = "name";
-	private static final String TAG_ALTERNATIVE_NAMES = "alternative_names";
-
 	private static final String[] TAG_LOCALES = {"de", "en", "it"};
 
 	/**
-	 * Parses the JSON-String to a list of {@link SportsEquipment}s.
+	 * Reads the JSON-Stream to a list of {@link SportsEquipment}s.
 	 *
 	 * Example for such a .json File:
 	 *
@@ -55,64 +51,36 @@ public class SportsEquipmentJSONParser extends AbstractJSONParser<List<SportsEqu
 	 *  "en": { "name" : "Exercise Mat" }
 	 * }, ...]
 	 *
-	 * @param jsonString The String to parse.
+	 * @param reader The reader to read from.
 	 *
-	 * @return A list of {@link SportsEquipment}s, null if an Error occurs.
+	 * @return A list of {@link SportsEquipment}s.
 	 *
 	 */
 	@Override
-	public List<SportsEquipment> parse(String jsonString) {
+	protected List<SportsEquipment> read(JsonReader reader) throws IOException {
 		List<SportsEquipment> sportsEquipmentList = new ArrayList<SportsEquipment>();
 
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Map<String, Translation> translationMap = readTranslations(reader);
 
+			SportsEquipment m = null;
+			for(String locale:TAG_LOCALES){
+				Translation translation = translationMap.get(locale);
+				if(translation != null){
+					// first name is primary name, all other names are alternative names
+					List<String> nameList = new ArrayList<String>();
+					nameList.add(translation.mName);
+					nameList.addAll(translation.mAlternativeNames);
 
-		JSONArray jsonArray;
-		try {
-			jsonArray = new JSONArray(jsonString);
-            List<String> nameList = new ArrayList<String>();
-
-			for (int i = 0; i < jsonArray.length(); i++) {
-				JSONObject SportsEquipmentObject = jsonArray.getJSONObject(i);
-
-				SportsEquipment m = null;
-
-				for(String locale:TAG_LOCALES){
-					if(SportsEquipmentObject.has(locale)){
-						JSONObject languageObject = SportsEquipmentObject.getJSONObject(locale);
-
-						// name
-						String name = languageObject.getString(TAG_NAME);
-
-						// first name is primary name, all other names are alternative names
-
-						nameList.add(name);
-
-						// alternative names	
-						if(languageObject.has(TAG_ALTERNATIVE_NAMES)){
-							JSONArray alternativeNameJSONArray = languageObject.getJSONArray(TAG_ALTERNATIVE_NAMES);
-							String[]  alternativeNameArray = this.jsonArrayToStringArray(alternativeNameJSONArray);
-
-							for (int t = 0; t < alternativeNameArray.length; t++) {
-								String altName = alternativeNameArray[t];
-								nameList.add(altName);
-							}
-						}
-
-
-						m = getM(nameList, m, locale);
-					}
-					nameList.clear();
+					m = getM(nameList, m, locale);
 				}
-
-				// Log.d(TAG, "Finished parsing SportsEquipment: \n" + m.toDebugString());
-				sportsEquipmentList.add(m);
-
 			}
 
-		} catch (JSONException e) {
-			Log.e(TAG, "Error during parsing JSON File.", e);
-			return null;
+			// Log.d(TAG, "Finished parsing SportsEquipment: \n" + m.toDebugString());
+			sportsEquipmentList.add(m);
 		}
+		reader.endArray();
 
 		if(sportsEquipmentList.isEmpty())
 			throw new AssertionError("JSON parsing failed: no SportsEquipments parsed.");
@@ -128,10 +96,4 @@ public class SportsEquipmentJSONParser extends AbstractJSONParser<List<SportsEqu
 		return m;
 	}
 
-
-	private String[] jsonArrayToStringArray(JSONArray jsonArray){
-		return jsonArray.toString().substring(1,jsonArray.toString().length()-1).replaceAll("\"","").split(",");
-	}
-
-
 }
@@ -0,0 +1,425 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.FSet;
+import de.skubware.opentraining.basic.FSet.SetParameter;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Constants and primitive encodings of the binary workout files, see
+ * {@link WorkoutBinarySaver} and {@link WorkoutBinaryParser}.
+ * 
+ * Layout of version 3 (uvar = unsigned varint, 7 bits per byte, least
+ * significant group first):
+ * 
+ * <pre>
+ * int    magic "OTWB"
+ * byte   version
+ * string workout ID, see {@link Workout#getId()}
+ * string workout name
+ * uvar   rows
+ * uvar   number of exercise names, followed by the names (string)
+ * uvar   number of fitness exercises, each:
+ *   uvar   index of the exercise name
+ *   byte   1 if a custom name follows (string), otherwise 0
+ *   uvar   number of sets, followed by the sets
+ *   block  the older training entries
+ *   block  the recent training entries
+ * int    CRC32 of all previous bytes
+ * 
+ * block:  uvar number of training entries, uvar size of the entries in
+ *         bytes, followed by the entries
+ * entry:  uvar date: 0 if there is none, otherwise the zigzag encoded
+ *              difference to the previous date of the block (in ms) + 1
+ *         uvar number of sets, followed by the sets
+ *         bytes hasBeenDone of the sets, one bit per set
+ * set:    uvar number of parameters, each: byte type, uvar value
+ *         (or string content for free fields)
+ * string: uvar number of bytes, UTF-8 bytes
+ * </pre>
+ * 
+ * The recent block contains the last
+ * {@link FitnessExercise#RECENT_TRAINING_ENTRIES} entries. The older block can
+ * be skipped when a workout is loaded, its entries are loaded on demand by
+ * {@link WorkoutBinaryHistory}.
+ * 
+ * Version 2 did not contain the ID, a new one is created when such a file is
+ * read. Version 1 did not have blocks either: the number of training entries
+ * was followed by all entries, their dates referred to the previous date of
+ * the file.
+ * 
+ */
+final class WorkoutBinaryFormat {
+
+	/** "OTWB" */
+	static final int MAGIC = 0x4F545742;
+
+	/** The current version, has to be increased for every change of the layout */
+	static final int VERSION = 3;
+
+	/** The version without IDs, still readable */
+	static final int VERSION_2 = 2;
+
+	/** The first version, still readable */
+	static final int VERSION_1 = 1;
+
+	/* Types of the set parameters */
+	static final int TYPE_WEIGHT = 0;
+	static final int TYPE_REPETITION = 1;
+	static final int TYPE_DURATION = 2;
+	static final int TYPE_FREE_FIELD = 3;
+
+	/** Number of training entries that are requested at once for writing */
+	private static final int PAGE_SIZE = 100;
+
+	/** Upper bound for strings, protects against corrupt files */
+	private static final int MAX_STRING_BYTES = 1024 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private WorkoutBinaryFormat() {
+	}
+
+	static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	static int readInt(InputStream in) throws IOException {
+		return (readByte(in) << 24) | (readByte(in) << 16) | (readByte(in) << 8) | readByte(in);
+	}
+
+	static int readByte(InputStream in) throws IOException {
+		int b = in.read();
+		if (b == -1) {
+			throw new EOFException("Unexpected end of workout file");
+		}
+		return b;
+	}
+
+	static void writeVarint(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static long readVarint(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte(in);
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in workout file");
+	}
+
+	/**
+	 * Reads a varint that is used as a count or a value of a set parameter.
+	 */
+	static int readUnsignedInt(InputStream in) throws IOException {
+		long value = readVarint(in);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("Value out of range in workout file: " + value);
+		}
+		return (int) value;
+	}
+
+	/** Maps signed values to unsigned ones, so that small differences stay small. */
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeString(OutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(InputStream in) throws IOException {
+		int length = readUnsignedInt(in);
+		if (length > MAX_STRING_BYTES) {
+			throw new IOException("String too long in workout file: " + length);
+		}
+		return new String(readBytes(in, length), UTF_8);
+	}
+
+	static byte[] readBytes(InputStream in, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int read = in.read(bytes, offset, length - offset);
+			if (read == -1) {
+				throw new EOFException("Unexpected end of workout file");
+			}
+			offset += read;
+		}
+		return bytes;
+	}
+
+	static void skipBytes(InputStream in, long length) throws IOException {
+		while (length > 0) {
+			long skipped = in.skip(length);
+			if (skipped <= 0) {
+				// skip() may return 0 before the end of the stream
+				readByte(in);
+				skipped = 1;
+			}
+			length -= skipped;
+		}
+	}
+
+	/**
+	 * Writes a block of training entries. The entries are requested in pages
+	 * from the exercise, so the older entries do not have to be held in
+	 * memory at once. Entries that have not been loaded are streamed from
+	 * their file, which is read only once for the whole block.
+	 * 
+	 * @param from
+	 *            The index of the first entry of the block
+	 * @param to
+	 *            The index of the last entry of the block (exclusive)
+	 */
+	static void writeBlock(OutputStream out, FitnessExercise fEx, int from, int to) throws IOException,
+			ErrorException {
+		ByteArrayOutputStream block = new ByteArrayOutputStream();
+		long previousDate = 0;
+		int pageFrom = from;
+
+		int unloadedTo = Math.min(to, fEx.getUnloadedTrainingEntryCount());
+		if (from < unloadedTo && fEx.getTrainingEntrySource() instanceof WorkoutBinaryHistory) {
+			WorkoutBinaryHistory.EntryReader reader = ((WorkoutBinaryHistory) fEx.getTrainingEntrySource())
+					.open(from);
+			try {
+				for (int i = from; i < unloadedTo; i++) {
+					previousDate = writeEntry(block, reader.next(), previousDate);
+				}
+			} finally {
+				reader.close();
+			}
+			pageFrom = unloadedTo;
+		}
+
+		for (int page = pageFrom; page < to; page += PAGE_SIZE) {
+			for (TrainingEntry entry : fEx.getTrainingEntries(page, Math.min(to, page + PAGE_SIZE))) {
+				previousDate = writeEntry(block, entry, previousDate);
+			}
+		}
+
+		writeVarint(out, to - from);
+		writeVarint(out, block.size());
+		block.writeTo(out);
+	}
+
+	/**
+	 * Writes one training entry.
+	 * 
+	 * @param previousDate
+	 *            The date of the previous entry of the block
+	 * 
+	 * @return The date the next entry refers to
+	 */
+	private static long writeEntry(OutputStream out, TrainingEntry entry, long previousDate) throws IOException,
+			ErrorException {
+		if (entry.getDate() == null) {
+			writeVarint(out, 0);
+		} else {
+			long date = entry.getDate().getTime();
+			writeVarint(out, zigzag(date - previousDate) + 1);
+			previousDate = date;
+		}
+
+		List<FSet> setList = entry.getFSetList();
+		writeVarint(out, setList.size());
+		byte[] hasBeenDone = new byte[(setList.size() + 7) / 8];
+		for (int i = 0; i < setList.size(); i++) {
+			writeSet(out, setList.get(i));
+			if (entry.hasBeenDone(setList.get(i))) {
+				hasBeenDone[i / 8] |= 1 << (i % 8);
+			}
+		}
+		out.write(hasBeenDone);
+		return previousDate;
+	}
+
+	/**
+	 * Reads the entries of a block, after its header.
+	 * 
+	 * @param in
+	 *            The stream, positioned at the first entry of the block
+	 * @param from
+	 *            The index of the first entry to return, the entries before
+	 *            are decoded but not created
+	 * @param to
+	 *            The index of the last entry to return (exclusive), the
+	 *            following entries are not read
+	 * 
+	 * @return The entries from index from to index to
+	 */
+	static List<TrainingEntry> readEntries(InputStream in, int from, int to) throws IOException, ErrorException {
+		List<TrainingEntry> entryList = new ArrayList<TrainingEntry>(Math.max(0, to - from));
+		long previousDate = 0;
+		for (int i = 0; i < to; i++) {
+			if (i < from) {
+				previousDate = skipEntry(in, previousDate);
+				continue;
+			}
+
+			TrainingEntry entry = readEntry(in, previousDate);
+			if (entry.getDate() != null) {
+				previousDate = entry.getDate().getTime();
+			}
+			entryList.add(entry);
+		}
+		return entryList;
+	}
+
+	/**
+	 * Reads one training entry.
+	 * 
+	 * @param previousDate
+	 *            The date the date of the entry refers to
+	 */
+	@SuppressWarnings("deprecation")
+	// because using constructor of TrainingEntry
+	static TrainingEntry readEntry(InputStream in, long previousDate) throws IOException, ErrorException {
+		long encodedDate = readVarint(in);
+		TrainingEntry entry = new TrainingEntry(encodedDate == 0 ? null : new Date(previousDate
+				+ unzigzag(encodedDate - 1)));
+
+		FSet[] sets = readSets(in);
+		byte[] hasBeenDone = readBytes(in, (sets.length + 7) / 8);
+		for (int s = 0; s < sets.length; s++) {
+			entry.add(sets[s]);
+			entry.setHasBeenDone(sets[s], (hasBeenDone[s / 8] & (1 << (s % 8))) != 0);
+		}
+		return entry;
+	}
+
+	/**
+	 * Reads one training entry without creating it.
+	 * 
+	 * @return The date of the entry, previousDate if it has none
+	 */
+	static long skipEntry(InputStream in, long previousDate) throws IOException {
+		long encodedDate = readVarint(in);
+		int setCount = skipSets(in);
+		skipBytes(in, (setCount + 7) / 8);
+		return encodedDate == 0 ? previousDate : previousDate + unzigzag(encodedDate - 1);
+	}
+
+	static void writeSet(OutputStream out, FSet set) throws IOException {
+		writeVarint(out, set.getSetParameters().size());
+		for (SetParameter parameter : set.getSetParameters()) {
+			if (parameter instanceof SetParameter.FreeField) {
+				out.write(TYPE_FREE_FIELD);
+				writeString(out, parameter.toString());
+				continue;
+			}
+
+			if (parameter instanceof SetParameter.Weight) {
+				out.write(TYPE_WEIGHT);
+			} else if (parameter instanceof SetParameter.Repetition) {
+				out.write(TYPE_REPETITION);
+			} else if (parameter instanceof SetParameter.Duration) {
+				out.write(TYPE_DURATION);
+			} else {
+				throw new IOException("Unknown SetParameter: " + parameter.getName());
+			}
+			writeVarint(out, parameter.getValue());
+		}
+	}
+
+	static FSet[] readSets(InputStream in) throws IOException, ErrorException {
+		int setCount = readUnsignedInt(in);
+		List<FSet> setList = new ArrayList<FSet>();
+		for (int i = 0; i < setCount; i++) {
+			int parameterCount = readUnsignedInt(in);
+			List<SetParameter> parameterList = new ArrayList<SetParameter>();
+			for (int k = 0; k < parameterCount; k++) {
+				parameterList.add(readSetParameter(in));
+			}
+			setList.add(new FSet(parameterList.toArray(new SetParameter[parameterList.size()])));
+		}
+		return setList.toArray(new FSet[setList.size()]);
+	}
+
+	/**
+	 * Reads sets without creating them.
+	 * 
+	 * @return The number of sets
+	 */
+	static int skipSets(InputStream in) throws IOException {
+		int setCount = readUnsignedInt(in);
+		for (int i = 0; i < setCount; i++) {
+			int parameterCount = readUnsignedInt(in);
+			for (int k = 0; k < parameterCount; k++) {
+				if (readByte(in) == TYPE_FREE_FIELD) {
+					skipBytes(in, readUnsignedInt(in));
+				} else {
+					readVarint(in);
+				}
+			}
+		}
+		return setCount;
+	}
+
+	private static SetParameter readSetParameter(InputStream in) throws IOException {
+		int type = readByte(in);
+		switch (type) {
+		case TYPE_WEIGHT:
+			return new SetParameter.Weight(readUnsignedInt(in));
+		case TYPE_REPETITION:
+			return new SetParameter.Repetition(readUnsignedInt(in));
+		case TYPE_DURATION:
+			return new SetParameter.Duration(readUnsignedInt(in));
+		case TYPE_FREE_FIELD:
+			return new SetParameter.FreeField(readString(in));
+		default:
+			throw new IOException("Unknown SetParameter type in workout file: " + type);
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.TrainingEntrySource;
+
+import static de.skubware.opentraining.db.parser.WorkoutBinaryFormat.*;
+
+/**
+ * Loads the older {@link TrainingEntry}s of a {@link FitnessExercise} from a
+ * binary workout file, see {@link WorkoutBinaryFormat}.
+ * 
+ * The first entries of an exercise never change when the file is written
+ * again: the unloaded entries cannot be changed, and the entries changed by
+ * the {@link WorkoutJournal} are always loaded. So the entries are found
+ * even if the file has been written again since the workout has been loaded.
+ * 
+ */
+final class WorkoutBinaryHistory implements TrainingEntrySource {
+	/** Default serialVersionUID */
+	private static final long serialVersionUID = 1L;
+
+	/** Size of the read buffer */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final File mFile;
+	private final String mExercise;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param file
+	 *            The binary workout file
+	 * @param exercise
+	 *            The unlocalized name of the exercise, each exercise can only
+	 *            be contained once in a workout
+	 */
+	WorkoutBinaryHistory(File file, String exercise) {
+		mFile = file;
+		mExercise = exercise;
+	}
+
+	@Override
+	public List<TrainingEntry> load(int from, int to) throws IOException {
+		if (from >= to) {
+			return new ArrayList<TrainingEntry>();
+		}
+
+		EntryReader reader = open(from);
+		try {
+			List<TrainingEntry> entryList = new ArrayList<TrainingEntry>(to - from);
+			for (int i = from; i < to; i++) {
+				entryList.add(reader.next());
+			}
+			return entryList;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Opens the file for reading the entries sequentially. Unlike
+	 * {@link #load(int, int)} the file is read only once, no matter how many
+	 * entries are read.
+	 * 
+	 * @param from
+	 *            The index of the first entry to read
+	 * 
+	 * @return The reader, has to be closed
+	 */
+	EntryReader open(int from) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(mFile), BUFFER_SIZE);
+		boolean success = false;
+		try {
+			EntryReader reader = new EntryReader(in);
+			reader.skipTo(from);
+			success = true;
+			return reader;
+		} finally {
+			if (!success) {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the entries of the exercise one after another, spanning both
+	 * blocks.
+	 */
+	final class EntryReader implements Closeable {
+		private final InputStream mIn;
+		/** The number of entries that have been read or skipped */
+		private int mIndex = 0;
+		/** The index of the first entry after the current block */
+		private int mBlockEnd = 0;
+		/** The number of blocks whose header has been read */
+		private int mBlockCount = 0;
+		private long mPreviousDate = 0;
+
+		private EntryReader(InputStream in) throws IOException {
+			mIn = in;
+			skipToExercise();
+		}
+
+		/**
+		 * @return The next entry
+		 * 
+		 * @throws IOException
+		 *             if there are no more entries or the file is invalid
+		 */
+		TrainingEntry next() throws IOException {
+			nextBlock();
+			try {
+				TrainingEntry entry = readEntry(mIn, mPreviousDate);
+				if (entry.getDate() != null) {
+					mPreviousDate = entry.getDate().getTime();
+				}
+				mIndex++;
+				return entry;
+			} catch (ErrorException e) {
+				throw new IOException("Invalid training entry in workout file " + mFile, e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			mIn.close();
+		}
+
+		/** Skips whole blocks where possible, then single entries. */
+		private void skipTo(int index) throws IOException {
+			while (mIndex < index) {
+				if (mIndex == mBlockEnd && mBlockCount < 2) {
+					int count = readUnsignedInt(mIn);
+					int size = readUnsignedInt(mIn);
+					mBlockCount++;
+					mBlockEnd += count;
+					mPreviousDate = 0;
+					if (index >= mBlockEnd) {
+						skipBytes(mIn, size);
+						mIndex = mBlockEnd;
+					}
+					continue;
+				}
+				nextBlock();
+				mPreviousDate = skipEntry(mIn, mPreviousDate);
+				mIndex++;
+			}
+		}
+
+		/** Reads the header of the next block if the current one is done. */
+		private void nextBlock() throws IOException {
+			while (mIndex == mBlockEnd) {
+				if (mBlockCount == 2) {
+					throw new IOException("Workout file " + mFile + " contains only " + mIndex + " entries of "
+							+ mExercise);
+				}
+				mBlockEnd += readUnsignedInt(mIn);
+				readUnsignedInt(mIn);
+				mBlockCount++;
+				mPreviousDate = 0;
+			}
+		}
+
+		/** Positions the stream at the first block of the exercise. */
+		private void skipToExercise() throws IOException {
+			if (readInt(mIn) != MAGIC) {
+				throw new IOException("Unsupported workout file: " + mFile);
+			}
+			int version = readByte(mIn);
+			if (version != VERSION && version != VERSION_2) {
+				throw new IOException("Unsupported workout file: " + mFile);
+			}
+			if (version == VERSION) {
+				// the ID
+				readString(mIn);
+			}
+			readString(mIn);
+			readUnsignedInt(mIn);
+
+			List<String> nameList = new ArrayList<String>();
+			int nameCount = readUnsignedInt(mIn);
+			for (int i = 0; i < nameCount; i++) {
+				nameList.add(readString(mIn));
+			}
+
+			int fExCount = readUnsignedInt(mIn);
+			for (int i = 0; i < fExCount; i++) {
+				int index = readUnsignedInt(mIn);
+				if (index >= nameList.size()) {
+					throw new IOException("Invalid exercise index in workout file: " + index);
+				}
+				if (readByte(mIn) != 0) {
+					readString(mIn);
+				}
+				skipSets(mIn);
+
+				if (nameList.get(index).equals(mExercise)) {
+					return;
+				}
+				skipBlock(mIn);
+				skipBlock(mIn);
+			}
+			throw new IOException("Workout file " + mFile + " does not contain " + mExercise);
+		}
+	}
+
+	private static void skipBlock(InputStream in) throws IOException {
+		readUnsignedInt(in);
+		skipBytes(in, readUnsignedInt(in));
+	}
+
+}
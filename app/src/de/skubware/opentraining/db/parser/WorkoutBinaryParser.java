@@ -0,0 +1,203 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.IDataProvider;
+
+import static de.skubware.opentraining.db.parser.WorkoutBinaryFormat.*;
+
+/**
+ * Reads {@link Workout}s from the binary files written by
+ * {@link WorkoutBinarySaver}. The {@link WorkoutJournal} of the workout is
+ * replayed afterwards.
+ * 
+ * Only the recent {@link TrainingEntry}s are loaded, the older ones are loaded
+ * on demand by {@link WorkoutBinaryHistory}.
+ * 
+ */
+public class WorkoutBinaryParser implements IWorkoutParser {
+	/** Tag for logging */
+	static final String TAG = "WorkoutBinaryParser";
+
+	/** Size of the read buffer */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/** The exercises that could not be found, collected over all reads */
+	private final MissingExercises mMissingExercises = new MissingExercises();
+
+	/** Resolves the exercises */
+	private final IDataProvider mDataProvider;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dataProvider
+	 *            The data provider that resolves the exercises of the workouts
+	 */
+	public WorkoutBinaryParser(IDataProvider dataProvider) {
+		mDataProvider = dataProvider;
+	}
+
+	@Override
+	public Workout read(File f, Context context) {
+		try {
+			InputStream file = new BufferedInputStream(new FileInputStream(f), BUFFER_SIZE);
+			try {
+				CheckedInputStream in = new CheckedInputStream(file, new CRC32());
+				Workout w = readWorkout(in, f, context.getFilesDir());
+				if ((int) in.getChecksum().getValue() != readInt(file)) {
+					Log.e(TAG, "Checksum of workout file " + f + " does not match.");
+					return null;
+				}
+
+				// apply the changes that have been recorded since the file was written
+				new WorkoutJournal(context.getFilesDir(), WorkoutJournal.nameOf(f)).replay(w, f);
+				return w;
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Error during reading Workout " + f, e);
+		} catch (ErrorException e) {
+			Log.e(TAG, "Workout " + f + " is invalid.", e);
+		} catch (RuntimeException e) {
+			Log.e(TAG, "Error during reading Workout " + f, e);
+		}
+
+		return null;
+	}
+
+	@Override
+	public List<ExerciseType> takeMissingExercises() {
+		return mMissingExercises.take();
+	}
+
+	/**
+	 * Reads the workout. Only the recent training entries and the entries the
+	 * journal refers to are loaded, the older ones are skipped.
+	 * 
+	 * @param f
+	 *            The file, for loading the older entries later
+	 * @param journalDirectory
+	 *            The directory of the journal
+	 */
+	private Workout readWorkout(InputStream in, File f, File journalDirectory) throws IOException, ErrorException {
+		if (readInt(in) != MAGIC) {
+			throw new IOException("Not a workout file");
+		}
+		int version = readByte(in);
+		if (version != VERSION && version != VERSION_2 && version != VERSION_1) {
+			throw new IOException("Unsupported version of workout file: " + version);
+		}
+
+		// files without ID are converted when they are loaded for the first time
+		String workoutId = version == VERSION ? readString(in) : Workout.createId();
+		String workoutName = readString(in);
+		int rowCount = readUnsignedInt(in);
+		Map<Integer, Integer> referencedMap = new WorkoutJournal(journalDirectory, WorkoutJournal.nameOf(f))
+				.readReferencedEntries();
+
+		int nameCount = readUnsignedInt(in);
+		List<String> nameList = new ArrayList<String>();
+		List<ExerciseType> exerciseList = new ArrayList<ExerciseType>();
+		for (int i = 0; i < nameCount; i++) {
+			// if exercise can't be found, a placeholder is created
+			// this may happen if a custom(or synced) exercise has been deleted
+			nameList.add(readString(in));
+			exerciseList.add(mMissingExercises.resolve(mDataProvider, nameList.get(i)));
+		}
+
+		long previousDate = 0;
+		int fExCount = readUnsignedInt(in);
+		List<FitnessExercise> fExList = new ArrayList<FitnessExercise>();
+		for (int i = 0; i < fExCount; i++) {
+			int index = readUnsignedInt(in);
+			if (index >= exerciseList.size()) {
+				throw new IOException("Invalid exercise index in workout file: " + index);
+			}
+			String customName = readByte(in) == 0 ? null : readString(in);
+
+			FitnessExercise fEx = new FitnessExercise(exerciseList.get(index), readSets(in));
+			if (customName != null) {
+				fEx.setCustomName(customName);
+			}
+
+			List<TrainingEntry> entryList = fEx.getTrainingEntryList();
+			if (version == VERSION_1) {
+				int entryCount = readUnsignedInt(in);
+				for (int k = 0; k < entryCount; k++) {
+					TrainingEntry entry = readEntry(in, previousDate);
+					if (entry.getDate() != null) {
+						previousDate = entry.getDate().getTime();
+					}
+					entryList.add(entry);
+				}
+			} else {
+				// the older entries are only loaded if the journal refers to them
+				int olderCount = readUnsignedInt(in);
+				int olderSize = readUnsignedInt(in);
+				int loadFrom = olderCount;
+				if (referencedMap.containsKey(i)) {
+					loadFrom = Math.max(0, Math.min(olderCount, referencedMap.get(i)));
+				}
+				if (loadFrom < olderCount) {
+					entryList.addAll(readEntries(in, loadFrom, olderCount));
+				} else {
+					skipBytes(in, olderSize);
+				}
+
+				int recentCount = readUnsignedInt(in);
+				readUnsignedInt(in);
+				entryList.addAll(readEntries(in, 0, recentCount));
+				fEx.setUnloadedTrainingEntries(loadFrom, new WorkoutBinaryHistory(f, nameList.get(index)));
+			}
+
+			fExList.add(fEx);
+		}
+
+		Workout w = new Workout(workoutId, workoutName, fExList);
+		if (rowCount > 0) {
+			w.setEmptyRows(rowCount);
+		}
+		return w;
+	}
+
+}
@@ -0,0 +1,148 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.FSet;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.Workout;
+
+import static de.skubware.opentraining.db.parser.WorkoutBinaryFormat.*;
+
+/**
+ * Writes {@link Workout}s in the compact binary format of
+ * {@link WorkoutBinaryFormat}, which is used for storing the workouts of the
+ * app. For sharing and exporting, workouts are still written as .xml by
+ * {@link XMLSaver}.
+ * 
+ */
+public final class WorkoutBinarySaver {
+	/** Tag for logging */
+	private static final String TAG = "WorkoutBinarySaver";
+
+	/** Size of the write buffer */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private WorkoutBinarySaver() {
+	}
+
+	/**
+	 * Saves a Workout to the given file. The file is written to a temporary
+	 * file first, so the old file remains untouched if writing fails.
+	 * 
+	 * @param w
+	 *            The workout to write
+	 * @param destination
+	 *            The destination file
+	 * 
+	 * @return true, if writing was successful, false otherwise
+	 */
+	public static synchronized boolean writeWorkout(Workout w, File destination) {
+		File tempFile = new File(destination.getPath() + ".tmp");
+		boolean success = false;
+		try {
+			OutputStream file = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE);
+			try {
+				CheckedOutputStream out = new CheckedOutputStream(file, new CRC32());
+				write(out, w);
+				writeInt(file, (int) out.getChecksum().getValue());
+			} finally {
+				file.close();
+			}
+
+			success = tempFile.renameTo(destination);
+			if (!success) {
+				Log.e(TAG, "Could not rename " + tempFile + " to " + destination);
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Error during writing Workout " + w.getName(), e);
+		} catch (ErrorException e) {
+			Log.e(TAG, "Error during writing Workout " + w.getName(), e);
+		} finally {
+			if (!success) {
+				tempFile.delete();
+			}
+		}
+
+		return success;
+	}
+
+	private static void write(OutputStream out, Workout w) throws IOException, ErrorException {
+		writeInt(out, MAGIC);
+		out.write(VERSION);
+		writeString(out, w.getId());
+		writeString(out, w.getName());
+		writeVarint(out, w.getEmptyRows());
+
+		// the names of the exercises, each exercise refers to its index
+		List<String> nameList = new ArrayList<String>();
+		Map<String, Integer> nameIndexMap = new HashMap<String, Integer>();
+		for (FitnessExercise fEx : w.getFitnessExercises()) {
+			String name = fEx.getExType().getUnlocalizedName();
+			if (!nameIndexMap.containsKey(name)) {
+				nameIndexMap.put(name, nameList.size());
+				nameList.add(name);
+			}
+		}
+		writeVarint(out, nameList.size());
+		for (String name : nameList) {
+			writeString(out, name);
+		}
+
+		writeVarint(out, w.getFitnessExercises().size());
+		for (FitnessExercise fEx : w.getFitnessExercises()) {
+			writeVarint(out, nameIndexMap.get(fEx.getExType().getUnlocalizedName()));
+			if (fEx.toString() != null) {
+				out.write(1);
+				writeString(out, fEx.toString());
+			} else {
+				out.write(0);
+			}
+
+			writeVarint(out, fEx.getFSetList().size());
+			for (FSet set : fEx.getFSetList()) {
+				writeSet(out, set);
+			}
+
+			// the older entries are written to their own block, so they can be skipped when loading
+			int count = fEx.getTrainingEntryCount();
+			int recentFrom = Math.max(0, count - FitnessExercise.RECENT_TRAINING_ENTRIES);
+			writeBlock(out, fEx, 0, recentFrom);
+			writeBlock(out, fEx, recentFrom, count);
+		}
+	}
+
+}
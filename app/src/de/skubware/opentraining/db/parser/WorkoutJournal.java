@@ -0,0 +1,520 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.FSet;
+import de.skubware.opentraining.basic.FSet.SetParameter;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+
+/**
+ * Append-only log of the changes of the {@link TrainingEntry}s of one
+ * {@link Workout}, stored next to the binary .workout file of the workout
+ * (see {@link WorkoutBinarySaver}), which is the snapshot the events refer to.
+ * 
+ * Recording a set during a training only appends one line, instead of
+ * writing the whole workout with its complete history again. The
+ * {@link WorkoutBinaryParser} replays the journal after reading the snapshot;
+ * the .xml parsers do the same for the files of older versions, before they
+ * are converted. When the journal grows too large it is compacted: the
+ * workout is written to the binary file again and the journal is deleted.
+ * 
+ * The first line of the journal contains the checksum of the snapshot the
+ * events refer to. If the snapshot is written again (e.g. because the crash
+ * happened before the journal was deleted), the journal does not match any
+ * more and is ignored.
+ * 
+ * The events refer to the training entries by their index in the complete
+ * history of the exercise, including the entries that have not been loaded
+ * (see {@link FitnessExercise#getUnloadedTrainingEntryCount()}). The parser
+ * has to load the entries the journal refers to, see
+ * {@link #readReferencedEntries()}.
+ * 
+ * Only these events are recorded, all other changes require writing the
+ * snapshot:
+ * <ul>
+ * <li>entry: a {@link TrainingEntry} has been added</li>
+ * <li>set: a {@link FSet} has been added to a training entry</li>
+ * <li>edit: the {@link SetParameter}s of a set have been changed</li>
+ * <li>done: the set has been marked as done/not done</li>
+ * <li>name: the workout has been renamed</li>
+ * </ul>
+ * 
+ * The journal is named after the ID of the workout (see
+ * {@link Workout#getId()}), so renaming does not move any files.
+ * 
+ */
+public class WorkoutJournal {
+	/** Tag for logging */
+	static final String TAG = "WorkoutJournal";
+
+	/** File extension of journals */
+	public static final String FORMAT = ".journal";
+
+	/** Size (in bytes) from which on the journal should be compacted */
+	public static final long COMPACT_THRESHOLD = 16 * 1024;
+
+	private static final String HEADER = "# base ";
+	private static final String SEPARATOR = "\t";
+	private static final String NO_DATE = "-";
+
+	private static final String EVENT_ENTRY = "entry";
+	private static final String EVENT_SET = "set";
+	private static final String EVENT_EDIT = "edit";
+	private static final String EVENT_DONE = "done";
+	private static final String EVENT_NAME = "name";
+
+	private final File mFile;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param directory
+	 *            The directory of the workout files
+	 * @param workoutId
+	 *            The ID of the workout, the name for workout files that do
+	 *            not contain an ID
+	 */
+	public WorkoutJournal(File directory, String workoutId) {
+		mFile = new File(directory, workoutId + FORMAT);
+	}
+
+	/**
+	 * @return The name of the journal of the workout file: the name of the
+	 *         file without extension, which is the ID of the workout (or its
+	 *         name for files of older versions)
+	 */
+	static String nameOf(File f) {
+		String name = f.getName();
+		int dot = name.lastIndexOf('.');
+		return dot == -1 ? name : name.substring(0, dot);
+	}
+
+	/**
+	 * @return The journal file, may not exist
+	 */
+	public File getFile() {
+		return mFile;
+	}
+
+	/**
+	 * @return The size of the journal in bytes, 0 if there is no journal
+	 */
+	public long length() {
+		return mFile.length();
+	}
+
+	/**
+	 * Deletes the journal. Has to be called after the complete workout has been
+	 * written to the snapshot.
+	 */
+	public void delete() {
+		if (mFile.exists() && !mFile.delete()) {
+			Log.e(TAG, "Could not delete journal " + mFile);
+		}
+	}
+
+	/**
+	 * Appends the events to the journal.
+	 * 
+	 * @param events
+	 *            The events, as returned by {@link State#diff(State)}
+	 * @param snapshot
+	 *            The binary file of the workout the events refer to
+	 * 
+	 * @throws IOException
+	 *             if writing failed, the journal should be deleted then
+	 */
+	public void append(List<String> events, File snapshot) throws IOException {
+		boolean isNew = !mFile.exists();
+		Writer out = new OutputStreamWriter(new FileOutputStream(mFile, true), "UTF-8");
+		try {
+			StringBuilder b = new StringBuilder();
+			if (isNew) {
+				b.append(HEADER).append(checksum(snapshot)).append('\n');
+			}
+			for (String event : events) {
+				b.append(event).append('\n');
+			}
+			out.write(b.toString());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Applies the events of the journal to the workout that has been read
+	 * from the snapshot. Does nothing, if there is no journal or if the
+	 * journal does not belong to the snapshot.
+	 * 
+	 * @param w
+	 *            The workout that has been read from snapshot
+	 * @param snapshot
+	 *            The file that has been read
+	 */
+	@SuppressWarnings("deprecation")
+	// because using constructor of TrainingEntry
+	public void replay(Workout w, File snapshot) {
+		if (!mFile.exists()) {
+			return;
+		}
+
+		int replayed = 0;
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(mFile), "UTF-8"));
+			try {
+				String header = in.readLine();
+				if (header == null || !header.equals(HEADER + checksum(snapshot))) {
+					Log.w(TAG, "Journal " + mFile + " does not belong to the workout file, will ignore it.");
+					return;
+				}
+
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] f = line.split(SEPARATOR, -1);
+					if (f[0].equals(EVENT_NAME)) {
+						w.setName(decode(f[1]));
+						replayed++;
+						continue;
+					}
+
+					FitnessExercise fEx = w.getFitnessExercises().get(Integer.parseInt(f[1]));
+					List<TrainingEntry> entryList = fEx.getTrainingEntryList();
+					int firstLoaded = fEx.getUnloadedTrainingEntryCount();
+
+					if (f[0].equals(EVENT_ENTRY)) {
+						entryList.add(new TrainingEntry(f[2].equals(NO_DATE) ? null : new Date(Long.parseLong(f[2]))));
+					} else {
+						TrainingEntry entry = entryList.get(Integer.parseInt(f[2]) - firstLoaded);
+						if (f[0].equals(EVENT_SET)) {
+							FSet set = decodeSet(f[4]);
+							entry.add(set);
+							entry.setHasBeenDone(set, f[3].equals("1"));
+						} else if (f[0].equals(EVENT_EDIT)) {
+							replaceSet(entry, Integer.parseInt(f[3]), decodeSet(f[4]));
+						} else if (f[0].equals(EVENT_DONE)) {
+							entry.setHasBeenDone(entry.getFSetList().get(Integer.parseInt(f[3])), f[4].equals("1"));
+						} else {
+							throw new IllegalArgumentException("Unknown event: " + f[0]);
+						}
+					}
+					replayed++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Could not read journal " + mFile, e);
+		} catch (RuntimeException e) {
+			// e.g. the last line is incomplete, because writing it was interrupted
+			Log.e(TAG, "Journal " + mFile + " is corrupt after " + replayed + " events, will ignore the rest.", e);
+		} catch (ErrorException e) {
+			Log.e(TAG, "Journal " + mFile + " is corrupt after " + replayed + " events, will ignore the rest.", e);
+		}
+
+		Log.v(TAG, "Replayed " + replayed + " events of " + mFile.getName());
+	}
+
+	/**
+	 * Returns the training entries the events of the journal refer to. These
+	 * entries have to be loaded before the journal can be replayed. The
+	 * checksum of the journal is not checked.
+	 * 
+	 * @return The index of the first entry each exercise (by position) refers
+	 *         to. Exercises whose entries are not referred to are not
+	 *         contained.
+	 */
+	public Map<Integer, Integer> readReferencedEntries() {
+		Map<Integer, Integer> referencedMap = new HashMap<Integer, Integer>();
+		if (!mFile.exists()) {
+			return referencedMap;
+		}
+
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(mFile), "UTF-8"));
+			try {
+				// skip header
+				String line = in.readLine();
+				while ((line = in.readLine()) != null) {
+					String[] f = line.split(SEPARATOR, -1);
+					if (f[0].equals(EVENT_ENTRY) || f[0].equals(EVENT_NAME)) {
+						// refers to a new entry or to no entry at all
+						continue;
+					}
+
+					int exercise = Integer.parseInt(f[1]);
+					int entry = Integer.parseInt(f[2]);
+					Integer first = referencedMap.get(exercise);
+					if (first == null || entry < first) {
+						referencedMap.put(exercise, entry);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Could not read journal " + mFile, e);
+		} catch (RuntimeException e) {
+			// the corrupt part will be ignored by replay() as well
+			Log.e(TAG, "Journal " + mFile + " is corrupt.", e);
+		}
+		return referencedMap;
+	}
+
+	/**
+	 * Replaces the set at the given position and keeps its status.
+	 */
+	private static void replaceSet(TrainingEntry entry, int index, FSet newSet) throws ErrorException {
+		List<FSet> setList = new ArrayList<FSet>(entry.getFSetList());
+		boolean[] doneList = new boolean[setList.size()];
+		for (int i = 0; i < setList.size(); i++) {
+			doneList[i] = entry.hasBeenDone(setList.get(i));
+		}
+		setList.set(index, newSet);
+
+		for (FSet set : new ArrayList<FSet>(entry.getFSetList())) {
+			entry.remove(set);
+		}
+		for (int i = 0; i < setList.size(); i++) {
+			entry.add(setList.get(i));
+			entry.setHasBeenDone(setList.get(i), doneList[i]);
+		}
+	}
+
+	private static String encodeSet(List<SetParameter> parameters) {
+		StringBuilder b = new StringBuilder();
+		for (SetParameter parameter : parameters) {
+			if (b.length() > 0) {
+				b.append(',');
+			}
+			b.append(parameter.getName()).append('=');
+			if (parameter instanceof SetParameter.FreeField) {
+				b.append(encode(parameter.toString()));
+			} else {
+				b.append(parameter.getValue());
+			}
+		}
+		return b.toString();
+	}
+
+	private static FSet decodeSet(String s) throws ErrorException {
+		String[] fields = s.split(",");
+		SetParameter[] parameters = new SetParameter[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			int split = fields[i].indexOf('=');
+			String name = fields[i].substring(0, split);
+			String value = fields[i].substring(split + 1);
+
+			if (name.equals("weight")) {
+				parameters[i] = new SetParameter.Weight(Integer.parseInt(value));
+			} else if (name.equals("repetition")) {
+				parameters[i] = new SetParameter.Repetition(Integer.parseInt(value));
+			} else if (name.equals("duration")) {
+				parameters[i] = new SetParameter.Duration(Integer.parseInt(value));
+			} else if (name.equals("freefield")) {
+				parameters[i] = new SetParameter.FreeField(decode(value));
+			} else {
+				throw new IllegalArgumentException("Unknown SetParameter: " + name);
+			}
+		}
+		return new FSet(parameters);
+	}
+
+	private static String encode(String s) {
+		try {
+			return URLEncoder.encode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8 * 1024];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * The state of a {@link Workout} as it has been written. Comparing two
+	 * states yields the events that have to be appended to the journal.
+	 * 
+	 * The state only holds copies of the lists, so the workout may be changed
+	 * afterwards. {@link SetParameter}s are immutable and are not copied.
+	 */
+	public static class State {
+		private final String mName;
+		private final int mEmptyRows;
+		private final List<ExerciseState> mExerciseList = new ArrayList<ExerciseState>();
+
+		private static class ExerciseState {
+			String mExercise;
+			/** Index of the first entry of mEntryList in the complete history */
+			int mFirstEntry;
+			String mCustomName;
+			List<List<SetParameter>> mFSetList = new ArrayList<List<SetParameter>>();
+			List<EntryState> mEntryList = new ArrayList<EntryState>();
+		}
+
+		private static class EntryState {
+			Date mDate;
+			List<List<SetParameter>> mFSetList = new ArrayList<List<SetParameter>>();
+			List<Boolean> mDoneList = new ArrayList<Boolean>();
+		}
+
+		/**
+		 * Creates the state of the workout.
+		 */
+		public State(Workout w) throws ErrorException {
+			mName = w.getName();
+			mEmptyRows = w.getEmptyRows();
+			for (FitnessExercise fEx : w.getFitnessExercises()) {
+				ExerciseState exState = new ExerciseState();
+				exState.mExercise = fEx.getExType().getUnlocalizedName();
+				exState.mCustomName = fEx.toString();
+				exState.mFirstEntry = fEx.getUnloadedTrainingEntryCount();
+				for (FSet set : fEx.getFSetList()) {
+					exState.mFSetList.add(new ArrayList<SetParameter>(set.getSetParameters()));
+				}
+				for (TrainingEntry entry : fEx.getTrainingEntryList()) {
+					EntryState entryState = new EntryState();
+					entryState.mDate = entry.getDate() == null ? null : new Date(entry.getDate().getTime());
+					for (FSet set : entry.getFSetList()) {
+						entryState.mFSetList.add(new ArrayList<SetParameter>(set.getSetParameters()));
+						entryState.mDoneList.add(entry.hasBeenDone(set));
+					}
+					exState.mEntryList.add(entryState);
+				}
+				mExerciseList.add(exState);
+			}
+		}
+
+		/**
+		 * Compares this (newer) state with the state that has been written
+		 * before.
+		 * 
+		 * @param old
+		 *            The state that has been written before
+		 * 
+		 * @return The events that turn the old state into this state, null if
+		 *         the changes cannot be expressed by events (then the workout
+		 *         has to be written to the snapshot)
+		 */
+		public List<String> diff(State old) {
+			if (mEmptyRows != old.mEmptyRows || mExerciseList.size() != old.mExerciseList.size()) {
+				return null;
+			}
+
+			List<String> events = new ArrayList<String>();
+			if (!mName.equals(old.mName)) {
+				events.add(EVENT_NAME + SEPARATOR + encode(mName));
+			}
+			for (int i = 0; i < mExerciseList.size(); i++) {
+				ExerciseState exState = mExerciseList.get(i);
+				ExerciseState oldExState = old.mExerciseList.get(i);
+				if (!exState.mExercise.equals(oldExState.mExercise) || !exState.mCustomName.equals(oldExState.mCustomName)
+						|| !exState.mFSetList.equals(oldExState.mFSetList) || exState.mFirstEntry != oldExState.mFirstEntry
+						|| exState.mEntryList.size() < oldExState.mEntryList.size()) {
+					return null;
+				}
+
+				for (int k = 0; k < exState.mEntryList.size(); k++) {
+					EntryState entryState = exState.mEntryList.get(k);
+					EntryState oldEntryState;
+					if (k < oldExState.mEntryList.size()) {
+						oldEntryState = oldExState.mEntryList.get(k);
+						if (!equal(entryState.mDate, oldEntryState.mDate)
+								|| entryState.mFSetList.size() < oldEntryState.mFSetList.size()) {
+							return null;
+						}
+					} else {
+						oldEntryState = new EntryState();
+						events.add(EVENT_ENTRY + SEPARATOR + i + SEPARATOR
+								+ (entryState.mDate == null ? NO_DATE : Long.toString(entryState.mDate.getTime())));
+					}
+
+					for (int l = 0; l < entryState.mFSetList.size(); l++) {
+						List<SetParameter> parameters = entryState.mFSetList.get(l);
+						boolean done = entryState.mDoneList.get(l);
+						String prefix = SEPARATOR + i + SEPARATOR + (exState.mFirstEntry + k) + SEPARATOR;
+
+						if (l >= oldEntryState.mFSetList.size()) {
+							events.add(EVENT_SET + prefix + (done ? "1" : "0") + SEPARATOR + encodeSet(parameters));
+							continue;
+						}
+						if (!parameters.equals(oldEntryState.mFSetList.get(l))) {
+							events.add(EVENT_EDIT + prefix + l + SEPARATOR + encodeSet(parameters));
+						}
+						if (done != oldEntryState.mDoneList.get(l)) {
+							events.add(EVENT_DONE + prefix + l + SEPARATOR + (done ? "1" : "0"));
+						}
+					}
+				}
+			}
+			return events;
+		}
+
+		private static boolean equal(Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+
+}
@@ -27,10 +27,13 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -44,7 +47,6 @@ import javax.xml.parsers.SAXParserFactory;
 
 import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.basic.ExerciseType;
-import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
 import de.skubware.opentraining.basic.FSet;
 import de.skubware.opentraining.basic.FSet.SetParameter;
 import de.skubware.opentraining.basic.FitnessExercise;
@@ -55,17 +57,22 @@ import de.skubware.opentraining.db.IDataProvider;
 
 /**
  * An implementation of a SaxParser for parsing .xml files to a {@link Workout}
- * object.
+ * object. The {@link WorkoutJournal} next to a legacy file is replayed
+ * afterwards.
+ * 
+ * {@link WorkoutXMLPullParser} reads the same files with less overhead and is
+ * used by the {@link DataProvider}.
  * 
  * @author Christian Skubich
  */
-public class WorkoutXMLParser extends DefaultHandler {
+public class WorkoutXMLParser extends DefaultHandler implements IWorkoutParser {
 	/**
 	 * Tag for logging
 	 */
 	static final String TAG = "WorkoutXMLParser";
 
-	private Context mContext;
+	/** Size of the read buffer */
+	private static final int BUFFER_SIZE = 8 * 1024;
 
 	private SAXParser mParser = null;
 
@@ -147,7 +154,28 @@ public class WorkoutXMLParser extends DefaultHandler {
 	 */
 	private String mSetParameterValue;
 
+	/** The exercises that could not be found, collected over all reads */
+	private final MissingExercises mMissingExercises = new MissingExercises();
+
+	/** Resolves the exercises, if null a new one is created for each read */
+	private final IDataProvider mInjectedDataProvider;
+
+	/** The data provider of the current read */
+	private IDataProvider mDataProvider;
+
 	public WorkoutXMLParser() {
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dataProvider
+	 *            The data provider that resolves the exercises of the workouts
+	 */
+	WorkoutXMLParser(IDataProvider dataProvider) {
+		mInjectedDataProvider = dataProvider;
+
 		// IParser instanziieren
 		try {
 			SAXParserFactory fac = SAXParserFactory.newInstance();
@@ -158,12 +186,37 @@ public class WorkoutXMLParser extends DefaultHandler {
 
 	}
 
+	/**
+	 * Parses the .xml file. The parser can be used for several files, but not
+	 * by several threads at the same time.
+	 * 
+	 * @param f
+	 *            The .xml file
+	 * @param context
+	 *            The context
+	 * 
+	 * @return The {@link Workout} or null, if parsing failed
+	 */
+	@Override
 	public Workout read(File f, Context context) {
-		mContext = context;
+		mDataProvider = mInjectedDataProvider != null ? mInjectedDataProvider : new DataProvider(context);
+		reset();
 
 		try {
 			// Dokument parsen
-			mParser.parse(f, this);
+			mParser.reset();
+			InputStream in = new BufferedInputStream(new FileInputStream(f), BUFFER_SIZE);
+			try {
+				mParser.parse(in, this);
+			} finally {
+				in.close();
+			}
+
+			// .xml files of older versions may have a journal next to them, see
+			// DataProvider#convertLegacyWorkoutFiles()
+			if (this.mWorkout != null) {
+				new WorkoutJournal(f.getAbsoluteFile().getParentFile(), WorkoutJournal.nameOf(f)).replay(mWorkout, f);
+			}
 
 			return this.mWorkout;
 		} catch (SAXException e) {
@@ -189,6 +242,33 @@ public class WorkoutXMLParser extends DefaultHandler {
 		return null;
 	}
 
+	@Override
+	public List<ExerciseType> takeMissingExercises() {
+		return mMissingExercises.take();
+	}
+
+	/**
+	 * Resets the state of the last (maybe failed) read.
+	 */
+	private void reset() {
+		mWorkout = null;
+		mWorkoutName = null;
+		mRowCount = null;
+		mFExList = new ArrayList<FitnessExercise>();
+		mExerciseType = null;
+		mCustomName = null;
+		mTrainingEntryList = new ArrayList<TrainingEntry>();
+		mTrainingEntry = null;
+		mFSetList = new ArrayList<FSet>();
+		mTrainingEntryFSetList = new ArrayList<FSet>();
+		mSetHasBeenDoneMap = new HashMap<FSet, Boolean>();
+		mSetHasBeenDone = true;
+		parsingTrainingEntry = false;
+		mSetParameter = new ArrayList<SetParameter>();
+		mSetParameterName = null;
+		mSetParameterValue = null;
+	}
+
 	@SuppressWarnings("deprecation")
 	// because using constructor of TrainingEntry
 	@Override
@@ -197,17 +277,17 @@ public class WorkoutXMLParser extends DefaultHandler {
 			case "Workout":
 				workOutActionsStart(attributes);
 				break;
-			case "FitnessExcercise":
+			case "FitnessExercise":
 				this.mCustomName = attributes.getValue("customname");
 				break;
-			case "ExcerciseType":
+			case "ExerciseType":
 				try {
 					exerciseTypeActionsStart(attributes);
 				} catch (ErrorException e) {
 					Log.v("WorkoutXMLParser", e.getMessage());
 				}
 				break;
-			case "Fset":
+			case "FSet":
 				fSetActionsStart(attributes);
 				break;
 			case "SetParameter":
@@ -223,17 +303,9 @@ public class WorkoutXMLParser extends DefaultHandler {
 	}
 
 	private void exerciseTypeActionsStart(Attributes attributes) throws ErrorException {
-		String exName = attributes.getValue("name");
-		IDataProvider dataProvider = new DataProvider(mContext);
-		this.mExerciseType = dataProvider.getExerciseByName(exName);
-
-		// if exercise can't be found, create and save it
+		// if exercise can't be found, a placeholder is created
 		// this may happen if a custom(or synced) exercise has been deleted
-		if (mExerciseType == null) {
-            Log.e(TAG, "Could not find exercise, will create new custom exercise with the name " + exName, new NullPointerException("The exercise '" + exName + "' of the TrainingPlan couldn't be found in the database."));
-            mExerciseType = (new ExerciseType.Builder(exName, ExerciseSource.CUSTOM)).build();
-            dataProvider.saveCustomExercise(mExerciseType);
-        }
+		this.mExerciseType = mMissingExercises.resolve(mDataProvider, attributes.getValue("name"));
 	}
 
 	private void workOutActionsStart(Attributes attributes) {
@@ -278,7 +350,7 @@ public class WorkoutXMLParser extends DefaultHandler {
 			case "FitnessExercise":
                 fitnessExerciseEnd();
 				break;
-			case "Fset":
+			case "FSet":
                 try {
                     fSetActionsEnd();
                 } catch (ErrorException e) {
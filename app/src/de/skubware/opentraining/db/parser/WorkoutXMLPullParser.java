@@ -0,0 +1,360 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.FSet;
+import de.skubware.opentraining.basic.FSet.SetParameter;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.DataProvider;
+import de.skubware.opentraining.db.IDataProvider;
+
+/**
+ * Parses {@link Workout} .xml files with a {@link XmlPullParser}.
+ * 
+ * Reads the same files as {@link WorkoutXMLParser}, but creates the objects
+ * directly while reading, without collecting them in temporary lists first.
+ * The dates of the training entries are decoded without creating a
+ * {@link SimpleDateFormat} for each entry.
+ * 
+ */
+public class WorkoutXMLPullParser implements IWorkoutParser {
+	/** Tag for logging */
+	static final String TAG = "WorkoutXMLPullParser";
+
+	/** Size of the read buffer */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/** The date format of {@link XMLSaver}, e.g. 2014-03-21T18:30:00Z */
+	private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+	private final XmlPullParser mParser;
+
+	/** Used for decoding the dates, XMLSaver writes them in the local time zone */
+	private final Calendar mCalendar = Calendar.getInstance();
+
+	/** Only used for dates that do not match the fixed format */
+	private SimpleDateFormat mFallbackFormat;
+
+	/** The parameters of the current set, reused for all sets */
+	private final List<SetParameter> mSetParameterList = new ArrayList<SetParameter>();
+
+	/** The {@link ExerciseType} of the current {@link FitnessExercise} */
+	private ExerciseType mExerciseType;
+
+	/** The exercises that could not be found, collected over all reads */
+	private final MissingExercises mMissingExercises = new MissingExercises();
+
+	/** Resolves the exercises, if null a new one is created for each read */
+	private final IDataProvider mDataProvider;
+
+	/**
+	 * Constructor. Parsers that are used repeatedly should be obtained from the
+	 * {@link ParserFactory} instead.
+	 */
+	public WorkoutXMLPullParser() {
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dataProvider
+	 *            The data provider that resolves the exercises of the workouts
+	 */
+	WorkoutXMLPullParser(IDataProvider dataProvider) {
+		mParser = Xml.newPullParser();
+		mDataProvider = dataProvider;
+	}
+
+	@Override
+	public Workout read(File f, Context context) {
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(f), BUFFER_SIZE);
+			try {
+				mParser.setInput(in, null);
+				Workout w = readWorkout(mDataProvider != null ? mDataProvider : new DataProvider(context));
+				if (w != null) {
+					// .xml files of older versions may have a journal next to them, see
+					// DataProvider#convertLegacyWorkoutFiles()
+					new WorkoutJournal(f.getAbsoluteFile().getParentFile(), WorkoutJournal.nameOf(f)).replay(w, f);
+				}
+				return w;
+			} finally {
+				in.close();
+			}
+		} catch (XmlPullParserException e) {
+			Log.e(TAG, "Error during parsing Workout " + f, e);
+		} catch (IOException e) {
+			Log.e(TAG, "Error during reading Workout " + f, e);
+		} catch (ErrorException e) {
+			Log.e(TAG, "Workout " + f + " is invalid.", e);
+		} catch (RuntimeException e) {
+			Log.e(TAG, "Error during parsing Workout " + f, e);
+		}
+
+		return null;
+	}
+
+	@Override
+	public List<ExerciseType> takeMissingExercises() {
+		return mMissingExercises.take();
+	}
+
+	/**
+	 * Reads the document. All elements are nested like this:
+	 * 
+	 * Workout > FitnessExercise > (ExerciseType | FSet | TrainingEntry > FSet) >
+	 * SetParameter
+	 */
+	private Workout readWorkout(IDataProvider dataProvider) throws XmlPullParserException, IOException, ErrorException {
+		String workoutName = null;
+		Integer rowCount = null;
+		List<FitnessExercise> fExList = new ArrayList<FitnessExercise>();
+
+		// state of the current FitnessExercise
+		FitnessExercise fEx = null;
+		String customName = null;
+		List<FSet> fSetList = null;
+
+		// state of the current TrainingEntry and FSet
+		TrainingEntry entry = null;
+		boolean hasBeenDone = true;
+
+		for (int event = mParser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = mParser.next()) {
+			if (event == XmlPullParser.START_TAG) {
+				switch (mParser.getName()) {
+				case "Workout":
+					for (int i = 0; i < mParser.getAttributeCount(); i++) {
+						switch (mParser.getAttributeName(i)) {
+						case "name":
+							workoutName = mParser.getAttributeValue(i);
+							break;
+						case "rows":
+							rowCount = Integer.parseInt(mParser.getAttributeValue(i));
+							break;
+						default:
+							break;
+						}
+					}
+					break;
+				case "FitnessExercise":
+					customName = mParser.getAttributeValue(null, "customname");
+					fSetList = new ArrayList<FSet>();
+					// the FitnessExercise is created after its planned sets have been read
+					fExList.add(null);
+					break;
+				case "ExerciseType":
+					readExerciseType(dataProvider);
+					break;
+				case "FSet":
+					String done = mParser.getAttributeValue(null, "hasBeenDone");
+					hasBeenDone = done == null || Boolean.parseBoolean(done);
+					mSetParameterList.clear();
+					break;
+				case "SetParameter":
+					mSetParameterList.add(readSetParameter());
+					break;
+				case "TrainingEntry":
+					if (fEx == null) {
+						fEx = createFitnessExercise(fExList, fSetList, customName);
+					}
+					entry = createTrainingEntry(mParser.getAttributeValue(null, "date"));
+					break;
+				default:
+					break;
+				}
+			} else if (event == XmlPullParser.END_TAG) {
+				switch (mParser.getName()) {
+				case "FSet":
+					if (mSetParameterList.isEmpty()) {
+						// ignored by WorkoutXMLParser as well
+						break;
+					}
+					FSet set = new FSet(mSetParameterList.toArray(new SetParameter[mSetParameterList.size()]));
+					if (entry != null) {
+						entry.add(set);
+						entry.setHasBeenDone(set, hasBeenDone);
+					} else {
+						fSetList.add(set);
+					}
+					break;
+				case "TrainingEntry":
+					fEx.getTrainingEntryList().add(entry);
+					entry = null;
+					break;
+				case "FitnessExercise":
+					if (fEx == null) {
+						fEx = createFitnessExercise(fExList, fSetList, customName);
+					}
+					fEx = null;
+					fSetList = null;
+					customName = null;
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		Workout w = new Workout(workoutName, fExList.toArray(new FitnessExercise[fExList.size()]));
+		if (rowCount != null) {
+			w.setEmptyRows(rowCount);
+		}
+		return w;
+	}
+
+	private void readExerciseType(IDataProvider dataProvider) throws ErrorException {
+		// if exercise can't be found, a placeholder is created
+		// this may happen if a custom(or synced) exercise has been deleted
+		mExerciseType = mMissingExercises.resolve(dataProvider, mParser.getAttributeValue(null, "name"));
+	}
+
+	/**
+	 * Creates the {@link FitnessExercise} once its planned sets have been read
+	 * and puts it at the last position of the list.
+	 */
+	private FitnessExercise createFitnessExercise(List<FitnessExercise> fExList, List<FSet> fSetList, String customName)
+			throws ErrorException {
+		FitnessExercise fEx = new FitnessExercise(mExerciseType, fSetList.toArray(new FSet[fSetList.size()]));
+		if (customName != null) {
+			fEx.setCustomName(customName);
+		}
+		fExList.set(fExList.size() - 1, fEx);
+		return fEx;
+	}
+
+	private SetParameter readSetParameter() throws XmlPullParserException {
+		String name = null;
+		String value = null;
+		for (int i = 0; i < mParser.getAttributeCount(); i++) {
+			switch (mParser.getAttributeName(i)) {
+			case "name":
+				name = mParser.getAttributeValue(i);
+				break;
+			case "value":
+				value = mParser.getAttributeValue(i);
+				break;
+			default:
+				break;
+			}
+		}
+
+		if (name == null) {
+			throw new XmlPullParserException("SetParameter without name at " + mParser.getPositionDescription());
+		}
+		switch (name) {
+		case "weight":
+			return new SetParameter.Weight(Integer.parseInt(value));
+		case "repetition":
+			return new SetParameter.Repetition(Integer.parseInt(value));
+		case "duration":
+			return new SetParameter.Duration(Integer.parseInt(value));
+		case "freefield":
+			return new SetParameter.FreeField(value);
+		default:
+			throw new XmlPullParserException("Unknown SetParameter: " + name);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	// because using constructor of TrainingEntry
+	private TrainingEntry createTrainingEntry(String dateString) {
+		if (dateString == null || dateString.equals("") || dateString.equals("null")) {
+			return new TrainingEntry(null);
+		}
+		return new TrainingEntry(decodeDate(dateString));
+	}
+
+	/**
+	 * Decodes a date of the form yyyy-MM-ddTHH:mm:ssZ. Like
+	 * {@link XMLSaver} the local time zone is used.
+	 * 
+	 * @return The date or null, if it is invalid
+	 */
+	Date decodeDate(String s) {
+		if (s.length() == 20 && s.charAt(4) == '-' && s.charAt(7) == '-' && s.charAt(10) == 'T' && s.charAt(13) == ':'
+				&& s.charAt(16) == ':' && s.charAt(19) == 'Z') {
+			int year = digits(s, 0, 4);
+			int month = digits(s, 5, 7);
+			int day = digits(s, 8, 10);
+			int hour = digits(s, 11, 13);
+			int minute = digits(s, 14, 16);
+			int second = digits(s, 17, 19);
+			if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+				mCalendar.clear();
+				mCalendar.set(year, month - 1, day, hour, minute, second);
+				return mCalendar.getTime();
+			}
+		}
+
+		// not written by XMLSaver, let SimpleDateFormat try it
+		if (mFallbackFormat == null) {
+			mFallbackFormat = new SimpleDateFormat(DATE_PATTERN);
+		}
+		try {
+			return mFallbackFormat.parse(s);
+		} catch (ParseException e) {
+			Log.e(TAG, "Error parsing date: " + s, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return The number of the digits from start (inclusive) to end
+	 *         (exclusive), -1 if there is any other character
+	 */
+	private static int digits(String s, int start, int end) {
+		int n = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+
+}
@@ -23,30 +23,33 @@ package de.skubware.opentraining.db.parser;
 
 import android.util.Log;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
-
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.Map;
 
-import javax.xml.parsers.*;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
 import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseTag;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.FSet;
 import de.skubware.opentraining.basic.FSet.SetParameter;
-import de.skubware.opentraining.basic.*;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.License;
+import de.skubware.opentraining.basic.Muscle;
+import de.skubware.opentraining.basic.SportsEquipment;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
 
 
 
 /**
  * A class to save plans and exercises as XML files.
  * 
+ * The files are written with a {@link XMLStreamWriter}, so the memory needed
+ * does not depend on the length of the training history. The existing file
+ * is only replaced once the new file has been written completely.
  * 
  */
 public class XMLSaver {
@@ -56,6 +59,9 @@ public class XMLSaver {
 	private static final String name = "name";
 	private static final String message1 = "Error during parsing Workout xml file.";
 	private static final String message2 = "Error during parsing ExerciseType xml file.";
+
+	/** Number of training entries that are requested at once */
+	private static final int PAGE_SIZE = 100;
 	
 	
 	/**
@@ -80,130 +86,98 @@ public class XMLSaver {
 		}
 
 		boolean success = true;
-		// write the Workout to an .xml file with DOM
-		DocumentBuilder docBuilder;
-
 		try {
-			docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-			Document doc = docBuilder.newDocument();
+			XMLStreamWriter out = new XMLStreamWriter(destination, true);
+			try {
+				// root element
+				out.startTag("Workout");
+				out.attribute(name, w.getName());
+				out.attribute("rows", Integer.toString(w.getEmptyRows()));
 
-			// create root element
-			Element wE = doc.createElement("Workout");
-			wE.setAttribute(name, w.getName());
-			wE.setAttribute("rows", Integer.toString(w.getEmptyRows()));
+				SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+				for (FitnessExercise fEx : w.getFitnessExercises()) {
+					out.startTag("FitnessExercise");
+					out.attribute("customname", fEx.toString());
 
-			SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-			for (FitnessExercise fEx : w.getFitnessExercises()) {
-				// create element for FitnessExercise
-				Element fE = doc.createElement("FitnessExercise");
-				fE.setAttribute("customname", fEx.toString());
+					out.startTag("ExerciseType");
+					out.attribute(name, fEx.getExType().getUnlocalizedName());
+					out.endTag();
 
-				// create element for ExerciseType
-				Element exTypeE = doc.createElement("ExerciseType");
-				exTypeE.setAttribute(name, fEx.getExType().getUnlocalizedName());
-				// append ExerciseType
-				fE.appendChild(exTypeE);
+					setFSetList(out, fEx);
 
-				setFSetList(doc, fEx, fE);
+					addTrainingEntry(out, format, fEx);
 
-				addTrainingEntry(doc, format, fEx, fE);
+					out.endTag();
+				}
 
-				wE.appendChild(fE);
+				out.endTag();
+				out.commit();
+			} finally {
+				out.close();
 			}
-
-			// append root element
-			doc.appendChild(wE);
-
-			// save to file
-			TransformerFactory tf = TransformerFactory.newInstance();
-
-			// tf.setAttribute("indent-number", 3);
-			Transformer t = tf.newTransformer();
-
-			// set parameters
-			// indent('einrücken')
-			t.setOutputProperty(OutputKeys.INDENT, "yes");
-			t.setOutputProperty(OutputKeys.METHOD, "xml");
-			t.setOutputProperty(OutputKeys.MEDIA_TYPE, "text/xml");
-			t.setOutputProperty(OutputKeys.ENCODING, "utf8");
-
-			FileWriter fw = new FileWriter(destination);
-			t.transform(new DOMSource(doc), new StreamResult(fw));
-
-		} catch (ParserConfigurationException e1) {
-			success = false;
-			Log.e(TAG, message1,e1);
-		} catch (TransformerConfigurationException e) {
-			success = false;
-			Log.e(TAG, message1,e);
 		} catch (IOException e) {
 			success = false;
 			Log.e(TAG, message1,e);
-		} catch (TransformerException e) {
+		} catch (ErrorException e) {
 			success = false;
 			Log.e(TAG, message1,e);
-		} catch (ErrorException e) {
-			Log.v("XMLSaver", e.getMessage().toString());
 		}
 
 		return success;
 	}
 
-	private static void setFSetList(Document doc, FitnessExercise fEx, Element fE) {
+	private static void setFSetList(XMLStreamWriter out, FitnessExercise fEx) throws IOException {
 		for (FSet set : fEx.getFSetList()) {
-            Element fSetE = doc.createElement("FSet");
+            out.startTag("FSet");
+            addSetParameters(out, set);
+            out.endTag();
+        }
+	}
 
-            for (SetParameter c : set.getSetParameters()) {
-                Element catE = doc.createElement("SetParameter");
-                catE.setAttribute(name, c.getName());
-                setCategoryAttribute(c, catE);
-                fSetE.appendChild(catE);
-            }
+	private static void addTrainingEntry(XMLStreamWriter out, SimpleDateFormat format, FitnessExercise fEx) throws IOException, ErrorException {
+		// the older entries may not have been loaded, request them page by page
+		int count = fEx.getTrainingEntryCount();
+		for (int page = 0; page < count; page += PAGE_SIZE) {
+			for (TrainingEntry entry : fEx.getTrainingEntries(page, Math.min(count, page + PAGE_SIZE))) {
+				out.startTag("TrainingEntry");
+
+				// save date
+				setEntryAttribute(out, format, entry);
+
+				for (FSet set : entry.getFSetList()) {
+					out.startTag("FSet");
+					out.attribute("hasBeenDone", Boolean.toString(entry.hasBeenDone(set)));
+					addSetParameters(out, set);
+					out.endTag();
+				}
 
-            // append FitnessExercise
-            fE.appendChild(fSetE);
-        }
+				out.endTag();
+			}
+		}
 	}
 
-	private static void addTrainingEntry(Document doc, SimpleDateFormat format, FitnessExercise fEx, Element fE) throws ErrorException {
-		for (TrainingEntry entry : fEx.getTrainingEntryList()) {
-            Element entryE = doc.createElement("TrainingEntry");
-
-            // save date
-            setEntryAttribute(format, entry, entryE);
-
-            //TODO refactor
-            for (FSet set: entry.getFSetList()) {
-                Element fSetE = doc.createElement("FSet");
-                fSetE.setAttribute("hasBeenDone", Boolean.toString(entry.hasBeenDone(set)) );
-                for (SetParameter c : set.getSetParameters()) {
-                    Element catE = doc.createElement("SetParameter");
-                    catE.setAttribute(name, c.getName());
-                    setCategoryAttribute(c, catE);
-                    fSetE.appendChild(catE);
-                }
-
-                entryE.appendChild(fSetE);
-            }
-
-            // append TrainingEntry
-            fE.appendChild(entryE);
-        }
+	private static void addSetParameters(XMLStreamWriter out, FSet set) throws IOException {
+		for (SetParameter c : set.getSetParameters()) {
+			out.startTag("SetParameter");
+			out.attribute(name, c.getName());
+			setCategoryAttribute(out, c);
+			out.endTag();
+		}
 	}
 
-	private static void setEntryAttribute(SimpleDateFormat format, TrainingEntry entry, Element entryE) {
+	private static void setEntryAttribute(XMLStreamWriter out, SimpleDateFormat format, TrainingEntry entry) throws IOException {
 		if(entry.getDate()!=null){
-            entryE.setAttribute("date", format.format(entry.getDate()));
+            out.attribute("date", format.format(entry.getDate()));
         }else{
-            entryE.setAttribute("date", "null");
+            out.attribute("date", "null");
         }
 	}
 
-	private static void setCategoryAttribute(SetParameter c, Element catE) {
+	private static void setCategoryAttribute(XMLStreamWriter out, SetParameter c) throws IOException {
 		if(! (c instanceof SetParameter.FreeField) ){
-            catE.setAttribute("value", Integer.toString(c.getValue()));
+            out.attribute("value", Integer.toString(c.getValue()));
         }else{
-            catE.setAttribute("value",c.toString());
+            out.attribute("value",c.toString());
         }
 	}
 
@@ -232,138 +206,107 @@ public class XMLSaver {
 	 */
 	public static synchronized boolean writeExerciseType(ExerciseType ex, File destination) {
 
-		boolean success = true; // write the tp to an xml file with DOM
-		DocumentBuilder docBuilder;
+		boolean success = true;
 
 		try {
-			docBuilder = DocumentBuilderFactory.newInstance()
-					.newDocumentBuilder();
-			Document doc;
-
-			doc = docBuilder.newDocument();
+			// create parent folder if necessary
+			destination.mkdirs();
 
-			
-			// create root element 
-			Element	exE = doc.createElement("ExerciseType");
-			exE.setAttribute(name, ex.getLocalizedName());
-			exE.setAttribute("language", Locale.getDefault().getDisplayLanguage());
-			
-			// add root element 
-			doc.appendChild(exE);
+			XMLStreamWriter out = new XMLStreamWriter(new File(destination.toString() + "/"
+					+ ex.getUnlocalizedName() + ".xml"), false);
+			try {
+				// root element
+				out.startTag("ExerciseType");
+				out.attribute(name, ex.getLocalizedName());
+				out.attribute("language", Locale.getDefault().getDisplayLanguage());
 
-			// add description
-			Element desE = doc.createElement("Description");
-			desE.setAttribute("text", ex.getDescription());
-			exE.appendChild(desE);
+				// add description
+				out.startTag("Description");
+				out.attribute("text", ex.getDescription());
+				out.endTag();
 
-			// add translated names
-			Map<Locale, String> translationMap = ex.getTranslationMap();
-			addLocale(doc, exE, translationMap);
+				// add translated names
+				addLocale(out, ex.getTranslationMap());
 
-			addSportsEquipment(ex, doc, exE);
+				addSportsEquipment(ex, out);
 
-			addMuscle(ex, doc, exE);
+				addMuscle(ex, out);
 
-			addExerciseTag(ex, doc, exE);
+				addExerciseTag(ex, out);
 
-			addUrl(ex, doc, exE);
+				addUrl(ex, out);
 
-			License license = new License();
-			for (File im : ex.getImagePaths()) {
-				Element imgE = doc.createElement("Image");
-				imgE.setAttribute("path", im.toString());
+				License license = new License();
+				for (File im : ex.getImagePaths()) {
+					out.startTag("Image");
+					out.attribute("path", im.toString());
 
-				if(ex.getImageLicenseMap().get(im) != null) {
-					license = ex.getImageLicenseMap().get(im);
+					if(ex.getImageLicenseMap().get(im) != null) {
+						license = ex.getImageLicenseMap().get(im);
+					}
+					
+					out.attribute("author", license.getAuthor());
+					out.attribute("license", license.getLicenseType().getShortName());
+					out.endTag();
 				}
-				
-				imgE.setAttribute("author", license.getAuthor());
-				imgE.setAttribute("license", license.getLicenseType().getShortName());
 
-				
-				exE.appendChild(imgE);
+				out.endTag();
+				out.commit();
+			} finally {
+				out.close();
 			}
-
-			// save 
-			TransformerFactory tf = TransformerFactory.newInstance();
-
-			Transformer t =	tf.newTransformer();
-
-			// set parameters t.setOutputProperty(OutputKeys.INDENT, "yes"); //
-			t.setOutputProperty(OutputKeys.METHOD, "xml"); //
-			t.setOutputProperty(OutputKeys.MEDIA_TYPE, "text/xml"); // encoding
-			t.setOutputProperty(OutputKeys.ENCODING, "utf8");
-
-			// create parent folder if necessary
-			destination.mkdirs();
-
-			FileWriter fw = new FileWriter(destination.toString() + "/"
-					+ ex.getUnlocalizedName() + ".xml");
-
-			t.transform(new DOMSource(doc), new StreamResult(fw));
-
-		} catch (ParserConfigurationException e1) {
-			success = false;
-			Log.e(TAG, message2,e1);
-		} catch (TransformerConfigurationException e) {
-			success = false;
-			Log.e(TAG, message2,e);
 		} catch (IOException e) {
 			success = false;
 			Log.e(TAG, message2,e);
-		} catch (TransformerException e) {
-			success = false;
-			Log.e(TAG, message2,e);
 		}
 		return success;
 	}
 
-	private static void addLocale(Document doc, Element exE, Map<Locale, String> translationMap) {
+	private static void addLocale(XMLStreamWriter out, Map<Locale, String> translationMap) throws IOException {
 		for(Locale locale : translationMap.keySet()){
             if(locale.getDisplayLanguage().equals(Locale.getDefault().getDisplayLanguage()))
                 continue;
 
-            Element localeE = doc.createElement("Locale");
-            localeE.setAttribute("language", locale.getDisplayLanguage().toString());
-            localeE.setAttribute(name, translationMap.get(locale));
-            exE.appendChild(localeE);
+            out.startTag("Locale");
+            out.attribute("language", locale.getDisplayLanguage().toString());
+            out.attribute(name, translationMap.get(locale));
+            out.endTag();
         }
 	}
 
-	private static void addUrl(ExerciseType ex, Document doc, Element exE) {
+	private static void addUrl(ExerciseType ex, XMLStreamWriter out) throws IOException {
 		for (URL url : ex.getURLs()) {
-            Element urlE = doc.createElement("URL");
-            urlE.setAttribute("url", url.toString());
-            exE.appendChild(urlE);
+            out.startTag("URL");
+            out.attribute("url", url.toString());
+            out.endTag();
         }
 	}
 
-	private static void addExerciseTag(ExerciseType ex, Document doc, Element exE) {
+	private static void addExerciseTag(ExerciseType ex, XMLStreamWriter out) throws IOException {
 		for (ExerciseTag t : ex.getTags()) {
-            Element tagE = doc.createElement("Tag");
-
-            tagE.setAttribute(name, t.toString());
-            exE.appendChild(tagE);
+            out.startTag("Tag");
+            out.attribute(name, t.toString());
+            out.endTag();
         }
 	}
 
-	private static void addMuscle(ExerciseType ex, Document doc, Element exE) {
+	private static void addMuscle(ExerciseType ex, XMLStreamWriter out) throws IOException {
 		for (Muscle m : ex.getActivatedMuscles()) {
-            Element mE = doc.createElement("Muscle");
-            mE.setAttribute(name, m.toString());
-            mE.setAttribute(
+            out.startTag("Muscle");
+            out.attribute(name, m.toString());
+            out.attribute(
                     "level",
                     Integer.toString(ex.getActivationMap().get(m)
                             .getLevel()));
-            exE.appendChild(mE);
+            out.endTag();
         }
 	}
 
-	private static void addSportsEquipment(ExerciseType ex, Document doc, Element exE) {
+	private static void addSportsEquipment(ExerciseType ex, XMLStreamWriter out) throws IOException {
 		for (SportsEquipment eq : ex.getRequiredEquipment()) {
-            Element wE = doc.createElement("SportsEquipment");
-            wE.setAttribute(name, eq.toString());
-            exE.appendChild(wE);
+            out.startTag("SportsEquipment");
+            out.attribute(name, eq.toString());
+            out.endTag();
         }
 	}
 
@@ -0,0 +1,220 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.db.parser;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming XML writer for the files of {@link XMLSaver}.
+ * 
+ * Writes the same bytes as the DOM Transformer that was used before: the XML
+ * declaration is directly followed by the root element and, if indenting,
+ * every tag starts on a new line without any indentation. Only attributes are
+ * supported, as the files do not contain any text.
+ * 
+ * The file is written to a temporary file first, which replaces the
+ * destination when {@link #commit()} is called. If writing fails, the old
+ * file remains untouched.
+ * 
+ */
+class XMLStreamWriter implements Closeable {
+	/** Size of the write buffer */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final File mDestination;
+	private final File mTempFile;
+	private final Writer mWriter;
+	private final boolean mIndent;
+
+	/** Names of the open elements */
+	private final List<String> mOpenElements = new ArrayList<String>();
+
+	/** True if the start tag of the last element has not been closed yet */
+	private boolean mStartTagOpen = false;
+
+	/** True if the current element contains other elements */
+	private boolean mHasChildren = false;
+
+	private boolean mCommitted = false;
+
+	/**
+	 * Creates the temporary file and writes the XML declaration.
+	 * 
+	 * @param destination
+	 *            The file to write
+	 * @param indent
+	 *            True, if every tag should start on a new line
+	 */
+	XMLStreamWriter(File destination, boolean indent) throws IOException {
+		mDestination = destination;
+		mTempFile = new File(destination.getPath() + ".tmp");
+		mIndent = indent;
+		mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mTempFile), "UTF-8"), BUFFER_SIZE);
+		mWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+	}
+
+	/**
+	 * Starts a new element, its attributes have to be written next.
+	 */
+	XMLStreamWriter startTag(String name) throws IOException {
+		closeStartTag();
+		if (mIndent && !mOpenElements.isEmpty()) {
+			mWriter.write('\n');
+		}
+		mWriter.write('<');
+		mWriter.write(name);
+
+		mOpenElements.add(name);
+		mStartTagOpen = true;
+		mHasChildren = false;
+		return this;
+	}
+
+	/**
+	 * Writes an attribute of the element that has just been started. A null
+	 * value is written as empty value.
+	 */
+	XMLStreamWriter attribute(String name, String value) throws IOException {
+		if (!mStartTagOpen) {
+			throw new IllegalStateException("Attribute " + name + " must follow a start tag.");
+		}
+		mWriter.write(' ');
+		mWriter.write(name);
+		mWriter.write("=\"");
+		if (value != null) {
+			writeEscaped(value);
+		}
+		mWriter.write('"');
+		return this;
+	}
+
+	/**
+	 * Ends the last element that has been started.
+	 */
+	XMLStreamWriter endTag() throws IOException {
+		String name = mOpenElements.remove(mOpenElements.size() - 1);
+		if (mStartTagOpen) {
+			mWriter.write("/>");
+			mStartTagOpen = false;
+		} else {
+			if (mIndent && mHasChildren) {
+				mWriter.write('\n');
+			}
+			mWriter.write("</");
+			mWriter.write(name);
+			mWriter.write('>');
+		}
+		// the parent contains this element
+		mHasChildren = true;
+		return this;
+	}
+
+	/**
+	 * Finishes the document and replaces the destination with the written
+	 * file.
+	 * 
+	 * @throws IOException
+	 *             if writing or renaming failed
+	 */
+	void commit() throws IOException {
+		if (!mOpenElements.isEmpty()) {
+			throw new IllegalStateException("Element " + mOpenElements.get(mOpenElements.size() - 1) + " has not been ended.");
+		}
+		if (mIndent) {
+			mWriter.write('\n');
+		}
+		mWriter.close();
+
+		if (!mTempFile.renameTo(mDestination)) {
+			mTempFile.delete();
+			throw new IOException("Could not rename " + mTempFile + " to " + mDestination);
+		}
+		mCommitted = true;
+	}
+
+	/**
+	 * Closes the writer. If {@link #commit()} has not been called, the
+	 * temporary file is deleted and the destination remains unchanged.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!mCommitted) {
+			mWriter.close();
+			mTempFile.delete();
+		}
+	}
+
+	private void closeStartTag() throws IOException {
+		if (mStartTagOpen) {
+			mWriter.write('>');
+			mStartTagOpen = false;
+		}
+	}
+
+	/**
+	 * Escapes the characters that may not appear in attribute values.
+	 */
+	private void writeEscaped(String value) throws IOException {
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			String replacement;
+			switch (value.charAt(i)) {
+			case '&':
+				replacement = "&amp;";
+				break;
+			case '<':
+				replacement = "&lt;";
+				break;
+			case '>':
+				replacement = "&gt;";
+				break;
+			case '"':
+				replacement = "&quot;";
+				break;
+			case '\n':
+				replacement = "&#10;";
+				break;
+			case '\r':
+				replacement = "&#13;";
+				break;
+			case '\t':
+				replacement = "&#9;";
+				break;
+			default:
+				continue;
+			}
+			mWriter.write(value, start, i - start);
+			mWriter.write(replacement);
+			start = i + 1;
+		}
+		mWriter.write(value, start, value.length() - start);
+	}
+
+}
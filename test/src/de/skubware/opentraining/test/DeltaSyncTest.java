@@ -0,0 +1,199 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package de.skubware.opentraining.test;
+
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.skubware.opentraining.activity.settings.sync.RestClient;
+import de.skubware.opentraining.activity.settings.sync.SyncCursor;
+
+/**
+ * Tests for the conditional requests of the sync with wger, against a local
+ * stand-in for the wger server.
+ *
+ */
+public class DeltaSyncTest extends AndroidTestCase {
+	/** Tag for logging */
+	public static final String TAG = "DeltaSyncTest";
+
+	final String PATH = "/api/v1/language/";
+	final String HOST = "localhost";
+	final String BODY = "{\"meta\": {\"limit\": 20, \"next\": null, \"offset\": 0, \"previous\": null, \"total_count\": 1}, "
+			+ "\"objects\": [{\"id\": 1, \"short_name\": \"de\", \"full_name\": \"Deutsch\"}]}";
+	final String ETAG = "\"v1\"";
+
+	private StandInServer mServer;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mServer = new StandInServer();
+		mServer.start();
+		SyncCursor.reset(getContext());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.close();
+		SyncCursor.reset(getContext());
+		super.tearDown();
+	}
+
+	public void testConditionalRequest() throws IOException {
+		RestClient client = new RestClient(HOST, mServer.getPort(), "http", 1);
+
+		// the first request has to download the file ...
+		RestClient.ConditionalResult first = client.getIfModified(PATH, null, null);
+		assertTrue(first.isModified());
+		assertEquals(BODY, first.getBody());
+		assertEquals(ETAG, first.getETag());
+
+		// ... the second one not
+		RestClient.ConditionalResult second = client.getIfModified(PATH, first.getETag(), first.getLastModified());
+		assertFalse(second.isModified());
+		assertNull(second.getBody());
+		assertEquals(ETAG, second.getETag());
+
+		assertEquals(2, mServer.getRequestCount());
+		assertEquals(1, mServer.getBodyCount());
+	}
+
+	public void testCursor() throws IOException {
+		RestClient client = new RestClient(HOST, mServer.getPort(), "http", 1);
+		RestClient.ConditionalResult result = client.getIfModified(PATH, null, null);
+
+		// changes must not be visible before they have been committed
+		SyncCursor cursor = new SyncCursor(getContext(), HOST);
+		assertEquals(0, cursor.getLastSync());
+		cursor.update(PATH, result, true);
+		assertNull(new SyncCursor(getContext(), HOST).getETag(PATH));
+		cursor.commit();
+
+		SyncCursor nextCursor = new SyncCursor(getContext(), HOST);
+		assertEquals(ETAG, nextCursor.getETag(PATH));
+		assertEquals(BODY, nextCursor.readCachedBody(PATH));
+		assertTrue(nextCursor.getLastSync() > 0);
+
+		// with the validators of the cursor nothing has to be downloaded
+		RestClient.ConditionalResult nextResult = client.getIfModified(PATH, nextCursor.getETag(PATH), nextCursor.getLastModified(PATH));
+		assertFalse(nextResult.isModified());
+		assertEquals(1, mServer.getBodyCount());
+
+		// the state of another host must be ignored
+		SyncCursor otherCursor = new SyncCursor(getContext(), "wger.example.org");
+		assertNull(otherCursor.getETag(PATH));
+		assertNull(otherCursor.readCachedBody(PATH));
+
+		// after a reset everything has to be downloaded again
+		SyncCursor.reset(getContext());
+		assertNull(new SyncCursor(getContext(), HOST).getETag(PATH));
+	}
+
+	/**
+	 * A minimal HTTP server, that answers every request with {@link #BODY}
+	 * and the ETag {@link #ETAG}, or with 'NOT MODIFIED' if the request
+	 * already contains this ETag.
+	 */
+	private class StandInServer extends Thread {
+		private final ServerSocket mSocket;
+		private final AtomicInteger mRequestCount = new AtomicInteger();
+		private final AtomicInteger mBodyCount = new AtomicInteger();
+
+		StandInServer() throws IOException {
+			mSocket = new ServerSocket(0);
+			setDaemon(true);
+		}
+
+		int getPort() {
+			return mSocket.getLocalPort();
+		}
+
+		int getRequestCount() {
+			return mRequestCount.get();
+		}
+
+		int getBodyCount() {
+			return mBodyCount.get();
+		}
+
+		void close() throws IOException {
+			mSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while (!mSocket.isClosed()) {
+				try {
+					Socket socket = mSocket.accept();
+					try {
+						handle(socket);
+					} finally {
+						socket.close();
+					}
+				} catch (IOException e) {
+					// socket has been closed
+				}
+			}
+		}
+
+		private void handle(Socket socket) throws IOException {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			boolean notModified = false;
+			String line = in.readLine();
+			while (line != null && line.length() > 0) {
+				if (line.equalsIgnoreCase("If-None-Match: " + ETAG)) {
+					notModified = true;
+				}
+				line = in.readLine();
+			}
+			mRequestCount.incrementAndGet();
+
+			StringBuilder response = new StringBuilder();
+			byte[] body = BODY.getBytes("UTF-8");
+			if (notModified) {
+				response.append("HTTP/1.1 304 Not Modified\r\n");
+			} else {
+				mBodyCount.incrementAndGet();
+				response.append("HTTP/1.1 200 OK\r\n");
+				response.append("Content-Type: application/json\r\n");
+				response.append("Content-Length: ").append(body.length).append("\r\n");
+			}
+			response.append("ETag: ").append(ETAG).append("\r\n");
+			response.append("Connection: close\r\n\r\n");
+
+			OutputStream out = socket.getOutputStream();
+			out.write(response.toString().getBytes("UTF-8"));
+			if (!notModified) {
+				out.write(body);
+			}
+			out.flush();
+		}
+	}
+
+}
@@ -25,6 +25,7 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -34,6 +35,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.basic.ExerciseTag;
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
@@ -45,9 +47,16 @@ import de.skubware.opentraining.basic.Muscle;
 import de.skubware.opentraining.basic.SportsEquipment;
 import de.skubware.opentraining.basic.TrainingEntry;
 import de.skubware.opentraining.basic.Workout;
-import de.skubware.opentraining.db.DataHelper;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
+import de.skubware.opentraining.db.WorkoutSummary;
+import de.skubware.opentraining.db.parser.ExerciseTypeXMLParser;
+import de.skubware.opentraining.db.parser.ParserFactory;
+import de.skubware.opentraining.db.parser.WorkoutBinaryParser;
+import de.skubware.opentraining.db.parser.WorkoutBinarySaver;
+import de.skubware.opentraining.db.parser.WorkoutJournal;
+import de.skubware.opentraining.db.parser.WorkoutXMLPullParser;
+import de.skubware.opentraining.db.parser.XMLSaver;
 
 /**
  * Tests for the Parsers for {@link Muscle}, {@link SportsEquipment},
@@ -99,6 +108,36 @@ public class ParserTest extends AndroidTestCase {
 		assertFalse(exList.isEmpty());
 	}
 
+	public void testReusePooledExerciseParser() throws IOException {
+		String[] files = getContext().getAssets().list(IDataProvider.EXERCISE_FOLDER);
+		assertTrue(files.length >= 2);
+
+		// the same parser has to return the same results for every read
+		List<ExerciseType> firstRead = new ArrayList<ExerciseType>();
+		ExerciseTypeXMLParser parser = ParserFactory.INSTANCE.obtainExerciseParser(getContext(), ExerciseSource.DEFAULT);
+		try {
+			for (int i = 0; i < 2; i++) {
+				firstRead.add(parser.read(getContext().getAssets().open(IDataProvider.EXERCISE_FOLDER + "/" + files[i])));
+			}
+		} finally {
+			ParserFactory.INSTANCE.recycle(parser);
+		}
+
+		parser = ParserFactory.INSTANCE.obtainExerciseParser(getContext(), ExerciseSource.DEFAULT);
+		try {
+			for (int i = 1; i >= 0; i--) {
+				ExerciseType ex = parser.read(getContext().getAssets().open(IDataProvider.EXERCISE_FOLDER + "/" + files[i]));
+				assertNotNull(ex);
+				assertEquals(firstRead.get(i).getUnlocalizedName(), ex.getUnlocalizedName());
+				assertEquals(firstRead.get(i).getActivatedMuscles(), ex.getActivatedMuscles());
+				assertEquals(firstRead.get(i).getImagePaths(), ex.getImagePaths());
+				assertEquals(firstRead.get(i).getImageLicenseMap(), ex.getImageLicenseMap());
+			}
+		} finally {
+			ParserFactory.INSTANCE.recycle(parser);
+		}
+	}
+
 	
 	
 	public void testSaveAndLoadWorkout(){
@@ -133,18 +172,12 @@ public class ParserTest extends AndroidTestCase {
 		firstTrainingEntry.setHasBeenDone(firstSet, false);
 		
 		DataProvider dataProvider = new DataProvider(getContext());
-		DataHelper dataHelper = new DataHelper(getContext());
 		// save workout
 		dataProvider.saveWorkout(mWorkout);
 		
 		// print Workout for debugging
-		String path = mContext.getFilesDir().toString() + "/"  + WORKOUT_NAME + ".xml";
-		try {
-			String xmlData = dataHelper.loadFileFromFileSystem(path);
-			Log.d(TAG, "Workout XML File: \n\n" + xmlData);
-		} catch (IOException e) {
-			Log.e(TAG, "Error parsing xml", e);
-		}
+		File workoutFile = new File(mContext.getFilesDir(), mWorkout.getId() + DataProvider.BINARY_FORMAT);
+		Log.d(TAG, "Workout file: " + workoutFile + ", " + workoutFile.length() + " bytes");
 
 
 		// load again from filesystem
@@ -177,6 +210,222 @@ public class ParserTest extends AndroidTestCase {
 
 	}
 	
+	public void testSaveTrainingEntryToJournal() throws ErrorException {
+		String workoutName = WORKOUT_NAME + "_journal";
+		ExerciseType EX_1 = new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build();
+		FitnessExercise FEX_1 = new FitnessExercise(EX_1, new FSet(new Repetition(10)));
+		Workout mWorkout = new Workout(workoutName, FEX_1);
+
+		DataProvider dataProvider = new DataProvider(getContext());
+		// the first save writes the complete workout ...
+		assertTrue(dataProvider.saveWorkout(mWorkout));
+
+		// ... the following changes of the training entries are only appended to the journal
+		mWorkout.addTrainingEntry(Calendar.getInstance().getTime());
+		TrainingEntry entry = FEX_1.getTrainingEntryList().get(0);
+		FSet set = new FSet(new Repetition(8), new Weight(20));
+		entry.add(set);
+		entry.setHasBeenDone(set, false);
+		assertTrue(dataProvider.saveWorkout(mWorkout));
+
+		File journal = new WorkoutJournal(mContext.getFilesDir(), mWorkout.getId()).getFile();
+		assertTrue(journal.exists());
+
+		boolean foundWorkout = false;
+		for(Workout w:dataProvider.getWorkouts()){
+			if(w.getName().equals(workoutName)){
+				foundWorkout = true;
+				assertEquals(mWorkout.toDebugString(), w.toDebugString());
+			}
+		}
+		assertTrue(foundWorkout);
+
+		dataProvider.deleteWorkout(mWorkout);
+		assertFalse(journal.exists());
+	}
+	
+	public void testWorkoutSummaries() throws ErrorException {
+		String workoutName = WORKOUT_NAME + "_summary";
+		ExerciseType EX_1 = new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build();
+		ExerciseType EX_2 = new ExerciseType.Builder(EXERCISE_NAME_2, ExerciseSource.CUSTOM).build();
+		FitnessExercise FEX_1 = new FitnessExercise(EX_1, new FSet(new Repetition(10)));
+		FitnessExercise FEX_2 = new FitnessExercise(EX_2, new FSet(new Duration(60)));
+		Workout mWorkout = new Workout(workoutName, FEX_1);
+		mWorkout.addTrainingEntry(Calendar.getInstance().getTime());
+		// added after the training, so it has no history
+		mWorkout.addFitnessExercise(FEX_2);
+
+		DataProvider dataProvider = new DataProvider(getContext());
+		assertTrue(dataProvider.saveWorkout(mWorkout));
+
+		WorkoutSummary summary = findSummary(dataProvider.getWorkoutSummaries(), workoutName);
+		assertNotNull(summary);
+		assertEquals(mWorkout.getId(), summary.getId());
+		assertEquals(2, summary.getExerciseCount());
+		assertEquals(1, summary.getTrainedExerciseCount());
+		assertTrue(summary.hasTrainingEntries());
+		assertFalse(summary.isEveryExerciseTrained());
+		assertEquals(FEX_1.getLastTrainingEntry().getDate(), summary.getLastTrainingDate());
+
+		// the complete workout is loaded on demand
+		assertEquals(mWorkout.toDebugString(), dataProvider.getWorkout(mWorkout.getId()).toDebugString());
+
+		dataProvider.deleteWorkout(mWorkout);
+		assertNull(findSummary(dataProvider.getWorkoutSummaries(), workoutName));
+		assertNull(dataProvider.getWorkout(mWorkout.getId()));
+	}
+
+	public void testRenameWorkout() throws ErrorException {
+		String workoutName = WORKOUT_NAME + "_rename";
+		ExerciseType EX_1 = new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build();
+		FitnessExercise FEX_1 = new FitnessExercise(EX_1, new FSet(new Repetition(10)));
+		Workout mWorkout = new Workout(workoutName, FEX_1);
+		mWorkout.addTrainingEntry(Calendar.getInstance().getTime());
+
+		DataProvider dataProvider = new DataProvider(getContext());
+		assertTrue(dataProvider.saveWorkout(mWorkout));
+
+		// renaming only saves the workout again, it keeps its ID and history
+		mWorkout.setName(workoutName + "_new");
+		assertTrue(dataProvider.saveWorkout(mWorkout));
+
+		assertNull(findSummary(dataProvider.getWorkoutSummaries(), workoutName));
+		WorkoutSummary summary = findSummary(dataProvider.getWorkoutSummaries(), workoutName + "_new");
+		assertNotNull(summary);
+		assertEquals(mWorkout.getId(), summary.getId());
+
+		Workout w = dataProvider.getWorkout(mWorkout.getId());
+		assertEquals(workoutName + "_new", w.getName());
+		assertEquals(mWorkout.toDebugString(), w.toDebugString());
+
+		dataProvider.deleteWorkout(mWorkout);
+		assertNull(dataProvider.getWorkout(mWorkout.getId()));
+	}
+
+	private static WorkoutSummary findSummary(List<WorkoutSummary> summaryList, String name) {
+		for (WorkoutSummary summary : summaryList) {
+			if (summary.getName().equals(name)) {
+				return summary;
+			}
+		}
+		return null;
+	}
+
+	public void testBinaryWorkoutFormat() throws ErrorException, IOException {
+		ExerciseType EX_1 = new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build();
+		ExerciseType EX_2 = new ExerciseType.Builder(EXERCISE_NAME_2, ExerciseSource.CUSTOM).build();
+		FitnessExercise FEX_1 = new FitnessExercise(EX_1, new FSet(new Repetition(10), new Weight(15000)));
+		FitnessExercise FEX_2 = new FitnessExercise(EX_2, new FSet(new FreeField("some userdata!"), new Duration(60)));
+		FEX_2.setCustomName("Custom name");
+		Workout mWorkout = new Workout(WORKOUT_NAME + "_binary", FEX_1, FEX_2);
+		mWorkout.setEmptyRows(7);
+
+		// several entries, one of them without date
+		Calendar date = Calendar.getInstance();
+		for (int i = 0; i < 10; i++) {
+			TrainingEntry entry = new TrainingEntry(i == 3 ? null : date.getTime());
+			for (int k = 0; k < 9; k++) {
+				FSet set = new FSet(new Repetition(k), new Weight(k * 1000));
+				entry.add(set);
+				entry.setHasBeenDone(set, (i + k) % 3 == 0);
+			}
+			FEX_1.getTrainingEntryList().add(entry);
+			date.add(Calendar.DAY_OF_MONTH, i % 2 == 0 ? -3 : 5);
+		}
+
+		File file = new File(getContext().getCacheDir(), mWorkout.getName() + DataProvider.BINARY_FORMAT);
+		assertTrue(WorkoutBinarySaver.writeWorkout(mWorkout, file));
+
+		Workout w = new WorkoutBinaryParser(new DataProvider(getContext())).read(file, getContext());
+		assertNotNull(w);
+		assertEquals(mWorkout.getId(), w.getId());
+		assertEquals(mWorkout.toDebugString(), w.toDebugString());
+
+		// a damaged file must not be read
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(file.length() / 2);
+		int b = raf.read();
+		raf.seek(file.length() / 2);
+		raf.write(b ^ 1);
+		raf.close();
+		assertNull(new WorkoutBinaryParser(new DataProvider(getContext())).read(file, getContext()));
+
+		file.delete();
+	}
+
+	public void testLazyTrainingHistory() throws ErrorException, IOException {
+		ExerciseType EX_1 = new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build();
+		FitnessExercise FEX_1 = new FitnessExercise(EX_1, new FSet(new Repetition(10)));
+		Workout mWorkout = new Workout(WORKOUT_NAME + "_lazy", FEX_1);
+
+		int entryCount = FitnessExercise.RECENT_TRAINING_ENTRIES + 30;
+		Calendar date = Calendar.getInstance();
+		for (int i = 0; i < entryCount; i++) {
+			mWorkout.addTrainingEntry(date.getTime());
+			FSet set = new FSet(new Repetition(i), new Weight(20000));
+			FEX_1.getLastTrainingEntry().add(set);
+			FEX_1.getLastTrainingEntry().setHasBeenDone(set, i % 2 == 0);
+			date.add(Calendar.DAY_OF_MONTH, 2);
+		}
+
+		File file = new File(getContext().getCacheDir(), mWorkout.getName() + DataProvider.BINARY_FORMAT);
+		assertTrue(WorkoutBinarySaver.writeWorkout(mWorkout, file));
+
+		// only the recent entries are loaded ...
+		Workout w = new WorkoutBinaryParser(new DataProvider(getContext())).read(file, getContext());
+		assertNotNull(w);
+		FitnessExercise fEx = w.getFitnessExercises().get(0);
+		assertEquals(entryCount, fEx.getTrainingEntryCount());
+		assertEquals(FitnessExercise.RECENT_TRAINING_ENTRIES, fEx.getTrainingEntryList().size());
+		assertEquals(FEX_1.getLastTrainingEntry().toDebugString(), fEx.getLastTrainingEntry().toDebugString());
+
+		// ... the older ones on demand
+		List<TrainingEntry> page = fEx.getTrainingEntries(25, 35);
+		assertEquals(10, page.size());
+		for (int i = 0; i < page.size(); i++) {
+			assertEquals(FEX_1.getTrainingEntryList().get(25 + i).toDebugString(), page.get(i).toDebugString());
+		}
+
+		// writing the workout again keeps the entries that have not been loaded
+		assertTrue(WorkoutBinarySaver.writeWorkout(w, file));
+		w = new WorkoutBinaryParser(new DataProvider(getContext())).read(file, getContext());
+		w.loadTrainingEntries();
+		assertEquals(0, w.getFitnessExercises().get(0).getUnloadedTrainingEntryCount());
+		assertEquals(entryCount, w.getFitnessExercises().get(0).getTrainingEntryList().size());
+		assertEquals(mWorkout.toDebugString(), w.toDebugString());
+
+		file.delete();
+	}
+
+	public void testMissingExercisesAreCreatedAfterParsing() throws ErrorException {
+		String exerciseName = "Missing exercise " + System.currentTimeMillis();
+		ExerciseType EX_1 = new ExerciseType.Builder(exerciseName, ExerciseSource.CUSTOM).build();
+		Workout mWorkout = new Workout(WORKOUT_NAME + "_missing", new FitnessExercise(EX_1), new FitnessExercise(EX_1));
+
+		File file = new File(getContext().getCacheDir(), mWorkout.getName() + ".xml");
+		assertTrue(XMLSaver.writeTrainingPlan(mWorkout, file));
+
+		// parsing must not save the missing exercise ...
+		IDataProvider dataProvider = new DataProvider(getContext());
+		WorkoutXMLPullParser parser = new WorkoutXMLPullParser();
+		Workout w = parser.read(file, getContext());
+		assertNotNull(w);
+		assertNull(dataProvider.getExerciseByName(exerciseName));
+
+		// ... but collect it once, even if it is referenced twice
+		List<ExerciseType> missingExercises = parser.takeMissingExercises();
+		assertEquals(1, missingExercises.size());
+		assertSame(w.getFitnessExercises().get(0).getExType(), w.getFitnessExercises().get(1).getExType());
+		assertTrue(parser.takeMissingExercises().isEmpty());
+
+		assertTrue(dataProvider.saveCustomExercises(missingExercises).isEmpty());
+		ExerciseType created = dataProvider.getExerciseByName(exerciseName);
+		assertNotNull(created);
+
+		dataProvider.deleteCustomExercise(created);
+		file.delete();
+	}
+	
 	public void testSaveAndLoadExerciseType(){
 		IDataProvider dataProvider = new DataProvider(getContext());
 
@@ -22,19 +22,24 @@ package de.skubware.opentraining.test;
 
 import android.test.InstrumentationTestCase;
 import android.util.Log;
+import android.util.SparseArray;
 
 import org.json.JSONException;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.activity.settings.sync.WgerJSONParser;
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
+import de.skubware.opentraining.basic.License.LicenseType;
 import de.skubware.opentraining.basic.Muscle;
 import de.skubware.opentraining.db.DataProvider;
 import de.skubware.opentraining.db.IDataProvider;
@@ -115,6 +120,59 @@ public class WgerJSONParserTest extends InstrumentationTestCase {
 		assertEquals(EXERCISE_TWO.getActivatedMuscles(), EXERCISE_TWO_PARSED.getActivatedMuscles());
 	}
 
+	/**
+	 * Languages, muscles and licenses that have been parsed on their own (as
+	 * the sync does while the exercises are still being downloaded) have to
+	 * give the same result.
+	 */
+	public void testParsePreparsedReferenceData() throws JSONException, IOException, ErrorException{
+		IDataProvider dataProvider = new DataProvider(getInstrumentation().getTargetContext());
+		WgerJSONParser parser = new WgerJSONParser(readFile(R.raw.exampel_wger_exercises), readFile(R.raw.exampel_wger_languages), readFile(R.raw.exampel_wger_muscles), readFile(R.raw.exampel_wger_equipment), readFile(R.raw.exampel_wger_licenses), dataProvider);
+
+		SparseArray<Locale> locales = WgerJSONParser.parseLanguages(new StringReader(readFile(R.raw.exampel_wger_languages)));
+		SparseArray<Muscle> muscles = WgerJSONParser.parseMuscles(new StringReader(readFile(R.raw.exampel_wger_muscles)), dataProvider);
+		SparseArray<LicenseType> licenses = WgerJSONParser.parseLicenses(new StringReader(readFile(R.raw.exampel_wger_licenses)), dataProvider);
+		WgerJSONParser preparsedParser = new WgerJSONParser(new StringReader(readFile(R.raw.exampel_wger_exercises)), locales, muscles, licenses, dataProvider);
+
+		ArrayList<ExerciseType> exerciseList = parser.getNewExercises();
+		ArrayList<ExerciseType> preparsedList = preparsedParser.getNewExercises();
+		assertEquals(exerciseList, preparsedList);
+		for (int i = 0; i < exerciseList.size(); i++) {
+			assertEquals(exerciseList.get(i).getDescription(), preparsedList.get(i).getDescription());
+			assertEquals(exerciseList.get(i).getActivatedMuscles(), preparsedList.get(i).getActivatedMuscles());
+			assertEquals(exerciseList.get(i).getTranslationMap(), preparsedList.get(i).getTranslationMap());
+		}
+	}
+
+	/**
+	 * Parsing page by page has to return the new exercises of the page and
+	 * the path of the next page.
+	 */
+	public void testParsePage() throws JSONException, IOException, ErrorException{
+		IDataProvider dataProvider = new DataProvider(getInstrumentation().getTargetContext());
+		SparseArray<Locale> locales = WgerJSONParser.parseLanguages(new StringReader(readFile(R.raw.exampel_wger_languages)));
+		SparseArray<Muscle> muscles = WgerJSONParser.parseMuscles(new StringReader(readFile(R.raw.exampel_wger_muscles)), dataProvider);
+		SparseArray<LicenseType> licenses = WgerJSONParser.parseLicenses(new StringReader(readFile(R.raw.exampel_wger_licenses)), dataProvider);
+		WgerJSONParser parser = new WgerJSONParser(locales, muscles, licenses, dataProvider);
+
+		String page = readFile(R.raw.exampel_wger_exercises);
+		assertEquals(3, parser.parsePage(new StringReader(page)).size());
+		assertEquals("/api/v1/exercise/?offset=20&limit=20&format=json", parser.getNextPage());
+
+		// the complete URL of the next page must be reduced to the path
+		String absolutePage = page.replace("\"next\": \"/api", "\"next\": \"https://wger.de/api");
+		assertEquals(3, parser.parsePage(new StringReader(absolutePage)).size());
+		assertEquals("/api/v1/exercise/?offset=20&limit=20&format=json", parser.getNextPage());
+
+		// an empty page is the last one
+		String emptyPage = "{\"meta\": {\"next\": \"/api/v1/exercise/?offset=40&limit=20\"}, \"objects\": []}";
+		assertTrue(parser.parsePage(new StringReader(emptyPage)).isEmpty());
+		assertNull(parser.getNextPage());
+
+		// the exercises are not collected
+		assertTrue(parser.getNewExercises().isEmpty());
+	}
+
 	private String readFile(int id) throws IOException {
 		BufferedReader br = new BufferedReader(new InputStreamReader(getInstrumentation().getContext().getResources().openRawResource(id)));
 		StringBuilder sb = new StringBuilder();
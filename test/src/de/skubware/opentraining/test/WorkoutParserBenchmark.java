@@ -0,0 +1,167 @@
+/**
+ *
+ * This is OpenTraining, an Android application for planning your your fitness training.
+ * Copyright (C) 2012-2014 Christian Skubich
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+package de.skubware.opentraining.test;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
+import de.skubware.opentraining.basic.ExerciseType;
+import de.skubware.opentraining.basic.FSet;
+import de.skubware.opentraining.basic.FSet.SetParameter.*;
+import de.skubware.opentraining.basic.FitnessExercise;
+import de.skubware.opentraining.basic.TrainingEntry;
+import de.skubware.opentraining.basic.Workout;
+import de.skubware.opentraining.db.DataProvider;
+import de.skubware.opentraining.db.parser.IWorkoutParser;
+import de.skubware.opentraining.db.parser.WorkoutBinaryParser;
+import de.skubware.opentraining.db.parser.WorkoutBinarySaver;
+import de.skubware.opentraining.db.parser.WorkoutXMLParser;
+import de.skubware.opentraining.db.parser.WorkoutXMLPullParser;
+import de.skubware.opentraining.db.parser.XMLSaver;
+
+/**
+ * Compares {@link WorkoutXMLParser}, {@link WorkoutXMLPullParser} and
+ * {@link WorkoutBinaryParser} on workouts with a long training history. The parse time and the number of
+ * allocations are written to the log.
+ * 
+ */
+public class WorkoutParserBenchmark extends AndroidTestCase {
+	/** Tag for logging */
+	public static final String TAG = "WorkoutParserBenchmark";
+
+	final String WORKOUT_NAME = "BENCHMARK_workout";
+
+	/** Number of exercises of the workout */
+	final int EXERCISE_COUNT = 6;
+	/** Number of trainings per week */
+	final int TRAININGS_PER_WEEK = 3;
+	/** Number of sets per exercise and training */
+	final int SETS_PER_ENTRY = 4;
+
+	/** Number of measured runs per parser */
+	final int RUNS = 5;
+
+	public void testOneYear() throws ErrorException, IOException {
+		benchmark(1);
+	}
+
+	public void testThreeYears() throws ErrorException, IOException {
+		benchmark(3);
+	}
+
+	private void benchmark(int years) throws ErrorException, IOException {
+		Workout workout = createWorkout(years);
+		File file = new File(getContext().getCacheDir(), WORKOUT_NAME + ".xml");
+		assertTrue(XMLSaver.writeTrainingPlan(workout, file));
+
+		Workout saxWorkout = measure("SAX (" + years + " years)", new WorkoutXMLParser(), file);
+		Workout pullWorkout = measure("Pull (" + years + " years)", new WorkoutXMLPullParser(), file);
+
+		File binaryFile = new File(getContext().getCacheDir(), WORKOUT_NAME + DataProvider.BINARY_FORMAT);
+		assertTrue(WorkoutBinarySaver.writeWorkout(workout, binaryFile));
+		Workout binaryWorkout = measure("Binary (" + years + " years)", new WorkoutBinaryParser(new DataProvider(
+				getContext())), binaryFile);
+
+		assertNotNull(saxWorkout);
+		assertNotNull(pullWorkout);
+		assertNotNull(binaryWorkout);
+		// the binary parser loads only the recent entries
+		binaryWorkout.loadTrainingEntries();
+		assertEquals(saxWorkout.toDebugString(), pullWorkout.toDebugString());
+		assertEquals(saxWorkout.toDebugString(), binaryWorkout.toDebugString());
+
+		file.delete();
+		binaryFile.delete();
+	}
+
+	/**
+	 * Parses the file once to warm up, then {@link #RUNS} times and logs the
+	 * average time and allocations of the runs.
+	 * 
+	 * @return The parsed workout
+	 */
+	@SuppressWarnings("deprecation")
+	// because using alloc counting of Debug
+	private Workout measure(String name, IWorkoutParser parser, File file) {
+		Workout w = parser.read(file, getContext());
+
+		Debug.startAllocCounting();
+		Debug.resetThreadAllocCount();
+		Debug.resetThreadAllocSize();
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			w = parser.read(file, getContext());
+		}
+		long time = System.nanoTime() - start;
+		int allocCount = Debug.getThreadAllocCount();
+		int allocSize = Debug.getThreadAllocSize();
+		Debug.stopAllocCounting();
+
+		Log.i(TAG, name + ": " + file.length() / 1024 + " KiB, " + (time / RUNS / 1000000) + " ms, "
+				+ (allocCount / RUNS) + " allocations (" + (allocSize / RUNS / 1024) + " KiB) per run");
+		return w;
+	}
+
+	/**
+	 * Creates a workout with a synthetic history. Uses existing exercises, so
+	 * the parsers do not create custom exercises.
+	 */
+	private Workout createWorkout(int years) throws ErrorException {
+		List<ExerciseType> exList = new DataProvider(getContext()).getExercises();
+		assertTrue(exList.size() >= EXERCISE_COUNT);
+
+		List<FitnessExercise> fExList = new ArrayList<FitnessExercise>();
+		for (int i = 0; i < EXERCISE_COUNT; i++) {
+			fExList.add(new FitnessExercise(exList.get(i), new FSet(new Repetition(10), new Weight(20000))));
+		}
+		Workout w = new Workout(WORKOUT_NAME, fExList);
+
+		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.YEAR, -years);
+		int trainings = years * 52 * TRAININGS_PER_WEEK;
+		for (int t = 0; t < trainings; t++) {
+			calendar.add(Calendar.HOUR, 7 * 24 / TRAININGS_PER_WEEK);
+			w.addTrainingEntry(calendar.getTime());
+
+			for (FitnessExercise fEx : w.getFitnessExercises()) {
+				List<TrainingEntry> entryList = fEx.getTrainingEntryList();
+				TrainingEntry entry = entryList.get(entryList.size() - 1);
+				for (int s = 0; s < SETS_PER_ENTRY; s++) {
+					FSet set = s == SETS_PER_ENTRY - 1 ? new FSet(new FreeField("note " + t)) : new FSet(
+							new Repetition(8 + s), new Weight(20000 + 250 * (t % 40)), new Duration(60));
+					entry.add(set);
+					entry.setHasBeenDone(set, t % 7 != 0);
+				}
+			}
+		}
+		return w;
+	}
+
+}
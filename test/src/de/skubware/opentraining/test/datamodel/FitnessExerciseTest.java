@@ -24,6 +24,7 @@ import android.test.AndroidTestCase;
 
 import java.util.GregorianCalendar;
 
+import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
 import de.skubware.opentraining.basic.FSet;
@@ -62,7 +63,28 @@ public class FitnessExerciseTest extends AndroidTestCase {
 		assert(fEx.isTrainingEntryFinished(entry));
 
 	}
-	
+
+	public void testCopy() throws ErrorException {
+		ExerciseType ex = (new ExerciseType.Builder("Crunch", ExerciseSource.CUSTOM)).build();
+		FitnessExercise fEx = new FitnessExercise(ex);
+
+		Workout w = new Workout("-", fEx);
+		w.addTrainingEntry(GregorianCalendar.getInstance().getTime());
+		FSet set1 = new FSet(new SetParameter.Duration(2));
+		fEx.getTrainingEntryList().get(0).add(set1);
+
+		FitnessExercise copy = fEx.copy();
+		assertEquals(fEx, copy);
+		assertSame(ex, copy.getExType());
+		TrainingEntry copiedEntry = copy.getTrainingEntryList().get(0);
+		assertTrue(copiedEntry.hasBeenDone(set1));
+
+		// changing the original must not change the copy
+		fEx.getTrainingEntryList().get(0).setHasBeenDone(set1, false);
+		fEx.getTrainingEntryList().get(0).add(new FSet(new SetParameter.Repetition(10)));
+		assertTrue(copiedEntry.hasBeenDone(set1));
+		assertEquals(1, copiedEntry.getFSetList().size());
+	}
 		
 
 }
@@ -22,6 +22,9 @@ package de.skubware.opentraining.test.datamodel;
 
 import android.test.AndroidTestCase;
 
+import java.util.Arrays;
+
+import de.skubware.opentraining.Exceptions.ErrorException;
 import de.skubware.opentraining.basic.ExerciseType;
 import de.skubware.opentraining.basic.ExerciseType.ExerciseSource;
 import de.skubware.opentraining.basic.FSet;
@@ -91,4 +94,60 @@ public class WorkoutTest extends AndroidTestCase {
 		assertEquals(mWorkout, mWorkoutS);
 	}
 
+	public void testId() throws ErrorException {
+		ExerciseType EX_1 = new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build();
+		FitnessExercise FEX_1 = new FitnessExercise(EX_1, new FSet(new Repetition(1)));
+
+		Workout mWorkout = new Workout(WORKOUT_NAME, FEX_1);
+		Workout mWorkoutS = new Workout(WORKOUT_NAME, FEX_1);
+
+		// each new workout gets its own ID
+		assertNotNull(mWorkout.getId());
+		assertFalse(mWorkout.getId().equals(mWorkoutS.getId()));
+
+		// renaming does not change the ID
+		String id = mWorkout.getId();
+		mWorkout.setName(WORKOUT_NAME + "_renamed");
+		assertEquals(id, mWorkout.getId());
+
+		try {
+			new Workout("", WORKOUT_NAME, Arrays.asList(FEX_1));
+			fail("Workout without ID must not be created");
+		} catch (ErrorException e) {
+			// expected
+		}
+	}
+
+	public void testChangeFitnessExercises() throws ErrorException {
+		FitnessExercise FEX_1 = new FitnessExercise(new ExerciseType.Builder(EXERCISE_NAME_1, ExerciseSource.CUSTOM).build());
+		FitnessExercise FEX_2 = new FitnessExercise(new ExerciseType.Builder(EXERCISE_NAME_2, ExerciseSource.CUSTOM).build());
+		FitnessExercise FEX_3 = new FitnessExercise(new ExerciseType.Builder(EXERCISE_NAME_3, ExerciseSource.CUSTOM).build());
+		Workout mWorkout = new Workout(WORKOUT_NAME, FEX_1, FEX_2);
+
+		// the ExerciseType is compared ignoring the case
+		try {
+			mWorkout.addFitnessExercise(new FitnessExercise(new ExerciseType.Builder(EXERCISE_NAME_1.toUpperCase(),
+					ExerciseSource.CUSTOM).build()));
+			fail("ExerciseType must not be added twice");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		mWorkout.addFitnessExercise(FEX_3);
+		assertTrue(mWorkout.contains(FEX_3));
+
+		mWorkout.switchExercises(FEX_1, FEX_3);
+		assertSame(FEX_3, mWorkout.getFitnessExercises().get(0));
+		assertSame(FEX_1, mWorkout.getFitnessExercises().get(2));
+
+		mWorkout.removeFitnessExercise(FEX_2);
+		assertFalse(mWorkout.contains(FEX_2));
+
+		// the index has to follow the removal
+		FitnessExercise FEX_1_CHANGED = new FitnessExercise(FEX_1.getExType(), new FSet(new Repetition(5)));
+		mWorkout.updateFitnessExercise(FEX_1_CHANGED);
+		assertSame(FEX_1_CHANGED, mWorkout.getFitnessExercises().get(1));
+		assertEquals(2, mWorkout.getFitnessExercises().size());
+	}
+
 }